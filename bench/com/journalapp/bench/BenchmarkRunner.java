@@ -0,0 +1,117 @@
+package com.journalapp.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the distributor benchmarks and prints a table of their results.
+ *
+ * Options:
+ *   --sizes 10000,100000,1000000   numbers of subscriptions to measure at
+ *   --benchmarks REGEX             only run benchmarks whose name matches
+ *   --warmup N                     warmup iterations (default 3)
+ *   --iterations N                 measurement iterations (default 5)
+ *   --time MILLIS                  length of each iteration (default 1000)
+ *   --output FILE                  also write the table to a file
+ */
+public class BenchmarkRunner {
+    private static final String HEADER = String.format(Locale.ROOT, "%-32s %9s %6s %4s %16s    %10s %10s %12s %5s %8s %12s",
+            "Benchmark", "Size", "Mode", "Cnt", "Score", "Error", "Units", "Alloc MB/s", "GCs", "GC ms", "Alloc B/op");
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = {10_000, 100_000, 1_000_000};
+        Pattern filter = Pattern.compile(".*");
+        int warmup = 3;
+        int iterations = 5;
+        long time = 1000;
+        String output = null;
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--sizes":
+                    String[] parts = value.split(",");
+                    sizes = new int[parts.length];
+                    for (int p = 0; p < parts.length; p++) {
+                        sizes[p] = Integer.parseInt(parts[p].trim());
+                    }
+                    break;
+                case "--benchmarks":
+                    filter = Pattern.compile(value);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(value);
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(value);
+                    break;
+                case "--time":
+                    time = Long.parseLong(value);
+                    break;
+                case "--output":
+                    output = value;
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+            i++;
+        }
+
+        Path workDirectory = Files.createTempDirectory("journal-bench");
+        Harness harness = new Harness(warmup, iterations, time);
+        List<Harness.Result> results = new ArrayList<>();
+        PrintStream console = System.out;
+        console.println(HEADER);
+        try {
+            // The distributor reports every change on standard output; keep it out of the measurements.
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            for (int size : sizes) {
+                for (DistributorBenchmarks.Benchmark benchmark : DistributorBenchmarks.all(workDirectory)) {
+                    if (!filter.matcher(benchmark.name).find()) {
+                        continue;
+                    }
+                    Harness.Result result = harness.measure(benchmark.name, size, benchmark.setup.prepare(size));
+                    results.add(result);
+                    console.println(format(result));
+                }
+            }
+        } finally {
+            System.setOut(console);
+            deleteRecursively(workDirectory);
+        }
+
+        if (output != null) {
+            List<String> lines = new ArrayList<>();
+            lines.add(HEADER);
+            for (Harness.Result result : results) {
+                lines.add(format(result));
+            }
+            Files.write(Paths.get(output), lines);
+        }
+    }
+
+    private static String format(Harness.Result result) {
+        return String.format(Locale.ROOT, "%-32s %9d %6s %4d %16.3f +- %10.3f %10s %12.3f %5d %8d %12.1f",
+                result.name, result.size, "thrpt", result.iterations, result.score, result.error, "ops/s",
+                result.allocationRate, result.collections, result.collectionMillis, result.bytesPerOperation);
+    }
+
+    private static void deleteRecursively(Path directory) {
+        try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            System.err.println("Could not delete " + directory + ": " + e.getMessage());
+        }
+    }
+}
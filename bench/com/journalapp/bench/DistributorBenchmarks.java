@@ -0,0 +1,174 @@
+package com.journalapp.bench;
+
+import com.journalapp.Distributor;
+import com.journalapp.model.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * The benchmarked operations. Each benchmark prepares its state for a given number of
+ * subscriptions and returns the operation to time.
+ *
+ * As with a benchmark-scoped JMH state, the adding benchmarks keep adding to the same
+ * distributor, so its size grows slowly during the run. The other benchmarks leave the
+ * distributor unchanged and share one per size.
+ */
+final class DistributorBenchmarks {
+    private static final int JOURNALS = 200;
+    private static final int SUBSCRIPTIONS_PER_SUBSCRIBER = 2;
+
+    private DistributorBenchmarks() {
+    }
+
+    interface Setup {
+        Harness.Operation prepare(int size) throws Exception;
+    }
+
+    static final class Benchmark {
+        final String name;
+        final Setup setup;
+
+        Benchmark(String name, Setup setup) {
+            this.name = name;
+            this.setup = setup;
+        }
+    }
+
+    static List<Benchmark> all(Path workDirectory) {
+        return Arrays.asList(
+            new Benchmark("addSubscriber", size -> {
+                Distributor distributor = distributor(size);
+                int[] next = {0};
+                return () -> distributor.addSubscriber(
+                        new Individual("Bench Subscriber " + next[0]++, "Bench Street", "4111111111111111", 1, 2030, 123));
+            }),
+            new Benchmark("addSubscription", size -> {
+                Distributor distributor = distributor(size);
+                List<Journal> journals = new ArrayList<>(distributor.getJournals().values());
+                int[] next = {0};
+                return () -> {
+                    Subscriber subscriber = new Individual("Bench Subscriber " + next[0]++, "Bench Street", "4111111111111111", 1, 2030, 123);
+                    distributor.addSubscriber(subscriber);
+                    Journal journal = journals.get(next[0] % journals.size());
+                    return distributor.addSubscription(journal.getIssn(), subscriber,
+                            new Subscription(new DateInfo(1 + next[0] % 12, 2022), 1, journal, subscriber, 0.1));
+                };
+            }),
+            new Benchmark("Subscription.canSend", size -> {
+                Subscription[] subscriptions = subscriptions(shared(size));
+                int[] next = {0};
+                return () -> {
+                    int i = next[0]++;
+                    return subscriptions[i % subscriptions.length].canSend(1 + i % 12, 2020 + i % 5);
+                };
+            }),
+            new Benchmark("PaymentInfo.getReceivedPayment", size -> {
+                Subscription[] subscriptions = subscriptions(shared(size));
+                int[] next = {0};
+                return () -> subscriptions[next[0]++ % subscriptions.length].getPayment().getReceivedPayment();
+            }),
+            new Benchmark("listAllSendingOrders", size -> {
+                Distributor distributor = shared(size);
+                int[] next = {0};
+                return () -> {
+                    int i = next[0]++;
+                    return distributor.listAllSendingOrders(1 + i % 12, 2020 + i % 5);
+                };
+            }),
+            new Benchmark("sendingOrders.firstPage", size -> {
+                Distributor distributor = shared(size);
+                int[] next = {0};
+                return () -> {
+                    int i = next[0]++;
+                    return distributor.sendingOrders(1 + i % 12, 2020 + i % 5).limit(100).collect(Collectors.toList());
+                };
+            }),
+            new Benchmark("listIncompletePayments", size -> {
+                Distributor distributor = shared(size);
+                return distributor::listIncompletePayments;
+            }),
+            new Benchmark("report", size -> {
+                Distributor distributor = shared(size);
+                return () -> distributor.generateReport(new GregorianCalendar(2022, 5, 1), 2018, 2024);
+            }),
+            new Benchmark("saveState", size -> {
+                Distributor distributor = shared(size);
+                String file = workDirectory.resolve("bench-save-" + size + ".bin").toString();
+                return () -> {
+                    distributor.saveState(file);
+                    return file;
+                };
+            }),
+            new Benchmark("loadState", size -> {
+                String file = workDirectory.resolve("bench-load-" + size + ".bin").toString();
+                shared(size).saveState(file);
+                Distributor distributor = new Distributor();
+                return () -> {
+                    distributor.loadState(file);
+                    return distributor;
+                };
+            })
+        );
+    }
+
+    private static Subscription[] subscriptions(Distributor distributor) {
+        return distributor.getAllSubscriptions().toArray(new Subscription[0]);
+    }
+
+    private static Distributor shared;
+    private static int sharedSize = -1;
+
+    /**
+     * Gets the distributor shared by the benchmarks that do not change it, rebuilding it when
+     * the size changes.
+     */
+    static Distributor shared(int size) {
+        if (sharedSize != size) {
+            shared = null;
+            shared = distributor(size);
+            sharedSize = size;
+        }
+        return shared;
+    }
+
+    /**
+     * Builds a distributor with the given number of subscriptions from a fixed seed, so every
+     * run measures the same data.
+     */
+    static Distributor distributor(int size) {
+        Random random = new Random(size);
+        Distributor distributor = new Distributor();
+        Journal[] journals = new Journal[JOURNALS];
+        for (int j = 0; j < JOURNALS; j++) {
+            journals[j] = new Journal("Journal " + j, String.format("%04d-%04d", j / 10000, j % 10000),
+                                      new int[] {1, 4, 6, 12, 24, 52}[j % 6], 2.0 + random.nextInt(2000) / 100.0);
+            distributor.addJournal(journals[j]);
+        }
+        int subscribers = (size + SUBSCRIPTIONS_PER_SUBSCRIBER - 1) / SUBSCRIPTIONS_PER_SUBSCRIBER;
+        int added = 0;
+        for (int s = 0; s < subscribers && added < size; s++) {
+            Subscriber subscriber = s % 4 == 0
+                    ? new Corporation("Company " + s, "Address " + s, 100 + s % 900, "Bank " + s % 50, 1 + s % 28, 1 + s % 12, 2000 + s % 20, 10000 + s)
+                    : new Individual("Person " + s, "Address " + s, "4111" + (1000000 + s), 1 + s % 12, 2030, 100 + s % 900);
+            distributor.addSubscriber(subscriber);
+            for (int k = 0; k < SUBSCRIPTIONS_PER_SUBSCRIBER && added < size; k++, added++) {
+                Journal journal = journals[(s * SUBSCRIPTIONS_PER_SUBSCRIBER + k) % JOURNALS];
+                Subscription subscription = new Subscription(new DateInfo(1 + random.nextInt(12), 2018 + random.nextInt(6)),
+                                                             1 + random.nextInt(3), journal, subscriber, random.nextInt(4) * 0.05);
+                distributor.addSubscription(journal.getIssn(), subscriber, subscription);
+                double expected = subscription.calculateExpectedPayment();
+                int payments = random.nextInt(4);
+                for (int p = 0; p < payments; p++) {
+                    subscription.acceptPayment(Math.round(expected / payments * 100) / 100.0,
+                            new GregorianCalendar(subscription.getDates().getStartYear(), random.nextInt(12), 1 + random.nextInt(28)));
+                }
+            }
+        }
+        return distributor;
+    }
+}
@@ -0,0 +1,178 @@
+package com.journalapp.bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Runs one benchmark operation in timed iterations and measures its throughput, the bytes it
+ * allocates and the garbage collections it causes, in the manner of JMH's throughput mode
+ * with the GC profiler.
+ *
+ * Each iteration repeats the operation in batches until the iteration time has passed.
+ * Warmup iterations are run first and discarded. Allocation is read from the per-thread
+ * allocation counters of every live thread, so work handed to other threads (such as the
+ * report pool) is included.
+ */
+final class Harness {
+    // Sized during the first warmup iteration so a batch takes about this long.
+    private static final long TARGET_BATCH_NANOS = 100_000;
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+
+    // Results are folded into sink and published at the end of a run, so the JIT cannot drop the work that made them.
+    private long sink;
+    private static volatile long published;
+
+    Harness(int warmupIterations, int measurementIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+    }
+
+    /**
+     * The operation being measured. Its result is consumed by the harness.
+     */
+    interface Operation {
+        Object run() throws Exception;
+    }
+
+    Result measure(String name, int size, Operation operation) throws Exception {
+        int batch = 1;
+        for (int i = 0; i < warmupIterations; i++) {
+            batch = iterate(operation, batch, i == 0).batch;
+        }
+        double[] scores = new double[measurementIterations];
+        long operations = 0;
+        long elapsedNanos = 0;
+        long allocatedBytes = 0;
+        long collections = 0;
+        long collectionMillis = 0;
+        for (int i = 0; i < measurementIterations; i++) {
+            long allocatedBefore = allocatedBytes();
+            long collectionsBefore = collectionCount();
+            long collectionMillisBefore = collectionMillis();
+            Iteration iteration = iterate(operation, batch, false);
+            allocatedBytes += allocatedBytes() - allocatedBefore;
+            collections += collectionCount() - collectionsBefore;
+            collectionMillis += collectionMillis() - collectionMillisBefore;
+            operations += iteration.operations;
+            elapsedNanos += iteration.elapsedNanos;
+            scores[i] = iteration.operations * 1e9 / iteration.elapsedNanos;
+        }
+        published = sink;
+        return new Result(name, size, scores, operations, elapsedNanos, allocatedBytes, collections, collectionMillis);
+    }
+
+    private Iteration iterate(Operation operation, int batch, boolean calibrate) throws Exception {
+        long operations = 0;
+        long start = System.nanoTime();
+        long end = start + iterationNanos;
+        long now;
+        do {
+            long batchStart = System.nanoTime();
+            for (int i = 0; i < batch; i++) {
+                consume(operation.run());
+            }
+            operations += batch;
+            now = System.nanoTime();
+            if (calibrate && now - batchStart < TARGET_BATCH_NANOS && batch < (1 << 20)) {
+                batch *= 2;
+            }
+        } while (now < end);
+        return new Iteration(operations, now - start, batch);
+    }
+
+    private void consume(Object result) {
+        sink += result == null ? 0 : System.identityHashCode(result);
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return 0;
+        }
+        long total = 0;
+        for (long bytes : ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    private static long collectionCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, collector.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long collectionMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static final class Iteration {
+        private final long operations;
+        private final long elapsedNanos;
+        private final int batch;
+
+        private Iteration(long operations, long elapsedNanos, int batch) {
+            this.operations = operations;
+            this.elapsedNanos = elapsedNanos;
+            this.batch = batch;
+        }
+    }
+
+    /**
+     * The measurements of one benchmark at one size.
+     */
+    static final class Result {
+        final String name;
+        final int size;
+        final double score;          // Mean operations per second over the measurement iterations
+        final double error;          // Half-width of the 99.9% confidence interval of the score
+        final int iterations;
+        final double allocationRate; // MB allocated per second
+        final double bytesPerOperation;
+        final long collections;
+        final long collectionMillis;
+
+        private Result(String name, int size, double[] scores, long operations, long elapsedNanos,
+                       long allocatedBytes, long collections, long collectionMillis) {
+            this.name = name;
+            this.size = size;
+            this.iterations = scores.length;
+            double mean = 0;
+            for (double score : scores) {
+                mean += score;
+            }
+            mean /= scores.length;
+            double variance = 0;
+            for (double score : scores) {
+                variance += (score - mean) * (score - mean);
+            }
+            this.score = mean;
+            this.error = scores.length < 2 ? Double.NaN
+                       : studentT999(scores.length - 1) * Math.sqrt(variance / (scores.length - 1)) / Math.sqrt(scores.length);
+            this.allocationRate = allocatedBytes / (elapsedNanos / 1e9) / (1024 * 1024);
+            this.bytesPerOperation = operations == 0 ? 0 : (double) allocatedBytes / operations;
+            this.collections = collections;
+            this.collectionMillis = collectionMillis;
+        }
+
+        // Two-sided 99.9% quantiles of Student's t distribution, as used by JMH for its error column.
+        private static double studentT999(int degreesOfFreedom) {
+            double[] quantiles = {636.62, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+                                  4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850};
+            return degreesOfFreedom <= quantiles.length ? quantiles[degreesOfFreedom - 1] : 3.291;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.journalapp;
+
+import com.journalapp.output.CoalescingOutputSink;
+import com.journalapp.output.LineRing;
+import com.journalapp.output.OutputSink;
+import java.awt.BorderLayout;
+import java.awt.Font;
+import java.awt.FlowLayout;
+import java.awt.Rectangle;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import javax.swing.AbstractListModel;
+import javax.swing.JButton;
+import javax.swing.JFileChooser;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
+
+/**
+ * The output console at the bottom of the main window.
+ *
+ * Lines are kept in a ring buffer of fixed capacity, so the oldest lines are dropped once
+ * it is full and memory stays flat however long the application runs. They are shown in a
+ * JList with a fixed cell size, which lays out and paints only the rows in view; appending
+ * a line is constant time however many lines are kept. Text written to {@link #getOutput()}
+ * is appended in batches on the event thread.
+ */
+public class ConsolePanel extends JPanel {
+    private static final long serialVersionUID = 1L;
+
+    /** Lines kept unless the journalapp.console.lines system property says otherwise. */
+    public static final int DEFAULT_CAPACITY = 100_000;
+
+    private final LineBuffer lines;
+    private final JList<String> list;
+    private final JTextField searchField = new JTextField(20);
+    private final JLabel status = new JLabel();
+    private final OutputSink output;
+    private final int charWidth;
+    private int widestLine; // In characters, over every line shown so far
+
+    public ConsolePanel() {
+        this(Integer.getInteger("journalapp.console.lines", DEFAULT_CAPACITY));
+    }
+
+    public ConsolePanel(int capacity) {
+        super(new BorderLayout());
+        lines = new LineBuffer(capacity);
+        list = new JList<>(lines);
+        list.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        list.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        // Fixed cell sizes keep the list from measuring every line on each change.
+        charWidth = list.getFontMetrics(list.getFont()).charWidth('m');
+        list.setFixedCellHeight(list.getFontMetrics(list.getFont()).getHeight());
+        list.setFixedCellWidth(charWidth * 80);
+        JScrollPane scrollPane = new JScrollPane(list);
+
+        JButton findButton = new JButton("Find Next");
+        findButton.addActionListener(e -> findNext());
+        searchField.addActionListener(e -> findNext());
+        JButton saveButton = new JButton("Save...");
+        saveButton.addActionListener(e -> save());
+        JButton clearButton = new JButton("Clear");
+        clearButton.addActionListener(e -> clear());
+
+        JPanel toolbar = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 2));
+        toolbar.add(new JLabel("Find:"));
+        toolbar.add(searchField);
+        toolbar.add(findButton);
+        toolbar.add(saveButton);
+        toolbar.add(clearButton);
+        toolbar.add(status);
+
+        add(toolbar, BorderLayout.NORTH);
+        add(scrollPane, BorderLayout.CENTER);
+
+        output = new CoalescingOutputSink(this::append, SwingUtilities::invokeLater, 30);
+    }
+
+    /**
+     * Gets a sink that appends to this console from any thread.
+     */
+    public OutputSink getOutput() {
+        return output;
+    }
+
+    /**
+     * Appends text, splitting it into lines. Must be called on the event thread.
+     */
+    public void append(String text) {
+        Rectangle view = list.getVisibleRect();
+        boolean atEnd = lines.getSize() == 0 || view.y + view.height >= list.getHeight() - list.getFixedCellHeight();
+
+        int longest = lines.append(text);
+        if (longest > widestLine) {
+            widestLine = longest;
+            list.setFixedCellWidth(charWidth * (widestLine + 2));
+        }
+        if (atEnd && lines.getSize() > 0) {
+            list.ensureIndexIsVisible(lines.getSize() - 1); // Follow the output unless the user has scrolled up
+        }
+    }
+
+    /**
+     * Removes every line.
+     */
+    public void clear() {
+        lines.clear();
+        widestLine = 0;
+        list.setFixedCellWidth(charWidth * 80);
+        status.setText("");
+    }
+
+    // Selects the next line after the selection that contains the search text, ignoring case.
+    private void findNext() {
+        String query = searchField.getText().toLowerCase(Locale.ROOT);
+        int size = lines.getSize();
+        if (query.isEmpty() || size == 0) {
+            return;
+        }
+        int from = list.getMaxSelectionIndex() + 1;
+        for (int n = 0; n < size; n++) {
+            int i = (from + n) % size;
+            if (lines.getElementAt(i).toLowerCase(Locale.ROOT).contains(query)) {
+                list.setSelectedIndex(i);
+                list.ensureIndexIsVisible(i);
+                status.setText(i < from ? "Wrapped to the top." : "");
+                return;
+            }
+        }
+        status.setText("Not found.");
+    }
+
+    private void save() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Save console output");
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+        String[] snapshot = lines.toArray();
+        // Writing 100,000 lines takes a moment; keep it off the event thread.
+        Thread saveThread = new Thread(() -> {
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                for (String line : snapshot) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+                SwingUtilities.invokeLater(() -> status.setText("Saved " + snapshot.length + " lines to " + file.getFileName() + "."));
+            } catch (IOException e) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this, "Error saving console output: " + e.getMessage(),
+                                                                               "Save Error", JOptionPane.ERROR_MESSAGE));
+            }
+        }, "console-save");
+        saveThread.setDaemon(true);
+        saveThread.start();
+    }
+
+    /**
+     * The console's lines as a list model: a {@link LineRing} that fires list events as lines
+     * are appended. Used only on the event thread.
+     */
+    static final class LineBuffer extends AbstractListModel<String> {
+        private static final long serialVersionUID = 1L;
+
+        private final LineRing lines;
+
+        LineBuffer(int capacity) {
+            this.lines = new LineRing(capacity);
+        }
+
+        @Override
+        public int getSize() {
+            return lines.size();
+        }
+
+        @Override
+        public String getElementAt(int index) {
+            return lines.get(index);
+        }
+
+        /**
+         * Appends the complete lines of some text and fires one removal and one addition
+         * event for the whole batch.
+         * @return The length of the longest line appended that is still kept.
+         */
+        int append(String text) {
+            int oldSize = lines.size();
+            int added = lines.append(text);
+            int size = lines.size();
+            int removed = oldSize + added - size;
+            int longest = 0;
+            for (int i = Math.max(0, size - added); i < size; i++) {
+                longest = Math.max(longest, lines.get(i).length());
+            }
+
+            if (added >= lines.capacity()) {
+                fireContentsChanged(this, 0, size - 1); // Every line was replaced
+            } else {
+                if (removed > 0) {
+                    fireIntervalRemoved(this, 0, removed - 1);
+                }
+                if (added > 0) {
+                    fireIntervalAdded(this, size - added, size - 1);
+                }
+            }
+            return longest;
+        }
+
+        void clear() {
+            int oldSize = lines.size();
+            lines.clear();
+            if (oldSize > 0) {
+                fireIntervalRemoved(this, 0, oldSize - 1);
+            }
+        }
+
+        String[] toArray() {
+            return lines.toArray();
+        }
+    }
+}
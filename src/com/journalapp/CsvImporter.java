@@ -0,0 +1,430 @@
+package com.journalapp;
+
+import com.journalapp.model.*;
+import com.journalapp.util.CsvReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Imports journals, subscribers and subscriptions from CSV files into a distributor.
+ *
+ * Each file is streamed through a three-stage pipeline: the calling thread parses rows into
+ * chunks, a pool of workers turns each chunk into model objects (validating the values and
+ * resolving the journals and subscribers that subscriptions refer to), and one inserter adds
+ * the chunks in file order with the distributor's batch methods. At most a few chunks are in
+ * flight at a time, so files of any size are imported in constant memory.
+ *
+ * Every file starts with a header row naming its columns, in any order and case:
+ * <pre>
+ * journals.csv       name, issn, frequency, issue_price
+ * individuals.csv    name, address, credit_card_nr, expire_month, expire_year, ccv
+ * corporations.csv   name, address, bank_code, bank_name, issue_day, issue_month, issue_year, account_number
+ * subscriptions.csv  issn, subscriber_name, [subscriber_address], start_month, start_year, copies, discount_ratio
+ * </pre>
+ * A subscription without a subscriber address goes to the first subscriber with that name.
+ * Rows that cannot be parsed or are rejected by the distributor are counted and reported
+ * with their line numbers; they do not stop the import.
+ */
+public class CsvImporter {
+    private static final int CHUNK_SIZE = 4096;
+    private static final int MAX_REPORTED_REJECTIONS = 1000;
+
+    private final Distributor distributor;
+    private final int threads;
+
+    public CsvImporter(Distributor distributor) {
+        this(distributor, Runtime.getRuntime().availableProcessors());
+    }
+
+    public CsvImporter(Distributor distributor, int threads) {
+        if (distributor == null) {
+            throw new IllegalArgumentException("Distributor cannot be null.");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive.");
+        }
+        this.distributor = distributor;
+        this.threads = threads;
+    }
+
+    /**
+     * A rejected row.
+     */
+    public static final class Rejection {
+        private final long line;
+        private final String reason;
+
+        Rejection(long line, String reason) {
+            this.line = line;
+            this.reason = reason;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+    }
+
+    /**
+     * The outcome of importing one file. Only the first rejections are kept with their
+     * reasons; all of them are counted.
+     */
+    public static final class Summary {
+        private final String file;
+        private long rows;
+        private long added;
+        private long rejected;
+        private final List<Rejection> rejections = new ArrayList<>();
+        private long elapsedMillis;
+
+        Summary(String file) {
+            this.file = file;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getAdded() {
+            return added;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public List<Rejection> getRejections() {
+            return rejections;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        void reject(long line, String reason) {
+            rejected++;
+            if (rejections.size() < MAX_REPORTED_REJECTIONS) {
+                rejections.add(new Rejection(line, reason));
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append("--- Import of ").append(file).append(" ---\n")
+                .append("Rows: ").append(rows).append(", added: ").append(added).append(", rejected: ").append(rejected)
+                .append(" (").append(elapsedMillis).append(" ms)\n");
+            for (Rejection rejection : rejections) {
+                text.append("- Line ").append(rejection.getLine()).append(": ").append(rejection.getReason()).append("\n");
+            }
+            if (rejected > rejections.size()) {
+                text.append("... and ").append(rejected - rejections.size()).append(" more rejected rows.\n");
+            }
+            return text.toString();
+        }
+    }
+
+    public Summary importJournals(Path file) throws IOException {
+        return importFile(file, new String[] {"name", "issn", "frequency", "issue_price"},
+            row -> new Journal(row.get("name"), row.get("issn"), row.getInt("frequency"), row.getDouble("issue_price")),
+            distributor::addJournals, "journal ISSN already exists");
+    }
+
+    public Summary importIndividuals(Path file) throws IOException {
+        return importFile(file, new String[] {"name", "address", "credit_card_nr", "expire_month", "expire_year", "ccv"},
+            row -> new Individual(row.get("name"), row.get("address"), row.get("credit_card_nr"),
+                                  row.getInt("expire_month"), row.getInt("expire_year"), row.getInt("ccv")),
+            distributor::addSubscribers, "subscriber with this name and address already exists");
+    }
+
+    public Summary importCorporations(Path file) throws IOException {
+        return importFile(file, new String[] {"name", "address", "bank_code", "bank_name", "issue_day", "issue_month", "issue_year", "account_number"},
+            row -> new Corporation(row.get("name"), row.get("address"), row.getInt("bank_code"), row.get("bank_name"),
+                                   row.getInt("issue_day"), row.getInt("issue_month"), row.getInt("issue_year"), row.getInt("account_number")),
+            distributor::addSubscribers, "subscriber with this name and address already exists");
+    }
+
+    public Summary importSubscriptions(Path file) throws IOException {
+        return importFile(file, new String[] {"issn", "subscriber_name", "start_month", "start_year", "copies", "discount_ratio"},
+            row -> {
+                Journal journal = distributor.searchJournal(row.get("issn"));
+                if (journal == null) {
+                    throw new IllegalArgumentException("Journal with ISSN " + row.get("issn") + " not found.");
+                }
+                String address = row.getOptional("subscriber_address");
+                Subscriber subscriber = address == null || address.isEmpty()
+                        ? distributor.searchSubscriber(row.get("subscriber_name"))
+                        : distributor.searchSubscriber(row.get("subscriber_name"), address);
+                if (subscriber == null) {
+                    throw new IllegalArgumentException("Subscriber " + row.get("subscriber_name") + " not found.");
+                }
+                return new Subscription(new DateInfo(row.getInt("start_month"), row.getInt("start_year")), row.getInt("copies"),
+                                        journal, subscriber, row.getDouble("discount_ratio"));
+            },
+            distributor::addSubscriptions, "subscription is inconsistent with its journal or subscriber");
+    }
+
+    /**
+     * Imports journals.csv, individuals.csv, corporations.csv and subscriptions.csv from a
+     * directory, in that order so subscriptions can refer to everything before them. Missing
+     * files are skipped.
+     */
+    public List<Summary> importDirectory(Path directory) throws IOException {
+        List<Summary> summaries = new ArrayList<>();
+        Path journals = directory.resolve("journals.csv");
+        Path individuals = directory.resolve("individuals.csv");
+        Path corporations = directory.resolve("corporations.csv");
+        Path subscriptions = directory.resolve("subscriptions.csv");
+        if (Files.exists(journals)) {
+            summaries.add(importJournals(journals));
+        }
+        if (Files.exists(individuals)) {
+            summaries.add(importIndividuals(individuals));
+        }
+        if (Files.exists(corporations)) {
+            summaries.add(importCorporations(corporations));
+        }
+        if (Files.exists(subscriptions)) {
+            summaries.add(importSubscriptions(subscriptions));
+        }
+        return summaries;
+    }
+
+    // --- Pipeline ---
+
+    private interface RowMapper<T> {
+        T map(Row row);
+    }
+
+    /**
+     * The fields of one row, looked up by column name.
+     */
+    private static final class Row {
+        private final Map<String, Integer> columns;
+        private final String[] fields;
+
+        Row(Map<String, Integer> columns, String[] fields) {
+            this.columns = columns;
+            this.fields = fields;
+        }
+
+        String get(String column) {
+            String value = getOptional(column);
+            if (value == null) {
+                throw new IllegalArgumentException("Missing value for " + column + ".");
+            }
+            return value;
+        }
+
+        String getOptional(String column) {
+            Integer index = columns.get(column);
+            return index == null || index >= fields.length ? null : fields[index].trim();
+        }
+
+        int getInt(String column) {
+            try {
+                return Integer.parseInt(get(column));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number for " + column + ": '" + get(column) + "'.");
+            }
+        }
+
+        double getDouble(String column) {
+            try {
+                return Double.parseDouble(get(column));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number for " + column + ": '" + get(column) + "'.");
+            }
+        }
+    }
+
+    /**
+     * A run of consecutive rows, parsed by the reader and converted by a worker.
+     */
+    private static final class Chunk<T> {
+        final String[][] rows;
+        final long[] lines;
+        final int size;
+        final List<T> items = new ArrayList<>();
+        final List<Long> itemLines = new ArrayList<>();
+        final List<Rejection> rejections = new ArrayList<>();
+
+        Chunk(String[][] rows, long[] lines, int size) {
+            this.rows = rows;
+            this.lines = lines;
+            this.size = size;
+        }
+
+        Chunk<T> convert(Map<String, Integer> columns, RowMapper<T> mapper) {
+            for (int i = 0; i < size; i++) {
+                try {
+                    items.add(mapper.map(new Row(columns, rows[i])));
+                    itemLines.add(lines[i]);
+                } catch (IllegalArgumentException e) {
+                    rejections.add(new Rejection(lines[i], e.getMessage()));
+                }
+            }
+            return this;
+        }
+    }
+
+    private static final Future<Chunk<Object>> END = CompletableFuture.completedFuture(null);
+
+    @SuppressWarnings("unchecked")
+    private <T> Summary importFile(Path file, String[] requiredColumns, RowMapper<T> mapper,
+                                   Function<List<T>, boolean[]> insert, String insertRejection) throws IOException {
+        long start = System.nanoTime();
+        Summary summary = new Summary(file.toString());
+        ExecutorService workers = Executors.newFixedThreadPool(threads, CsvImporter::daemon);
+        ExecutorService inserter = Executors.newSingleThreadExecutor(CsvImporter::daemon);
+        BlockingQueue<Future<Chunk<T>>> pending = new ArrayBlockingQueue<>(threads * 2);
+        try (CsvReader reader = new CsvReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            Map<String, Integer> columns = readHeader(reader, file, requiredColumns);
+
+            Future<?> insertion = inserter.submit(() -> {
+                while (true) {
+                    Chunk<T> chunk = pending.take().get();
+                    if (chunk == null) {
+                        return null;
+                    }
+                    for (Rejection rejection : chunk.rejections) {
+                        summary.reject(rejection.getLine(), rejection.getReason());
+                    }
+                    boolean[] added = insert.apply(chunk.items);
+                    for (int i = 0; i < added.length; i++) {
+                        if (added[i]) {
+                            summary.added++;
+                        } else {
+                            summary.reject(chunk.itemLines.get(i), insertRejection);
+                        }
+                    }
+                }
+            });
+
+            String[][] rows = new String[CHUNK_SIZE][];
+            long[] lines = new long[CHUNK_SIZE];
+            int size = 0;
+            String[] row;
+            while ((row = reader.next()) != null) {
+                if (row.length == 1 && row[0].trim().isEmpty()) {
+                    continue; // Blank line
+                }
+                summary.rows++;
+                rows[size] = row;
+                lines[size] = reader.getLineNumber();
+                if (++size == CHUNK_SIZE) {
+                    submit(pending, workers, insertion, new Chunk<>(rows, lines, size), columns, mapper);
+                    rows = new String[CHUNK_SIZE][];
+                    lines = new long[CHUNK_SIZE];
+                    size = 0;
+                }
+            }
+            if (size > 0) {
+                submit(pending, workers, insertion, new Chunk<>(rows, lines, size), columns, mapper);
+            }
+            put(pending, (Future<Chunk<T>>) (Future<?>) END, insertion);
+            insertion.get();
+            summary.rejections.sort(Comparator.comparingLong(Rejection::getLine));
+        } catch (ExecutionException e) {
+            throw new IOException("Import of " + file + " failed: " + e.getCause(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import of " + file + " was interrupted.", e);
+        } finally {
+            workers.shutdownNow();
+            inserter.shutdownNow();
+        }
+        summary.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        return summary;
+    }
+
+    private static <T> void submit(BlockingQueue<Future<Chunk<T>>> pending, ExecutorService workers, Future<?> insertion,
+                                   Chunk<T> chunk, Map<String, Integer> columns, RowMapper<T> mapper)
+            throws InterruptedException, ExecutionException {
+        put(pending, workers.submit(() -> chunk.convert(columns, mapper)), insertion);
+    }
+
+    // Waits for room in the queue, giving up if the inserter has failed.
+    private static <T> void put(BlockingQueue<Future<Chunk<T>>> pending, Future<Chunk<T>> chunk, Future<?> insertion)
+            throws InterruptedException, ExecutionException {
+        while (!pending.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+            if (insertion.isDone()) {
+                insertion.get();
+                throw new IllegalStateException("Inserter stopped before the end of the file.");
+            }
+        }
+    }
+
+    private static Map<String, Integer> readHeader(CsvReader reader, Path file, String[] requiredColumns) throws IOException {
+        String[] header = reader.next();
+        if (header == null) {
+            throw new IOException(file + " is empty; a header row is required.");
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.length; i++) {
+            String name = header[i].trim().toLowerCase(Locale.ROOT);
+            if (i == 0 && name.startsWith("\uFEFF")) {
+                name = name.substring(1); // Byte order mark
+            }
+            columns.put(name, i);
+        }
+        for (String column : requiredColumns) {
+            if (!columns.containsKey(column)) {
+                throw new IOException(file + " has no '" + column + "' column.");
+            }
+        }
+        return columns;
+    }
+
+    private static Thread daemon(Runnable task) {
+        Thread thread = new Thread(task, "csv-import");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Imports the CSV files in a directory into a new distributor and saves it as a snapshot.
+     * Usage: CsvImporter &lt;directory&gt; &lt;snapshot file&gt;
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: CsvImporter <directory with journals.csv, individuals.csv, corporations.csv, subscriptions.csv> <snapshot file>");
+            System.exit(1);
+        }
+        Distributor distributor = new Distributor();
+        try {
+            for (Summary summary : new CsvImporter(distributor).importDirectory(Paths.get(args[0]))) {
+                System.out.print(summary);
+            }
+        } catch (IOException e) {
+            System.err.println("Error importing from " + args[0] + ": " + e.getMessage());
+            System.exit(1);
+        }
+        distributor.saveState(args[1]);
+    }
+}
@@ -0,0 +1,417 @@
+package com.journalapp;
+
+import com.journalapp.model.*;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.SplittableRandom;
+
+/**
+ * Generates a realistic synthetic data set for scale testing: journals of varied frequency
+ * and price, individual and corporate subscribers, subscriptions spread over many years and
+ * their payment histories, including partial and missing payments.
+ *
+ * The data set is determined by the seed and the settings alone, so the same settings always
+ * produce the same records. Records are produced one subscriber at a time and handed straight
+ * to a {@link Distributor} or written to a snapshot file; writing a snapshot keeps only the
+ * journals in memory, so it can produce tens of millions of records.
+ *
+ * Run from the command line to write a snapshot that loadState, loadStateMapped,
+ * loadStateOffHeap or recoverState can read:
+ * <pre>
+ * java com.journalapp.DatasetGenerator --subscribers 1000000 --output data.bin [--seed 42]
+ *      [--journals 500] [--subscriptions-per-subscriber 2.0] [--years 2015-2025]
+ *      [--corporations 0.2] [--underpaid 0.08] [--unpaid 0.03]
+ * </pre>
+ */
+public class DatasetGenerator {
+    private static final String[] FIELDS = {
+        "Medicine", "Physics", "Chemistry", "Economics", "History", "Linguistics", "Mathematics", "Biology",
+        "Engineering", "Law", "Architecture", "Geology", "Psychology", "Philosophy", "Agriculture", "Astronomy",
+        "Computing", "Education", "Ecology", "Music", "Nursing", "Sociology", "Statistics", "Veterinary Science"
+    };
+    private static final String[] JOURNAL_FORMS = {
+        "Journal of %s", "%s Review", "%s Quarterly", "Annals of %s", "%s Today", "Advances in %s", "%s Letters", "International %s Monthly"
+    };
+    private static final String[] FIRST_NAMES = {
+        "Ayse", "Mehmet", "Elif", "Can", "Zeynep", "Emre", "Maria", "John", "Sofia", "Lucas", "Anna", "David",
+        "Fatma", "Ali", "Laura", "Daniel", "Emma", "Omar", "Yuki", "Chen", "Priya", "Ivan", "Nora", "Hugo"
+    };
+    private static final String[] LAST_NAMES = {
+        "Yilmaz", "Kaya", "Demir", "Sahin", "Celik", "Smith", "Garcia", "Muller", "Rossi", "Novak", "Kowalski",
+        "Johansson", "Dubois", "Silva", "Tanaka", "Wang", "Patel", "Ivanov", "Jensen", "Okafor", "Haddad", "Costa"
+    };
+    private static final String[] COMPANY_FORMS = {
+        "%s Holdings", "%s Industries", "%s Consulting", "%s University Library", "%s Hospital", "%s Research Institute",
+        "%s Logistics", "%s Media"
+    };
+    private static final String[] STREETS = {
+        "Ataturk Street", "Oak Avenue", "Station Road", "Cumhuriyet Boulevard", "Main Street", "Harbour Lane",
+        "Mill Road", "Park Avenue", "Istiklal Street", "Church Street", "Lake Drive", "University Avenue"
+    };
+    private static final String[] CITIES = {
+        "Izmir", "Istanbul", "Ankara", "Bursa", "Antalya", "London", "Berlin", "Madrid", "Rome", "Paris", "Vienna", "Lisbon"
+    };
+    private static final String[] BANKS = {
+        "Ziraat Bank", "Is Bank", "Garanti Bank", "Akbank", "Yapi Kredi", "Halkbank", "Vakifbank", "Deutsche Bank",
+        "BNP Paribas", "Santander", "HSBC", "ING"
+    };
+    // Issues per year and how often each is chosen, in percent.
+    private static final int[] FREQUENCIES = {1, 2, 4, 6, 12, 24, 52};
+    private static final int[] FREQUENCY_WEIGHTS = {5, 5, 25, 10, 35, 5, 15};
+
+    private final long seed;
+    private final int journalCount;
+    private final int subscriberCount;
+    private double subscriptionsPerSubscriber = 2.0;
+    private int firstYear = 2015;
+    private int lastYear = 2025;
+    private double corporationRate = 0.2;
+    private double underpaymentRate = 0.08;
+    private double nonPaymentRate = 0.03;
+
+    public DatasetGenerator(long seed, int journalCount, int subscriberCount) {
+        if (journalCount <= 0 || journalCount > 10_000_000) {
+            throw new IllegalArgumentException("Journal count must be between 1 and 10,000,000.");
+        }
+        if (subscriberCount < 0) {
+            throw new IllegalArgumentException("Subscriber count cannot be negative.");
+        }
+        this.seed = seed;
+        this.journalCount = journalCount;
+        this.subscriberCount = subscriberCount;
+    }
+
+    /**
+     * Sets the average number of subscriptions per subscriber. Each subscriber has at least
+     * one and never two to the same journal.
+     */
+    public void setSubscriptionsPerSubscriber(double subscriptionsPerSubscriber) {
+        if (subscriptionsPerSubscriber < 1 || subscriptionsPerSubscriber > journalCount) {
+            throw new IllegalArgumentException("Subscriptions per subscriber must be between 1 and the number of journals.");
+        }
+        this.subscriptionsPerSubscriber = subscriptionsPerSubscriber;
+    }
+
+    /**
+     * Sets the years subscriptions start in. Later years get more subscriptions, as a growing
+     * business would.
+     */
+    public void setYears(int firstYear, int lastYear) {
+        if (firstYear < 1000 || lastYear > 9990 || firstYear > lastYear) {
+            throw new IllegalArgumentException("Years must be 4-digit and the first year cannot be after the last.");
+        }
+        this.firstYear = firstYear;
+        this.lastYear = lastYear;
+    }
+
+    public void setCorporationRate(double corporationRate) {
+        checkRate(corporationRate);
+        this.corporationRate = corporationRate;
+    }
+
+    /**
+     * Sets the share of subscriptions that are paid only in part and the share that are not
+     * paid at all. The rest are paid in full, in one or more installments.
+     */
+    public void setPaymentRates(double underpaymentRate, double nonPaymentRate) {
+        checkRate(underpaymentRate);
+        checkRate(nonPaymentRate);
+        if (underpaymentRate + nonPaymentRate > 1) {
+            throw new IllegalArgumentException("Underpayment and non-payment rates cannot add up to more than 1.");
+        }
+        this.underpaymentRate = underpaymentRate;
+        this.nonPaymentRate = nonPaymentRate;
+    }
+
+    private static void checkRate(double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("Rates must be between 0.0 and 1.0.");
+        }
+    }
+
+    /**
+     * Receives the generated records in order: all journals, then each subscriber followed by
+     * its subscriptions with their payments already recorded.
+     */
+    private interface Sink {
+        void journal(int position, Journal journal) throws IOException;
+
+        void subscriber(int position, Subscriber subscriber) throws IOException;
+
+        void subscription(Subscription subscription, int journalPosition, int subscriberPosition) throws IOException;
+    }
+
+    /**
+     * Adds the generated data to a distributor through its public operations, so indexes and
+     * the write-ahead log see it as if it had been entered by hand.
+     */
+    public void generate(Distributor distributor) {
+        try {
+            generate(new Sink() {
+                public void journal(int position, Journal journal) {
+                    distributor.addJournal(journal);
+                }
+
+                public void subscriber(int position, Subscriber subscriber) {
+                    distributor.addSubscriber(subscriber);
+                }
+
+                public void subscription(Subscription subscription, int journalPosition, int subscriberPosition) {
+                    // The distributor records the payments itself, so add an unpaid copy and replay them.
+                    Subscription unpaid = new Subscription(subscription.getDates(), subscription.getCopies(), subscription.getJournal(),
+                                                           subscription.getSubscriber(), subscription.getPayment().getDiscountRatio());
+                    distributor.addSubscription(unpaid.getJournal().getIssn(), unpaid.getSubscriber(), unpaid);
+                    for (PaymentTransaction transaction : subscription.getPayment().getTransactions()) {
+                        distributor.acceptPayment(unpaid, transaction.getAmount(), transaction.getPaymentDate());
+                    }
+                }
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException("Unexpected I/O error while generating into memory.", e); // No sink method above does I/O
+        }
+    }
+
+    /**
+     * Writes the generated data to a snapshot file, streaming it to disk as it is produced.
+     */
+    public void generateSnapshot(String fileName) throws IOException {
+        try (StateSnapshot.StreamWriter writer = new StateSnapshot.StreamWriter(Paths.get(fileName))) {
+            generate(new Sink() {
+                public void journal(int position, Journal journal) throws IOException {
+                    writer.addJournal(journal);
+                }
+
+                public void subscriber(int position, Subscriber subscriber) throws IOException {
+                    writer.addSubscriber(subscriber);
+                }
+
+                public void subscription(Subscription subscription, int journalPosition, int subscriberPosition) throws IOException {
+                    writer.addSubscription(subscription, journalPosition, subscriberPosition);
+                }
+            });
+            writer.finish();
+        }
+    }
+
+    private void generate(Sink sink) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+
+        Journal[] journals = new Journal[journalCount];
+        for (int j = 0; j < journalCount; j++) {
+            journals[j] = journal(j, random);
+            sink.journal(j, journals[j]);
+        }
+
+        int[] chosen = new int[(int) Math.ceil(subscriptionsPerSubscriber * 2)];
+        for (int s = 0; s < subscriberCount; s++) {
+            Subscriber subscriber = random.nextDouble() < corporationRate ? corporation(s, random) : individual(s, random);
+            sink.subscriber(s, subscriber);
+
+            // 1 + a geometric number of extras, averaging subscriptionsPerSubscriber.
+            int count = 1;
+            double more = (subscriptionsPerSubscriber - 1) / subscriptionsPerSubscriber;
+            while (count < chosen.length && count < journalCount && random.nextDouble() < more) {
+                count++;
+            }
+            for (int k = 0; k < count; k++) {
+                int journalPosition = distinctJournal(chosen, k, random);
+                Journal journal = journals[journalPosition];
+                Subscription subscription = new Subscription(new DateInfo(1 + random.nextInt(12), startYear(random)),
+                                                             copies(subscriber, random), journal, subscriber, discount(subscriber, random));
+                recordPayments(subscription, random);
+                sink.subscription(subscription, journalPosition, s);
+            }
+        }
+    }
+
+    private Journal journal(int position, SplittableRandom random) {
+        String field = FIELDS[random.nextInt(FIELDS.length)];
+        String name = String.format(JOURNAL_FORMS[random.nextInt(JOURNAL_FORMS.length)], field);
+        if (position >= FIELDS.length * JOURNAL_FORMS.length) {
+            name += " " + (char) ('A' + random.nextInt(26)) + "-" + (position + 1);
+        }
+        int frequency = FREQUENCIES[weighted(FREQUENCY_WEIGHTS, random)];
+        // Frequent journals have cheaper issues; annual volumes cost the most.
+        double basePrice = 120.0 / Math.sqrt(frequency);
+        double price = Math.round(basePrice * (0.5 + random.nextDouble()) * 100) / 100.0;
+        return new Journal(name, issn(position), frequency, price);
+    }
+
+    /**
+     * Builds a unique, valid ISSN for a journal position: the multiplier is coprime with 10^7,
+     * so distinct positions map to distinct seven-digit numbers, and the eighth character is
+     * the ISSN check digit.
+     */
+    private String issn(int position) {
+        int digits = (int) ((position * 7_919L + Math.floorMod(seed, 10_000_000L)) % 10_000_000L);
+        int sum = 0;
+        for (int i = 0, d = digits; i < 7; i++, d /= 10) {
+            sum += (d % 10) * (i + 2);
+        }
+        int check = (11 - sum % 11) % 11;
+        String number = String.format("%07d", digits);
+        return number.substring(0, 4) + "-" + number.substring(4) + (check == 10 ? "X" : Integer.toString(check));
+    }
+
+    private Subscriber individual(int position, SplittableRandom random) {
+        String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+        String cardNumber = "4" + String.format("%015d", random.nextLong(1_000_000_000_000_000L));
+        return new Individual(name, address(position, random), cardNumber, 1 + random.nextInt(12), lastYear + 1 + random.nextInt(5),
+                              100 + random.nextInt(900));
+    }
+
+    private Subscriber corporation(int position, SplittableRandom random) {
+        String name = String.format(COMPANY_FORMS[random.nextInt(COMPANY_FORMS.length)], LAST_NAMES[random.nextInt(LAST_NAMES.length)]);
+        int bank = random.nextInt(BANKS.length);
+        return new Corporation(name, address(position, random), 10 + bank, BANKS[bank], 1 + random.nextInt(28),
+                               1 + random.nextInt(12), firstYear + random.nextInt(lastYear - firstYear + 1), 1 + random.nextInt(99_999_999));
+    }
+
+    /**
+     * Builds an address; the box number is the subscriber's position, so no two subscribers
+     * share a name and address.
+     */
+    private static String address(int position, SplittableRandom random) {
+        return (1 + random.nextInt(200)) + " " + STREETS[random.nextInt(STREETS.length)] + ", "
+               + CITIES[random.nextInt(CITIES.length)] + ", PO Box " + (position + 1);
+    }
+
+    private int distinctJournal(int[] chosen, int count, SplittableRandom random) {
+        while (true) {
+            int candidate = random.nextInt(journalCount);
+            boolean taken = false;
+            for (int i = 0; i < count && !taken; i++) {
+                taken = chosen[i] == candidate;
+            }
+            if (!taken) {
+                chosen[count] = candidate;
+                return candidate;
+            }
+        }
+    }
+
+    // The chance of a year grows linearly from the first year to the last.
+    private int startYear(SplittableRandom random) {
+        int span = lastYear - firstYear + 1;
+        int year = (int) (Math.sqrt(random.nextDouble()) * span);
+        return firstYear + Math.min(year, span - 1);
+    }
+
+    private static int copies(Subscriber subscriber, SplittableRandom random) {
+        if (subscriber instanceof Corporation) {
+            return 1 + random.nextInt(random.nextInt(10) == 0 ? 50 : 5);
+        }
+        return random.nextInt(20) == 0 ? 2 : 1;
+    }
+
+    private static double discount(Subscriber subscriber, SplittableRandom random) {
+        int roll = random.nextInt(100);
+        if (subscriber instanceof Corporation) {
+            return roll < 40 ? 0.0 : roll < 80 ? 0.1 : 0.2;
+        }
+        return roll < 75 ? 0.0 : roll < 95 ? 0.05 : 0.15;
+    }
+
+    /**
+     * Records payments starting around the subscription's first month: in full, in one to
+     * three installments; in part; or not at all.
+     */
+    private void recordPayments(Subscription subscription, SplittableRandom random) {
+        double expected = Money.toAmount(subscription.calculateExpectedPaymentInCents());
+        double roll = random.nextDouble();
+        if (roll < nonPaymentRate || expected <= 0) {
+            return;
+        }
+        double total = roll < nonPaymentRate + underpaymentRate
+                ? Math.round(expected * (0.3 + 0.65 * random.nextDouble()) * 100) / 100.0
+                : expected;
+        int installments = random.nextInt(100) < 80 ? 1 : 2 + random.nextInt(2);
+        DateInfo dates = subscription.getDates();
+        Calendar paymentDate = new GregorianCalendar(dates.getStartYear(), dates.getStartMonth() - 1, 1);
+        paymentDate.add(Calendar.DAY_OF_MONTH, random.nextInt(60) - 20);
+        double paid = 0;
+        for (int i = 0; i < installments; i++) {
+            double amount = i == installments - 1 ? Math.round((total - paid) * 100) / 100.0
+                                                  : Math.round(total / installments * 100) / 100.0;
+            if (amount > 0) {
+                subscription.acceptPayment(amount, (Calendar) paymentDate.clone());
+                paid += amount;
+            }
+            paymentDate.add(Calendar.DAY_OF_MONTH, 20 + random.nextInt(40));
+        }
+    }
+
+    private static int weighted(int[] weights, SplittableRandom random) {
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        int roll = random.nextInt(total);
+        for (int i = 0; i < weights.length; i++) {
+            roll -= weights[i];
+            if (roll < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+
+    public static void main(String[] args) {
+        long seed = 42;
+        int journals = 500;
+        int subscribers = 100_000;
+        String output = null;
+        Double subscriptionsPerSubscriber = null;
+        String years = null;
+        Double corporations = null;
+        double underpaid = 0.08;
+        double unpaid = 0.03;
+        try {
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--seed": seed = Long.parseLong(value); break;
+                    case "--journals": journals = Integer.parseInt(value); break;
+                    case "--subscribers": subscribers = Integer.parseInt(value); break;
+                    case "--output": output = value; break;
+                    case "--subscriptions-per-subscriber": subscriptionsPerSubscriber = Double.parseDouble(value); break;
+                    case "--years": years = value; break;
+                    case "--corporations": corporations = Double.parseDouble(value); break;
+                    case "--underpaid": underpaid = Double.parseDouble(value); break;
+                    case "--unpaid": unpaid = Double.parseDouble(value); break;
+                    default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if (output == null || args.length % 2 != 0) {
+                throw new IllegalArgumentException("Usage: DatasetGenerator --subscribers N --output FILE [--seed N] [--journals N] "
+                        + "[--subscriptions-per-subscriber X] [--years FIRST-LAST] [--corporations RATE] [--underpaid RATE] [--unpaid RATE]");
+            }
+
+            DatasetGenerator generator = new DatasetGenerator(seed, journals, subscribers);
+            if (subscriptionsPerSubscriber != null) {
+                generator.setSubscriptionsPerSubscriber(subscriptionsPerSubscriber);
+            }
+            if (years != null) {
+                String[] range = years.split("-");
+                generator.setYears(Integer.parseInt(range[0].trim()), Integer.parseInt(range[range.length - 1].trim()));
+            }
+            if (corporations != null) {
+                generator.setCorporationRate(corporations);
+            }
+            generator.setPaymentRates(underpaid, unpaid);
+
+            long start = System.nanoTime();
+            generator.generateSnapshot(output);
+            System.out.println("Generated " + subscribers + " subscribers for " + journals + " journals into '" + output + "' in "
+                               + (System.nanoTime() - start) / 1_000_000 + " ms.");
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("Error writing generated data: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.journalapp;
+
+import com.journalapp.model.EpochDates;
+import com.journalapp.model.Subscription;
+import com.journalapp.util.IntArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Buckets subscriptions by the months in which they can receive issues.
+ * A subscription is sent issues for exactly twelve months, so it is entered into
+ * twelve month buckets, both globally and per journal. Buckets hold positions in
+ * the distributor's subscription list in insertion order, so a month's sending
+ * orders only visit the subscriptions active in that month.
+ *
+ * The distributor adds under its write lock; lookups need no lock and see every
+ * position added before the bucket was read.
+ */
+class DispatchIndex {
+    private static final IntArrayList EMPTY = new IntArrayList(0);
+
+    private final MonthBuckets byMonth = new MonthBuckets();
+    private final Map<String, MonthBuckets> byJournalAndMonth = new ConcurrentHashMap<>();
+
+    void add(int position, Subscription subscription) {
+        MonthBuckets journalMonths =
+                byJournalAndMonth.computeIfAbsent(subscription.getJournal().getIssn(), k -> new MonthBuckets());
+        int firstMonth = subscription.getDates().getStartEpochMonth();
+        int lastMonth = subscription.getDates().getLastIssueEpochMonth();
+        for (int epochMonth = firstMonth; epochMonth <= lastMonth; epochMonth++) {
+            byMonth.add(epochMonth, position);
+            journalMonths.add(epochMonth, position);
+        }
+    }
+
+    IntArrayList forMonth(int month, int year) {
+        return byMonth.get(EpochDates.epochMonth(month, year));
+    }
+
+    IntArrayList forJournalAndMonth(String issn, int month, int year) {
+        MonthBuckets journalMonths = byJournalAndMonth.get(issn);
+        if (journalMonths == null) {
+            return EMPTY;
+        }
+        return journalMonths.get(EpochDates.epochMonth(month, year));
+    }
+
+    /**
+     * Buckets stored in an array indexed by epoch month, grown on demand to cover the months in use.
+     * A grown array is published as a new Range, so readers always see a month offset that
+     * matches the array it applies to.
+     */
+    private static final class MonthBuckets {
+        private volatile Range range = new Range(0, new AtomicReferenceArray<>(0));
+
+        void add(int epochMonth, int position) {
+            Range current = range;
+            int length = current.buckets.length();
+            if (length == 0) {
+                current = new Range(epochMonth, new AtomicReferenceArray<>(24));
+                range = current;
+            } else if (epochMonth < current.firstMonth) {
+                int shift = Math.max(current.firstMonth - epochMonth, 12);
+                current = current.grow(shift, length + shift);
+                range = current;
+            } else if (epochMonth - current.firstMonth >= length) {
+                current = current.grow(0, Math.max(epochMonth - current.firstMonth + 1, length + 12));
+                range = current;
+            }
+            int offset = epochMonth - current.firstMonth;
+            IntArrayList bucket = current.buckets.get(offset);
+            if (bucket == null) {
+                bucket = new IntArrayList();
+                current.buckets.set(offset, bucket);
+            }
+            bucket.add(position);
+        }
+
+        IntArrayList get(int epochMonth) {
+            Range current = range;
+            int offset = epochMonth - current.firstMonth;
+            if (offset < 0 || offset >= current.buckets.length()) {
+                return EMPTY;
+            }
+            IntArrayList bucket = current.buckets.get(offset);
+            return bucket == null ? EMPTY : bucket;
+        }
+    }
+
+    private static final class Range {
+        private final int firstMonth;
+        private final AtomicReferenceArray<IntArrayList> buckets;
+
+        Range(int firstMonth, AtomicReferenceArray<IntArrayList> buckets) {
+            this.firstMonth = firstMonth;
+            this.buckets = buckets;
+        }
+
+        Range grow(int shift, int length) {
+            AtomicReferenceArray<IntArrayList> grown = new AtomicReferenceArray<>(length);
+            for (int i = 0; i < buckets.length(); i++) {
+                grown.set(i + shift, buckets.get(i));
+            }
+            return new Range(firstMonth - shift, grown);
+        }
+    }
+}
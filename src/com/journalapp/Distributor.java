@@ -1,388 +1,1537 @@
 package com.journalapp;
 
+import com.journalapp.metrics.Counter;
+import com.journalapp.metrics.MetricsRegistry;
+import com.journalapp.metrics.Timer;
 import com.journalapp.model.*;
+import com.journalapp.output.CoalescingOutputSink;
+import com.journalapp.output.OutputSink;
+import com.journalapp.query.IncompletePayment;
+import com.journalapp.query.IncompletePaymentSummary;
+import com.journalapp.query.SendingOrder;
+import com.journalapp.query.SubscriptionEntry;
+import com.journalapp.util.AppendOnlyList;
+import com.journalapp.util.IntArrayList;
 import java.io.*;
-import java.text.SimpleDateFormat;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Calendar;
-import java.util.GregorianCalendar;
-import java.util.HashMap;
-import java.util.Hashtable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Vector;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import javax.swing.JTextArea;
-import javax.swing.SwingUtilities;
 
+/**
+ * Manages the journals, subscribers and subscriptions.
+ *
+ * Readers never lock. The collections only grow at their end and publish each new element
+ * with a volatile write, and loads replace the whole {@link State} at once, so queries and
+ * reports read the current state without blocking each other or the writers.
+ * Structural changes (adds, loads, recovery, and the start of a save) take the write side
+ * of a StampedLock for as long as it takes to update the in-memory state and queue the log
+ * record; waiting for the log to reach the disk happens after the lock is released.
+ * Payments only take the read side, so payments to different subscriptions run in parallel
+ * and each subscription serializes its own.
+ *
+ * List queries, reports and saves read a {@link View}: the collection sizes and the
+ * published {@link VersionClock} version at one moment. Payments and copy increases are
+ * stamped with their version and the view reads subscriptions as of its own version, so a
+ * long report or save sees one point in time while changes keep arriving. Reports take no
+ * lock at all: payments take their versions as they are added to the revenue cube, which
+ * gives a report its payment totals at a version of its own (see {@link RevenueCube}).
+ *
+ * Every public operation is timed in {@link #getMetrics()}. Recording is off unless the
+ * system property {@code journalapp.metrics} is true or it is switched on through the registry.
+ */
 public class Distributor implements Serializable {
     private static final long serialVersionUID = 1L;
 
-    private Hashtable<String, Journal> journals;
-    private Vector<Subscriber> subscribers;
-    private Vector<Subscription> allSubscriptions;
+    private volatile State state;
 
-    private volatile transient boolean reportRunning = false;
-    private final transient Object reportLock = new Object();
+    private transient StampedLock lock = new StampedLock();
+    private transient VersionClock versions = new VersionClock();
+    private transient Object saveLock = new Object(); // Serializes saves with each other and with loads
 
-    private transient JTextArea outputArea;
+    // Returned by the locked mutation methods when a change was rejected; otherwise they
+    // return the LSN of the change's log record, or 0 if it was not logged.
+    private static final long REJECTED = -1;
+    private static final long NOT_LOGGED = -2; // Applied, but the write-ahead log failed
 
+    // Write-ahead log record types.
+    private static final byte LOG_ADD_JOURNAL = 1;
+    private static final byte LOG_ADD_INDIVIDUAL = 2;
+    private static final byte LOG_ADD_CORPORATION = 3;
+    private static final byte LOG_ADD_SUBSCRIPTION = 4;
+    private static final byte LOG_INCREASE_COPIES = 5;
+    private static final byte LOG_PAYMENT = 6;
+
+    // Replaced only under the write lock.
+    private transient volatile WriteAheadLog writeAheadLog;
+    private transient Path writeAheadLogSnapshot; // The snapshot file the log continues
+    private transient long lastLsn;               // LSN of the last logged mutation in this state
+    private transient volatile boolean replaying;
+    private transient volatile Thread batchThread; // Thread adding a batch, whose per-item messages are not shown
+
+    private transient volatile OutputSink output;
+
+    private transient Instruments instruments = new Instruments();
 
     public Distributor() {
-        this.journals = new Hashtable<>();
-        this.subscribers = new Vector<>();
-        this.allSubscriptions = new Vector<>();
+        this.state = State.empty();
+    }
+
+    /**
+     * The collections and their secondary indexes. The collections only grow while a State is
+     * current; loading a snapshot builds a new State and publishes it in one write.
+     */
+    private static final class State implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final ConcurrentHashMap<String, Journal> journals;
+        final AppendOnlyList<Subscriber> subscribers;
+        final AppendOnlyList<Subscription> subscriptions;
+
+        // Set while subscriptions are still in a mapped or off-heap snapshot (see loadStateMapped
+        // and loadStateOffHeap). subscriptions then holds only those added since, and the indexes
+        // cover only them.
+        final transient MappedState mapped;
+
+        // Secondary indexes, rebuilt from the collections above. A State is built before it is
+        // published, outside the write lock, so building them never holds up the writers.
+        transient Map<String, List<Subscriber>> subscribersByName;
+        transient Map<String, Subscriber> subscribersByNameAndAddress;
+        transient Map<String, Map<Subscriber, Subscription>> subscriptionsByIssn;
+        transient DispatchIndex dispatchIndex;
+        transient ExpiryIndex expiryIndex;
+        transient UnderpaidIndex underpaid;
+        transient RevenueCube revenue;
+
+        State(ConcurrentHashMap<String, Journal> journals, AppendOnlyList<Subscriber> subscribers,
+              AppendOnlyList<Subscription> subscriptions, MappedState mapped) {
+            this(journals, subscribers, subscriptions, mapped, null, null);
+        }
+
+        /**
+         * Builds a state over the same subscriptions and payments as an earlier one, keeping its
+         * underpaid set and revenue cube instead of building them again.
+         */
+        State(ConcurrentHashMap<String, Journal> journals, AppendOnlyList<Subscriber> subscribers,
+              AppendOnlyList<Subscription> subscriptions, MappedState mapped, UnderpaidIndex underpaid, RevenueCube revenue) {
+            this.journals = journals;
+            this.subscribers = subscribers;
+            this.subscriptions = subscriptions;
+            this.mapped = mapped;
+            this.underpaid = underpaid;
+            this.revenue = revenue;
+            rebuildIndexes();
+        }
+
+        static State empty() {
+            return new State(new ConcurrentHashMap<>(), new AppendOnlyList<>(), new AppendOnlyList<>(), null);
+        }
+
+        private void rebuildIndexes() {
+            subscribersByName = new ConcurrentHashMap<>();
+            subscribersByNameAndAddress = new ConcurrentHashMap<>();
+            subscriptionsByIssn = new ConcurrentHashMap<>();
+            dispatchIndex = new DispatchIndex();
+            expiryIndex = new ExpiryIndex();
+            boolean buildTotals = underpaid == null || revenue == null;
+            if (buildTotals) {
+                underpaid = new UnderpaidIndex();
+                revenue = new RevenueCube();
+                addMappedTotals();
+            }
+            for (Subscriber subscriber : subscribers) {
+                indexSubscriber(subscriber);
+            }
+            for (int i = 0; i < subscriptions.size(); i++) {
+                Subscription subscription = subscriptions.get(i);
+                indexSubscription(i, subscription);
+                if (buildTotals) {
+                    addRevenue(revenue, subscription);
+                }
+            }
+        }
+
+        // Adds the subscriptions still in the snapshot to the underpaid set and the revenue cube,
+        // reading their records in place.
+        private void addMappedTotals() {
+            SubscriptionRecord record = mapped == null ? null : new SubscriptionRecord(mapped);
+            for (int i = 0; mapped != null && i < mapped.subscriptionCount(); i++) {
+                record.moveTo(i);
+                underpaid.update(record.getJournal(), record.getSubscriber(), record.getReceivedPaymentInCents(),
+                                 record.calculateExpectedPaymentInCents());
+                String issn = record.getJournal().getIssn();
+                for (int t = 0, count = record.getTransactionCount(); t < count; t++) {
+                    int epochMonth = EpochDates.epochMonthOfDay(record.getTransactionEpochDay(t));
+                    revenue.add(issn, EpochDates.yearOf(epochMonth), EpochDates.monthOf(epochMonth), record.getTransactionAmountInCents(t));
+                }
+            }
+        }
+
+        void indexSubscriber(Subscriber subscriber) {
+            subscribersByName.computeIfAbsent(subscriber.getName(), k -> new CopyOnWriteArrayList<>()).add(subscriber);
+            subscribersByNameAndAddress.putIfAbsent(subscriberKey(subscriber.getName(), subscriber.getAddress()), subscriber);
+        }
+
+        void indexSubscription(int position, Subscription subscription) {
+            subscriptionsByIssn.computeIfAbsent(subscription.getJournal().getIssn(), k -> new ConcurrentHashMap<>())
+                               .putIfAbsent(subscription.getSubscriber(), subscription);
+            dispatchIndex.add(position, subscription);
+            expiryIndex.add(position, subscription);
+            underpaid.update(subscription);
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            rebuildIndexes();
+        }
+    }
+
+    /**
+     * A point-in-time view: the first subscriberCount subscribers and subscriptionCount
+     * subscriptions of a State, read as of a published version. Elements below those sizes
+     * never move and the as-of getters ignore every later change, so the view does not
+     * change however long it is used.
+     */
+    private static final class View {
+        final State state;
+        final int subscriberCount;
+        final int subscriptionCount;
+        final long version;
+
+        View(State state, int subscriberCount, int subscriptionCount, long version) {
+            this.state = state;
+            this.subscriberCount = subscriberCount;
+            this.subscriptionCount = subscriptionCount;
+            this.version = version;
+        }
+
+        List<Subscriber> subscribers() {
+            return state.subscribers.subList(0, subscriberCount);
+        }
+
+        List<Subscription> subscriptions() {
+            return state.subscriptions.subList(0, subscriptionCount);
+        }
+    }
+
+    private View view() {
+        State current = state;
+        // Sizes first: everything in the view was added before its version was published.
+        int subscriberCount = current.subscribers.size();
+        int subscriptionCount = current.subscriptions.size();
+        return new View(current, subscriberCount, subscriptionCount, versions.current());
+    }
+
+    /**
+     * The distributor's metrics, looked up once so recording never touches the registry's maps.
+     */
+    private final class Instruments {
+        final MetricsRegistry registry = new MetricsRegistry(Boolean.getBoolean("journalapp.metrics"));
+
+        final Timer addJournal = registry.timer("addJournal");
+        final Timer addSubscriber = registry.timer("addSubscriber");
+        final Timer addSubscription = registry.timer("addSubscription");
+        final Timer acceptPayment = registry.timer("acceptPayment");
+        final Timer listAllSendingOrders = registry.timer("listAllSendingOrders");
+        final Timer listSendingOrdersByJournalIssn = registry.timer("listSendingOrdersByJournalIssn");
+        final Timer listIncompletePayments = registry.timer("listIncompletePayments");
+        final Timer incompletePaymentSummary = registry.timer("incompletePaymentSummary");
+        final Timer listSubscriptionsBySubscriberName = registry.timer("listSubscriptionsBySubscriberName");
+        final Timer listSubscriptionsByJournalIssn = registry.timer("listSubscriptionsByJournalIssn");
+        final Timer listExpiringSubscriptions = registry.timer("listExpiringSubscriptions");
+        final Timer report = registry.timer("report");
+        final Timer revenue = registry.timer("revenue");
+        final Timer saveState = registry.timer("saveState");
+        final Timer loadState = registry.timer("loadState");
+        final Timer loadStateMapped = registry.timer("loadStateMapped");
+        final Timer loadStateOffHeap = registry.timer("loadStateOffHeap");
+        final Timer recoverState = registry.timer("recoverState");
+        final Timer addJournals = registry.timer("addJournals");
+        final Timer addSubscribers = registry.timer("addSubscribers");
+        final Timer addSubscriptions = registry.timer("addSubscriptions");
+        final Timer acceptPayments = registry.timer("acceptPayments");
+
+        final Counter addJournalRejected = registry.counter("addJournal.rejected");
+        final Counter addSubscriberRejected = registry.counter("addSubscriber.rejected");
+        final Counter addSubscriptionRejected = registry.counter("addSubscription.rejected");
+        final Counter acceptPaymentRejected = registry.counter("acceptPayment.rejected");
+        final Counter saveStateFailed = registry.counter("saveState.failed");
+        final Counter loadStateFailed = registry.counter("loadState.failed");
+
+        volatile long snapshotBytes; // Size of the last snapshot saved or loaded
+
+        Instruments() {
+            registry.gauge("journals", () -> state.journals.size());
+            registry.gauge("subscribers", () -> state.subscribers.size());
+            registry.gauge("subscriptions", () -> {
+                State current = state;
+                return (current.mapped != null ? current.mapped.subscriptionCount() : 0) + current.subscriptions.size();
+            });
+            registry.gauge("snapshot.bytes", () -> snapshotBytes);
+        }
+
+        /**
+         * Stops a mutation's timer and counts it if it was rejected.
+         */
+        boolean finish(Timer timer, Counter rejected, long start, boolean accepted) {
+            timer.stop(start);
+            if (!accepted) {
+                rejected.increment();
+            }
+            return accepted;
+        }
+
+        void recordSnapshotSize(String fileName) {
+            try {
+                snapshotBytes = Files.size(Paths.get(fileName));
+            } catch (IOException e) {
+                snapshotBytes = 0;
+            }
+        }
+    }
+
+    /**
+     * Gets the registry holding this distributor's operation timers, counters and gauges.
+     */
+    public MetricsRegistry getMetrics() {
+        return instruments.registry;
+    }
+
+    private static String subscriberKey(String name, String address) {
+        return name + '\u0000' + address;
     }
 
+    /**
+     * Shows the distributor's messages in a text area, appended in batches on the Swing event thread.
+     */
     public void setOutputArea(JTextArea outputArea) {
-        this.outputArea = outputArea;
+        setOutputSink(outputArea == null ? null : CoalescingOutputSink.forTextArea(outputArea));
+    }
+
+    /**
+     * Sets where the distributor's messages go. With no sink they are printed to standard output.
+     */
+    public void setOutputSink(OutputSink output) {
+        this.output = output;
     }
 
     private void appendOutput(String text) {
-        if (outputArea != null) {
-            SwingUtilities.invokeLater(() -> outputArea.append(text));
-        } else {
-            System.out.print(text);
+        if (replaying || Thread.currentThread() == batchThread) {
+            return;
         }
+        OutputSink sink = output;
+        (sink != null ? sink : OutputSink.STANDARD_OUTPUT).write(text);
     }
 
 
     public boolean addJournal(Journal journal) {
-        if (journal != null && !journals.containsKey(journal.getIssn())) {
-            journals.put(journal.getIssn(), journal);
+        long start = instruments.addJournal.start();
+        WriteAheadLog log;
+        long lsn;
+        long stamp = lock.writeLock();
+        try {
+            log = writeAheadLog;
+            lsn = addJournalLocked(journal);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return instruments.finish(instruments.addJournal, instruments.addJournalRejected, start, awaitLogged(log, lsn));
+    }
+
+    private long addJournalLocked(Journal journal) {
+        if (writeAheadLogFailed()) {
+            return REJECTED;
+        }
+        if (journal != null && state.journals.putIfAbsent(journal.getIssn(), journal) == null) {
+            long lsn = logMutation(new WriteAheadLog.Record(LOG_ADD_JOURNAL).putString(journal.getName()).putString(journal.getIssn())
+                                                                         .putInt(journal.getFrequency()).putDouble(journal.getIssuePrice()));
             appendOutput("Journal '" + journal.getName() + "' added.\n");
-            return true;
+            return lsn;
         }
         appendOutput("Failed to add journal (null or ISSN already exists).\n");
-        return false;
+        return REJECTED;
     }
 
     public Journal searchJournal(String issn) {
-        return journals.get(issn);
+        return state.journals.get(issn);
     }
 
     public boolean addSubscriber(Subscriber subscriber) {
+        long start = instruments.addSubscriber.start();
+        WriteAheadLog log;
+        long lsn;
+        long stamp = lock.writeLock();
+        try {
+            log = writeAheadLog;
+            lsn = addSubscriberLocked(subscriber);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return instruments.finish(instruments.addSubscriber, instruments.addSubscriberRejected, start, awaitLogged(log, lsn));
+    }
+
+    private long addSubscriberLocked(Subscriber subscriber) {
+        if (writeAheadLogFailed()) {
+            return REJECTED;
+        }
         if (subscriber != null) {
-            for (Subscriber existingSubscriber : subscribers) {
-                if (existingSubscriber.getName().equals(subscriber.getName()) && existingSubscriber.getAddress().equals(subscriber.getAddress())) {
-                    appendOutput("Subscriber '" + subscriber.getName() + "' at '" + subscriber.getAddress() + "' already exists.\n");
-                    return false;
-                }
+            State current = state;
+            if (current.subscribersByNameAndAddress.containsKey(subscriberKey(subscriber.getName(), subscriber.getAddress()))) {
+                appendOutput("Subscriber '" + subscriber.getName() + "' at '" + subscriber.getAddress() + "' already exists.\n");
+                return REJECTED;
             }
-            boolean added = subscribers.add(subscriber);
-            if (added) {
-                 appendOutput("Subscriber '" + subscriber.getName() + "' added.\n");
-            } else {
-                 appendOutput("Failed to add subscriber '" + subscriber.getName() + "'.\n");
-            }
-            return added;
+            current.subscribers.add(subscriber);
+            current.indexSubscriber(subscriber);
+            long lsn = logMutation(subscriberRecord(subscriber));
+            appendOutput("Subscriber '" + subscriber.getName() + "' added.\n");
+            return lsn;
         }
         appendOutput("Failed to add subscriber (null).\n");
-        return false;
+        return REJECTED;
     }
 
     public Subscriber searchSubscriber(String name) {
-        for (Subscriber subscriber : subscribers) {
-            if (subscriber.getName().equals(name)) {
-                return subscriber;
-            }
-        }
-        return null;
+        List<Subscriber> matches = state.subscribersByName.get(name);
+        return matches == null ? null : matches.get(0);
+    }
+
+    public Subscriber searchSubscriber(String name, String address) {
+        return state.subscribersByNameAndAddress.get(subscriberKey(name, address));
     }
 
     public boolean addSubscription(String issn, Subscriber subscriber, Subscription subscription) {
-        Journal journal = searchJournal(issn);
+        long start = instruments.addSubscription.start();
+        WriteAheadLog log;
+        long lsn;
+        long stamp = lock.writeLock();
+        try {
+            log = writeAheadLog;
+            lsn = addSubscriptionLocked(issn, subscriber, subscription);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return instruments.finish(instruments.addSubscription, instruments.addSubscriptionRejected, start, awaitLogged(log, lsn));
+    }
+
+    private long addSubscriptionLocked(String issn, Subscriber subscriber, Subscription subscription) {
+        if (writeAheadLogFailed()) {
+            return REJECTED;
+        }
+        State current = state;
+        Journal journal = current.journals.get(issn);
 
         if (journal == null || subscriber == null || subscription == null ||
             !subscription.getJournal().getIssn().equals(issn) || !subscription.getSubscriber().equals(subscriber)) {
             appendOutput("Failed to add subscription: Journal or Subscriber not found, or Subscription object inconsistent.\n");
-            return false;
+            return REJECTED;
         }
 
-        for (Subscription existingSubscription : allSubscriptions) {
-            if (existingSubscription.getJournal().equals(journal) && existingSubscription.getSubscriber().equals(subscriber)) {
-                existingSubscription.increaseCopies();
-                appendOutput("Existing subscription found. Copies increased for Journal: " + journal.getName() + " and Subscriber: " + subscriber.getName() + " to " + existingSubscription.getCopies() + ".\n");
-                return true;
-            }
+        Subscription existingSubscription = searchSubscription(issn, subscriber);
+        if (existingSubscription != null) {
+            increaseCopies(existingSubscription);
+            long lsn = logMutation(subscriptionRecord(LOG_INCREASE_COPIES, existingSubscription));
+            appendOutput("Existing subscription found. Copies increased for Journal: " + journal.getName() + " and Subscriber: " + subscriber.getName() + " to " + existingSubscription.getCopies() + ".\n");
+            return lsn;
         }
 
-        boolean added = allSubscriptions.add(subscription);
-        if (added) {
-             appendOutput("New subscription added for Journal: " + journal.getName() + " and Subscriber: " + subscriber.getName() + ".\n");
-        } else {
-             appendOutput("Failed to add new subscription.\n");
-        }
-        return added;
+        // Index before publishing: a view sees the subscription once the list's size covers it,
+        // and by then every index holds it. Index entries past a view's size are skipped.
+        current.indexSubscription(current.subscriptions.size(), subscription);
+        current.subscriptions.add(subscription);
+        long lsn = logMutation(subscriptionRecord(LOG_ADD_SUBSCRIPTION, subscription)
+                .putInt(subscription.getDates().getStartMonth()).putInt(subscription.getDates().getStartYear())
+                .putInt(subscription.getCopies()).putDouble(subscription.getPayment().getDiscountRatio()));
+        appendOutput("New subscription added for Journal: " + journal.getName() + " and Subscriber: " + subscriber.getName() + ".\n");
+        return lsn;
     }
 
-    public String listAllSendingOrders(int month, int year) {
-        StringBuilder sendingOrders = new StringBuilder("--- Sending Orders for Month: " + month + ", Year: " + year + " ---\n");
-        boolean foundOrders = false;
-
-        for (Subscription subscription : allSubscriptions) {
-            if (subscription.canSend(month, year)) {
-                 sendingOrders.append("- Journal: ").append(subscription.getJournal().getName())
-                              .append(" (ISSN: ").append(subscription.getJournal().getIssn()).append(")")
-                              .append(" to Subscriber: ").append(subscription.getSubscriber().getName())
-                              .append(" (Copies: ").append(subscription.getCopies()).append(")\n");
-                 foundOrders = true;
+    /**
+     * Adds journals as one batch: the write lock is taken once, the log records share one
+     * flush to disk, and no per-journal messages are shown; the caller reports the outcome.
+     *
+     * @return For each journal, whether it was added.
+     */
+    public boolean[] addJournals(List<Journal> journals) {
+        return addBatch(journals, this::addJournalLocked, instruments.addJournals, instruments.addJournalRejected);
+    }
+
+    /**
+     * Adds subscribers as one batch, like {@link #addJournals(List)}.
+     *
+     * @return For each subscriber, whether it was added.
+     */
+    public boolean[] addSubscribers(List<? extends Subscriber> subscribers) {
+        return addBatch(subscribers, this::addSubscriberLocked, instruments.addSubscribers, instruments.addSubscriberRejected);
+    }
+
+    /**
+     * Adds subscriptions to the journals and subscribers they refer to as one batch, like
+     * {@link #addJournals(List)}. A subscription that already exists gets its copies increased,
+     * as in {@link #addSubscription}.
+     *
+     * @return For each subscription, whether it was added or merged.
+     */
+    public boolean[] addSubscriptions(List<Subscription> subscriptions) {
+        return addBatch(subscriptions,
+                        subscription -> addSubscriptionLocked(subscription.getJournal().getIssn(), subscription.getSubscriber(), subscription),
+                        instruments.addSubscriptions, instruments.addSubscriptionRejected);
+    }
+
+    private interface LockedMutation<T> {
+        long apply(T item);
+    }
+
+    private <T> boolean[] addBatch(List<? extends T> items, LockedMutation<T> mutation, Timer timer, Counter rejected) {
+        long start = timer.start();
+        boolean[] added = new boolean[items.size()];
+        int addedCount = 0;
+        WriteAheadLog log;
+        long batchLsn = 0;
+        long stamp = lock.writeLock();
+        try {
+            log = writeAheadLog;
+            batchThread = Thread.currentThread();
+            for (int i = 0; i < added.length; i++) {
+                T item = items.get(i);
+                long lsn = item == null ? REJECTED : mutation.apply(item);
+                if (lsn != REJECTED && lsn != NOT_LOGGED) {
+                    added[i] = true;
+                    addedCount++;
+                    batchLsn = Math.max(batchLsn, lsn);
+                }
             }
+        } finally {
+            batchThread = null;
+            lock.unlockWrite(stamp);
         }
+        if (!awaitLogged(log, batchLsn)) {
+            Arrays.fill(added, false); // None of the batch can be acknowledged as durable
+            addedCount = 0;
+        }
+        timer.stop(start);
+        rejected.add(added.length - addedCount);
+        return added;
+    }
 
-        if (!foundOrders) {
-             sendingOrders.append("No sending orders for this month and year.\n");
+    public Subscription searchSubscription(String issn, Subscriber subscriber) {
+        State current = state;
+        Subscription mappedSubscription = current.mapped == null ? null : current.mapped.findSubscription(issn, subscriber);
+        if (mappedSubscription != null) {
+            return mappedSubscription;
         }
-        sendingOrders.append("----------------------------------------\n");
+        Map<Subscriber, Subscription> journalSubscriptions = current.subscriptionsByIssn.get(issn);
+        return journalSubscriptions == null ? null : journalSubscriptions.get(subscriber);
+    }
 
-        return sendingOrders.toString();
+    public Subscription searchSubscription(String issn, String subscriberName) {
+        List<Subscriber> matches = state.subscribersByName.get(subscriberName);
+        if (matches != null) {
+            for (Subscriber subscriber : matches) {
+                Subscription subscription = searchSubscription(issn, subscriber);
+                if (subscription != null) {
+                    return subscription;
+                }
+            }
+        }
+        return null;
     }
 
-    public String listSendingOrdersByJournalIssn(String issn, int month, int year) {
-        StringBuilder sendingOrders = new StringBuilder("--- Sending Orders for Journal: " + issn + ", Month: " + month + ", Year: " + year + " ---\n");
-        Journal journal = searchJournal(issn);
+    public boolean acceptPayment(Subscription subscription, double amount) {
+        return acceptPayment(subscription, amount, Calendar.getInstance());
+    }
 
-        if (journal == null) {
-            return "Journal with ISSN " + issn + " not found.\n";
+    /**
+     * Accepts a payment made on the given date, such as one entered after the fact.
+     */
+    public boolean acceptPayment(Subscription subscription, double amount, Calendar paymentDate) {
+        long start = instruments.acceptPayment.start();
+        if (subscription == null || Money.toCents(amount) <= 0 || paymentDate == null) {
+            appendOutput("Failed to accept payment (no subscription or an amount under one cent).\n");
+            return instruments.finish(instruments.acceptPayment, instruments.acceptPaymentRejected, start, false);
+        }
+        WriteAheadLog log;
+        long lsn;
+        long stamp = lock.readLock();
+        try {
+            log = writeAheadLog;
+            lsn = applyPayment(subscription, amount, (Calendar) paymentDate.clone());
+        } finally {
+            lock.unlockRead(stamp);
         }
+        if (!awaitLogged(log, lsn)) {
+            return instruments.finish(instruments.acceptPayment, instruments.acceptPaymentRejected, start, false);
+        }
+        instruments.acceptPayment.stop(start);
+        appendOutput("Payment of " + Money.format(Money.toCents(amount)) + " accepted for subscription to " + subscription.getJournal().getName() + " by " + subscription.getSubscriber().getName() + ".\n");
+        return true;
+    }
 
-        boolean foundOrders = false;
-        for (Subscription subscription : allSubscriptions) {
-            if (subscription.getJournal().getIssn().equals(issn)) {
-                if (subscription.canSend(month, year)) {
-                     sendingOrders.append("- to Subscriber: ").append(subscription.getSubscriber().getName())
-                                  .append(" (Copies: ").append(subscription.getCopies()).append(")\n");
-                     foundOrders = true;
+    /**
+     * Accepts a batch of payments, such as those of a bank statement: payments.get(i) is paid
+     * to subscriptions.get(i) on its own date. The read lock is taken once, the log records
+     * share one flush to disk, and no per-payment messages are shown.
+     *
+     * @return For each payment, whether it was accepted.
+     */
+    public boolean[] acceptPayments(List<Subscription> subscriptions, List<PaymentTransaction> payments) {
+        if (subscriptions.size() != payments.size()) {
+            throw new IllegalArgumentException("Every payment needs exactly one subscription.");
+        }
+        long start = instruments.acceptPayments.start();
+        boolean[] accepted = new boolean[payments.size()];
+        int acceptedCount = 0;
+        WriteAheadLog log;
+        long batchLsn = 0;
+        long stamp = lock.readLock();
+        try {
+            log = writeAheadLog;
+            for (int i = 0; i < accepted.length; i++) {
+                Subscription subscription = subscriptions.get(i);
+                PaymentTransaction payment = payments.get(i);
+                if (subscription != null && payment != null) {
+                    long lsn = applyPayment(subscription, payment.getAmount(), (Calendar) payment.getPaymentDate().clone());
+                    if (lsn != REJECTED && lsn != NOT_LOGGED) {
+                        batchLsn = Math.max(batchLsn, lsn);
+                        accepted[i] = true;
+                        acceptedCount++;
+                    }
                 }
             }
+        } finally {
+            lock.unlockRead(stamp);
         }
-
-         if (!foundOrders) {
-            sendingOrders.append("No sending orders for this journal in this month and year.\n");
+        if (!awaitLogged(log, batchLsn)) {
+            Arrays.fill(accepted, false);
+            acceptedCount = 0;
         }
-        sendingOrders.append("--------------------------------------------------\n");
+        instruments.acceptPayments.stop(start);
+        instruments.acceptPaymentRejected.add(accepted.length - acceptedCount);
+        return accepted;
+    }
 
-        return sendingOrders.toString();
+    // Called under the write lock.
+    private void increaseCopies(Subscription subscription) {
+        long version = versions.begin();
+        try {
+            subscription.increaseCopies(version);
+        } finally {
+            versions.publish(version);
+        }
+        state.underpaid.update(subscription);
     }
 
-    public String listIncompletePayments() {
-         StringBuilder incompletePayments = new StringBuilder("--- Subscriptions with Incomplete Payments ---\n");
-         boolean foundIncomplete = false;
-
-        for (Subscription subscription : allSubscriptions) {
-            double totalExpectedPayment = subscription.calculateExpectedPayment();
-
-            double tolerance = 0.01;
-            if (subscription.getPayment().getReceivedPayment() < totalExpectedPayment - tolerance) {
-                 incompletePayments.append("- Subscriber: ").append(subscription.getSubscriber().getName())
-                                   .append(", Journal: ").append(subscription.getJournal().getName())
-                                   .append(", Received: ").append(String.format("%.2f", subscription.getPayment().getReceivedPayment()))
-                                   .append(", Expected: ").append(String.format("%.2f", totalExpectedPayment)).append("\n");
-                foundIncomplete = true;
+    private long applyPayment(Subscription subscription, double amount, Calendar paymentDate) {
+        if (Money.toCents(amount) <= 0 || writeAheadLogFailed()) { // Amounts that round to no cents would be recorded as nothing
+            return REJECTED;
+        }
+        // Keeps a subscription's payments in version order and in the log in the order they were applied.
+        synchronized (monitorOf(subscription)) {
+            State current = state;
+            // The version is taken as the payment is added to the cube, see reportEngine.
+            long version = current.revenue.add(versions, subscription.getJournal().getIssn(), Money.toCents(amount), paymentDate);
+            try {
+                subscription.acceptPayment(amount, paymentDate, version);
+                current.underpaid.update(subscription);
+                return logMutation(subscriptionRecord(LOG_PAYMENT, subscription).putLong(Money.toCents(amount))
+                                                                                          .putInt(EpochDates.epochDay(paymentDate)));
+            } finally {
+                versions.publish(version);
             }
         }
+    }
 
-         if (!foundIncomplete) {
-             incompletePayments.append("No subscriptions with incomplete payments.\n");
-        }
-        incompletePayments.append("--------------------------------------------\n");
+    /**
+     * Gets the lock that changes to a subscription are made under: the subscription itself,
+     * or for one over a snapshot record the lock of that record, as each lookup returns a new
+     * object.
+     */
+    private static Object monitorOf(Subscription subscription) {
+        return subscription instanceof RecordSubscription ? ((RecordSubscription) subscription).monitor() : subscription;
+    }
 
-        return incompletePayments.toString();
+    public String listAllSendingOrders(int month, int year) {
+        long start = instruments.listAllSendingOrders.start();
+        String list = render("--- Sending Orders for Month: " + month + ", Year: " + year + " ---\n", sendingOrders(month, year),
+                             order -> order.toString(),
+                             "No sending orders for this month and year.\n", "----------------------------------------\n");
+        instruments.listAllSendingOrders.stop(start);
+        return list;
+    }
+
+    public String listSendingOrdersByJournalIssn(String issn, int month, int year) {
+        long start = instruments.listSendingOrdersByJournalIssn.start();
+        String list = state.journals.containsKey(issn)
+                ? render("--- Sending Orders for Journal: " + issn + ", Month: " + month + ", Year: " + year + " ---\n", sendingOrders(issn, month, year),
+                         order -> "to Subscriber: " + order.getSubscriber().getName() + " (Copies: " + order.getCopies() + ")",
+                         "No sending orders for this journal in this month and year.\n", "--------------------------------------------------\n")
+                : "Journal with ISSN " + issn + " not found.\n";
+        instruments.listSendingOrdersByJournalIssn.stop(start);
+        return list;
+    }
+
+    public String listIncompletePayments() {
+        long start = instruments.listIncompletePayments.start();
+        UnderpaidIndex underpaid = state.underpaid;
+        int count = underpaid.size();
+        String totals = count == 0 ? "" : "Total: " + count + " subscriptions, " + Money.format(underpaid.totalOutstandingInCents()) + " outstanding\n";
+        String list = render("--- Subscriptions with Incomplete Payments ---\n", underpaid.stream(), payment -> payment.toString(),
+                             "No subscriptions with incomplete payments.\n", totals + "--------------------------------------------\n");
+        instruments.listIncompletePayments.stop(start);
+        return list;
     }
 
     public String listSubscriptionsBySubscriberName(String subscriberName) {
-        StringBuilder subscriberSubscriptions = new StringBuilder("--- Subscriptions for Subscriber: " + subscriberName + " ---\n");
-
-        boolean found = false;
-        for (Subscription subscription : allSubscriptions) {
-            if (subscription.getSubscriber().getName().equals(subscriberName)) {
-                subscriberSubscriptions.append("- Journal: ").append(subscription.getJournal().getName())
-                                       .append(" (ISSN: ").append(subscription.getJournal().getIssn()).append(")")
-                                       .append(", Copies: ").append(subscription.getCopies())
-                                       .append(", Period: ").append(subscription.getDates().getStartMonth()).append("/").append(subscription.getDates().getStartYear())
-                                       .append(" to ").append(subscription.getDates().getEndMonth()).append("/").append(subscription.getDates().getEndYear())
-                                       .append("\n");
-                found = true;
-            }
+        long start = instruments.listSubscriptionsBySubscriberName.start();
+        String list = render("--- Subscriptions for Subscriber: " + subscriberName + " ---\n", subscriptionsBySubscriberName(subscriberName),
+                             entry -> "Journal: " + entry.getJournal().getName() + " (ISSN: " + entry.getJournal().getIssn() + ")"
+                                    + ", Copies: " + entry.getCopies() + ", Period: " + entry.getPeriod(),
+                             "No subscriptions found for this subscriber name.\n", "------------------------------------------\n");
+        instruments.listSubscriptionsBySubscriberName.stop(start);
+        return list;
+    }
+
+    public String listSubscriptionsByJournalIssn(String issn) {
+        long start = instruments.listSubscriptionsByJournalIssn.start();
+        String list = state.journals.containsKey(issn)
+                ? render("--- Subscriptions for Journal (ISSN: " + issn + ") ---\n", subscriptionsByJournalIssn(issn),
+                         entry -> "Subscriber: " + entry.getSubscriber().getName() + ", Copies: " + entry.getCopies() + ", Period: " + entry.getPeriod(),
+                         "No subscriptions found for this journal.\n", "-----------------------------------------\n")
+                : "Journal with ISSN " + issn + " not found.\n";
+        instruments.listSubscriptionsByJournalIssn.stop(start);
+        return list;
+    }
+
+    // Formats a query's results as the text shown in the GUI: a title, one "- " line per result, and a rule.
+    private static <T> String render(String title, Stream<T> results, Function<T, String> format, String noResults, String rule) {
+        StringBuilder text = new StringBuilder(title);
+        Iterator<T> iterator = results.iterator();
+        if (!iterator.hasNext()) {
+            text.append(noResults);
+        }
+        while (iterator.hasNext()) {
+            text.append("- ").append(format.apply(iterator.next())).append("\n");
         }
+        return text.append(rule).toString();
+    }
+
+    /**
+     * Streams the sending orders for a month.
+     *
+     * The query reads a view taken when this method is called, and finds orders only as the
+     * stream is consumed: a caller can page through it with skip and limit, or stop early,
+     * without the whole result being built. Orders come in the order their subscriptions were
+     * added.
+     */
+    public Stream<SendingOrder> sendingOrders(int month, int year) {
+        View view = view();
+        return Stream.concat(mappedSendingOrders(view, null, month, year),
+                             indexedSendingOrders(view, view.state.dispatchIndex.forMonth(month, year), month, year));
+    }
+
+    /**
+     * Streams the sending orders for one journal in a month, like {@link #sendingOrders(int, int)}.
+     * The stream is empty if there is no journal with that ISSN.
+     */
+    public Stream<SendingOrder> sendingOrders(String issn, int month, int year) {
+        View view = view();
+        return Stream.concat(mappedSendingOrders(view, issn, month, year),
+                             indexedSendingOrders(view, view.state.dispatchIndex.forJournalAndMonth(issn, month, year), month, year));
+    }
 
-         if (!found) {
-             subscriberSubscriptions.append("No subscriptions found for this subscriber name.\n");
+    private static Stream<SendingOrder> mappedSendingOrders(View view, String issn, int month, int year) {
+        MappedState mapped = view.state.mapped;
+        if (mapped == null) {
+            return Stream.empty();
         }
-        subscriberSubscriptions.append("------------------------------------------\n");
+        return IntStream.range(0, mapped.subscriptionCount())
+                        .filter(i -> issn == null || mapped.journal(i).getIssn().equals(issn))
+                        .filter(i -> SubscriptionRecord.canSendAsOf(mapped, i, month, year, view.version))
+                        .mapToObj(i -> new SendingOrder(mapped.journal(i), mapped.subscriber(i), mapped.copiesAsOf(i, view.version)));
+    }
 
-        return subscriberSubscriptions.toString();
+    private static Stream<SendingOrder> indexedSendingOrders(View view, IntArrayList activeSubscriptions, int month, int year) {
+        return IntStream.range(0, activeSubscriptions.size())
+                        .map(activeSubscriptions::get)
+                        .takeWhile(position -> position < view.subscriptionCount) // Buckets are in subscription order; the rest were added after the view
+                        .mapToObj(view.state.subscriptions::get)
+                        .filter(subscription -> subscription.canSendAsOf(month, year, view.version))
+                        .map(subscription -> new SendingOrder(subscription.getJournal(), subscription.getSubscriber(), subscription.getCopiesAsOf(view.version)));
     }
 
-    public String listSubscriptionsByJournalIssn(String issn) {
-        StringBuilder journalSubscriptions = new StringBuilder("--- Subscriptions for Journal (ISSN: " + issn + ") ---\n");
-        Journal journal = searchJournal(issn);
+    /**
+     * Streams the subscriptions that have received less than their expected payment, lazily
+     * and from one view like {@link #sendingOrders(int, int)}.
+     */
+    public Stream<IncompletePayment> incompletePayments() {
+        View view = view();
+        MappedState mapped = view.state.mapped;
+        Stream<IncompletePayment> mappedPayments = mapped == null ? Stream.empty() : IntStream.range(0, mapped.subscriptionCount()).mapToObj(i -> {
+            Journal journal = mapped.journal(i);
+            long totalExpectedPayment = Subscription.calculateExpectedPaymentInCents(journal.getIssuePriceInCents(), journal.getFrequency(),
+                                                                                     mapped.copiesAsOf(i, view.version), mapped.discountRatio(i));
+            return incompleteOrNull(journal, mapped.subscriber(i), mapped.receivedPaymentInCentsAsOf(i, view.version), totalExpectedPayment);
+        });
+        Stream<IncompletePayment> payments = view.subscriptions().stream().map(subscription -> incompleteOrNull(subscription, view.version));
+        return Stream.concat(mappedPayments, payments).filter(Objects::nonNull);
+    }
+
+    /**
+     * Streams the subscriptions with incomplete payments, largest amount owed first.
+     *
+     * Unlike {@link #incompletePayments()} this reads a set kept up to date as payments and
+     * copies change, so it costs nothing to start and nothing per subscription that is paid
+     * up. It is not a view: a payment made while the stream is consumed may or may not show.
+     */
+    public Stream<IncompletePayment> incompletePaymentsByAmountOwed() {
+        return state.underpaid.stream();
+    }
 
-        if (journal == null) {
-            return "Journal with ISSN " + issn + " not found.\n";
+    /**
+     * Gets how many subscriptions have incomplete payments, what they owe in total, and the
+     * topN that owe the most, without going through the subscriptions.
+     */
+    public IncompletePaymentSummary incompletePaymentSummary(int topN) {
+        if (topN < 0) {
+            throw new IllegalArgumentException("topN cannot be negative.");
         }
+        long start = instruments.incompletePaymentSummary.start();
+        UnderpaidIndex underpaid = state.underpaid;
+        IncompletePaymentSummary summary = new IncompletePaymentSummary(underpaid.size(), underpaid.totalOutstandingInCents(), underpaid.top(topN));
+        instruments.incompletePaymentSummary.stop(start);
+        return summary;
+    }
 
-         boolean found = false;
-        for (Subscription subscription : allSubscriptions) {
-            if (subscription.getJournal().getIssn().equals(issn)) {
-                 journalSubscriptions.append("- Subscriber: ").append(subscription.getSubscriber().getName())
-                                     .append(", Copies: ").append(subscription.getCopies())
-                                     .append(", Period: ").append(subscription.getDates().getStartMonth()).append("/").append(subscription.getDates().getStartYear())
-                                     .append(" to ").append(subscription.getDates().getEndMonth()).append("/").append(subscription.getDates().getEndYear())
-                                     .append("\n");
-                 found = true;
-            }
+    private static IncompletePayment incompleteOrNull(Subscription subscription, long version) {
+        return incompleteOrNull(subscription.getJournal(), subscription.getSubscriber(),
+                                subscription.getPayment().getReceivedPaymentInCentsAsOf(version), subscription.calculateExpectedPaymentInCentsAsOf(version));
+    }
+
+    private static IncompletePayment incompleteOrNull(Journal journal, Subscriber subscriber, long receivedPayment, long totalExpectedPayment) {
+        // Up to a cent short counts as paid, the same rule as canSend
+        return receivedPayment < totalExpectedPayment - 1 ? new IncompletePayment(journal, subscriber, receivedPayment, totalExpectedPayment) : null;
+    }
+
+    /**
+     * Streams the subscriptions of the subscribers with the given name, lazily and from one view
+     * like {@link #sendingOrders(int, int)}.
+     */
+    public Stream<SubscriptionEntry> subscriptionsBySubscriberName(String subscriberName) {
+        View view = view();
+        return subscriptionsMatching(view, null, subscriberName)
+                .filter(subscription -> subscription.getSubscriber().getName().equals(subscriberName))
+                .map(subscription -> entry(subscription, view.version));
+    }
+
+    /**
+     * Streams the subscriptions to a journal, lazily and from one view like
+     * {@link #sendingOrders(int, int)}. The stream is empty if there is no journal with that ISSN.
+     */
+    public Stream<SubscriptionEntry> subscriptionsByJournalIssn(String issn) {
+        View view = view();
+        return subscriptionsMatching(view, issn, null)
+                .filter(subscription -> subscription.getJournal().getIssn().equals(issn))
+                .map(subscription -> entry(subscription, view.version));
+    }
+
+    /**
+     * Streams the subscriptions whose last issue is in a month from fromMonth/fromYear to
+     * toMonth/toYear, inclusive, lazily and from one view like {@link #sendingOrders(int, int)}.
+     * The expiry index is read only for those months, so the cost grows with the number of
+     * matching subscriptions rather than with all of them.
+     */
+    public Stream<SubscriptionEntry> subscriptionsExpiring(int fromMonth, int fromYear, int toMonth, int toYear) {
+        View view = view();
+        return expiring(view, epochMonth(fromMonth, fromYear), epochMonth(toMonth, toYear))
+                .map(subscription -> entry(subscription, view.version));
+    }
+
+    /**
+     * Streams the subscriptions whose last issue is in a month after month/year.
+     */
+    public Stream<SubscriptionEntry> subscriptionsExpiringAfter(int month, int year) {
+        View view = view();
+        return expiring(view, epochMonth(month, year) + 1, Integer.MAX_VALUE)
+                .map(subscription -> entry(subscription, view.version));
+    }
+
+    /**
+     * Streams the subscriptions whose last issue is next month, the ones to ask for renewal.
+     */
+    public Stream<SubscriptionEntry> subscriptionsExpiringNextMonth() {
+        Calendar now = Calendar.getInstance();
+        int next = EpochDates.epochMonth(now.get(Calendar.MONTH) + 1, now.get(Calendar.YEAR)) + 1;
+        return subscriptionsExpiring(EpochDates.monthOf(next), EpochDates.yearOf(next), EpochDates.monthOf(next), EpochDates.yearOf(next));
+    }
+
+    public String listExpiringSubscriptions(int fromMonth, int fromYear, int toMonth, int toYear) {
+        long start = instruments.listExpiringSubscriptions.start();
+        String list = render("--- Subscriptions Expiring " + fromMonth + "/" + fromYear + " to " + toMonth + "/" + toYear + " ---\n",
+                             subscriptionsExpiring(fromMonth, fromYear, toMonth, toYear),
+                             entry -> "Expires: " + EpochDates.monthOf(entry.getDates().getLastIssueEpochMonth())
+                                    + "/" + EpochDates.yearOf(entry.getDates().getLastIssueEpochMonth())
+                                    + ", Journal: " + entry.getJournal().getName() + " (ISSN: " + entry.getJournal().getIssn() + ")"
+                                    + ", Subscriber: " + entry.getSubscriber().getName() + ", Address: " + entry.getSubscriber().getAddress()
+                                    + ", Copies: " + entry.getCopies(),
+                             "No subscriptions expiring in these months.\n", "-----------------------------------------\n");
+        instruments.listExpiringSubscriptions.stop(start);
+        return list;
+    }
+
+    private static int epochMonth(int month, int year) {
+        if (month < 1 || month > 12) {
+            throw new IllegalArgumentException("Month must be between 1 and 12.");
         }
+        return EpochDates.epochMonth(month, year);
+    }
+
+    /**
+     * Streams the subscriptions of a view whose last issue is in the epoch months from
+     * fromEpochMonth to toEpochMonth, in subscription order. Subscriptions still in a
+     * memory-mapped snapshot are matched on their mapped start month, and only those that match
+     * get a subscription over their record.
+     */
+    private static Stream<Subscription> expiring(View view, int fromEpochMonth, int toEpochMonth) {
+        MappedState mapped = view.state.mapped;
+        Stream<Subscription> mappedExpiring = mapped == null ? Stream.empty() : IntStream.range(0, mapped.subscriptionCount())
+                .filter(i -> expiresIn(mapped, i, fromEpochMonth, toEpochMonth))
+                .mapToObj(mapped::subscription);
+        // The index is read when the stream is consumed, like the dispatch buckets.
+        Stream<Subscription> indexed = Stream.of(view).flatMap(v -> Arrays.stream(
+                v.state.expiryIndex.positions(fromEpochMonth, toEpochMonth, v.subscriptionCount)).mapToObj(v.state.subscriptions::get));
+        return Stream.concat(mappedExpiring, indexed);
+    }
+
+    private static boolean expiresIn(MappedState mapped, int i, int fromEpochMonth, int toEpochMonth) {
+        int lastIssueMonth = mapped.startEpochMonth(i) + 11;
+        return lastIssueMonth >= fromEpochMonth && lastIssueMonth <= toEpochMonth;
+    }
+
+    private static SubscriptionEntry entry(Subscription subscription, long version) {
+        return new SubscriptionEntry(subscription.getJournal(), subscription.getSubscriber(), subscription.getCopiesAsOf(version), subscription.getDates());
+    }
 
-         if (!found) {
-             journalSubscriptions.append("No subscriptions found for this journal.\n");
+    /**
+     * Streams the subscriptions of a view, taking only those of a memory-mapped snapshot that
+     * match the given journal or subscriber name (a null filter matches everything). Those
+     * added since the snapshot are streamed unfiltered.
+     */
+    private static Stream<Subscription> subscriptionsMatching(View view, String issn, String subscriberName) {
+        MappedState mapped = view.state.mapped;
+        if (mapped == null) {
+            return view.subscriptions().stream();
         }
-        journalSubscriptions.append("-----------------------------------------\n");
+        return Stream.concat(IntStream.range(0, mapped.subscriptionCount())
+                                      .filter(i -> (issn == null || mapped.journal(i).getIssn().equals(issn))
+                                                && (subscriberName == null || mapped.subscriber(i).getName().equals(subscriberName)))
+                                      .mapToObj(mapped::subscription),
+                             view.subscriptions().stream());
+    }
 
-        return journalSubscriptions.toString();
+    /**
+     * Builds every subscription still held in a memory-mapped snapshot and indexes them, ahead
+     * of those added since. Called under the write lock before any operation that needs the
+     * full subscription list.
+     */
+    private void materializeSubscriptions() {
+        State current = state;
+        MappedState mapped = current.mapped;
+        if (mapped == null) {
+            return;
+        }
+        AppendOnlyList<Subscription> subscriptions = new AppendOnlyList<>(Math.max(10, mapped.subscriptionCount() + current.subscriptions.size()));
+        for (int i = 0; i < mapped.subscriptionCount(); i++) {
+            subscriptions.add(mapped.build(i));
+        }
+        // Lookups made through the mapped state before now read and change the built ones from here on.
+        mapped.builtAs(subscriptions);
+        for (Subscription subscription : current.subscriptions) {
+            subscriptions.add(subscription);
+        }
+        // Same subscriptions, same amounts: the underpaid set and the cube carry over.
+        state = new State(current.journals, current.subscribers, subscriptions, null, current.underpaid, current.revenue);
+    }
+
+    /**
+     * Gets the current state with every subscription materialized.
+     */
+    private State materializedState() {
+        State current = state;
+        if (current.mapped == null) {
+            return current;
+        }
+        long stamp = lock.writeLock();
+        try {
+            materializeSubscriptions();
+            return state;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
     }
 
     public void saveState(String fileName) {
-        synchronized (reportLock) {
-            while (reportRunning) {
-                try {
-                    appendOutput("Save state waiting for report to finish...\n");
-                    reportLock.wait();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    System.err.println("Save state interrupted while waiting for report: " + e.getMessage());
-                    return;
+        long start = instruments.saveState.start();
+        boolean saved = writeState(fileName);
+        instruments.finish(instruments.saveState, instruments.saveStateFailed, start, saved);
+    }
+
+    private boolean writeState(String fileName) {
+        synchronized (saveLock) {
+            Path snapshot = Paths.get(fileName);
+            View view;
+            List<Journal> journals;
+            WriteAheadLog checkpointLog = null;
+            long snapshotLsn;
+            long keepGeneration = 0;
+            // Writers only wait while the view is taken (and the log is rolled over for a
+            // checkpoint); the file is written from the view after the lock is released, with
+            // the records of a mapped snapshot copied rather than built into subscriptions.
+            long stamp = lock.writeLock();
+            try {
+                view = view();
+                journals = new ArrayList<>(view.state.journals.values());
+                snapshotLsn = writeAheadLog != null ? writeAheadLog.lastLsn() : lastLsn;
+                if (writeAheadLog != null && isWriteAheadLogSnapshot(snapshot)) {
+                    keepGeneration = writeAheadLog.rollover();
+                    checkpointLog = writeAheadLog;
+                }
+            } catch (IOException e) {
+                System.err.println("Error saving distributor state to " + fileName + ": " + e.getMessage());
+                e.printStackTrace();
+                return false;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+
+            try {
+                StateSnapshot.write(snapshot, journals, view.subscribers(), view.state.mapped, view.subscriptions(), view.version, snapshotLsn);
+                if (checkpointLog != null) {
+                    // Everything in the older log segments is now part of the snapshot.
+                    checkpointLog.deleteSegmentsBefore(keepGeneration);
+                }
+                instruments.recordSnapshotSize(fileName);
+                appendOutput("Distributor state successfully saved to " + fileName + "\n");
+                return true;
+            } catch (IOException e) {
+                System.err.println("Error saving distributor state to " + fileName + ": " + e.getMessage());
+                e.printStackTrace();
+                return false;
+            }
+        }
+    }
+
+    public void loadState(String fileName) {
+        long start = instruments.loadState.start();
+        boolean loaded;
+        synchronized (saveLock) {
+            // Read the file and index it before taking the lock; only publishing the result blocks writers.
+            StateSnapshot.Contents contents = readSnapshot(fileName);
+            State loadedState = stateOf(contents);
+            long stamp = lock.writeLock();
+            try {
+                if (writeAheadLog != null) {
+                    closeWriteAheadLog();
+                    appendOutput("Write-ahead log closed; use Recover State to resume logging.\n");
                 }
+                loaded = publish(contents, loadedState, fileName);
+            } finally {
+                lock.unlockWrite(stamp);
             }
         }
+        instruments.finish(instruments.loadState, instruments.loadStateFailed, start, loaded);
+    }
 
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(fileName))) {
-            oos.writeObject(journals);
-            oos.writeObject(subscribers);
-            oos.writeObject(allSubscriptions);
-            appendOutput("Distributor state successfully saved to " + fileName + "\n");
-        } catch (IOException e) {
-            System.err.println("Error saving distributor state to " + fileName + ": " + e.getMessage());
+    /**
+     * Opens a snapshot by memory-mapping it instead of reading it into objects.
+     * Journals and subscribers are loaded immediately; subscriptions and their payments stay
+     * in the mapped file. Lookups return subscriptions that read their record in place, and
+     * payments and copy increases are kept beside the records outside the heap, so queries
+     * and payments build nothing until an operation needs the full subscription list.
+     *
+     * @param fileName The snapshot file.
+     */
+    public void loadStateMapped(String fileName) {
+        long start = instruments.loadStateMapped.start();
+        boolean loaded;
+        synchronized (saveLock) {
+            loaded = loadStateMappedLocked(fileName, false);
+        }
+        instruments.finish(instruments.loadStateMapped, instruments.loadStateFailed, start, loaded);
+    }
+
+    /**
+     * Loads a snapshot like {@link #loadStateMapped(String)}, but copies its subscription and
+     * payment records into memory outside the Java heap instead of mapping the file. The heap
+     * then holds the journals, the subscribers, and only the subscriptions added since, so it
+     * stays small however many records there are and however many are paid. The direct memory
+     * needed is about the size of the file, plus 32 bytes a payment or copy increase; raise
+     * -XX:MaxDirectMemorySize (by default the maximum heap size) to fit it.
+     *
+     * @param fileName The snapshot file.
+     */
+    public void loadStateOffHeap(String fileName) {
+        long start = instruments.loadStateOffHeap.start();
+        boolean loaded;
+        synchronized (saveLock) {
+            loaded = loadStateMappedLocked(fileName, true);
+        }
+        instruments.finish(instruments.loadStateOffHeap, instruments.loadStateFailed, start, loaded);
+    }
+
+    private boolean loadStateMappedLocked(String fileName, boolean offHeap) {
+        MappedState mapped = null;
+        State mappedContents = null;
+        try {
+            mapped = offHeap ? MappedState.copy(Paths.get(fileName)) : MappedState.open(Paths.get(fileName));
+            mappedContents = new State(mapped.journals(), mapped.subscribers(), new AppendOnlyList<>(), mapped);
+        } catch (IOException | OutOfMemoryError e) { // Direct buffers throw OutOfMemoryError past their limit
+            System.err.println("Error " + (offHeap ? "loading" : "mapping") + " distributor state from " + fileName + ": " + e.getMessage());
             e.printStackTrace();
         }
+
+        long stamp = lock.writeLock();
+        try {
+            if (writeAheadLog != null) {
+                closeWriteAheadLog();
+                appendOutput("Write-ahead log closed; use Recover State to resume logging.\n");
+            }
+            if (mappedContents == null) {
+                resetState();
+                appendOutput("Initialized empty collections due to loading error.\n");
+                return false;
+            }
+            state = mappedContents;
+            lastLsn = mapped.lastLsn();
+            instruments.recordSnapshotSize(fileName);
+            appendOutput("Distributor state " + (offHeap ? "loaded off-heap" : "mapped") + " from " + fileName + " (" + mapped.subscriptionCount() + " subscriptions loaded on demand)\n");
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
     }
 
-    public void loadState(String fileName) {
-        synchronized (reportLock) {
-            while (reportRunning) {
-                try {
-                    appendOutput("Load state waiting for report to finish...\n");
-                    reportLock.wait();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    System.err.println("Load state interrupted while waiting for report: " + e.getMessage());
-                    return;
+    /**
+     * Loads the snapshot in the given file, replays its write-ahead log ({@code <fileName>.wal.<n>})
+     * on top of it, and keeps logging every further mutation to that log.
+     * A missing snapshot file is treated as an empty state, so the log alone can be replayed.
+     * A torn record at the very end of the log, from a crash during a write, is dropped. If the
+     * snapshot or the log cannot be read, or the log is damaged before its end or is missing
+     * records after the snapshot, recovery fails: the state is left empty and the log closed
+     * and untouched, so that nothing is logged over records not yet replayed.
+     *
+     * @param fileName The snapshot file.
+     * @return true if the state was recovered and changes are being logged again.
+     */
+    public boolean recoverState(String fileName) {
+        long start = instruments.recoverState.start();
+        boolean recovered;
+        synchronized (saveLock) {
+            recovered = recoverStateLocked(fileName);
+        }
+        return instruments.finish(instruments.recoverState, instruments.loadStateFailed, start, recovered);
+    }
+
+    private boolean recoverStateLocked(String fileName) {
+        Path snapshot = Paths.get(fileName);
+        boolean snapshotExists = Files.exists(snapshot);
+        StateSnapshot.Contents contents = snapshotExists ? readSnapshot(fileName) : null;
+        State loadedState = stateOf(contents);
+
+        long stamp = lock.writeLock();
+        try {
+            closeWriteAheadLog();
+            if (snapshotExists) {
+                if (!publish(contents, loadedState, fileName)) {
+                    appendOutput("Recovery aborted: the snapshot could not be loaded.\n");
+                    return false;
                 }
+            } else {
+                resetState();
+                appendOutput("No snapshot found at " + fileName + "; recovering from the log only.\n");
             }
+            return replayWriteAheadLog(snapshot, fileName);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Called under the write lock with the log closed.
+    private boolean replayWriteAheadLog(Path snapshot, String fileName) {
+        Path logBase = writeAheadLogBase(snapshot);
+        long snapshotLsn = lastLsn;
+        long replayedLsn = 0;
+        Exception failure = null;
+        replaying = true;
+        try {
+            replayedLsn = WriteAheadLog.replay(logBase, snapshotLsn, this::applyLogRecord);
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        } finally {
+            replaying = false;
+        }
+        if (failure != null) {
+            System.err.println("Error replaying write-ahead log " + logBase + ": " + failure.getMessage());
+            failure.printStackTrace();
+            // The records before the failure have been applied and those after it have not, and
+            // a log reopened now would reuse LSNs already in its segments. Keep neither.
+            resetState();
+            appendOutput("Recovery failed; the state was cleared and the log left as it was. Error replaying the log: " + failure.getMessage() + "\n");
+            return false;
+        }
+        lastLsn = replayedLsn;
+
+        try {
+            writeAheadLog = WriteAheadLog.open(logBase, lastLsn);
+            writeAheadLogSnapshot = snapshot.toAbsolutePath().normalize();
+        } catch (IOException e) {
+            System.err.println("Error opening write-ahead log " + logBase + ": " + e.getMessage());
+            e.printStackTrace();
+            resetState();
+            appendOutput("Recovery failed; the state was cleared. Error reopening the log: " + e.getMessage() + "\n");
+            return false;
         }
+        appendOutput("Recovered state from " + fileName + " and its log (" + (lastLsn - snapshotLsn) + " logged changes after the snapshot).\n");
+        return true;
+    }
 
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(fileName))) {
-            journals = (Hashtable<String, Journal>) ois.readObject();
-            subscribers = (Vector<Subscriber>) ois.readObject();
-            allSubscriptions = (Vector<Subscription>) ois.readObject();
-            appendOutput("Distributor state successfully loaded from " + fileName + "\n");
-        } catch (IOException | ClassNotFoundException e) {
+    /**
+     * Reads a snapshot file, or returns null after reporting the error.
+     */
+    private StateSnapshot.Contents readSnapshot(String fileName) {
+        try {
+            return StateSnapshot.read(Paths.get(fileName));
+        } catch (IOException e) {
             System.err.println("Error loading distributor state from " + fileName + ": " + e.getMessage());
             e.printStackTrace();
-            if (e instanceof FileNotFoundException) {
+            if (e instanceof NoSuchFileException) {
                 appendOutput("State file not found. Starting with empty state.\n");
             }
-            this.journals = new Hashtable<>();
-            this.subscribers = new Vector<>();
-            this.allSubscriptions = new Vector<>();
+            return null;
+        }
+    }
+
+    /**
+     * Builds a state from the contents of a snapshot, or returns null if there are none.
+     */
+    private static State stateOf(StateSnapshot.Contents contents) {
+        return contents == null ? null : new State(contents.journals, contents.subscribers, contents.subscriptions, null);
+    }
+
+    /**
+     * Makes the state built from a snapshot the current state, or an empty state if it could
+     * not be read. Called under the write lock.
+     */
+    private boolean publish(StateSnapshot.Contents contents, State loadedState, String fileName) {
+        if (contents == null) {
+            resetState();
              appendOutput("Initialized empty collections due to loading error.\n");
+            return false;
         }
+        state = loadedState;
+        lastLsn = contents.lastLsn;
+        instruments.recordSnapshotSize(fileName);
+        appendOutput("Distributor state successfully loaded from " + fileName + "\n");
+        return true;
     }
 
-    public void report(Calendar expiryDateThreshold, int startYearRange, int endYearRange) {
-        new Thread(() -> {
-            synchronized (reportLock) {
-                reportRunning = true;
-                appendOutput("Report generation started...\n");
-            }
+    private void resetState() {
+        this.state = State.empty();
+        this.lastLsn = 0;
+    }
 
-            StringBuilder reportContent = new StringBuilder();
-            reportContent.append("--- Distributor Report ---\n");
-            reportContent.append("Generated on: ").append(formatDate(Calendar.getInstance())).append("\n");
-            reportContent.append("------------------------------------\n");
+    // --- Write-ahead log ---
 
-            reportContent.append("\n--- Subscriptions Expiring After ").append(formatDate(expiryDateThreshold)).append(" ---\n");
+    private static Path writeAheadLogBase(Path snapshot) {
+        return snapshot.resolveSibling(snapshot.getFileName() + ".wal");
+    }
 
-            boolean foundExpiring = false;
-            for (Subscription sub : allSubscriptions) {
-                Calendar endCal = new GregorianCalendar(sub.getDates().getStartYear(), sub.getDates().getStartMonth() - 1, 1);
-                endCal.add(Calendar.YEAR, 1);
-                endCal.add(Calendar.DAY_OF_MONTH, -1);
+    private boolean isWriteAheadLogSnapshot(Path snapshot) {
+        return snapshot.toAbsolutePath().normalize().equals(writeAheadLogSnapshot);
+    }
 
-                if (!endCal.before(expiryDateThreshold)) {
-                    reportContent.append("- Journal: ").append(sub.getJournal().getName())
-                                 .append(", Subscriber: ").append(sub.getSubscriber().getName())
-                                 .append(", Expires: ").append(formatDate(endCal)).append("\n");
-                    foundExpiring = true;
-                }
+    private void closeWriteAheadLog() {
+        if (writeAheadLog != null) {
+            try {
+                writeAheadLog.close();
+            } catch (IOException e) {
+                System.err.println("Error closing write-ahead log: " + e.getMessage());
             }
-            if (!foundExpiring) {
-                reportContent.append("No subscriptions expiring after the given date.\n");
-            }
-            reportContent.append("----------------------------------------------------\n");
+            writeAheadLog = null;
+            writeAheadLogSnapshot = null;
+        }
+    }
 
+    /**
+     * Queues a record in the write-ahead log. Called while the change is applied, under a lock,
+     * so the log order matches the order the changes were made in.
+     *
+     * @return The record's LSN, 0 if there is no log, or NOT_LOGGED if the log failed.
+     */
+    private long logMutation(WriteAheadLog.Record record) {
+        if (writeAheadLog == null || replaying) {
+            return 0;
+        }
+        try {
+            return writeAheadLog.append(record);
+        } catch (IOException e) {
+            System.err.println("Error: Change could not be written to the write-ahead log: " + e.getMessage());
+            appendOutput("Error: the change was made in memory but could not be logged, so it was not accepted. "
+                         + "Further changes are refused; use Load State or Recover State to continue.\n");
+            return NOT_LOGGED;
+        }
+    }
 
-            reportContent.append("\n--- Received Annual Payments in Year Range: ").append(startYearRange).append(" - ").append(endYearRange).append(" ---\n");
+    /**
+     * Checks, under a lock and before a change is made, whether the write-ahead log has failed.
+     * A failed log stays failed, and a change that cannot be made durable must not be
+     * acknowledged, so changes are refused until the state is loaded or recovered again.
+     */
+    private boolean writeAheadLogFailed() {
+        WriteAheadLog log = writeAheadLog;
+        IOException failure = log == null || replaying ? null : log.failure();
+        if (failure != null) {
+            appendOutput("Change refused: the write-ahead log failed (" + failure + "). Use Load State or Recover State to continue.\n");
+        }
+        return failure != null;
+    }
 
-            Map<Integer, Double> annualPayments = new HashMap<>();
-            for (int year = startYearRange; year <= endYearRange; year++) {
-                annualPayments.put(year, 0.0);
+    /**
+     * Waits, outside the locks, until a logged change is on disk. Concurrent writers waiting
+     * here share the log's fsyncs.
+     *
+     * @return false if the change was rejected or could not be made durable.
+     */
+    private boolean awaitLogged(WriteAheadLog log, long lsn) {
+        if (lsn == REJECTED || lsn == NOT_LOGGED) {
+            return false;
+        }
+        if (lsn > 0 && log != null) {
+            try {
+                log.awaitDurable(lsn);
+            } catch (IOException e) {
+                System.err.println("Error: Change could not be written to the write-ahead log: " + e.getMessage());
+                appendOutput("Error: the change was made in memory but could not be written to the log, so it was not accepted. "
+                             + "Further changes are refused; use Load State or Recover State to continue.\n");
+                return false;
             }
+        }
+        return true;
+    }
 
-            boolean foundPaymentsInYearRange = false;
-            for (Subscription sub : allSubscriptions) {
-                for (PaymentTransaction transaction : sub.getPayment().getTransactions()) {
-                    int paymentYear = transaction.getPaymentDate().get(Calendar.YEAR);
-                    if (paymentYear >= startYearRange && paymentYear <= endYearRange) {
-                        annualPayments.put(paymentYear, annualPayments.get(paymentYear) + transaction.getAmount());
-                        foundPaymentsInYearRange = true;
-                    }
-                }
-            }
+    private static WriteAheadLog.Record subscriberRecord(Subscriber subscriber) {
+        if (subscriber instanceof Corporation) {
+            Corporation corporation = (Corporation) subscriber;
+            return new WriteAheadLog.Record(LOG_ADD_CORPORATION).putString(corporation.getName()).putString(corporation.getAddress())
+                    .putInt(corporation.getBankCode()).putString(corporation.getBankName()).putInt(corporation.getIssueDay())
+                    .putInt(corporation.getIssueMonth()).putInt(corporation.getIssueYear()).putInt(corporation.getAccountNumber());
+        }
+        Individual individual = (Individual) subscriber;
+        return new WriteAheadLog.Record(LOG_ADD_INDIVIDUAL).putString(individual.getName()).putString(individual.getAddress())
+                .putString(individual.getCreditCardNr()).putInt(individual.getExpireMonth()).putInt(individual.getExpireYear())
+                .putInt(individual.getCCV());
+    }
 
-            if (foundPaymentsInYearRange) {
-                annualPayments.entrySet().stream()
-                              .sorted(Map.Entry.comparingByKey())
-                              .forEach(entry -> reportContent.append("Year ").append(entry.getKey()).append(": ").append(String.format("%.2f", entry.getValue())).append("\n"));
-            } else {
-                reportContent.append("No payments received within the specified year range.\n");
-            }
-            reportContent.append("----------------------------------------------------------\n");
+    private static WriteAheadLog.Record subscriptionRecord(byte type, Subscription subscription) {
+        return new WriteAheadLog.Record(type).putString(subscription.getJournal().getIssn())
+                .putString(subscription.getSubscriber().getName()).putString(subscription.getSubscriber().getAddress());
+    }
 
-            reportContent.append("\n--- End of Report ---");
+    private void applyLogRecord(long lsn, WriteAheadLog.RecordReader record) throws IOException {
+        byte type = record.type();
+        switch (type) {
+            case LOG_ADD_JOURNAL:
+                addJournalLocked(new Journal(record.getString(), record.getString(), record.getInt(), record.getDouble()));
+                return;
+            case LOG_ADD_INDIVIDUAL:
+                addSubscriberLocked(new Individual(record.getString(), record.getString(), record.getString(),
+                                             record.getInt(), record.getInt(), record.getInt()));
+                return;
+            case LOG_ADD_CORPORATION:
+                addSubscriberLocked(new Corporation(record.getString(), record.getString(), record.getInt(), record.getString(),
+                                              record.getInt(), record.getInt(), record.getInt(), record.getInt()));
+                return;
+            default:
+                break;
+        }
 
-            appendOutput(reportContent.toString() + "\n");
+        String issn = record.getString();
+        Subscriber subscriber = searchSubscriber(record.getString(), record.getString());
+        Journal journal = searchJournal(issn);
+        if (journal == null || subscriber == null) {
+            throw new IOException("Log record " + lsn + " refers to an unknown journal or subscriber.");
+        }
+        if (type == LOG_ADD_SUBSCRIPTION) {
+            DateInfo dates = new DateInfo(record.getInt(), record.getInt());
+            addSubscriptionLocked(issn, subscriber, new Subscription(dates, record.getInt(), journal, subscriber, record.getDouble()));
+            return;
+        }
+        Subscription subscription = searchSubscription(issn, subscriber);
+        if (subscription == null) {
+            throw new IOException("Log record " + lsn + " refers to an unknown subscription.");
+        }
+        if (type == LOG_INCREASE_COPIES) {
+            increaseCopies(subscription);
+        } else if (type == LOG_PAYMENT) {
+            double amount = Money.toAmount(record.getLong());
+            Calendar paymentDate = Calendar.getInstance();
+            EpochDates.setDate(paymentDate, record.getInt());
+            applyPayment(subscription, amount, paymentDate);
+        } else {
+            throw new IOException("Unknown write-ahead log record type " + type + " at LSN " + lsn + ".");
+        }
+    }
 
+    public void report(Calendar expiryDateThreshold, int startYearRange, int endYearRange) {
+        long start = instruments.report.start();
+        // Take the view on the caller's thread so the report covers the state at the time of the request.
+        ReportEngine engine = reportEngine(expiryDateThreshold, startYearRange, endYearRange);
 
-            synchronized (reportLock) {
-                reportRunning = false;
-                reportLock.notifyAll();
+        ReportEngine.submit(() -> {
+            appendOutput("Report generation started...\n");
+            try {
+                String report = engine.generate();
+                instruments.report.stop(start);
+                appendOutput(report + "\n");
+            } catch (RuntimeException e) {
+                System.err.println("Report generation failed: " + e.getMessage());
+                e.printStackTrace();
+            } finally {
                 appendOutput("Report generation finished.\n");
             }
-        }).start();
+        });
+    }
+
+    /**
+     * Generates the report and waits for it. The work is still spread over the report pool.
+     * @return The report text.
+     */
+    public String generateReport(Calendar expiryDateThreshold, int startYearRange, int endYearRange) {
+        long start = instruments.report.start();
+        String report = reportEngine(expiryDateThreshold, startYearRange, endYearRange).generate();
+        instruments.report.stop(start);
+        return report;
+    }
+
+    private ReportEngine reportEngine(Calendar expiryDateThreshold, int startYearRange, int endYearRange) {
+        // The cube's totals hold exactly the payments before the report's version. Publishing
+        // that version waits for those payments to complete, and the view is then read as of it.
+        State current = state;
+        RevenueCube.VersionedTotals annualPayments = current.revenue.annualAtNewVersion(versions, null, startYearRange, endYearRange);
+        versions.publish(annualPayments.version);
+        View view = new View(current, current.subscribers.size(), current.subscriptions.size(), annualPayments.version);
+        // Subscriptions still in a snapshot are read through record flyweights instead of being
+        // built, so a report leaves the heap as it found it.
+        int firstExpiringEpochMonth = ReportEngine.firstExpiringEpochMonth(expiryDateThreshold);
+        MappedState mapped = view.state.mapped;
+        int[] mappedExpiring = mapped == null ? new int[0] : IntStream.range(0, mapped.subscriptionCount())
+                .filter(i -> expiresIn(mapped, i, firstExpiringEpochMonth, Integer.MAX_VALUE)).toArray();
+        Subscription[] expiring = Arrays.stream(view.state.expiryIndex.positions(firstExpiringEpochMonth, Integer.MAX_VALUE, view.subscriptionCount))
+                .mapToObj(view.state.subscriptions::get).toArray(Subscription[]::new);
+        return new ReportEngine(mapped, mappedExpiring, expiring, annualPayments.cents, expiryDateThreshold, startYearRange, endYearRange);
+    }
+
+    /**
+     * Gets the payments received in each year from startYear to endYear, for the journal with
+     * the given ISSN or, if issn is null, for all journals.
+     * @return The totals, indexed from startYear.
+     */
+    public double[] annualRevenue(String issn, int startYear, int endYear) {
+        long start = instruments.revenue.start();
+        double[] annual = toAmounts(state.revenue.annual(issn, startYear, endYear));
+        instruments.revenue.stop(start);
+        return annual;
+    }
+
+    /**
+     * Gets the payments received in each month of a year, for the journal with the given ISSN
+     * or, if issn is null, for all journals.
+     * @return The totals, indexed from January.
+     */
+    public double[] monthlyRevenue(String issn, int year) {
+        long start = instruments.revenue.start();
+        double[] monthly = toAmounts(state.revenue.monthly(issn, year));
+        instruments.revenue.stop(start);
+        return monthly;
+    }
+
+    /**
+     * Gets each journal's payments received from startYear to endYear, by ISSN in ISSN order.
+     * Journals without payments in those years are left out.
+     */
+    public Map<String, Double> revenueByJournal(int startYear, int endYear) {
+        long start = instruments.revenue.start();
+        Map<String, Double> totals = new TreeMap<>();
+        state.revenue.byJournal(startYear, endYear).forEach((issn, cents) -> totals.put(issn, Money.toAmount(cents)));
+        instruments.revenue.stop(start);
+        return totals;
+    }
+
+    private static double[] toAmounts(long[] cents) {
+        double[] amounts = new double[cents.length];
+        for (int i = 0; i < cents.length; i++) {
+            amounts[i] = Money.toAmount(cents[i]);
+        }
+        return amounts;
+    }
+
+    private static void addRevenue(RevenueCube cube, Subscription subscription) {
+        String issn = subscription.getJournal().getIssn();
+        PaymentInfo payment = subscription.getPayment();
+        for (int t = 0, count = payment.getTransactionCount(); t < count; t++) {
+            int epochMonth = EpochDates.epochMonthOfDay(payment.getTransactionEpochDay(t));
+            cube.add(issn, EpochDates.yearOf(epochMonth), EpochDates.monthOf(epochMonth), payment.getTransactionAmountInCents(t));
+        }
+    }
+
+    /**
+     * Gets the journals by ISSN, as a read-only live view. Before the lock-free reads this
+     * returned the Hashtable itself; add journals through {@link #addJournal(Journal)}.
+     */
+    public Map<String, Journal> getJournals() {
+        return Collections.unmodifiableMap(state.journals);
     }
 
-    private String formatDate(Calendar calendar) {
-        SimpleDateFormat sdf = new SimpleDateFormat("MM/dd/yyyy");
-        return sdf.format(calendar.getTime());
+    /**
+     * Gets the subscribers in the order they were added, as a read-only live view. Before the
+     * lock-free reads this returned the Vector itself.
+     */
+    public List<Subscriber> getSubscribers() {
+        return Collections.unmodifiableList(state.subscribers);
     }
 
-    public Hashtable<String, Journal> getJournals() {
-        return journals;
+    /**
+     * Gets every subscription in the order it was added, as a read-only live view; a mapped
+     * snapshot is read in full first. Before the lock-free reads this returned the Vector itself.
+     */
+    public List<Subscription> getAllSubscriptions() {
+        return Collections.unmodifiableList(materializedState().subscriptions);
     }
 
-    public Vector<Subscriber> getSubscribers() {
-        return subscribers;
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        materializedState();
+        out.defaultWriteObject();
     }
 
-    public Vector<Subscription> getAllSubscriptions() {
-        return allSubscriptions;
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        lock = new StampedLock();
+        versions = new VersionClock();
+        saveLock = new Object();
+        instruments = new Instruments();
     }
 }
@@ -0,0 +1,46 @@
+package com.journalapp;
+
+import com.journalapp.model.Subscription;
+import com.journalapp.util.IntArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Buckets subscriptions by the epoch month of their last issue, the month in which they
+ * expire. The months are kept in a sorted map, so the subscriptions expiring in a range of
+ * months are found by visiting only the buckets in that range. Buckets hold positions in the
+ * distributor's subscription list in insertion order.
+ *
+ * The distributor adds under its write lock; lookups need no lock and see every position
+ * added before the bucket was read.
+ */
+class ExpiryIndex {
+    private final ConcurrentSkipListMap<Integer, IntArrayList> byLastIssueMonth = new ConcurrentSkipListMap<>();
+
+    void add(int position, Subscription subscription) {
+        byLastIssueMonth.computeIfAbsent(subscription.getDates().getLastIssueEpochMonth(), k -> new IntArrayList()).add(position);
+    }
+
+    /**
+     * Gets the positions below limit of the subscriptions whose last issue falls in the epoch
+     * months from fromEpochMonth to toEpochMonth, inclusive, in ascending order.
+     */
+    int[] positions(int fromEpochMonth, int toEpochMonth, int limit) {
+        if (fromEpochMonth > toEpochMonth) {
+            return new int[0];
+        }
+        IntArrayList positions = new IntArrayList();
+        for (IntArrayList bucket : byLastIssueMonth.subMap(fromEpochMonth, true, toEpochMonth, true).values()) {
+            for (int i = 0, size = bucket.size(); i < size; i++) {
+                int position = bucket.get(i);
+                if (position >= limit) {
+                    break; // Positions are added in order, so the rest are newer still
+                }
+                positions.add(position);
+            }
+        }
+        int[] sorted = positions.toArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+}
@@ -1,17 +1,21 @@
 package com.journalapp;
 
 import com.journalapp.model.*; // Import all model classes
+import com.journalapp.output.OutputSink;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 
 public class MainFrame extends JFrame {
 
     private final Distributor distributor; // Marked as final
-    private final JTextArea outputArea;    // Marked as final
+    private final ConsolePanel console;    // Marked as final
+    private final OutputSink output;       // Appends to the console in batches
 
     // Input fields for adding Journal
     private JTextField journalNameField;
@@ -55,6 +59,10 @@ public class MainFrame extends JFrame {
     private JTextField reportExpiryYearField;
     private JTextField reportStartYearField;
     private JTextField reportEndYearField;
+    private JTextField renewalFromMonthField;
+    private JTextField renewalFromYearField;
+    private JTextField renewalToMonthField;
+    private JTextField renewalToYearField;
     private JTextField stateFileNameField;
 
 
@@ -83,20 +91,20 @@ public class MainFrame extends JFrame {
         tabbedPane.addTab("Reports", reportPanel);
         tabbedPane.addTab("Save/Load State", statePanel);
 
-        // Output area at the bottom
-        outputArea = new JTextArea();
-        outputArea.setEditable(false);
-        JScrollPane scrollPane = new JScrollPane(outputArea);
-        scrollPane.setPreferredSize(new Dimension(780, 150));
+        // Output console at the bottom
+        console = new ConsolePanel();
+        console.setPreferredSize(new Dimension(780, 180));
 
-        // Connect the output area to the distributor
-        distributor.setOutputArea(outputArea);
+        // Connect the console to the distributor. The frame's own messages go through the
+        // same sink, so they stay in order with the distributor's.
+        output = console.getOutput();
+        distributor.setOutputSink(output);
 
         // Main content pane
         Container contentPane = getContentPane();
         contentPane.setLayout(new BorderLayout());
         contentPane.add(tabbedPane, BorderLayout.CENTER);
-        contentPane.add(scrollPane, BorderLayout.SOUTH);
+        contentPane.add(console, BorderLayout.SOUTH);
 
         // Make the frame visible
         setVisible(true);
@@ -312,6 +320,12 @@ public class MainFrame extends JFrame {
         acceptPaymentButton.addActionListener(new AcceptPaymentActionListener(payIssnField, paySubscriberNameField, payPaymentAmountField));
         panel.add(acceptPaymentButton, gbc);
 
+        gbc.gridy++;
+        gbc.gridx = 0;
+        gbc.gridwidth = 2;
+        JButton importStatementButton = new JButton("Import Bank Statement...");
+        importStatementButton.addActionListener(new ImportStatementActionListener());
+        panel.add(importStatementButton, gbc);
 
         return panel;
     }
@@ -444,10 +458,44 @@ public class MainFrame extends JFrame {
         generateReportButton.addActionListener(new GenerateReportActionListener());
         panel.add(generateReportButton, gbc);
 
+        // Renewal campaign: the subscriptions whose last issue falls in a range of months.
+        // The fields start at next month, the usual campaign.
+        Calendar nextMonth = Calendar.getInstance();
+        nextMonth.add(Calendar.MONTH, 1);
+        String month = String.valueOf(nextMonth.get(Calendar.MONTH) + 1);
+        String year = String.valueOf(nextMonth.get(Calendar.YEAR));
+
+        gbc.gridy++;
+        panel.add(new JLabel("Renewal Campaign"), gbc);
+
+        gbc.gridwidth = 1;
+        gbc.gridy++;
+        gbc.gridx = 0; panel.add(new JLabel("Expiring From (Month/Year):"), gbc);
+        gbc.gridx = 1; panel.add(monthYearFields(renewalFromMonthField = new JTextField(month, 5), renewalFromYearField = new JTextField(year, 8)), gbc);
+
+        gbc.gridy++;
+        gbc.gridx = 0; panel.add(new JLabel("Expiring To (Month/Year):"), gbc);
+        gbc.gridx = 1; panel.add(monthYearFields(renewalToMonthField = new JTextField(month, 5), renewalToYearField = new JTextField(year, 8)), gbc);
+
+        gbc.gridy++;
+        gbc.gridx = 0;
+        gbc.gridwidth = 2;
+        JButton listExpiringButton = new JButton("List Expiring Subscriptions");
+        listExpiringButton.addActionListener(new ListExpiringSubscriptionsActionListener());
+        panel.add(listExpiringButton, gbc);
+
 
         return panel;
     }
 
+    private static JPanel monthYearFields(JTextField monthField, JTextField yearField) {
+        JPanel fields = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        fields.add(monthField);
+        fields.add(new JLabel(" / "));
+        fields.add(yearField);
+        return fields;
+    }
+
     private JPanel createStatePanel() {
          JPanel panel = new JPanel(new GridBagLayout());
         GridBagConstraints gbc = new GridBagConstraints();
@@ -479,6 +527,34 @@ public class MainFrame extends JFrame {
         loadStateButton.addActionListener(new LoadStateActionListener());
         panel.add(loadStateButton, gbc);
 
+        gbc.gridy++;
+        gbc.gridx = 0;
+        gbc.gridwidth = 2;
+        JButton loadMappedStateButton = new JButton("Load State (Memory-Mapped)");
+        loadMappedStateButton.addActionListener(new LoadMappedStateActionListener());
+        panel.add(loadMappedStateButton, gbc);
+
+        gbc.gridy++;
+        gbc.gridx = 0;
+        gbc.gridwidth = 2;
+        JButton loadOffHeapStateButton = new JButton("Load State (Off-Heap)");
+        loadOffHeapStateButton.addActionListener(new LoadOffHeapStateActionListener());
+        panel.add(loadOffHeapStateButton, gbc);
+
+        gbc.gridy++;
+        gbc.gridx = 0;
+        gbc.gridwidth = 2;
+        JButton recoverStateButton = new JButton("Recover State (Snapshot + Log)");
+        recoverStateButton.addActionListener(new RecoverStateActionListener());
+        panel.add(recoverStateButton, gbc);
+
+        gbc.gridy++;
+        gbc.gridx = 0;
+        gbc.gridwidth = 2;
+        JButton importCsvButton = new JButton("Import CSV Folder...");
+        importCsvButton.addActionListener(new ImportCsvActionListener());
+        panel.add(importCsvButton, gbc);
+
 
         return panel;
     }
@@ -655,17 +731,10 @@ public class MainFrame extends JFrame {
                 double amount = Double.parseDouble(amountField.getText());
 
                 // Find the subscription
-                Subscription targetSubscription = null;
-                for (Subscription sub : distributor.getAllSubscriptions()) {
-                    if (sub.getJournal().getIssn().equals(issn) && sub.getSubscriber().getName().equals(subscriberName)) {
-                        targetSubscription = sub;
-                        break;
-                    }
-                }
+                Subscription targetSubscription = distributor.searchSubscription(issn, subscriberName);
 
                 if (targetSubscription != null) {
-                    targetSubscription.acceptPayment(amount);
-                    outputArea.append("Payment of " + String.format("%.2f", amount) + " accepted for subscription to " + targetSubscription.getJournal().getName() + " by " + targetSubscription.getSubscriber().getName() + ".\n");
+                    distributor.acceptPayment(targetSubscription, amount);
                     issnField.setText("");
                     subscriberNameField.setText("");
                     amountField.setText("");
@@ -693,7 +762,7 @@ public class MainFrame extends JFrame {
                 int year = Integer.parseInt(listYearField.getText());
 
                 String result = distributor.listAllSendingOrders(month, year);
-                outputArea.append(result);
+                output.write(result);
 
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(MainFrame.this, "Invalid number format for Month or Year.", "Input Error", JOptionPane.ERROR_MESSAGE);
@@ -715,7 +784,7 @@ public class MainFrame extends JFrame {
                 int year = Integer.parseInt(listYearField.getText());
 
                 String result = distributor.listSendingOrdersByJournalIssn(issn, month, year);
-                outputArea.append(result);
+                output.write(result);
 
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(MainFrame.this, "Invalid number format for Month or Year.", "Input Error", JOptionPane.ERROR_MESSAGE);
@@ -733,7 +802,7 @@ public class MainFrame extends JFrame {
         public void actionPerformed(ActionEvent e) {
             try {
                 String result = distributor.listIncompletePayments();
-                outputArea.append(result);
+                output.write(result);
             } catch (Exception ex) {
                  JOptionPane.showMessageDialog(MainFrame.this, "An unexpected error occurred: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
                  ex.printStackTrace();
@@ -747,7 +816,7 @@ public class MainFrame extends JFrame {
             try {
                 String subscriberName = listSubscriberNameField.getText();
                 String result = distributor.listSubscriptionsBySubscriberName(subscriberName);
-                outputArea.append(result);
+                output.write(result);
             } catch (Exception ex) {
                  JOptionPane.showMessageDialog(MainFrame.this, "An unexpected error occurred: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
                  ex.printStackTrace();
@@ -767,7 +836,7 @@ public class MainFrame extends JFrame {
             try {
                 String issn = issnField.getText();
                 String result = distributor.listSubscriptionsByJournalIssn(issn);
-                outputArea.append(result);
+                output.write(result);
             } catch (Exception ex) {
                  JOptionPane.showMessageDialog(MainFrame.this, "An unexpected error occurred: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
                  ex.printStackTrace();
@@ -802,6 +871,27 @@ public class MainFrame extends JFrame {
         }
     }
 
+    private class ListExpiringSubscriptionsActionListener implements ActionListener {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            try {
+                int fromMonth = Integer.parseInt(renewalFromMonthField.getText().trim());
+                int fromYear = Integer.parseInt(renewalFromYearField.getText().trim());
+                int toMonth = Integer.parseInt(renewalToMonthField.getText().trim());
+                int toYear = Integer.parseInt(renewalToYearField.getText().trim());
+                String result = distributor.listExpiringSubscriptions(fromMonth, fromYear, toMonth, toYear);
+                output.write(result);
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(MainFrame.this, "Invalid number format for the renewal months.", "Input Error", JOptionPane.ERROR_MESSAGE);
+            } catch (IllegalArgumentException ex) {
+                 JOptionPane.showMessageDialog(MainFrame.this, ex.getMessage(), "Input Error", JOptionPane.ERROR_MESSAGE);
+            } catch (Exception ex) {
+                 JOptionPane.showMessageDialog(MainFrame.this, "An unexpected error occurred: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                 ex.printStackTrace();
+            }
+        }
+    }
+
     private class SaveStateActionListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
@@ -826,6 +916,94 @@ public class MainFrame extends JFrame {
         }
     }
 
+    private class LoadMappedStateActionListener implements ActionListener {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            String fileName = stateFileNameField.getText();
+            if (fileName == null || fileName.trim().isEmpty()) {
+                 JOptionPane.showMessageDialog(MainFrame.this, "Please enter a file name to load the state from.", "Input Error", JOptionPane.ERROR_MESSAGE);
+                 return;
+            }
+            distributor.loadStateMapped(fileName);
+        }
+    }
+
+    private class LoadOffHeapStateActionListener implements ActionListener {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            String fileName = stateFileNameField.getText();
+            if (fileName == null || fileName.trim().isEmpty()) {
+                 JOptionPane.showMessageDialog(MainFrame.this, "Please enter a file name to load the state from.", "Input Error", JOptionPane.ERROR_MESSAGE);
+                 return;
+            }
+            distributor.loadStateOffHeap(fileName);
+        }
+    }
+
+    private class RecoverStateActionListener implements ActionListener {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            String fileName = stateFileNameField.getText();
+            if (fileName == null || fileName.trim().isEmpty()) {
+                 JOptionPane.showMessageDialog(MainFrame.this, "Please enter a file name to recover the state from.", "Input Error", JOptionPane.ERROR_MESSAGE);
+                 return;
+            }
+            distributor.recoverState(fileName);
+        }
+    }
+
+    private class ImportCsvActionListener implements ActionListener {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            chooser.setDialogTitle("Folder with journals.csv, individuals.csv, corporations.csv, subscriptions.csv");
+            if (chooser.showOpenDialog(MainFrame.this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            Path directory = chooser.getSelectedFile().toPath();
+            output.write("Importing CSV files from " + directory + "...\n");
+            // Large imports take a while; run them off the Event Dispatch Thread.
+            Thread importThread = new Thread(() -> {
+                StringBuilder result = new StringBuilder();
+                try {
+                    for (CsvImporter.Summary summary : new CsvImporter(distributor).importDirectory(directory)) {
+                        result.append(summary);
+                    }
+                } catch (IOException ex) {
+                    result.append("Import failed: ").append(ex.getMessage()).append("\n");
+                }
+                output.write(result.toString());
+            }, "csv-import");
+            importThread.setDaemon(true);
+            importThread.start();
+        }
+    }
+
+    private class ImportStatementActionListener implements ActionListener {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setDialogTitle("Bank statement CSV (date, issn, subscriber_name, amount)");
+            if (chooser.showOpenDialog(MainFrame.this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            Path statement = chooser.getSelectedFile().toPath();
+            output.write("Reconciling payments in " + statement + "...\n");
+            Thread reconcileThread = new Thread(() -> {
+                String result;
+                try {
+                    result = new PaymentReconciler(distributor).reconcile(statement).toString();
+                } catch (IOException ex) {
+                    result = "Reconciliation failed: " + ex.getMessage() + "\n";
+                }
+                output.write(result);
+            }, "statement-import");
+            reconcileThread.setDaemon(true);
+            reconcileThread.start();
+        }
+    }
+
 
     // --- Main Method ---
     public static void main(String[] args) {
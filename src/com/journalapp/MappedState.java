@@ -0,0 +1,560 @@
+package com.journalapp;
+
+import com.journalapp.model.*;
+import com.journalapp.util.AppendOnlyList;
+import com.journalapp.util.IntArrayList;
+import com.journalapp.util.LongArrayList;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A snapshot whose subscription and transaction records are kept outside the Java heap
+ * instead of being read into objects: either mapped from the file with FileChannel.map
+ * ({@link #open(Path)}), or copied into direct buffers ({@link #copy(Path)}) so that the
+ * file is not needed once loaded. Either way the records keep their fixed snapshot layout.
+ *
+ * Journals and subscribers are decoded up front. Subscriptions and their payment
+ * transactions stay in the records, and payments and copy increases made since the load are
+ * kept beside them in an off-heap change log (see {@link Changes}). The primitive accessors,
+ * a {@link SubscriptionRecord} flyweight, or the {@link RecordSubscription} that
+ * {@link #subscription(int)} returns read the record and its changes in place, so neither
+ * scans nor payments build a Subscription, and the heap does not grow with the records.
+ *
+ * All methods may be called concurrently. Changes to one subscription must not be made
+ * concurrently; callers lock {@link #monitor(int)} around them.
+ */
+final class MappedState {
+    // Each mapped region holds a whole number of records and stays well below the 2 GB limit.
+    private static final long MAX_REGION_SIZE = 1L << 30;
+
+    private static final int MONITOR_COUNT = 64;
+
+    private final StateSnapshot.Header header;
+    private final Journal[] journals;
+    private final AppendOnlyList<Subscriber> subscribers;
+    private final Map<Subscriber, Integer> subscriberPositions;
+    private final IntArrayList[] subscriptionsBySubscriber;
+    private final Section subscriptionRecords;
+    private final Section transactionRecords;
+    private final Changes changes;
+    private final Object[] monitors = new Object[MONITOR_COUNT];
+
+    // Set once the distributor has built every subscription (see build): from then on the
+    // built subscriptions are the current ones, and the accessors read them instead.
+    private volatile List<Subscription> built;
+
+    private final boolean offHeap;
+
+    private MappedState(FileChannel channel, Path file, boolean offHeap) throws IOException {
+        this.offHeap = offHeap;
+        StateSnapshot.Directory directory = StateSnapshot.readDirectory(channel);
+        this.header = directory.header;
+        long expectedSize = header.transactionsOffset + header.transactionCount * StateSnapshot.TRANSACTION_RECORD_SIZE;
+        if (channel.size() < expectedSize) {
+            throw new IOException("Snapshot file " + file + " is truncated.");
+        }
+
+        this.journals = directory.journals;
+        this.subscribers = directory.subscribers;
+        this.subscriberPositions = new IdentityHashMap<>(header.subscriberCount);
+        for (int i = 0; i < header.subscriberCount; i++) {
+            subscriberPositions.put(subscribers.get(i), i);
+        }
+
+        this.subscriptionRecords = new Section(this, channel, header.subscriptionsOffset, header.subscriptionCount, StateSnapshot.SUBSCRIPTION_RECORD_SIZE);
+        this.transactionRecords = new Section(this, channel, header.transactionsOffset, header.transactionCount, StateSnapshot.TRANSACTION_RECORD_SIZE);
+        this.changes = new Changes(header.subscriptionCount);
+        for (int m = 0; m < monitors.length; m++) {
+            monitors[m] = new Object();
+        }
+
+        this.subscriptionsBySubscriber = new IntArrayList[header.subscriberCount];
+        for (int i = 0; i < header.subscriptionCount; i++) {
+            int subscriber = subscriberIndex(i);
+            if (subscriptionsBySubscriber[subscriber] == null) {
+                subscriptionsBySubscriber[subscriber] = new IntArrayList(2);
+            }
+            subscriptionsBySubscriber[subscriber].add(i);
+        }
+    }
+
+    /**
+     * Maps a snapshot file. The records are paged in from the file as they are read.
+     */
+    static MappedState open(Path file) throws IOException {
+        return open(file, false);
+    }
+
+    /**
+     * Copies the records of a snapshot file into direct buffers. They take memory outside
+     * the heap (limited by -XX:MaxDirectMemorySize) instead of page cache, and the file can be
+     * replaced or removed once this returns.
+     */
+    static MappedState copy(Path file) throws IOException {
+        return open(file, true);
+    }
+
+    private static MappedState open(Path file, boolean offHeap) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MappedState(channel, file, offHeap);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IOException("Corrupt snapshot file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Gets a region of the file, mapped or copied into a direct buffer. Regions are at most
+     * MAX_REGION_SIZE bytes (see Section).
+     */
+    private ByteBuffer region(FileChannel channel, long offset, long size) throws IOException {
+        if (!offHeap) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+        }
+        ByteBuffer copy = ByteBuffer.allocateDirect((int) size);
+        while (copy.hasRemaining()) {
+            if (channel.read(copy, offset + copy.position()) < 0) {
+                throw new IOException("Snapshot file ended early.");
+            }
+        }
+        return copy.flip();
+    }
+
+    /**
+     * Whether the records were copied into direct buffers rather than mapped.
+     */
+    boolean isOffHeap() {
+        return offHeap;
+    }
+
+    long lastLsn() {
+        return header.lastLsn;
+    }
+
+    ConcurrentHashMap<String, Journal> journals() {
+        ConcurrentHashMap<String, Journal> byIssn = new ConcurrentHashMap<>(Math.max(16, journals.length * 2));
+        for (Journal journal : journals) {
+            byIssn.put(journal.getIssn(), journal);
+        }
+        return byIssn;
+    }
+
+    /**
+     * Gets the subscribers of the snapshot. The distributor appends new subscribers to this
+     * list; the positions stored in the subscription records stay valid.
+     */
+    AppendOnlyList<Subscriber> subscribers() {
+        return subscribers;
+    }
+
+    int subscriptionCount() {
+        return header.subscriptionCount;
+    }
+
+    /**
+     * Gets the subscription at a position: a new {@link RecordSubscription} over the record,
+     * or the built subscription once there is one.
+     */
+    Subscription subscription(int i) {
+        List<Subscription> subscriptions = built;
+        return subscriptions != null ? subscriptions.get(i) : new RecordSubscription(this, i);
+    }
+
+    /**
+     * Finds the subscription of a subscriber to a journal, as {@link #subscription(int)}.
+     */
+    Subscription findSubscription(String issn, Subscriber subscriber) {
+        Integer position = subscriberPositions.get(subscriber);
+        IntArrayList candidates = position == null ? null : subscriptionsBySubscriber[position];
+        if (candidates != null) {
+            for (int c = 0; c < candidates.size(); c++) {
+                int i = candidates.get(c);
+                if (journal(i).getIssn().equals(issn)) {
+                    return subscription(i);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the lock that changes to the subscription at a position are made under: one of a
+     * fixed set shared between records, or the built subscription once there is one.
+     */
+    Object monitor(int i) {
+        Subscription subscription = builtSubscription(i);
+        return subscription != null ? subscription : monitors[i % MONITOR_COUNT];
+    }
+
+    /**
+     * Builds the subscription at a position on the heap: the record, and then every change
+     * since the load at its own version.
+     */
+    Subscription build(int i) {
+        List<Subscription> subscriptions = built;
+        if (subscriptions != null) {
+            return subscriptions.get(i);
+        }
+        int startEpochMonth = startEpochMonth(i);
+        Subscription subscription = new Subscription(new DateInfo(EpochDates.monthOf(startEpochMonth), EpochDates.yearOf(startEpochMonth)),
+                                                     recordCopies(i), journal(i), subscriber(i), discountRatio(i));
+        long first = firstTransaction(i);
+        for (long t = first, end = first + recordTransactionCount(i); t < end; t++) {
+            subscription.getPayment().recordPayment(transactionAmountInCents(t), transactionEpochDay(t), 0);
+        }
+        LongArrayList newestFirst = new LongArrayList();
+        for (long e = changes.newest(i); e != Changes.NONE; e = changes.previous(e)) {
+            newestFirst.add(e);
+        }
+        for (int n = newestFirst.size() - 1; n >= 0; n--) {
+            long e = newestFirst.get(n);
+            if (changes.isPayment(e)) {
+                subscription.getPayment().recordPayment(changes.amountInCents(e), changes.epochDay(e), changes.version(e));
+            } else {
+                subscription.increaseCopies(changes.version(e));
+            }
+        }
+        return subscription;
+    }
+
+    /**
+     * Records that every subscription has been built, in position order, and that the built
+     * ones now hold the changes. Called with no change in progress.
+     */
+    void builtAs(List<Subscription> subscriptions) {
+        built = subscriptions;
+    }
+
+    // --- Changes since the load, made under monitor(i) ---
+
+    void addPayment(int i, long amountInCents, int epochDay, long version) {
+        Subscription subscription = builtSubscription(i);
+        if (subscription != null) {
+            subscription.getPayment().recordPayment(amountInCents, epochDay, version);
+        } else {
+            changes.add(i, Changes.PAYMENT, amountInCents, epochDay, version);
+        }
+    }
+
+    void increaseCopies(int i, long version) {
+        Subscription subscription = builtSubscription(i);
+        if (subscription != null) {
+            subscription.increaseCopies(version);
+        } else {
+            changes.add(i, Changes.COPIES, 0, 0, version);
+        }
+    }
+
+    private Subscription builtSubscription(int i) {
+        List<Subscription> subscriptions = built;
+        return subscriptions == null ? null : subscriptions.get(i);
+    }
+
+    // --- Record fields, read from the mapping ---
+
+    Journal journal(int i) {
+        return journals[subscriptionRecords.buffer(i).getInt(subscriptionRecords.offset(i))];
+    }
+
+    int subscriberIndex(int i) {
+        return subscriptionRecords.buffer(i).getInt(subscriptionRecords.offset(i) + 4);
+    }
+
+    Subscriber subscriber(int i) {
+        return subscribers.get(subscriberIndex(i));
+    }
+
+    int startEpochMonth(int i) {
+        return subscriptionRecords.buffer(i).getInt(subscriptionRecords.offset(i) + 8);
+    }
+
+    private int recordCopies(int i) {
+        return subscriptionRecords.buffer(i).getInt(subscriptionRecords.offset(i) + 12);
+    }
+
+    private int recordTransactionCount(int i) {
+        return subscriptionRecords.buffer(i).getInt(subscriptionRecords.offset(i) + 16);
+    }
+
+    double discountRatio(int i) {
+        return subscriptionRecords.buffer(i).getDouble(subscriptionRecords.offset(i) + 20);
+    }
+
+    private long recordReceivedPaymentInCents(int i) {
+        return subscriptionRecords.buffer(i).getLong(subscriptionRecords.offset(i) + 28);
+    }
+
+    private long firstTransaction(int i) {
+        return subscriptionRecords.buffer(i).getLong(subscriptionRecords.offset(i) + 36);
+    }
+
+    private long transactionAmountInCents(long t) {
+        return transactionRecords.buffer(t).getLong(transactionRecords.offset(t));
+    }
+
+    private int transactionEpochDay(long t) {
+        return transactionRecords.buffer(t).getInt(transactionRecords.offset(t) + 8);
+    }
+
+    // --- Current values and values as of a distributor version: the record with the changes
+    // made at or before the version. Changes are read newest first, so the walk stops at the
+    // first one that is not newer than the version. ---
+
+    int copies(int i) {
+        return copiesAsOf(i, Long.MAX_VALUE);
+    }
+
+    int copiesAsOf(int i, long version) {
+        Subscription subscription = builtSubscription(i);
+        if (subscription != null) {
+            return subscription.getCopiesAsOf(version);
+        }
+        int copies = recordCopies(i);
+        for (long e = changes.newestAsOf(i, version); e != Changes.NONE; e = changes.previous(e)) {
+            if (!changes.isPayment(e)) {
+                copies++;
+            }
+        }
+        return copies;
+    }
+
+    int transactionCount(int i) {
+        return transactionCountAsOf(i, Long.MAX_VALUE);
+    }
+
+    int transactionCountAsOf(int i, long version) {
+        Subscription subscription = builtSubscription(i);
+        if (subscription != null) {
+            return subscription.getPayment().getTransactionCountAsOf(version);
+        }
+        return recordTransactionCount(i) + paymentsSince(changes.newestAsOf(i, version));
+    }
+
+    long receivedPaymentInCents(int i) {
+        return receivedPaymentInCentsAsOf(i, Long.MAX_VALUE);
+    }
+
+    long receivedPaymentInCentsAsOf(int i, long version) {
+        Subscription subscription = builtSubscription(i);
+        if (subscription != null) {
+            return subscription.getPayment().getReceivedPaymentInCentsAsOf(version);
+        }
+        long received = recordReceivedPaymentInCents(i);
+        for (long e = changes.newestAsOf(i, version); e != Changes.NONE; e = changes.previous(e)) {
+            if (changes.isPayment(e)) {
+                received += changes.amountInCents(e);
+            }
+        }
+        return received;
+    }
+
+    /**
+     * Gets the amount of the index-th payment of the subscription at position i, counting
+     * from its first payment in the snapshot.
+     */
+    long paymentAmountInCents(int i, int index) {
+        Subscription subscription = builtSubscription(i);
+        if (subscription != null) {
+            return subscription.getPayment().getTransactionAmountInCents(index);
+        }
+        int recorded = recordTransactionCount(i);
+        return index < recorded ? transactionAmountInCents(transaction(i, index, recorded)) : changes.amountInCents(paymentSince(i, index - recorded));
+    }
+
+    int paymentEpochDay(int i, int index) {
+        Subscription subscription = builtSubscription(i);
+        if (subscription != null) {
+            return subscription.getPayment().getTransactionEpochDay(index);
+        }
+        int recorded = recordTransactionCount(i);
+        return index < recorded ? transactionEpochDay(transaction(i, index, recorded)) : changes.epochDay(paymentSince(i, index - recorded));
+    }
+
+    /**
+     * Gets the version the index-th payment was made at: 0 for one in the snapshot.
+     */
+    long paymentVersion(int i, int index) {
+        Subscription subscription = builtSubscription(i);
+        if (subscription != null) {
+            return subscription.getPayment().getTransactionVersion(index);
+        }
+        int recorded = recordTransactionCount(i);
+        if (index < recorded) {
+            transaction(i, index, recorded);
+            return 0;
+        }
+        return changes.version(paymentSince(i, index - recorded));
+    }
+
+    private long transaction(int i, int index, int recorded) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + recorded + " transactions");
+        }
+        return firstTransaction(i) + index;
+    }
+
+    private int paymentsSince(long newest) {
+        int count = 0;
+        for (long e = newest; e != Changes.NONE; e = changes.previous(e)) {
+            if (changes.isPayment(e)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Finds the n-th payment made since the load, counting from the oldest.
+    private long paymentSince(int i, int n) {
+        long newest = changes.newest(i);
+        int skip = paymentsSince(newest) - 1 - n;
+        if (n < 0 || skip < 0) {
+            throw new IndexOutOfBoundsException("Payment " + n + " since the load out of bounds for subscription " + i);
+        }
+        for (long e = newest; ; e = changes.previous(e)) {
+            if (changes.isPayment(e) && skip-- == 0) {
+                return e;
+            }
+        }
+    }
+
+    /**
+     * A run of fixed-width records, held in regions of whole records.
+     */
+    private static final class Section {
+        private final int recordSize;
+        private final int recordsPerRegion;
+        private final ByteBuffer[] regions;
+
+        Section(MappedState state, FileChannel channel, long offset, long count, int recordSize) throws IOException {
+            this.recordsPerRegion = (int) (MAX_REGION_SIZE / recordSize);
+            int regionCount = (int) ((count + recordsPerRegion - 1) / recordsPerRegion);
+            this.regions = new ByteBuffer[regionCount];
+            for (int r = 0; r < regionCount; r++) {
+                long first = (long) r * recordsPerRegion;
+                long records = Math.min(recordsPerRegion, count - first);
+                regions[r] = state.region(channel, offset + first * recordSize, records * recordSize);
+            }
+            this.recordSize = recordSize;
+        }
+
+        ByteBuffer buffer(long index) {
+            return regions[(int) (index / recordsPerRegion)];
+        }
+
+        int offset(long index) {
+            return (int) (index % recordsPerRegion) * recordSize;
+        }
+    }
+
+    /**
+     * The payments and copy increases made to the records since the load, outside the heap.
+     *
+     * Each change is a fixed-size entry in direct buffers of ENTRIES_PER_CHUNK entries:
+     * the entry before it for the same subscription, its version, the amount and day of a
+     * payment, and its kind. Each subscription's newest entry is kept in direct buffers of
+     * HEADS_PER_REGION positions, allocated when a subscription in their range first changes.
+     * Entry numbers start at 1, so 0 (NONE) means no entry.
+     *
+     * Adds are serialized; reads take no lock. An add writes its entry before publishing it
+     * as the newest, so a reader that sees an entry sees all of it.
+     */
+    private static final class Changes {
+        static final long NONE = 0;
+        static final int PAYMENT = 1;
+        static final int COPIES = 2;
+
+        private static final int ENTRY_SIZE = 32;
+        private static final int ENTRIES_PER_CHUNK = 1 << 15;
+        private static final int HEADS_PER_REGION = 1 << 17;
+        private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+        private final AtomicReferenceArray<ByteBuffer> heads;
+        private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+        private long entryCount; // Guarded by this
+
+        Changes(int subscriptionCount) {
+            this.heads = new AtomicReferenceArray<>((subscriptionCount + HEADS_PER_REGION - 1) / HEADS_PER_REGION);
+        }
+
+        synchronized void add(int i, int kind, long amountInCents, int epochDay, long version) {
+            long entry = ++entryCount;
+            int chunk = (int) ((entry - 1) / ENTRIES_PER_CHUNK);
+            ByteBuffer[] current = chunks;
+            if (chunk == current.length) {
+                current = Arrays.copyOf(current, chunk + 1);
+                current[chunk] = ByteBuffer.allocateDirect(ENTRIES_PER_CHUNK * ENTRY_SIZE);
+                chunks = current;
+            }
+            ByteBuffer region = heads.get(i / HEADS_PER_REGION);
+            if (region == null) {
+                region = ByteBuffer.allocateDirect(HEADS_PER_REGION * 8);
+                heads.set(i / HEADS_PER_REGION, region);
+            }
+            int headOffset = (i % HEADS_PER_REGION) * 8;
+            ByteBuffer b = current[chunk];
+            int offset = offset(entry);
+            b.putLong(offset, (long) LONGS.getAcquire(region, headOffset));
+            b.putLong(offset + 8, version);
+            b.putLong(offset + 16, amountInCents);
+            b.putInt(offset + 24, epochDay);
+            b.putInt(offset + 28, kind);
+            LONGS.setRelease(region, headOffset, entry); // Publishes the entry
+        }
+
+        long newest(int i) {
+            ByteBuffer region = heads.get(i / HEADS_PER_REGION);
+            return region == null ? NONE : (long) LONGS.getAcquire(region, (i % HEADS_PER_REGION) * 8);
+        }
+
+        /**
+         * Gets the newest entry of a subscription made at or before a version.
+         */
+        long newestAsOf(int i, long version) {
+            long e = newest(i);
+            while (e != NONE && version(e) > version) {
+                e = previous(e);
+            }
+            return e;
+        }
+
+        long previous(long entry) {
+            return chunk(entry).getLong(offset(entry));
+        }
+
+        long version(long entry) {
+            return chunk(entry).getLong(offset(entry) + 8);
+        }
+
+        long amountInCents(long entry) {
+            return chunk(entry).getLong(offset(entry) + 16);
+        }
+
+        int epochDay(long entry) {
+            return chunk(entry).getInt(offset(entry) + 24);
+        }
+
+        boolean isPayment(long entry) {
+            return chunk(entry).getInt(offset(entry) + 28) == PAYMENT;
+        }
+
+        private ByteBuffer chunk(long entry) {
+            return chunks[(int) ((entry - 1) / ENTRIES_PER_CHUNK)];
+        }
+
+        private static int offset(long entry) {
+            return (int) ((entry - 1) % ENTRIES_PER_CHUNK) * ENTRY_SIZE;
+        }
+    }
+}
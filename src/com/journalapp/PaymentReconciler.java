@@ -0,0 +1,355 @@
+package com.journalapp;
+
+import com.journalapp.model.*;
+import com.journalapp.util.CsvReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Matches the payments in a bank statement file to subscriptions and applies them in one batch.
+ *
+ * The statement is a CSV file with a header row and the columns
+ * {@code date, issn, subscriber_name, amount} (in any order; dates as yyyy-MM-dd). A payment
+ * matches the subscription to its journal held by a subscriber with its name. The match is a
+ * hash join: the statement's payments are hashed by ISSN and subscriber name, and one pass
+ * over the subscriptions probes the table, so a statement costs one scan however many
+ * payments it holds. Each payment then ends up in one of four groups:
+ * <ul>
+ * <li>matched: exactly one subscription; the payment is applied with its statement date</li>
+ * <li>rejected: exactly one subscription, but the distributor did not accept the payment,
+ *     for instance because its write-ahead log failed</li>
+ * <li>unmatched: no subscription, or a row that could not be read</li>
+ * <li>ambiguous: several subscribers of that name hold the journal; the payment is not applied</li>
+ * </ul>
+ */
+public class PaymentReconciler {
+    private final Distributor distributor;
+
+    public PaymentReconciler(Distributor distributor) {
+        if (distributor == null) {
+            throw new IllegalArgumentException("Distributor cannot be null.");
+        }
+        this.distributor = distributor;
+    }
+
+    /**
+     * One payment line of a statement and the subscriptions it matched.
+     */
+    public static final class StatementPayment {
+        private final long line;
+        private final String issn;
+        private final String subscriberName;
+        private final PaymentTransaction payment;
+        private final List<Subscription> candidates = new ArrayList<>(1);
+        private String problem; // Why the row could not be used, if it could not
+        private boolean applied;
+
+        StatementPayment(long line, String issn, String subscriberName, PaymentTransaction payment) {
+            this.line = line;
+            this.issn = issn;
+            this.subscriberName = subscriberName;
+            this.payment = payment;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public String getIssn() {
+            return issn;
+        }
+
+        public String getSubscriberName() {
+            return subscriberName;
+        }
+
+        /**
+         * Gets the amount and date of the payment, or null if the row could not be read.
+         */
+        public PaymentTransaction getPayment() {
+            return payment;
+        }
+
+        /**
+         * Gets the subscriptions the payment matched: one if matched, several if ambiguous.
+         */
+        public List<Subscription> getCandidates() {
+            return candidates;
+        }
+
+        public String getProblem() {
+            return problem;
+        }
+
+        /**
+         * Whether the distributor accepted the payment.
+         */
+        public boolean isApplied() {
+            return applied;
+        }
+    }
+
+    /**
+     * The outcome of reconciling a statement.
+     */
+    public static final class Reconciliation {
+        private final String statement;
+        private boolean applied;
+        private final List<StatementPayment> matched = new ArrayList<>();
+        private final List<StatementPayment> rejected = new ArrayList<>();
+        private final List<StatementPayment> unmatched = new ArrayList<>();
+        private final List<StatementPayment> ambiguous = new ArrayList<>();
+
+        Reconciliation(String statement) {
+            this.statement = statement;
+        }
+
+        public List<StatementPayment> getMatched() {
+            return matched;
+        }
+
+        /**
+         * Gets the matched payments that the distributor did not accept when they were applied.
+         */
+        public List<StatementPayment> getRejected() {
+            return rejected;
+        }
+
+        public List<StatementPayment> getUnmatched() {
+            return unmatched;
+        }
+
+        public List<StatementPayment> getAmbiguous() {
+            return ambiguous;
+        }
+
+        /**
+         * Whether the matched payments were applied, rather than only matched. False for a dry
+         * run, and when every matched payment was rejected.
+         */
+        public boolean isApplied() {
+            return applied;
+        }
+
+        private static String total(List<StatementPayment> payments) {
+            long total = 0;
+            for (StatementPayment payment : payments) {
+                if (payment.payment != null) {
+                    total += payment.payment.getAmountInCents();
+                }
+            }
+            return Money.format(total);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder("--- Reconciliation of " + statement + " ---\n");
+            text.append(String.format("Matched:   %d payments, %s%s%n", matched.size(), total(matched), applied ? " (applied)" : " (not applied)"));
+            if (!rejected.isEmpty()) {
+                text.append(String.format("Rejected:  %d payments, %s (not applied)%n", rejected.size(), total(rejected)));
+            }
+            text.append(String.format("Unmatched: %d payments, %s%n", unmatched.size(), total(unmatched)));
+            text.append(String.format("Ambiguous: %d payments, %s%n", ambiguous.size(), total(ambiguous)));
+            for (StatementPayment payment : rejected) {
+                text.append("- Rejected, line ").append(payment.line).append(": ").append(payment.problem).append("\n");
+            }
+            for (StatementPayment payment : unmatched) {
+                text.append("- Unmatched, line ").append(payment.line).append(": ").append(payment.problem).append("\n");
+            }
+            for (StatementPayment payment : ambiguous) {
+                text.append("- Ambiguous, line ").append(payment.line).append(": ").append(payment.candidates.size())
+                    .append(" subscribers named ").append(payment.subscriberName).append(" hold ").append(payment.issn).append(".\n");
+            }
+            text.append("--------------------------------------------\n");
+            return text.toString();
+        }
+    }
+
+    /**
+     * Reads a statement, matches its payments and applies the matched ones.
+     */
+    public Reconciliation reconcile(Path statement) throws IOException {
+        return reconcile(statement, true);
+    }
+
+    /**
+     * Reads a statement and matches its payments, applying the matched ones only if asked to.
+     * Matched payments that the distributor does not accept are moved to the rejected group.
+     */
+    public Reconciliation reconcile(Path statement, boolean apply) throws IOException {
+        List<StatementPayment> payments = read(statement);
+
+        // Build side: the statement, by ISSN and then subscriber name.
+        Map<String, Map<String, List<StatementPayment>>> byIssnAndName = new HashMap<>();
+        for (StatementPayment payment : payments) {
+            if (payment.problem == null) {
+                byIssnAndName.computeIfAbsent(payment.issn, k -> new HashMap<>())
+                             .computeIfAbsent(payment.subscriberName, k -> new ArrayList<>(1))
+                             .add(payment);
+            }
+        }
+
+        // Probe side: one pass over the subscriptions.
+        for (Subscription subscription : distributor.getAllSubscriptions()) {
+            Map<String, List<StatementPayment>> byName = byIssnAndName.get(subscription.getJournal().getIssn());
+            if (byName == null) {
+                continue;
+            }
+            List<StatementPayment> matching = byName.get(subscription.getSubscriber().getName());
+            if (matching != null) {
+                for (StatementPayment payment : matching) {
+                    payment.candidates.add(subscription);
+                }
+            }
+        }
+
+        Reconciliation reconciliation = new Reconciliation(statement.toString());
+        for (StatementPayment payment : payments) {
+            if (payment.problem != null) {
+                reconciliation.unmatched.add(payment);
+            } else if (payment.candidates.isEmpty()) {
+                payment.problem = distributor.searchJournal(payment.issn) == null
+                        ? "No journal with ISSN " + payment.issn + "."
+                        : "No subscription to " + payment.issn + " for " + payment.subscriberName + ".";
+                reconciliation.unmatched.add(payment);
+            } else if (payment.candidates.size() > 1) {
+                reconciliation.ambiguous.add(payment);
+            } else {
+                reconciliation.matched.add(payment);
+            }
+        }
+
+        if (apply && !reconciliation.matched.isEmpty()) {
+            List<Subscription> subscriptions = new ArrayList<>(reconciliation.matched.size());
+            List<PaymentTransaction> transactions = new ArrayList<>(reconciliation.matched.size());
+            for (StatementPayment payment : reconciliation.matched) {
+                subscriptions.add(payment.candidates.get(0));
+                transactions.add(payment.payment);
+            }
+            boolean[] accepted = distributor.acceptPayments(subscriptions, transactions);
+            List<StatementPayment> matched = new ArrayList<>(reconciliation.matched);
+            reconciliation.matched.clear();
+            for (int i = 0; i < accepted.length; i++) {
+                StatementPayment payment = matched.get(i);
+                payment.applied = accepted[i];
+                if (accepted[i]) {
+                    reconciliation.matched.add(payment);
+                } else {
+                    payment.problem = "The distributor did not accept the payment.";
+                    reconciliation.rejected.add(payment);
+                }
+            }
+            reconciliation.applied = !reconciliation.matched.isEmpty();
+        }
+        return reconciliation;
+    }
+
+    private static List<StatementPayment> read(Path statement) throws IOException {
+        List<StatementPayment> payments = new ArrayList<>();
+        try (CsvReader reader = new CsvReader(Files.newBufferedReader(statement, StandardCharsets.UTF_8))) {
+            String[] header = reader.next();
+            if (header == null) {
+                throw new IOException(statement + " is empty; a header row is required.");
+            }
+            int date = column(header, "date", statement);
+            int issn = column(header, "issn", statement);
+            int name = column(header, "subscriber_name", statement);
+            int amount = column(header, "amount", statement);
+            int width = Math.max(Math.max(date, issn), Math.max(name, amount)) + 1;
+
+            String[] row;
+            while ((row = reader.next()) != null) {
+                if (row.length == 1 && row[0].trim().isEmpty()) {
+                    continue;
+                }
+                long line = reader.getLineNumber();
+                if (row.length < width) {
+                    StatementPayment payment = new StatementPayment(line, null, null, null);
+                    payment.problem = "Expected at least " + width + " columns, found " + row.length + ".";
+                    payments.add(payment);
+                    continue;
+                }
+                String rowIssn = row[issn].trim();
+                String rowName = row[name].trim();
+                try {
+                    LocalDate paymentDate = LocalDate.parse(row[date].trim());
+                    Calendar calendar = new GregorianCalendar(paymentDate.getYear(), paymentDate.getMonthValue() - 1, paymentDate.getDayOfMonth());
+                    payments.add(new StatementPayment(line, rowIssn, rowName, new PaymentTransaction(Double.parseDouble(row[amount].trim()), calendar)));
+                } catch (DateTimeParseException e) {
+                    StatementPayment payment = new StatementPayment(line, rowIssn, rowName, null);
+                    payment.problem = "Invalid date '" + row[date].trim() + "'; expected yyyy-MM-dd.";
+                    payments.add(payment);
+                } catch (IllegalArgumentException e) {
+                    StatementPayment payment = new StatementPayment(line, rowIssn, rowName, null);
+                    payment.problem = e instanceof NumberFormatException ? "Invalid amount '" + row[amount].trim() + "'." : e.getMessage();
+                    payments.add(payment);
+                }
+            }
+        }
+        return payments;
+    }
+
+    private static int column(String[] header, String name, Path statement) throws IOException {
+        for (int i = 0; i < header.length; i++) {
+            String column = header[i].trim().toLowerCase(Locale.ROOT);
+            if (i == 0 && column.startsWith("\uFEFF")) {
+                column = column.substring(1); // Byte order mark
+            }
+            if (column.equals(name)) {
+                return i;
+            }
+        }
+        throw new IOException(statement + " has no '" + name + "' column.");
+    }
+
+    /**
+     * Reconciles a statement against a snapshot, applying the matched payments and saving the
+     * snapshot again. Usage: PaymentReconciler &lt;snapshot file&gt; &lt;statement file&gt; [--dry-run]
+     */
+    public static void main(String[] args) {
+        int status = run(args);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Runs {@link #main(String[])} and returns its exit status.
+     */
+    static int run(String[] args) {
+        boolean dryRun = args.length == 3 && args[2].equals("--dry-run");
+        if (args.length != 2 && !dryRun) {
+            System.err.println("Usage: PaymentReconciler <snapshot file> <statement file> [--dry-run]");
+            return 1;
+        }
+        Distributor distributor = new Distributor();
+        // Recovery also replays the snapshot's write-ahead log, and fails rather than leave an
+        // empty state that saving would write over the snapshot.
+        if (!distributor.recoverState(args[0])) {
+            System.err.println("Could not load the state from " + args[0] + "; nothing was reconciled.");
+            return 1;
+        }
+        try {
+            System.out.print(new PaymentReconciler(distributor).reconcile(Paths.get(args[1]), !dryRun));
+        } catch (IOException e) {
+            System.err.println("Error reading statement " + args[1] + ": " + e.getMessage());
+            return 1;
+        }
+        if (!dryRun) {
+            distributor.saveState(args[0]);
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,179 @@
+package com.journalapp;
+
+import com.journalapp.model.DateInfo;
+import com.journalapp.model.EpochDates;
+import com.journalapp.model.Money;
+import com.journalapp.model.PaymentInfo;
+import com.journalapp.model.Subscription;
+
+/**
+ * A Subscription over a record of a {@link MappedState}, as returned by lookups on a mapped
+ * or off-heap snapshot. Its copies and payments are read from the record and the changes
+ * since the load, and payments and copy increases are added to those changes, so looking up
+ * or paying a subscription never copies its payments onto the heap.
+ *
+ * Two of them are equal when they are over the same record. Changes are made under
+ * {@link #monitor()} rather than the subscription itself, since each lookup returns a new one.
+ * Serializing one writes the subscription built from its record (see {@link MappedState#build(int)}).
+ */
+final class RecordSubscription extends Subscription {
+    private static final long serialVersionUID = 1L;
+
+    private final transient MappedState records;
+    private final transient int position;
+    private final transient RecordPaymentInfo payment;
+
+    RecordSubscription(MappedState records, int position) {
+        super(dates(records.startEpochMonth(position)), records.copies(position), records.journal(position), records.subscriber(position),
+              records.discountRatio(position));
+        this.records = records;
+        this.position = position;
+        this.payment = new RecordPaymentInfo(records, position);
+    }
+
+    private static DateInfo dates(int startEpochMonth) {
+        return new DateInfo(EpochDates.monthOf(startEpochMonth), EpochDates.yearOf(startEpochMonth));
+    }
+
+    /**
+     * Gets the lock that changes to this subscription are made under.
+     */
+    Object monitor() {
+        return records.monitor(position);
+    }
+
+    @Override
+    public PaymentInfo getPayment() {
+        return payment;
+    }
+
+    @Override
+    public int getCopies() {
+        return records.copies(position);
+    }
+
+    @Override
+    public int getCopiesAsOf(long version) {
+        return records.copiesAsOf(position, version);
+    }
+
+    @Override
+    public void increaseCopies() {
+        increaseCopies(0);
+    }
+
+    @Override
+    public void increaseCopies(long version) {
+        records.increaseCopies(position, version);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RecordSubscription)) {
+            return false;
+        }
+        RecordSubscription other = (RecordSubscription) o;
+        return records == other.records && position == other.position;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(records) + position;
+    }
+
+    private Object writeReplace() {
+        return records.build(position);
+    }
+
+    /**
+     * The payments of a record and those made since the load.
+     */
+    private static final class RecordPaymentInfo extends PaymentInfo {
+        private static final long serialVersionUID = 1L;
+
+        private final transient MappedState records;
+        private final transient int position;
+
+        RecordPaymentInfo(MappedState records, int position) {
+            super(records.discountRatio(position));
+            this.records = records;
+            this.position = position;
+        }
+
+        @Override
+        public void recordPayment(long amountInCents, int epochDay, long version) {
+            if (amountInCents <= 0) {
+                System.err.println("Warning: Attempted to record non-positive payment or null date.");
+                return;
+            }
+            records.addPayment(position, amountInCents, epochDay, version);
+        }
+
+        @Override
+        public double getReceivedPayment() {
+            return Money.toAmount(getReceivedPaymentInCents());
+        }
+
+        @Override
+        public long getReceivedPaymentInCents() {
+            return records.receivedPaymentInCents(position);
+        }
+
+        @Override
+        public long getReceivedPaymentInCents(int year) {
+            return receivedInCentsAsOf(year, Long.MAX_VALUE);
+        }
+
+        @Override
+        public double getReceivedPaymentAsOf(int year, long version) {
+            return Money.toAmount(receivedInCentsAsOf(year, version));
+        }
+
+        private long receivedInCentsAsOf(int year, long version) {
+            long total = 0;
+            for (int t = 0, count = records.transactionCountAsOf(position, version); t < count; t++) {
+                if (EpochDates.yearOf(EpochDates.epochMonthOfDay(records.paymentEpochDay(position, t))) == year) {
+                    total += records.paymentAmountInCents(position, t);
+                }
+            }
+            return total;
+        }
+
+        @Override
+        public int getTransactionCount() {
+            return records.transactionCount(position);
+        }
+
+        @Override
+        public long getTransactionAmountInCents(int index) {
+            return records.paymentAmountInCents(position, index);
+        }
+
+        @Override
+        public int getTransactionEpochDay(int index) {
+            return records.paymentEpochDay(position, index);
+        }
+
+        @Override
+        public long getTransactionVersion(int index) {
+            return records.paymentVersion(position, index);
+        }
+
+        @Override
+        public long getReceivedPaymentInCentsAsOf(long version) {
+            return records.receivedPaymentInCentsAsOf(position, version);
+        }
+
+        @Override
+        public int getTransactionCountAsOf(long version) {
+            return records.transactionCountAsOf(position, version);
+        }
+
+        private Object writeReplace() {
+            return records.build(position).getPayment();
+        }
+    }
+}
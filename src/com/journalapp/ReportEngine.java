@@ -0,0 +1,196 @@
+package com.journalapp;
+
+import com.journalapp.model.EpochDates;
+import com.journalapp.model.Journal;
+import com.journalapp.model.Money;
+import com.journalapp.model.Subscriber;
+import com.journalapp.model.Subscription;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Builds the distributor report on a shared fork/join pool.
+ * The distributor finds the expiring subscriptions in its expiry index, and those still in a
+ * snapshot by scanning its records; together they are split into chunks, each chunk formats
+ * its part of the expiring-subscriptions section, and the parts are merged in subscription
+ * order. Snapshot records are read through one {@link SubscriptionRecord} per chunk, so no
+ * Subscription is built for them.
+ * The annual payment totals are taken from the distributor's revenue cube as of the
+ * version the report was requested at, so no payment transaction is read.
+ */
+class ReportEngine {
+    private static final int CHUNK_SIZE = 2048;
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private final MappedState mapped;
+    private final int[] mappedExpiring; // Positions in mapped, which come before expiring
+    private final Subscription[] expiring;
+    private final long[] annualPayments; // In cents, indexed from startYearRange
+    private final int startYearRange;
+    private final int endYearRange;
+    private final String thresholdText;
+
+    /**
+     * @param mapped The snapshot records, or null if every subscription is in expiring.
+     * @param mappedExpiring The positions of the snapshot records expiring after the threshold,
+     *                       in ascending order.
+     * @param expiring The other subscriptions expiring after the threshold, in subscription order
+     *                 (see {@link #firstExpiringEpochMonth(Calendar)}).
+     * @param annualPayments The payments received in each year of the range, in cents.
+     */
+    ReportEngine(MappedState mapped, int[] mappedExpiring, Subscription[] expiring, long[] annualPayments,
+                 Calendar expiryDateThreshold, int startYearRange, int endYearRange) {
+        this.mapped = mapped;
+        this.mappedExpiring = mappedExpiring;
+        this.expiring = expiring;
+        this.annualPayments = annualPayments;
+        this.startYearRange = startYearRange;
+        this.endYearRange = endYearRange;
+        this.thresholdText = formatDate(expiryDateThreshold);
+    }
+
+    /**
+     * Gets the first epoch month whose subscriptions count as expiring after a threshold.
+     *
+     * A subscription expires at the end of the last day of its last issue month. It counts if
+     * that day is after the threshold's, or is the threshold's day and the threshold is at
+     * midnight; so every subscription whose last issue month is the threshold's month or later
+     * counts, except in that month when the threshold is later on the month's last day.
+     */
+    static int firstExpiringEpochMonth(Calendar expiryDateThreshold) {
+        int year = expiryDateThreshold.get(Calendar.YEAR);
+        int month = expiryDateThreshold.get(Calendar.MONTH) + 1;
+        boolean hasTimeOfDay = expiryDateThreshold.get(Calendar.HOUR_OF_DAY) != 0
+                               || expiryDateThreshold.get(Calendar.MINUTE) != 0
+                               || expiryDateThreshold.get(Calendar.SECOND) != 0
+                               || expiryDateThreshold.get(Calendar.MILLISECOND) != 0;
+        int epochMonth = EpochDates.epochMonth(month, year);
+        boolean lastDay = expiryDateThreshold.get(Calendar.DAY_OF_MONTH) == EpochDates.lengthOfMonth(month, year);
+        return lastDay && hasTimeOfDay ? epochMonth + 1 : epochMonth;
+    }
+
+    /**
+     * Runs a task asynchronously on the report pool.
+     * @param task The task to run.
+     */
+    static void submit(Runnable task) {
+        POOL.execute(task);
+    }
+
+    /**
+     * Computes the report. May be called from any thread; the work is split across the report pool.
+     * @return The report text.
+     */
+    String generate() {
+        Partial result = POOL.invoke(new ChunkTask(0, mappedExpiring.length + expiring.length));
+
+        StringBuilder reportContent = new StringBuilder();
+        reportContent.append("--- Distributor Report ---\n");
+        reportContent.append("Generated on: ").append(formatDate(Calendar.getInstance())).append("\n");
+        reportContent.append("------------------------------------\n");
+
+        reportContent.append("\n--- Subscriptions Expiring After ").append(thresholdText).append(" ---\n");
+        if (result.expiring.length() > 0) {
+            reportContent.append(result.expiring);
+        } else {
+            reportContent.append("No subscriptions expiring after the given date.\n");
+        }
+        reportContent.append("----------------------------------------------------\n");
+
+        reportContent.append("\n--- Received Annual Payments in Year Range: ").append(startYearRange).append(" - ").append(endYearRange).append(" ---\n");
+        boolean foundPaymentsInYearRange = false;
+        for (long payments : annualPayments) {
+            foundPaymentsInYearRange |= payments > 0;
+        }
+        if (foundPaymentsInYearRange) {
+            for (int year = startYearRange; year <= endYearRange; year++) {
+                reportContent.append("Year ").append(year).append(": ");
+                Money.append(reportContent, annualPayments[year - startYearRange]).append("\n");
+            }
+        } else {
+            reportContent.append("No payments received within the specified year range.\n");
+        }
+        reportContent.append("----------------------------------------------------------\n");
+
+        reportContent.append("\n--- End of Report ---");
+        return reportContent.toString();
+    }
+
+    private Partial computeChunk(int from, int to) {
+        Partial partial = new Partial();
+        SubscriptionRecord record = from < mappedExpiring.length ? new SubscriptionRecord(mapped) : null;
+        for (int i = from; i < to; i++) {
+            if (i < mappedExpiring.length) {
+                record.moveTo(mappedExpiring[i]);
+                appendExpiring(partial.expiring, record.getJournal(), record.getSubscriber(), record.getLastIssueEpochMonth());
+            } else {
+                Subscription sub = expiring[i - mappedExpiring.length];
+                appendExpiring(partial.expiring, sub.getJournal(), sub.getSubscriber(), sub.getDates().getLastIssueEpochMonth());
+            }
+        }
+        return partial;
+    }
+
+    private static void appendExpiring(StringBuilder sb, Journal journal, Subscriber subscriber, int lastIssueEpochMonth) {
+        // The subscription ends one year after its start date, minus one day.
+        int month = EpochDates.monthOf(lastIssueEpochMonth);
+        int year = EpochDates.yearOf(lastIssueEpochMonth);
+        sb.append("- Journal: ").append(journal.getName())
+          .append(", Subscriber: ").append(subscriber.getName())
+          .append(", Expires: ");
+        appendDate(sb, month, EpochDates.lengthOfMonth(month, year), year);
+        sb.append("\n");
+    }
+
+    private static void appendDate(StringBuilder sb, int month, int day, int year) {
+        if (month < 10) sb.append('0');
+        sb.append(month).append('/');
+        if (day < 10) sb.append('0');
+        sb.append(day).append('/');
+        for (int width = 1000; width > 1 && year < width; width /= 10) {
+            sb.append('0');
+        }
+        sb.append(year);
+    }
+
+    private static String formatDate(Calendar calendar) {
+        SimpleDateFormat sdf = new SimpleDateFormat("MM/dd/yyyy");
+        return sdf.format(calendar.getTime());
+    }
+
+    private static final class Partial {
+        private final StringBuilder expiring = new StringBuilder();
+
+        private Partial merge(Partial right) {
+            expiring.append(right.expiring);
+            return this;
+        }
+    }
+
+    private final class ChunkTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        private ChunkTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= CHUNK_SIZE) {
+                return computeChunk(from, to);
+            }
+            int mid = (from + to) >>> 1;
+            ChunkTask left = new ChunkTask(from, mid);
+            left.fork();
+            Partial right = new ChunkTask(mid, to).compute();
+            return left.join().merge(right);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.journalapp;
+
+import java.util.Calendar;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Payments received, summed by journal, year and month.
+ *
+ * Each journal has a row of monthly totals in cents in a primitive array indexed by
+ * (year - firstYear) * 12 + month - 1, which grows to cover the years paid in. The distributor
+ * adds every payment as it is recorded, so a revenue query over any range of years adds up at
+ * most twelve cells a year for each journal and never reads a payment transaction.
+ *
+ * Adds and reads may run concurrently; each row is locked while it is changed or read.
+ * The distributor's payments take their versions as they are added (see
+ * {@link #add(VersionClock, String, long, Calendar)}), so a report can read totals that hold
+ * exactly the payments before a version of its own without stopping the distributor.
+ */
+class RevenueCube {
+    private final Map<String, Row> rows = new ConcurrentHashMap<>();
+
+    // Versioned adds take the read side, so payments add in parallel; a versioned read takes the
+    // write side for as long as it takes to sum the rows.
+    private final StampedLock versionLock = new StampedLock();
+
+    /**
+     * Totals read at a version of their own, see {@link #annualAtNewVersion}.
+     */
+    static final class VersionedTotals {
+        final long version;
+        final long[] cents;
+
+        VersionedTotals(long version, long[] cents) {
+            this.version = version;
+            this.cents = cents;
+        }
+    }
+
+    /**
+     * The monthly totals of one journal.
+     */
+    private static final class Row {
+        private int firstYear;
+        private long[] months = new long[0];
+
+        synchronized void add(int year, int month, long cents) {
+            if (months.length == 0) {
+                firstYear = year;
+                months = new long[12];
+            } else if (year < firstYear) {
+                long[] grown = new long[months.length + (firstYear - year) * 12];
+                System.arraycopy(months, 0, grown, grown.length - months.length, months.length);
+                months = grown;
+                firstYear = year;
+            } else if ((year - firstYear + 1) * 12 > months.length) {
+                long[] grown = new long[Math.max((year - firstYear + 1) * 12, months.length * 2)];
+                System.arraycopy(months, 0, grown, 0, months.length);
+                months = grown;
+            }
+            months[(year - firstYear) * 12 + month - 1] += cents;
+        }
+
+        /**
+         * Adds this row's totals for the years startYear to endYear to annual, indexed from startYear.
+         */
+        synchronized void addAnnual(int startYear, int endYear, long[] annual) {
+            int from = Math.max(startYear, firstYear);
+            int to = Math.min(endYear, firstYear + months.length / 12 - 1);
+            for (int year = from; year <= to; year++) {
+                int cell = (year - firstYear) * 12;
+                long total = 0;
+                for (int month = 0; month < 12; month++) {
+                    total += months[cell + month];
+                }
+                annual[year - startYear] += total;
+            }
+        }
+
+        /**
+         * Adds this row's totals for the months of a year to monthly, indexed from January.
+         */
+        synchronized void addMonthly(int year, long[] monthly) {
+            if (year >= firstYear && (year - firstYear + 1) * 12 <= months.length) {
+                int cell = (year - firstYear) * 12;
+                for (int month = 0; month < 12; month++) {
+                    monthly[month] += months[cell + month];
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a payment to a journal's total for the year and month of the payment date.
+     */
+    void add(String issn, long cents, Calendar paymentDate) {
+        add(issn, paymentDate.get(Calendar.YEAR), paymentDate.get(Calendar.MONTH) + 1, cents);
+    }
+
+    /**
+     * Adds a payment in cents to a journal's total for a month (1 to 12).
+     */
+    void add(String issn, int year, int month, long cents) {
+        rows.computeIfAbsent(issn, k -> new Row()).add(year, month, cents);
+    }
+
+    /**
+     * Takes the next version from the clock and adds a payment, in one step as far as
+     * {@link #annualAtNewVersion} can tell. The caller records the payment at the returned
+     * version and then publishes it.
+     */
+    long add(VersionClock versions, String issn, long cents, Calendar paymentDate) {
+        long stamp = versionLock.readLock();
+        try {
+            long version = versions.begin();
+            try {
+                add(issn, cents, paymentDate);
+            } catch (RuntimeException | Error e) {
+                versions.publish(version);
+                throw e;
+            }
+            return version;
+        } finally {
+            versionLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Takes the next version from the clock and reads the revenue of each year from startYear
+     * to endYear at it, like {@link #annual}. The totals hold exactly the payments added with
+     * a lower version. The version marks no change of its own; the caller publishes it, which
+     * waits for those payments to be complete, and may then read the distributor as of it.
+     */
+    VersionedTotals annualAtNewVersion(VersionClock versions, String issn, int startYear, int endYear) {
+        long stamp = versionLock.writeLock();
+        try {
+            long version = versions.begin();
+            try {
+                return new VersionedTotals(version, annual(issn, startYear, endYear));
+            } catch (RuntimeException | Error e) {
+                versions.publish(version);
+                throw e;
+            }
+        } finally {
+            versionLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Gets the revenue in cents of each year from startYear to endYear, for one journal or, if
+     * issn is null, for all of them.
+     */
+    long[] annual(String issn, int startYear, int endYear) {
+        long[] annual = new long[Math.max(0, endYear - startYear + 1)];
+        if (issn == null) {
+            for (Row row : rows.values()) {
+                row.addAnnual(startYear, endYear, annual);
+            }
+        } else {
+            Row row = rows.get(issn);
+            if (row != null) {
+                row.addAnnual(startYear, endYear, annual);
+            }
+        }
+        return annual;
+    }
+
+    /**
+     * Gets the revenue in cents of each month of a year, for one journal or, if issn is null,
+     * for all of them.
+     */
+    long[] monthly(String issn, int year) {
+        long[] monthly = new long[12];
+        if (issn == null) {
+            for (Row row : rows.values()) {
+                row.addMonthly(year, monthly);
+            }
+        } else {
+            Row row = rows.get(issn);
+            if (row != null) {
+                row.addMonthly(year, monthly);
+            }
+        }
+        return monthly;
+    }
+
+    /**
+     * Gets each journal's total revenue in cents from startYear to endYear by ISSN, in ISSN
+     * order, leaving out journals with none.
+     */
+    Map<String, Long> byJournal(int startYear, int endYear) {
+        Map<String, Long> totals = new TreeMap<>();
+        for (Map.Entry<String, Row> entry : rows.entrySet()) {
+            long[] annual = new long[Math.max(0, endYear - startYear + 1)];
+            entry.getValue().addAnnual(startYear, endYear, annual);
+            long total = 0;
+            for (long year : annual) {
+                total += year;
+            }
+            if (total > 0) {
+                totals.put(entry.getKey(), total);
+            }
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,681 @@
+package com.journalapp;
+
+import com.journalapp.model.*;
+import com.journalapp.util.AppendOnlyList;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads and writes the binary snapshot format used by saveState and loadState.
+ *
+ * <pre>
+ * header         magic, version, record counts, the offset of every section and
+ *                the LSN of the last write-ahead log record included in the state
+ * strings        count-prefixed UTF-8 strings (names, ISSNs, addresses, bank data)
+ * journals       JOURNAL_RECORD_SIZE bytes each
+ * subscribers    SUBSCRIBER_RECORD_SIZE bytes each
+ * subscriptions  SUBSCRIPTION_RECORD_SIZE bytes each, in subscription order
+ * transactions   TRANSACTION_RECORD_SIZE bytes each, grouped by subscription
+ * </pre>
+ *
+ * Strings are stored once and referenced by index; journals, subscribers and
+ * transactions are referenced by position. All records after the string table have
+ * a fixed width, so every record can be located from the header alone. Prices and
+ * payments are stored in cents and payment dates as epoch days.
+ */
+final class StateSnapshot {
+    static final int MAGIC = 0x4A445353; // "JDSS"
+    static final short VERSION = 1;
+
+    static final int HEADER_SIZE = 80;
+    static final int JOURNAL_RECORD_SIZE = 20;
+    static final int SUBSCRIBER_RECORD_SIZE = 33;
+    static final int SUBSCRIPTION_RECORD_SIZE = 44;
+    static final int TRANSACTION_RECORD_SIZE = 12;
+
+    static final byte INDIVIDUAL = 1;
+    static final byte CORPORATION = 2;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private StateSnapshot() {
+    }
+
+    /**
+     * The collections restored from a snapshot.
+     */
+    static final class Contents {
+        final ConcurrentHashMap<String, Journal> journals;
+        final AppendOnlyList<Subscriber> subscribers;
+        final AppendOnlyList<Subscription> subscriptions;
+        final long lastLsn;
+
+        Contents(ConcurrentHashMap<String, Journal> journals, AppendOnlyList<Subscriber> subscribers, AppendOnlyList<Subscription> subscriptions,
+                 long lastLsn) {
+            this.journals = journals;
+            this.subscribers = subscribers;
+            this.subscriptions = subscriptions;
+            this.lastLsn = lastLsn;
+        }
+    }
+
+    // --- Writing ---
+
+    /**
+     * Writes a snapshot of the subscriptions as of a distributor version; payments and copy
+     * increases made after that version are left out.
+     */
+    static void write(Path file, Collection<Journal> journals, List<Subscriber> subscribers, List<Subscription> subscriptions,
+                      long asOfVersion, long lastLsn) throws IOException {
+        write(file, journals, subscribers, null, subscriptions, asOfVersion, lastLsn);
+    }
+
+    /**
+     * Writes a snapshot like {@link #write(Path, Collection, List, List, long, long)}, with the
+     * subscriptions still in a mapped or off-heap snapshot first. Their records are copied as
+     * they are, so none of them is built to be saved.
+     *
+     * @param mapped The snapshot records, or null if every subscription is in subscriptions.
+     */
+    static void write(Path file, Collection<Journal> journals, List<Subscriber> subscribers, MappedState mapped,
+                      List<Subscription> subscriptions, long asOfVersion, long lastLsn) throws IOException {
+        int mappedCount = mapped == null ? 0 : mapped.subscriptionCount();
+        StringTable strings = new StringTable();
+        Map<String, Integer> journalPositions = new HashMap<>();
+        for (Journal journal : journals) {
+            journalPositions.put(journal.getIssn(), journalPositions.size());
+            strings.add(journal.getName());
+            strings.add(journal.getIssn());
+        }
+        Map<Subscriber, Integer> subscriberPositions = new IdentityHashMap<>();
+        for (Subscriber subscriber : subscribers) {
+            subscriberPositions.put(subscriber, subscriberPositions.size());
+            strings.add(subscriber.getName());
+            strings.add(subscriber.getAddress());
+            strings.add(billingString(subscriber));
+        }
+        int[] paymentCounts = new int[mappedCount + subscriptions.size()];
+        long transactionCount = 0;
+        for (int i = 0; i < paymentCounts.length; i++) {
+            paymentCounts[i] = i < mappedCount ? mapped.transactionCountAsOf(i, asOfVersion)
+                                               : subscriptions.get(i - mappedCount).getPayment().getTransactionCountAsOf(asOfVersion);
+            transactionCount += paymentCounts[i];
+        }
+
+        long stringsOffset = HEADER_SIZE;
+        long journalsOffset = stringsOffset + strings.encodedSize();
+        long subscribersOffset = journalsOffset + (long) journalPositions.size() * JOURNAL_RECORD_SIZE;
+        long subscriptionsOffset = subscribersOffset + (long) subscribers.size() * SUBSCRIBER_RECORD_SIZE;
+        long transactionsOffset = subscriptionsOffset + (long) paymentCounts.length * SUBSCRIPTION_RECORD_SIZE;
+
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+
+            out.ensure(HEADER_SIZE);
+            out.buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0)
+                      .putInt(strings.size()).putInt(journalPositions.size()).putInt(subscribers.size()).putInt(paymentCounts.length)
+                      .putLong(transactionCount)
+                      .putLong(stringsOffset).putLong(journalsOffset).putLong(subscribersOffset)
+                      .putLong(subscriptionsOffset).putLong(transactionsOffset)
+                      .putLong(lastLsn);
+
+            strings.writeTo(out);
+
+            for (Journal journal : journals) {
+                out.ensure(JOURNAL_RECORD_SIZE);
+                putJournal(out.buffer, journal, strings.indexOf(journal.getName()), strings.indexOf(journal.getIssn()));
+            }
+
+            for (Subscriber subscriber : subscribers) {
+                out.ensure(SUBSCRIBER_RECORD_SIZE);
+                putSubscriber(out.buffer, subscriber, strings.indexOf(subscriber.getName()), strings.indexOf(subscriber.getAddress()),
+                              strings.indexOf(billingString(subscriber)));
+            }
+
+            long firstTransaction = 0;
+            for (int i = 0; i < paymentCounts.length; i++) {
+                Journal journal = i < mappedCount ? mapped.journal(i) : subscriptions.get(i - mappedCount).getJournal();
+                Subscriber subscriber = i < mappedCount ? mapped.subscriber(i) : subscriptions.get(i - mappedCount).getSubscriber();
+                Integer journalPosition = journalPositions.get(journal.getIssn());
+                Integer subscriberPosition = subscriberPositions.get(subscriber);
+                if (journalPosition == null || subscriberPosition == null) {
+                    throw new IOException("Subscription refers to a journal or subscriber that is not part of the state.");
+                }
+                out.ensure(SUBSCRIPTION_RECORD_SIZE);
+                if (i < mappedCount) {
+                    putSubscription(out.buffer, journalPosition, subscriberPosition, mapped.startEpochMonth(i), mapped.copiesAsOf(i, asOfVersion),
+                                    paymentCounts[i], mapped.discountRatio(i), mapped.receivedPaymentInCentsAsOf(i, asOfVersion), firstTransaction);
+                } else {
+                    Subscription subscription = subscriptions.get(i - mappedCount);
+                    putSubscription(out.buffer, journalPosition, subscriberPosition, subscription.getDates().getStartEpochMonth(),
+                                    subscription.getCopiesAsOf(asOfVersion), paymentCounts[i], subscription.getPayment().getDiscountRatio(),
+                                    subscription.getPayment().getReceivedPaymentInCentsAsOf(asOfVersion), firstTransaction);
+                }
+                firstTransaction += paymentCounts[i];
+            }
+
+            for (int i = 0; i < paymentCounts.length; i++) {
+                PaymentInfo payment = i < mappedCount ? null : subscriptions.get(i - mappedCount).getPayment();
+                for (int t = 0; t < paymentCounts[i]; t++) {
+                    out.ensure(TRANSACTION_RECORD_SIZE);
+                    if (payment == null) {
+                        out.buffer.putLong(mapped.paymentAmountInCents(i, t)).putInt(mapped.paymentEpochDay(i, t));
+                    } else {
+                        putTransaction(out.buffer, payment, t);
+                    }
+                }
+            }
+
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Streams a snapshot to a file one record at a time, for data sets too large to hold in
+     * memory first. Records are spooled to one temporary file per section and joined behind
+     * the header by {@link #finish()}, so only the journals' positions stay in memory.
+     *
+     * Journals and subscribers are referred to by the position {@link #addJournal} and
+     * {@link #addSubscriber} return. Strings that repeat across records, such as journal and
+     * bank names, are stored once; other strings are stored as they come.
+     */
+    static final class StreamWriter implements Closeable {
+        private final Path file;
+        private final Path tempFile;
+        private final Spool strings;
+        private final Spool journals;
+        private final Spool subscribers;
+        private final Spool subscriptions;
+        private final Spool transactions;
+        private final Map<String, Integer> sharedStrings = new HashMap<>();
+        private int stringCount;
+        private int journalCount;
+        private int subscriberCount;
+        private int subscriptionCount;
+        private long transactionCount;
+        private boolean finished;
+
+        StreamWriter(Path file) throws IOException {
+            this.file = file;
+            this.tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+            this.strings = new Spool(file, "strings");
+            this.journals = new Spool(file, "journals");
+            this.subscribers = new Spool(file, "subscribers");
+            this.subscriptions = new Spool(file, "subscriptions");
+            this.transactions = new Spool(file, "transactions");
+        }
+
+        int addJournal(Journal journal) throws IOException {
+            int name = sharedString(journal.getName());
+            int issn = string(journal.getIssn());
+            journals.out.ensure(JOURNAL_RECORD_SIZE);
+            putJournal(journals.out.buffer, journal, name, issn);
+            return journalCount++;
+        }
+
+        int addSubscriber(Subscriber subscriber) throws IOException {
+            int name = string(subscriber.getName());
+            int address = string(subscriber.getAddress());
+            int billing = subscriber instanceof Corporation ? sharedString(billingString(subscriber)) : string(billingString(subscriber));
+            subscribers.out.ensure(SUBSCRIBER_RECORD_SIZE);
+            putSubscriber(subscribers.out.buffer, subscriber, name, address, billing);
+            return subscriberCount++;
+        }
+
+        /**
+         * Writes a subscription and the payments it has received so far.
+         */
+        void addSubscription(Subscription subscription, int journalPosition, int subscriberPosition) throws IOException {
+            if (journalPosition < 0 || journalPosition >= journalCount || subscriberPosition < 0 || subscriberPosition >= subscriberCount) {
+                throw new IOException("Subscription refers to a journal or subscriber that is not part of the state.");
+            }
+            PaymentInfo payment = subscription.getPayment();
+            int paymentCount = payment.getTransactionCount();
+            subscriptions.out.ensure(SUBSCRIPTION_RECORD_SIZE);
+            putSubscription(subscriptions.out.buffer, journalPosition, subscriberPosition, subscription.getDates().getStartEpochMonth(),
+                            subscription.getCopies(), paymentCount, payment.getDiscountRatio(), payment.getReceivedPaymentInCents(), transactionCount);
+            for (int t = 0; t < paymentCount; t++) {
+                transactions.out.ensure(TRANSACTION_RECORD_SIZE);
+                putTransaction(transactions.out.buffer, payment, t);
+            }
+            transactionCount += paymentCount;
+            subscriptionCount++;
+        }
+
+        /**
+         * Writes the header, joins the sections and moves the finished snapshot into place.
+         */
+        void finish() throws IOException {
+            long stringsOffset = HEADER_SIZE;
+            long journalsOffset = stringsOffset + strings.flush();
+            long subscribersOffset = journalsOffset + journals.flush();
+            long subscriptionsOffset = subscribersOffset + subscribers.flush();
+            long transactionsOffset = subscriptionsOffset + subscriptions.flush();
+            transactions.flush();
+
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putShort(VERSION).putShort((short) 0)
+                      .putInt(stringCount).putInt(journalCount).putInt(subscriberCount).putInt(subscriptionCount)
+                      .putLong(transactionCount)
+                      .putLong(stringsOffset).putLong(journalsOffset).putLong(subscribersOffset)
+                      .putLong(subscriptionsOffset).putLong(transactionsOffset)
+                      .putLong(0);
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                for (Spool spool : new Spool[] {strings, journals, subscribers, subscriptions, transactions}) {
+                    spool.transferTo(channel);
+                }
+                channel.force(true);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            finished = true;
+        }
+
+        /**
+         * Deletes the spooled sections, and the partial snapshot if it was never finished.
+         */
+        @Override
+        public void close() throws IOException {
+            for (Spool spool : new Spool[] {strings, journals, subscribers, subscriptions, transactions}) {
+                spool.close();
+            }
+            if (!finished) {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+
+        private int string(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            strings.out.ensure(4);
+            strings.out.buffer.putInt(bytes.length);
+            strings.out.put(bytes);
+            return stringCount++;
+        }
+
+        private int sharedString(String value) throws IOException {
+            Integer index = sharedStrings.get(value);
+            if (index == null) {
+                index = string(value);
+                sharedStrings.put(value, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * One section of a streamed snapshot, written to its own temporary file.
+     */
+    private static final class Spool implements Closeable {
+        private final Path path;
+        private final FileChannel channel;
+        private final Output out;
+
+        Spool(Path file, String section) throws IOException {
+            this.path = file.resolveSibling(file.getFileName() + "." + section + ".tmp");
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.out = new Output(channel);
+        }
+
+        /**
+         * Flushes the section and returns its length.
+         */
+        long flush() throws IOException {
+            out.flush();
+            return channel.size();
+        }
+
+        void transferTo(FileChannel target) throws IOException {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+            Files.deleteIfExists(path);
+        }
+    }
+
+    // --- Records ---
+
+    private static String billingString(Subscriber subscriber) throws IOException {
+        if (subscriber instanceof Individual) {
+            return ((Individual) subscriber).getCreditCardNr();
+        } else if (subscriber instanceof Corporation) {
+            return ((Corporation) subscriber).getBankName();
+        }
+        throw new IOException("Unsupported subscriber type: " + subscriber.getClass().getName());
+    }
+
+    private static void putJournal(ByteBuffer b, Journal journal, int nameIndex, int issnIndex) {
+        b.putInt(nameIndex).putInt(issnIndex).putInt(journal.getFrequency()).putLong(journal.getIssuePriceInCents());
+    }
+
+    /**
+     * Writes a subscriber record. billingIndex refers to the credit card number of an
+     * individual or the bank name of a corporation.
+     */
+    private static void putSubscriber(ByteBuffer b, Subscriber subscriber, int nameIndex, int addressIndex, int billingIndex) {
+        if (subscriber instanceof Individual) {
+            Individual individual = (Individual) subscriber;
+            b.put(INDIVIDUAL).putInt(nameIndex).putInt(addressIndex)
+             .putInt(billingIndex).putInt(individual.getExpireMonth())
+             .putInt(individual.getExpireYear()).putInt(individual.getCCV()).putInt(0).putInt(0);
+        } else {
+            Corporation corporation = (Corporation) subscriber;
+            b.put(CORPORATION).putInt(nameIndex).putInt(addressIndex)
+             .putInt(corporation.getBankCode()).putInt(billingIndex)
+             .putInt(corporation.getIssueDay()).putInt(corporation.getIssueMonth())
+             .putInt(corporation.getIssueYear()).putInt(corporation.getAccountNumber());
+        }
+    }
+
+    private static void putSubscription(ByteBuffer b, int journalPosition, int subscriberPosition, int startEpochMonth, int copies,
+                                        int paymentCount, double discountRatio, long receivedPaymentInCents, long firstTransaction) {
+        b.putInt(journalPosition).putInt(subscriberPosition).putInt(startEpochMonth).putInt(copies)
+         .putInt(paymentCount).putDouble(discountRatio).putLong(receivedPaymentInCents).putLong(firstTransaction);
+    }
+
+    private static void putTransaction(ByteBuffer b, PaymentInfo payment, int t) {
+        b.putLong(payment.getTransactionAmountInCents(t)).putInt(payment.getTransactionEpochDay(t));
+    }
+
+    // --- Reading ---
+
+    /**
+     * The header, journals and subscribers of a snapshot: everything ahead of the subscription records.
+     */
+    static final class Directory {
+        final Header header;
+        final Journal[] journals; // By position
+        final AppendOnlyList<Subscriber> subscribers;
+
+        Directory(Header header, Journal[] journals, AppendOnlyList<Subscriber> subscribers) {
+            this.header = header;
+            this.journals = journals;
+            this.subscribers = subscribers;
+        }
+    }
+
+    /**
+     * Reads the directory from the start of a snapshot file, a buffer at a time, so however
+     * large the string table is it never has to fit in one buffer.
+     */
+    static Directory readDirectory(FileChannel channel) throws IOException {
+        return readDirectory(new Input(channel));
+    }
+
+    private static Directory readDirectory(Input in) throws IOException {
+        Header header = Header.read(in);
+
+        String[] strings = new String[header.stringCount];
+        for (int i = 0; i < strings.length; i++) {
+            int length = in.require(4).getInt();
+            strings[i] = in.readUtf8(length);
+        }
+
+        Journal[] journals = new Journal[header.journalCount];
+        for (int i = 0; i < journals.length; i++) {
+            ByteBuffer b = in.require(JOURNAL_RECORD_SIZE);
+            journals[i] = new Journal(strings[b.getInt()], strings[b.getInt()], b.getInt(), Money.toAmount(b.getLong()));
+        }
+
+        AppendOnlyList<Subscriber> subscribers = new AppendOnlyList<>(Math.max(10, header.subscriberCount));
+        for (int i = 0; i < header.subscriberCount; i++) {
+            subscribers.add(readSubscriber(in.require(SUBSCRIBER_RECORD_SIZE), strings));
+        }
+        return new Directory(header, journals, subscribers);
+    }
+
+    static Contents read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Input in = new Input(channel);
+            Directory directory = readDirectory(in);
+            Header header = directory.header;
+            Journal[] journalsByPosition = directory.journals;
+            AppendOnlyList<Subscriber> subscribers = directory.subscribers;
+            ByteBuffer b;
+
+            ConcurrentHashMap<String, Journal> journals = new ConcurrentHashMap<>(Math.max(16, header.journalCount * 2));
+            for (Journal journal : journalsByPosition) {
+                journals.put(journal.getIssn(), journal);
+            }
+
+            int[] subscriptionFields = new int[header.subscriptionCount * 5];
+            double[] discountRatios = new double[header.subscriptionCount];
+            for (int i = 0; i < header.subscriptionCount; i++) {
+                b = in.require(SUBSCRIPTION_RECORD_SIZE);
+                for (int field = 0; field < 5; field++) {
+                    subscriptionFields[i * 5 + field] = b.getInt();
+                }
+                discountRatios[i] = b.getDouble();
+                b.getLong();   // received payment, recomputed from the transactions
+                b.getLong();   // first transaction, implied by the order of the records
+            }
+
+            AppendOnlyList<Subscription> subscriptions = new AppendOnlyList<>(Math.max(10, header.subscriptionCount));
+            for (int i = 0; i < header.subscriptionCount; i++) {
+                int startEpochMonth = subscriptionFields[i * 5 + 2];
+                Subscription subscription = new Subscription(
+                        new DateInfo(EpochDates.monthOf(startEpochMonth), EpochDates.yearOf(startEpochMonth)),
+                        subscriptionFields[i * 5 + 3],
+                        journalsByPosition[subscriptionFields[i * 5]],
+                        subscribers.get(subscriptionFields[i * 5 + 1]),
+                        discountRatios[i]);
+                int paymentCount = subscriptionFields[i * 5 + 4];
+                for (int t = 0; t < paymentCount; t++) {
+                    b = in.require(TRANSACTION_RECORD_SIZE);
+                    subscription.getPayment().recordPayment(b.getLong(), b.getInt(), 0);
+                }
+                subscriptions.add(subscription);
+            }
+
+            return new Contents(journals, subscribers, subscriptions, header.lastLsn);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt snapshot file: " + e.getMessage(), e);
+        }
+    }
+
+    static Subscriber readSubscriber(ByteBuffer b, String[] strings) throws IOException {
+        byte type = b.get();
+        String name = strings[b.getInt()];
+        String address = strings[b.getInt()];
+        if (type == INDIVIDUAL) {
+            Subscriber individual = new Individual(name, address, strings[b.getInt()], b.getInt(), b.getInt(), b.getInt());
+            b.getInt();
+            b.getInt();
+            return individual;
+        } else if (type == CORPORATION) {
+            return new Corporation(name, address, b.getInt(), strings[b.getInt()], b.getInt(), b.getInt(), b.getInt(), b.getInt());
+        }
+        throw new IOException("Unknown subscriber type in snapshot: " + type);
+    }
+
+    /**
+     * The fixed-size header at the start of every snapshot file.
+     */
+    static final class Header {
+        short version;
+        int stringCount;
+        int journalCount;
+        int subscriberCount;
+        int subscriptionCount;
+        long transactionCount;
+        long stringsOffset;
+        long journalsOffset;
+        long subscribersOffset;
+        long subscriptionsOffset;
+        long transactionsOffset;
+        long lastLsn;
+
+        static Header read(Input in) throws IOException {
+            ByteBuffer b = in.require(HEADER_SIZE);
+            if (b.getInt() != MAGIC) {
+                throw new IOException("Not a distributor snapshot file.");
+            }
+            short version = b.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version: " + version);
+            }
+            b.getShort();
+            Header header = new Header();
+            header.version = version;
+            header.stringCount = b.getInt();
+            header.journalCount = b.getInt();
+            header.subscriberCount = b.getInt();
+            header.subscriptionCount = b.getInt();
+            header.transactionCount = b.getLong();
+            header.stringsOffset = b.getLong();
+            header.journalsOffset = b.getLong();
+            header.subscribersOffset = b.getLong();
+            header.subscriptionsOffset = b.getLong();
+            header.transactionsOffset = b.getLong();
+            header.lastLsn = b.getLong();
+            if (header.stringCount < 0 || header.journalCount < 0 || header.subscriberCount < 0
+                    || header.subscriptionCount < 0 || header.transactionCount < 0) {
+                throw new IOException("Corrupt snapshot header.");
+            }
+            return header;
+        }
+    }
+
+    private static final class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<byte[]> encoded = new ArrayList<>();
+        private long encodedSize;
+
+        void add(String value) {
+            if (!indexes.containsKey(value)) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                indexes.put(value, encoded.size());
+                encoded.add(bytes);
+                encodedSize += 4 + bytes.length;
+            }
+        }
+
+        int indexOf(String value) {
+            return indexes.get(value);
+        }
+
+        int size() {
+            return encoded.size();
+        }
+
+        long encodedSize() {
+            return encodedSize;
+        }
+
+        void writeTo(Output out) throws IOException {
+            for (byte[] bytes : encoded) {
+                out.ensure(4);
+                out.buffer.putInt(bytes.length);
+                out.put(bytes);
+            }
+        }
+    }
+
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void put(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    private static final class Input {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Input(FileChannel channel) {
+            this.channel = channel;
+            buffer.flip();
+        }
+
+        /**
+         * Makes sure at least the given number of bytes are buffered and returns the buffer.
+         */
+        ByteBuffer require(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                buffer.compact();
+                while (buffer.position() < bytes) {
+                    if (channel.read(buffer) < 0) {
+                        throw new EOFException("Unexpected end of snapshot file.");
+                    }
+                }
+                buffer.flip();
+            }
+            return buffer;
+        }
+
+        String readUtf8(int length) throws IOException {
+            if (length < 0) {
+                throw new IOException("Corrupt string length in snapshot: " + length);
+            }
+            if (length <= BUFFER_SIZE) {
+                ByteBuffer b = require(length);
+                byte[] bytes = new byte[length];
+                b.get(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+            byte[] bytes = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                ByteBuffer b = require(1);
+                int chunk = Math.min(b.remaining(), length - offset);
+                b.get(bytes, offset, chunk);
+                offset += chunk;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.journalapp;
+
+import com.journalapp.model.EpochDates;
+import com.journalapp.model.Journal;
+import com.journalapp.model.Money;
+import com.journalapp.model.Subscriber;
+import com.journalapp.model.Subscription;
+
+/**
+ * A flyweight over the subscription records of a {@link MappedState}: the getters of a
+ * Subscription and its PaymentInfo, read from the current record and its changes since the
+ * load in place. {@link #moveTo(int)} moves it to another record, so one object serves a whole
+ * scan and reading a record allocates nothing.
+ *
+ * A record is not thread-safe: each thread scanning the records uses its own.
+ */
+final class SubscriptionRecord {
+    private final MappedState records;
+    private int position = -1;
+
+    SubscriptionRecord(MappedState records) {
+        this.records = records;
+    }
+
+    /**
+     * Moves to the record at a position.
+     * @return This record.
+     */
+    SubscriptionRecord moveTo(int position) {
+        if (position < 0 || position >= records.subscriptionCount()) {
+            throw new IndexOutOfBoundsException("Position " + position + " out of bounds for " + records.subscriptionCount() + " subscriptions");
+        }
+        this.position = position;
+        return this;
+    }
+
+    int getPosition() {
+        return position;
+    }
+
+    Journal getJournal() {
+        return records.journal(position);
+    }
+
+    Subscriber getSubscriber() {
+        return records.subscriber(position);
+    }
+
+    int getCopies() {
+        return records.copies(position);
+    }
+
+    int getStartEpochMonth() {
+        return records.startEpochMonth(position);
+    }
+
+    int getLastIssueEpochMonth() {
+        return getStartEpochMonth() + 11;
+    }
+
+    double getDiscountRatio() {
+        return records.discountRatio(position);
+    }
+
+    double getReceivedPayment() {
+        return Money.toAmount(records.receivedPaymentInCents(position));
+    }
+
+    long getReceivedPaymentInCents() {
+        return records.receivedPaymentInCents(position);
+    }
+
+    int getTransactionCount() {
+        return records.transactionCount(position);
+    }
+
+    long getTransactionAmountInCents(int index) {
+        return records.paymentAmountInCents(position, index);
+    }
+
+    int getTransactionEpochDay(int index) {
+        return records.paymentEpochDay(position, index);
+    }
+
+    long calculateExpectedPaymentInCents() {
+        Journal journal = getJournal();
+        return Subscription.calculateExpectedPaymentInCents(journal.getIssuePriceInCents(), journal.getFrequency(), getCopies(), getDiscountRatio());
+    }
+
+    /**
+     * Checks whether an issue can be sent, as {@link Subscription#canSend(int, int)}.
+     */
+    boolean canSend(int issueMonth, int issueYear) {
+        return canSend(records, position, issueMonth, issueYear);
+    }
+
+    /**
+     * Checks whether an issue can be sent for the record at a position, without a flyweight
+     * (for scans that may run on several threads).
+     */
+    static boolean canSend(MappedState records, int position, int issueMonth, int issueYear) {
+        return canSendAsOf(records, position, issueMonth, issueYear, Long.MAX_VALUE);
+    }
+
+    /**
+     * Checks whether an issue could be sent for the record at a position as of a distributor
+     * version.
+     */
+    static boolean canSendAsOf(MappedState records, int position, int issueMonth, int issueYear, long version) {
+        int startEpochMonth = records.startEpochMonth(position);
+        int startEpochDay = EpochDates.firstEpochDayOf(startEpochMonth);
+        int durationDays = EpochDates.firstEpochDayOf(startEpochMonth + 12) - startEpochDay;
+        Journal journal = records.journal(position);
+        return Subscription.canSend(startEpochMonth, startEpochDay, durationDays, journal.getIssuePriceInCents(), journal.getFrequency(),
+                                    records.copiesAsOf(position, version), records.discountRatio(position),
+                                    records.receivedPaymentInCentsAsOf(position, version),
+                                    issueMonth, issueYear);
+    }
+}
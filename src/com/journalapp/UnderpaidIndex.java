@@ -0,0 +1,134 @@
+package com.journalapp;
+
+import com.journalapp.model.Journal;
+import com.journalapp.model.Subscriber;
+import com.journalapp.model.Subscription;
+import com.journalapp.query.IncompletePayment;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * The subscriptions that have received less than their expected payment, kept sorted by the
+ * amount still owed, largest first, with running totals.
+ *
+ * The distributor updates a subscription's entry whenever its payments or copies change, so
+ * queries read the set as it is instead of recomputing every subscription. Updates for one
+ * subscription must not run concurrently (the distributor holds the subscription's monitor
+ * or its write lock); updates for different subscriptions and lookups need no lock. A lookup
+ * that overlaps an update may miss the subscription being updated, and the totals may be
+ * that one update behind the set.
+ */
+class UnderpaidIndex {
+    // Same rule as the incomplete-payments list: up to a cent short is paid.
+    private static final long TOLERANCE_IN_CENTS = 1;
+
+    private static final Comparator<Entry> BY_AMOUNT_OWED =
+            Comparator.comparingLong((Entry entry) -> -entry.payment.getOutstandingInCents()).thenComparingLong(entry -> entry.sequence);
+
+    private final Map<Key, Entry> bySubscription = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Entry> byAmountOwed = new ConcurrentSkipListSet<>(BY_AMOUNT_OWED);
+    private final AtomicInteger count = new AtomicInteger();
+    private final LongAdder totalOutstandingInCents = new LongAdder();
+    private final AtomicLong sequence = new AtomicLong(); // Orders entries that owe the same amount
+
+    /**
+     * Identifies a subscription by its journal's ISSN and its subscriber. Subscribers are
+     * compared by identity, which is unique within a distributor state.
+     */
+    private static final class Key {
+        final String issn;
+        final Subscriber subscriber;
+
+        Key(String issn, Subscriber subscriber) {
+            this.issn = issn;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).subscriber == subscriber && ((Key) o).issn.equals(issn);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * issn.hashCode() + System.identityHashCode(subscriber);
+        }
+    }
+
+    private static final class Entry {
+        final IncompletePayment payment;
+        final long sequence;
+
+        Entry(IncompletePayment payment, long sequence) {
+            this.payment = payment;
+            this.sequence = sequence;
+        }
+    }
+
+    void update(Subscription subscription) {
+        update(subscription.getJournal(), subscription.getSubscriber(),
+               subscription.getPayment().getReceivedPaymentInCents(), subscription.calculateExpectedPaymentInCents());
+    }
+
+    void update(Journal journal, Subscriber subscriber, long receivedPaymentInCents, long expectedPaymentInCents) {
+        Key key = new Key(journal.getIssn(), subscriber);
+        Entry old = bySubscription.get(key);
+        if (old != null && old.payment.getReceivedPaymentInCents() == receivedPaymentInCents
+                && old.payment.getExpectedPaymentInCents() == expectedPaymentInCents) {
+            return;
+        }
+        Entry entry = receivedPaymentInCents < expectedPaymentInCents - TOLERANCE_IN_CENTS
+                ? new Entry(new IncompletePayment(journal, subscriber, receivedPaymentInCents, expectedPaymentInCents), sequence.incrementAndGet())
+                : null;
+        if (old != null) {
+            byAmountOwed.remove(old);
+            count.decrementAndGet();
+            totalOutstandingInCents.add(-old.payment.getOutstandingInCents());
+        }
+        if (entry != null) {
+            bySubscription.put(key, entry);
+            byAmountOwed.add(entry);
+            count.incrementAndGet();
+            totalOutstandingInCents.add(entry.payment.getOutstandingInCents());
+        } else if (old != null) {
+            bySubscription.remove(key);
+        }
+    }
+
+    int size() {
+        return count.get();
+    }
+
+    long totalOutstandingInCents() {
+        return totalOutstandingInCents.sum();
+    }
+
+    /**
+     * Gets up to n subscriptions that owe the most, largest amount first.
+     */
+    List<IncompletePayment> top(int n) {
+        List<IncompletePayment> top = new ArrayList<>(Math.min(n, 1024));
+        for (Entry entry : byAmountOwed) {
+            if (top.size() >= n) {
+                break;
+            }
+            top.add(entry.payment);
+        }
+        return top;
+    }
+
+    /**
+     * Streams every underpaid subscription, largest amount owed first.
+     */
+    Stream<IncompletePayment> stream() {
+        return byAmountOwed.stream().map(entry -> entry.payment);
+    }
+}
@@ -0,0 +1,49 @@
+package com.journalapp;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out distributor versions to changes and tracks the newest version that readers may use.
+ *
+ * A writer takes a version with {@link #begin()}, applies its change stamped with that version,
+ * and then calls {@link #publish(long)}. Versions are published strictly in order, so once
+ * {@link #current()} returns V every change stamped V or lower is complete, and a reader that
+ * ignores anything newer than V sees a state that no later change can alter.
+ */
+final class VersionClock {
+    private static final int SPINS_BEFORE_YIELD = 64;
+
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+
+    /**
+     * Takes the next version. Every version taken must be published, even if the change fails.
+     */
+    long begin() {
+        return next.incrementAndGet();
+    }
+
+    /**
+     * Publishes a version once the change stamped with it is complete, after waiting for the
+     * versions before it. Changes are short and never block while holding a version, so the
+     * wait is brief.
+     */
+    void publish(long version) {
+        int spins = 0;
+        while (published.get() != version - 1) {
+            if (++spins < SPINS_BEFORE_YIELD) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        published.set(version);
+    }
+
+    /**
+     * Gets the newest version whose changes, and all changes before it, are complete.
+     */
+    long current() {
+        return published.get();
+    }
+}
@@ -0,0 +1,499 @@
+package com.journalapp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of distributor mutations, written ahead of the next snapshot.
+ *
+ * The log is a series of segment files named {@code <base>.<generation>}. Each record is
+ * framed as payload length, CRC-32, log sequence number (LSN) and payload, where the
+ * payload starts with a record type byte. Appending only queues a record; a background
+ * committer thread writes everything queued so far with a single write and fsync, so
+ * concurrent writers waiting in {@link #awaitDurable(long)} share one fsync (group commit).
+ *
+ * A snapshot stores the LSN of the last mutation it contains. Recovery loads the snapshot
+ * and replays the records with a higher LSN, so records may safely appear in a segment
+ * that is older or newer than the snapshot.
+ */
+final class WriteAheadLog implements Closeable {
+    private static final int FRAME_HEADER_SIZE = 16;
+    private static final int MAX_PAYLOAD_SIZE = 1 << 20;
+
+    private final Path base;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private final Condition committed = lock.newCondition();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer writing = ByteBuffer.allocate(64 * 1024);
+    private long lastLsn;
+    private long durableLsn;
+    private IOException failure;
+    private boolean closed;
+    private boolean committerStopped;
+
+    // The channel is only written by the committer and swapped by rollover, both under ioLock.
+    private final ReentrantLock ioLock = new ReentrantLock();
+    private FileChannel channel;
+    private long channelGeneration;
+
+    private final Thread committer;
+
+    private WriteAheadLog(Path base, long generation, long lastLsn) throws IOException {
+        this.base = base;
+        this.lastLsn = lastLsn;
+        this.durableLsn = lastLsn;
+        this.channel = openSegment(base, generation);
+        this.channelGeneration = generation;
+        this.committer = new Thread(this::commitLoop, "wal-committer");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    /**
+     * Opens a new segment after all existing segments of the log.
+     *
+     * @param base    The base path of the log segments.
+     * @param lastLsn The highest LSN already used by the state this log continues.
+     * @return The open log.
+     */
+    static WriteAheadLog open(Path base, long lastLsn) throws IOException {
+        List<Long> generations = segmentGenerations(base);
+        long next = generations.isEmpty() ? 1 : generations.get(generations.size() - 1) + 1;
+        return new WriteAheadLog(base, next, lastLsn);
+    }
+
+    /**
+     * Appends a record to the queue and returns its LSN. The record is not durable until
+     * {@link #awaitDurable(long)} returns for that LSN.
+     */
+    long append(Record record) throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IOException("Write-ahead log is closed.");
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            long lsn = ++lastLsn;
+            int payloadSize = record.size;
+            if (pending.remaining() < FRAME_HEADER_SIZE + payloadSize) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + FRAME_HEADER_SIZE + payloadSize));
+                pending.flip();
+                grown.put(pending);
+                pending = grown;
+            }
+            CRC32 crc = new CRC32();
+            crc.update((int) (lsn >>> 56));
+            crc.update((int) (lsn >>> 48));
+            crc.update((int) (lsn >>> 40));
+            crc.update((int) (lsn >>> 32));
+            crc.update((int) (lsn >>> 24));
+            crc.update((int) (lsn >>> 16));
+            crc.update((int) (lsn >>> 8));
+            crc.update((int) lsn);
+            crc.update(record.bytes, 0, payloadSize);
+            pending.putInt(payloadSize).putInt((int) crc.getValue()).putLong(lsn).put(record.bytes, 0, payloadSize);
+            workAvailable.signal();
+            return lsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every record up to the given LSN has been written and fsynced.
+     */
+    void awaitDurable(long lsn) throws IOException {
+        lock.lock();
+        try {
+            while (durableLsn < lsn) {
+                if (failure != null) {
+                    throw failure;
+                }
+                if (committerStopped) {
+                    throw new IOException("Write-ahead log closed before the record was committed.");
+                }
+                committed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the error that stopped the log, or null if it is working. Once a write or fsync has
+     * failed the log accepts no more records.
+     */
+    IOException failure() {
+        lock.lock();
+        try {
+            return failure;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the LSN of the last appended record.
+     */
+    long lastLsn() {
+        lock.lock();
+        try {
+            return lastLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts a new segment. Every record appended before this call is in an older segment
+     * or in the new one; every record appended afterwards is in the new one.
+     *
+     * @return The generation of the new segment.
+     */
+    long rollover() throws IOException {
+        ioLock.lock();
+        try {
+            FileChannel next = openSegment(base, channelGeneration + 1);
+            channel.force(false);
+            channel.close();
+            channel = next;
+            channelGeneration++;
+            return channelGeneration;
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the segments older than the given generation.
+     */
+    void deleteSegmentsBefore(long keepGeneration) throws IOException {
+        for (long segment : segmentGenerations(base)) {
+            if (segment < keepGeneration) {
+                Files.deleteIfExists(segmentPath(base, segment));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            workAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ioLock.lock();
+        try {
+            channel.close();
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    private void commitLoop() {
+        while (true) {
+            long target;
+            lock.lock();
+            try {
+                while (pending.position() == 0 && !closed) {
+                    workAvailable.awaitUninterruptibly();
+                }
+                if (pending.position() == 0) {
+                    committerStopped = true;
+                    committed.signalAll();
+                    return;
+                }
+                ByteBuffer batch = pending;
+                pending = writing;
+                writing = batch;
+                target = lastLsn;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            ioLock.lock();
+            try {
+                writing.flip();
+                while (writing.hasRemaining()) {
+                    channel.write(writing);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                writing.clear();
+                ioLock.unlock();
+            }
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                    committerStopped = true;
+                    System.err.println("Write-ahead log commit failed: " + error.getMessage());
+                } else {
+                    durableLsn = target;
+                }
+                committed.signalAll();
+                if (error != null) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // --- Replay ---
+
+    /**
+     * Receives the records of the log during replay.
+     */
+    interface RecordHandler {
+        void apply(long lsn, RecordReader record) throws IOException;
+    }
+
+    /**
+     * Replays every record with an LSN above {@code afterLsn}, segment by segment.
+     *
+     * The only damage tolerated is a torn record at the end of the log, left by a crash in the
+     * middle of a write: it was never acknowledged, so it is cut off the segment and replay
+     * ends there. A damaged record with more records after it, or a gap in the LSNs of the
+     * records to replay, means that acknowledged changes are missing, and replay fails rather
+     * than apply the later records without them.
+     *
+     * @return The highest LSN found in the log, or {@code afterLsn} if it is higher.
+     * @throws IOException If the log cannot be read, is damaged before its end, or is missing
+     *                     records after {@code afterLsn}.
+     */
+    static long replay(Path base, long afterLsn, RecordHandler handler) throws IOException {
+        long highestLsn = afterLsn;
+        long previousLsn = 0;
+        Path tornSegment = null;
+        int tornOffset = 0;
+        for (long segment : segmentGenerations(base)) {
+            Path path = segmentPath(base, segment);
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+            if (tornSegment != null && data.hasRemaining()) {
+                throw new IOException("Damaged record at offset " + tornOffset + " in " + tornSegment + " is followed by " + path + ".");
+            }
+            while (data.hasRemaining()) {
+                int start = data.position();
+                if (!isIntactFrame(data, start)) {
+                    if (!isTail(data, start, previousLsn)) {
+                        throw new IOException("Damaged record at offset " + start + " in " + path + " is followed by further records.");
+                    }
+                    tornSegment = path;
+                    tornOffset = start;
+                    break;
+                }
+                int payloadSize = data.getInt();
+                data.getInt();
+                long lsn = data.getLong();
+                if (lsn <= previousLsn || (lsn > afterLsn && lsn != Math.max(previousLsn, afterLsn) + 1)) {
+                    throw new IOException("Record " + lsn + " at offset " + start + " in " + path + " does not follow "
+                                          + (previousLsn > afterLsn ? "record " + previousLsn : "LSN " + afterLsn) + "; records are missing.");
+                }
+                ByteBuffer payload = data.slice();
+                payload.limit(payloadSize);
+                data.position(data.position() + payloadSize);
+                if (lsn > afterLsn) {
+                    handler.apply(lsn, new RecordReader(payload));
+                }
+                previousLsn = lsn;
+                highestLsn = Math.max(highestLsn, lsn);
+            }
+        }
+        if (tornSegment != null) {
+            // Cut the torn record off so that the segment ends with a whole record again.
+            System.err.println("Warning: Torn record at offset " + tornOffset + " in " + tornSegment + "; the end of the segment was removed.");
+            try (FileChannel channel = FileChannel.open(tornSegment, StandardOpenOption.WRITE)) {
+                channel.truncate(tornOffset);
+                channel.force(true);
+            }
+        }
+        return highestLsn;
+    }
+
+    /**
+     * Checks whether a whole frame with a matching CRC starts at an offset.
+     */
+    private static boolean isIntactFrame(ByteBuffer data, int start) {
+        if (data.limit() - start < FRAME_HEADER_SIZE) {
+            return false;
+        }
+        int payloadSize = data.getInt(start);
+        if (payloadSize <= 0 || payloadSize > MAX_PAYLOAD_SIZE || payloadSize > data.limit() - start - FRAME_HEADER_SIZE) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data.array(), start + 8, 8 + payloadSize);
+        return (int) crc.getValue() == data.getInt(start + 4);
+    }
+
+    /**
+     * Checks whether a damaged frame at an offset is the torn end of its segment: no intact
+     * frame with a later LSN can be found after it.
+     */
+    private static boolean isTail(ByteBuffer data, int start, long previousLsn) {
+        long maxLsn = previousLsn + 1 + (data.limit() - start) / FRAME_HEADER_SIZE;
+        for (int offset = start + 1; offset <= data.limit() - FRAME_HEADER_SIZE; offset++) {
+            long lsn = data.getLong(offset + 8);
+            if (lsn > previousLsn && lsn <= maxLsn && isIntactFrame(data, offset)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static FileChannel openSegment(Path base, long generation) throws IOException {
+        return FileChannel.open(segmentPath(base, generation),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static Path segmentPath(Path base, long generation) {
+        return base.resolveSibling(base.getFileName() + "." + generation);
+    }
+
+    private static List<Long> segmentGenerations(Path base) throws IOException {
+        Path directory = base.toAbsolutePath().getParent();
+        String prefix = base.getFileName() + ".";
+        List<Long> generations = new ArrayList<>();
+        if (directory == null || !Files.isDirectory(directory)) {
+            return generations;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path entry : entries) {
+                String suffix = entry.getFileName().toString().substring(prefix.length());
+                try {
+                    generations.add(Long.parseLong(suffix));
+                } catch (NumberFormatException e) {
+                    // Not a segment of this log.
+                }
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    // --- Record encoding ---
+
+    /**
+     * A log record being built: a type byte followed by its fields.
+     */
+    static final class Record {
+        private byte[] bytes = new byte[64];
+        private int size;
+
+        Record(byte type) {
+            bytes[size++] = type;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                byte[] grown = new byte[Math.max(bytes.length * 2, size + extra)];
+                System.arraycopy(bytes, 0, grown, 0, size);
+                bytes = grown;
+            }
+        }
+
+        Record putInt(int value) {
+            ensure(4);
+            bytes[size++] = (byte) (value >>> 24);
+            bytes[size++] = (byte) (value >>> 16);
+            bytes[size++] = (byte) (value >>> 8);
+            bytes[size++] = (byte) value;
+            return this;
+        }
+
+        Record putLong(long value) {
+            putInt((int) (value >>> 32));
+            return putInt((int) value);
+        }
+
+        Record putDouble(double value) {
+            return putLong(Double.doubleToRawLongBits(value));
+        }
+
+        Record putString(String value) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            putInt(encoded.length);
+            ensure(encoded.length);
+            System.arraycopy(encoded, 0, bytes, size, encoded.length);
+            size += encoded.length;
+            return this;
+        }
+    }
+
+    /**
+     * Reads the fields of a replayed record in the order they were written.
+     */
+    static final class RecordReader {
+        private final ByteBuffer payload;
+
+        RecordReader(ByteBuffer payload) {
+            this.payload = payload;
+        }
+
+        byte type() {
+            return payload.get(0);
+        }
+
+        int getInt() {
+            skipType();
+            return payload.getInt();
+        }
+
+        long getLong() {
+            skipType();
+            return payload.getLong();
+        }
+
+        double getDouble() {
+            skipType();
+            return payload.getDouble();
+        }
+
+        String getString() {
+            skipType();
+            int length = payload.getInt();
+            byte[] encoded = new byte[length];
+            payload.get(encoded);
+            return new String(encoded, StandardCharsets.UTF_8);
+        }
+
+        private void skipType() {
+            if (payload.position() == 0) {
+                payload.position(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.journalapp.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count of events. Increments from many threads do not contend, and are skipped while the
+ * registry is disabled.
+ */
+public final class Counter {
+    private final MetricsRegistry registry;
+    private final LongAdder count = new LongAdder();
+
+    Counter(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void increment() {
+        if (registry.isEnabled()) {
+            count.increment();
+        }
+    }
+
+    public void add(long amount) {
+        if (registry.isEnabled()) {
+            count.add(amount);
+        }
+    }
+
+    public long get() {
+        return count.sum();
+    }
+
+    void reset() {
+        count.reset();
+    }
+}
@@ -0,0 +1,113 @@
+package com.journalapp.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Named counters, timers and gauges.
+ *
+ * Metrics are looked up once and the returned handles kept, so recording never touches the
+ * registry's maps. Every handle checks the registry's enabled flag first; while it is off,
+ * recording is a single volatile read and timers do not read the clock.
+ */
+public final class MetricsRegistry {
+    private volatile boolean enabled;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    public MetricsRegistry(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Gets the counter with the given name, creating it if needed.
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, k -> new Counter(this));
+    }
+
+    /**
+     * Gets the timer with the given name, creating it if needed.
+     */
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, k -> new Timer(this));
+    }
+
+    /**
+     * Registers a gauge, replacing any gauge with the same name. The value is read only when
+     * the gauge is, so it must be cheap and safe to call from any thread.
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Gets the current value of a gauge.
+     * @return The value, or 0 if there is no gauge with that name.
+     */
+    public long gaugeValue(String name) {
+        LongSupplier gauge = gauges.get(name);
+        return gauge == null ? 0 : gauge.getAsLong();
+    }
+
+    /**
+     * Clears every counter and timer. Gauges are read live and are not affected.
+     */
+    public void reset() {
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+        for (Timer timer : timers.values()) {
+            timer.reset();
+        }
+    }
+
+    /**
+     * Formats every metric as text, one per line, sorted by name. Times are in microseconds.
+     */
+    public String dump() {
+        StringBuilder text = new StringBuilder();
+        text.append("# Metrics at ").append(Instant.now()).append(enabled ? "" : " (recording disabled)").append('\n');
+        for (Map.Entry<String, Counter> entry : new TreeMap<>(counters).entrySet()) {
+            text.append(String.format(Locale.ROOT, "counter %-40s %d%n", entry.getKey(), entry.getValue().get()));
+        }
+        for (Map.Entry<String, LongSupplier> entry : new TreeMap<>(gauges).entrySet()) {
+            text.append(String.format(Locale.ROOT, "gauge   %-40s %d%n", entry.getKey(), entry.getValue().getAsLong()));
+        }
+        for (Map.Entry<String, Timer> entry : new TreeMap<>(timers).entrySet()) {
+            Timer.Snapshot snapshot = entry.getValue().snapshot();
+            text.append(String.format(Locale.ROOT,
+                    "timer   %-40s count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus%n",
+                    entry.getKey(), snapshot.getCount(), snapshot.getMeanNanos() / 1e3,
+                    snapshot.getPercentileNanos(0.5) / 1e3, snapshot.getPercentileNanos(0.9) / 1e3,
+                    snapshot.getPercentileNanos(0.99) / 1e3, snapshot.getPercentileNanos(0.999) / 1e3,
+                    snapshot.getMaxNanos() / 1e3));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes {@link #dump()} to a text file, replacing its contents.
+     */
+    public void dumpTo(Path file) throws IOException {
+        Files.write(file, dump().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -12,6 +12,12 @@ public class DateInfo {
     private int endMonth;   // The ending month of the subscription
     private int startYear;  // The starting year of the subscription
 
+    // Precomputed epoch values so date checks are plain integer comparisons.
+    private final int startEpochMonth;   // Epoch month of the first month of the subscription
+    private final int endEpochMonth;     // Epoch month of endMonth in getEndYear()
+    private final int startEpochDay;     // Epoch day of the first day of the subscription
+    private final int lastEpochDay;      // Epoch day one year after the start, minus one day
+
     /**
      * Constructs a new DateInfo object for a one-year subscription.
      *
@@ -44,6 +50,11 @@ public class DateInfo {
         // The UML shows endMonth and startYear, but logically we need an endYear too.
         // Let's add a method to calculate/get the end year. The UML might be simplified.
         // We will calculate the end year based on the start year.
+
+        this.startEpochMonth = EpochDates.epochMonth(startMonth, startYear);
+        this.endEpochMonth = EpochDates.epochMonth(this.endMonth, getEndYear());
+        this.startEpochDay = EpochDates.firstEpochDayOf(startEpochMonth);
+        this.lastEpochDay = EpochDates.firstEpochDayOf(startEpochMonth + 12) - 1;
     }
 
     /**
@@ -91,35 +102,51 @@ public class DateInfo {
             throw new IllegalArgumentException("Check month must be between 1 and 12.");
         }
 
-        int endYear = getEndYear();
+        // The period runs from startMonth/startYear through endMonth/getEndYear().
+        int checkEpochMonth = EpochDates.epochMonth(checkMonth, checkYear);
+        return checkEpochMonth >= startEpochMonth && checkEpochMonth <= endEpochMonth;
+    }
 
-        // Case 1: The check year is before the start year or after the end year.
-        if (checkYear < startYear || checkYear > endYear) {
-            return false;
-        }
+    /**
+     * Gets the epoch month of the first month of the subscription.
+     * @return The start epoch month.
+     */
+    public int getStartEpochMonth() {
+        return startEpochMonth;
+    }
 
-        // Case 2: The check year is the start year.
-        if (checkYear == startYear) {
-            // Must be in or after the start month.
-            return checkMonth >= startMonth;
-        }
+    /**
+     * Gets the epoch month of the last month in which issues are sent,
+     * i.e. eleven months after the start month.
+     * @return The last issue epoch month.
+     */
+    public int getLastIssueEpochMonth() {
+        return startEpochMonth + 11;
+    }
 
-        // Case 3: The check year is the end year.
-        if (checkYear == endYear) {
-            // Must be in or before the end month.
-            return checkMonth <= endMonth;
-        }
+    /**
+     * Gets the epoch day of the first day of the subscription.
+     * @return The start epoch day.
+     */
+    public int getStartEpochDay() {
+        return startEpochDay;
+    }
 
-        // Case 4: The check year is strictly between the start year and the end year.
-        // In a one-year subscription (startYear to startYear + 1), this case is only
-        // possible if the subscription spans across two calendar years (e.g., starts Nov 2023, ends Oct 2024).
-        // If checkYear is startYear + 1, it's within the period unless it's after the endMonth in the endYear.
-        // The previous checks cover checkYear == startYear and checkYear == endYear.
-        // For a one-year subscription, there are no years strictly *between* the start and end year.
-        // This logic is simplified for a strict one-year duration.
+    /**
+     * Gets the epoch day on which the subscription expires:
+     * one year after the start date, minus one day.
+     * @return The last epoch day of the subscription.
+     */
+    public int getLastEpochDay() {
+        return lastEpochDay;
+    }
 
-        // The logic above should cover all cases for a one-year span.
-        return false; // Should not be reached with the logic above, but as a fallback.
+    /**
+     * Gets the length of the one-year subscription in days (365 or 366).
+     * @return The duration in days.
+     */
+    public int getDurationDays() {
+        return lastEpochDay - startEpochDay + 1;
     }
 
     // You can add more utility methods here if needed, like calculating the number of months
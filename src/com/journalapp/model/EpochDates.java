@@ -0,0 +1,159 @@
+// src/com/journalapp/model/EpochDates.java
+package com.journalapp.model;
+
+import java.util.Calendar;
+
+/**
+ * Primitive calendar arithmetic on the proleptic Gregorian calendar.
+ * Dates are expressed as epoch days (days since 1970-01-01) and months as
+ * epoch months (year * 12 + month - 1), so date comparisons and month
+ * stepping need no Calendar objects. Calendars are only converted at the edges.
+ */
+public final class EpochDates {
+
+    private EpochDates() {
+    }
+
+    /**
+     * Converts a month and year to an epoch month.
+     * Out-of-range months roll over into the neighbouring years, the same way a lenient
+     * GregorianCalendar treats them.
+     *
+     * @param month The month (1-12).
+     * @param year  The year.
+     * @return The epoch month.
+     */
+    public static int epochMonth(int month, int year) {
+        return year * 12 + (month - 1);
+    }
+
+    /**
+     * Gets the year of an epoch month.
+     * @param epochMonth The epoch month.
+     * @return The year.
+     */
+    public static int yearOf(int epochMonth) {
+        return Math.floorDiv(epochMonth, 12);
+    }
+
+    /**
+     * Gets the month (1-12) of an epoch month.
+     * @param epochMonth The epoch month.
+     * @return The month.
+     */
+    public static int monthOf(int epochMonth) {
+        return Math.floorMod(epochMonth, 12) + 1;
+    }
+
+    /**
+     * Checks whether a year is a Gregorian leap year.
+     * @param year The year.
+     * @return true for leap years.
+     */
+    public static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /**
+     * Gets the number of days in a month.
+     * @param month The month (1-12).
+     * @param year  The year.
+     * @return The length of the month in days.
+     */
+    public static int lengthOfMonth(int month, int year) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Converts a calendar date to an epoch day.
+     *
+     * @param year  The year.
+     * @param month The month (1-12).
+     * @param day   The day of the month.
+     * @return The number of days since 1970-01-01.
+     */
+    public static int epochDay(int year, int month, int day) {
+        // Shift the year to start in March so the leap day is the last day of the year.
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Gets the epoch day of a calendar's date, in the calendar's time zone.
+     * @param calendar The calendar.
+     * @return The number of days since 1970-01-01.
+     */
+    public static int epochDay(Calendar calendar) {
+        return epochDay(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
+    }
+
+    /**
+     * Sets a calendar to midnight at the start of an epoch day, in the calendar's time zone.
+     * @param calendar The calendar to set.
+     * @param epochDay The epoch day.
+     */
+    public static void setDate(Calendar calendar, int epochDay) {
+        int epochMonth = epochMonthOfDay(epochDay);
+        calendar.clear();
+        calendar.set(yearOf(epochMonth), monthOf(epochMonth) - 1, epochDay - firstEpochDayOf(epochMonth) + 1);
+    }
+
+    /**
+     * Gets the epoch month an epoch day falls in.
+     * @param epochDay The epoch day.
+     * @return The epoch month.
+     */
+    public static int epochMonthOfDay(int epochDay) {
+        // The inverse of epochDay, with years again starting in March.
+        int z = epochDay + 719468;
+        int era = Math.floorDiv(z, 146097);
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return epochMonth(month, year);
+    }
+
+    /**
+     * Gets the day of the month (1-31) of an epoch day.
+     * @param epochDay The epoch day.
+     * @return The day of the month.
+     */
+    public static int dayOfMonth(int epochDay) {
+        return epochDay - firstEpochDayOf(epochMonthOfDay(epochDay)) + 1;
+    }
+
+    /**
+     * Gets the epoch day of the first day of an epoch month.
+     * @param epochMonth The epoch month.
+     * @return The epoch day.
+     */
+    public static int firstEpochDayOf(int epochMonth) {
+        return epochDay(yearOf(epochMonth), monthOf(epochMonth), 1);
+    }
+
+    /**
+     * Gets the epoch day of the last day of an epoch month.
+     * @param epochMonth The epoch month.
+     * @return The epoch day.
+     */
+    public static int lastEpochDayOf(int epochMonth) {
+        return firstEpochDayOf(epochMonth + 1) - 1;
+    }
+}
@@ -12,7 +12,7 @@ public class Journal {
     private final String name;       // The name of the journal.
     private final String issn;       // The International Standard Serial Number (unique identifier).
     private final int frequency;     // The number of issues published per year.
-    private final double issuePrice; // The price of a single issue.
+    private final long issuePriceInCents; // The price of a single issue, in cents.
 
     /**
      * Constructs a new Journal object.
@@ -20,7 +20,7 @@ public class Journal {
      * @param name       The name of the journal.
      * @param issn       The ISSN of the journal (must be unique).
      * @param frequency  The frequency of publication per year.
-     * @param issuePrice The price per issue.
+     * @param issuePrice The price per issue, rounded to the nearest cent.
      */
     public Journal(String name, String issn, int frequency, double issuePrice) {
         // Basic validation for required fields
@@ -41,7 +41,7 @@ public class Journal {
         this.name = name;
         this.issn = issn;
         this.frequency = frequency;
-        this.issuePrice = issuePrice;
+        this.issuePriceInCents = Money.toCents(issuePrice);
     }
 
     /**
@@ -73,7 +73,15 @@ public class Journal {
      * @return The issue price.
      */
     public double getIssuePrice() {
-        return issuePrice;
+        return Money.toAmount(issuePriceInCents);
+    }
+
+    /**
+     * Gets the price of a single issue of the journal in cents.
+     * @return The issue price in cents.
+     */
+    public long getIssuePriceInCents() {
+        return issuePriceInCents;
     }
 
     // The UML shows an addSubscription method here, but the logic for managing
@@ -0,0 +1,77 @@
+// src/com/journalapp/model/Money.java
+package com.journalapp.model;
+
+/**
+ * Fixed-point money arithmetic on amounts held as a long number of cents.
+ * Sums and comparisons of cents are exact, so no tolerance is needed when checking whether
+ * a subscription is paid up. Amounts are converted from and to doubles only at the edges,
+ * where they are entered or shown, and are formatted without String.format.
+ */
+public final class Money {
+    /** Discount ratios are applied to the nearest millionth. */
+    private static final long RATIO_SCALE = 1_000_000;
+
+    private Money() {
+    }
+
+    /**
+     * Converts an amount to cents, rounding to the nearest cent.
+     * @param amount The amount.
+     * @return The amount in cents.
+     */
+    public static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    /**
+     * Converts cents to an amount.
+     * @param cents The amount in cents.
+     * @return The amount.
+     */
+    public static double toAmount(long cents) {
+        return cents / 100.0;
+    }
+
+    /**
+     * Takes a discount off an amount, rounding half a cent up.
+     * The discount ratio is rounded to the nearest millionth first, so the rest is integer
+     * arithmetic; amounts up to about 90 billion are exact.
+     *
+     * @param cents         The amount in cents (not negative).
+     * @param discountRatio The discount ratio (0.0-1.0).
+     * @return The discounted amount in cents.
+     */
+    public static long discount(long cents, double discountRatio) {
+        long remaining = RATIO_SCALE - Math.round(discountRatio * RATIO_SCALE);
+        return (cents * remaining + RATIO_SCALE / 2) / RATIO_SCALE;
+    }
+
+    /**
+     * Formats an amount in cents with two decimals, as "%.2f" formats the same amount in
+     * an English locale.
+     * @param cents The amount in cents.
+     * @return The formatted amount.
+     */
+    public static String format(long cents) {
+        return append(new StringBuilder(24), cents).toString();
+    }
+
+    /**
+     * Appends an amount in cents with two decimals, as {@link #format(long)}.
+     * @param sb    The builder to append to.
+     * @param cents The amount in cents.
+     * @return The builder.
+     */
+    public static StringBuilder append(StringBuilder sb, long cents) {
+        if (cents < 0) {
+            sb.append('-');
+        }
+        long units = Math.abs(cents / 100); // Division first, so Long.MIN_VALUE does not overflow
+        int fraction = (int) Math.abs(cents % 100);
+        sb.append(units).append('.');
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction);
+    }
+}
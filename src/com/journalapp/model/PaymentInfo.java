@@ -1,45 +1,311 @@
 package com.journalapp.model;
 
+import com.journalapp.util.IntArrayList;
+import com.journalapp.util.LongArrayList;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
 
 public class PaymentInfo implements Serializable {
     private static final long serialVersionUID = 1L;
 
-    private final double discountRatio;
-    private List<PaymentTransaction> transactions;
+    // The serialized form predates the columns below: a list of transactions and the totals.
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("discountRatio", double.class),
+        new ObjectStreamField("transactions", List.class),
+        new ObjectStreamField("receivedPayment", double.class),
+        new ObjectStreamField("receivedPaymentByYear", Map.class),
+    };
+
+    private double discountRatio;
+
+    // Transactions in primitive columns, in the order they were recorded: the amount in cents,
+    // the payment date as an epoch day, and the distributor version. About 20 bytes a payment
+    // made through the distributor, which always has a version, and 12 for a payment loaded from
+    // a snapshot, where a PaymentTransaction with its Calendar took several hundred.
+    // Payments are recorded one at a time and read concurrently. The day column is written
+    // last, so its size is the number of complete transactions.
+    private transient LongArrayList amountsInCents;
+    private transient volatile LongArrayList versions; // Null while every version is 0, as for loaded payments
+    private transient IntArrayList epochDays;
+
+    // Running total, kept in step with the columns by recordPayment.
+    private transient volatile long receivedCents;
+
+    // Per-year subtotals, also kept by recordPayment: the years paid in, ascending, and the
+    // cents received in each. A subscription is paid in a handful of years, so these stay tiny.
+    private static final int[] NO_YEARS = {};
+    private static final long[] NO_CENTS = {};
+    private transient int[] subtotalYears;
+    private transient long[] subtotalCents;
 
     public PaymentInfo(double discountRatio) {
         if (discountRatio < 0 || discountRatio > 1) {
              throw new IllegalArgumentException("Discount ratio must be between 0.0 and 1.0.");
         }
         this.discountRatio = discountRatio;
-        this.transactions = new ArrayList<>();
+        initColumns();
+    }
+
+    private void initColumns() {
+        amountsInCents = new LongArrayList(1);
+        epochDays = new IntArrayList(1);
+        versions = null;
+        receivedCents = 0;
+        subtotalYears = NO_YEARS;
+        subtotalCents = NO_CENTS;
     }
 
     public void recordPayment(double amount, Calendar paymentDate) {
+        recordPayment(amount, paymentDate, 0);
+    }
+
+    /**
+     * Records a payment made at the given distributor version. The amount is kept in whole
+     * cents and the date as a day.
+     * Versions must not decrease from one payment to the next; the as-of getters rely on it.
+     */
+    public void recordPayment(double amount, Calendar paymentDate, long version) {
         if (amount > 0 && paymentDate != null) {
-            this.transactions.add(new PaymentTransaction(amount, paymentDate));
+            recordPayment(Money.toCents(amount), EpochDates.epochDay(paymentDate), version);
         } else {
              System.err.println("Warning: Attempted to record non-positive payment or null date.");
         }
     }
 
+    /**
+     * Records a payment of a number of cents made on an epoch day at the given distributor version.
+     */
+    public synchronized void recordPayment(long amountInCents, int epochDay, long version) {
+        if (amountInCents <= 0) {
+            System.err.println("Warning: Attempted to record non-positive payment or null date.");
+            return;
+        }
+        amountsInCents.add(amountInCents);
+        LongArrayList versionColumn = versions;
+        if (versionColumn == null && version != 0) {
+            versionColumn = new LongArrayList(epochDays.size() + 1);
+            for (int i = 0; i < epochDays.size(); i++) {
+                versionColumn.add(0);
+            }
+            versions = versionColumn;
+        }
+        if (versionColumn != null) {
+            versionColumn.add(version);
+        }
+        epochDays.add(epochDay);
+        receivedCents += amountInCents;
+        addToSubtotal(yearOfDay(epochDay), amountInCents);
+    }
+
+    private void addToSubtotal(int year, long amountInCents) {
+        int i = Arrays.binarySearch(subtotalYears, year);
+        if (i < 0) {
+            i = -i - 1;
+            int[] years = new int[subtotalYears.length + 1];
+            long[] cents = new long[years.length];
+            System.arraycopy(subtotalYears, 0, years, 0, i);
+            System.arraycopy(subtotalCents, 0, cents, 0, i);
+            System.arraycopy(subtotalYears, i, years, i + 1, subtotalYears.length - i);
+            System.arraycopy(subtotalCents, i, cents, i + 1, subtotalCents.length - i);
+            years[i] = year;
+            subtotalYears = years;
+            subtotalCents = cents;
+        }
+        subtotalCents[i] += amountInCents;
+    }
+
+    private static int yearOfDay(int epochDay) {
+        return EpochDates.yearOf(EpochDates.epochMonthOfDay(epochDay));
+    }
+
     public double getReceivedPayment() {
-        double total = 0.0;
-        for (PaymentTransaction transaction : transactions) {
-            total += transaction.getAmount();
+        return Money.toAmount(receivedCents);
+    }
+
+    public long getReceivedPaymentInCents() {
+        return receivedCents;
+    }
+
+    /**
+     * Gets the total received in payments made in a year.
+     */
+    public double getReceivedPayment(int year) {
+        return Money.toAmount(getReceivedPaymentInCents(year));
+    }
+
+    public synchronized long getReceivedPaymentInCents(int year) {
+        int i = Arrays.binarySearch(subtotalYears, year);
+        return i < 0 ? 0 : subtotalCents[i];
+    }
+
+    /**
+     * Gets the total received in payments made in a year as of a distributor version,
+     * ignoring later payments.
+     */
+    public synchronized double getReceivedPaymentAsOf(int year, long version) {
+        long total = getReceivedPaymentInCents(year);
+        LongArrayList versionColumn = versions;
+        if (versionColumn != null) {
+            for (int i = epochDays.size() - 1; i >= 0 && versionColumn.get(i) > version; i--) {
+                if (yearOfDay(epochDays.get(i)) == year) {
+                    total -= amountsInCents.get(i);
+                }
+            }
         }
-        return total;
+        return Money.toAmount(total);
+    }
+
+    // The subtotals as a map, for the serialized form.
+    private synchronized Map<Integer, Long> receivedCentsByYear() {
+        Map<Integer, Long> byYear = new HashMap<>();
+        for (int i = 0; i < subtotalYears.length; i++) {
+            byYear.put(subtotalYears[i], subtotalCents[i]);
+        }
+        return byYear;
     }
 
+    /**
+     * Gets the transactions as a read-only list. The list is a view of the columns: it grows
+     * as payments are recorded, and each element is built when it is read.
+     */
     public List<PaymentTransaction> getTransactions() {
-        return transactions;
+        return new TransactionView();
+    }
+
+    public int getTransactionCount() {
+        return epochDays.size();
+    }
+
+    public long getTransactionAmountInCents(int index) {
+        epochDays.get(index); // Bounds check against the complete transactions
+        return amountsInCents.get(index);
+    }
+
+    public int getTransactionEpochDay(int index) {
+        return epochDays.get(index);
+    }
+
+    public long getTransactionVersion(int index) {
+        epochDays.get(index);
+        LongArrayList versionColumn = versions;
+        return versionColumn == null ? 0 : versionColumn.get(index);
+    }
+
+    /**
+     * Gets the total received as of a distributor version, ignoring later payments.
+     */
+    public double getReceivedPaymentAsOf(long version) {
+        return Money.toAmount(getReceivedPaymentInCentsAsOf(version));
+    }
+
+    /**
+     * Gets the total received in cents as of a distributor version, ignoring later payments.
+     */
+    public long getReceivedPaymentInCentsAsOf(long version) {
+        // The total is read before the columns, and recordPayment updates it after them,
+        // so if the columns have no later payment the total has none either.
+        long total = receivedCents;
+        int count = epochDays.size();
+        LongArrayList versionColumn = versions;
+        if (count == 0 || versionColumn == null || versionColumn.get(count - 1) <= version) {
+            return total;
+        }
+        total = 0;
+        for (int i = 0, asOf = getTransactionCountAsOf(version); i < asOf; i++) {
+            total += amountsInCents.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of transactions recorded as of a distributor version. They are the
+     * first entries of {@link #getTransactions()}.
+     */
+    public int getTransactionCountAsOf(long version) {
+        int count = epochDays.size();
+        LongArrayList versionColumn = versions;
+        if (versionColumn == null) {
+            return count;
+        }
+        while (count > 0 && versionColumn.get(count - 1) > version) {
+            count--;
+        }
+        return count;
     }
 
     public double getDiscountRatio() {
         return discountRatio;
     }
+
+    /**
+     * A read-only list over the transaction getters that builds a PaymentTransaction for each
+     * element read.
+     */
+    private final class TransactionView extends AbstractList<PaymentTransaction> implements RandomAccess {
+        @Override
+        public int size() {
+            return getTransactionCount();
+        }
+
+        @Override
+        public PaymentTransaction get(int index) {
+            Calendar paymentDate = new GregorianCalendar();
+            EpochDates.setDate(paymentDate, getTransactionEpochDay(index));
+            return new PaymentTransaction(Money.toAmount(getTransactionAmountInCents(index)), paymentDate, getTransactionVersion(index));
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        List<PaymentTransaction> transactions = new ArrayList<>(getTransactions());
+        Map<Integer, Double> receivedPaymentByYear = new HashMap<>();
+        for (Map.Entry<Integer, Long> year : receivedCentsByYear().entrySet()) {
+            receivedPaymentByYear.put(year.getKey(), Money.toAmount(year.getValue()));
+        }
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("discountRatio", discountRatio);
+        fields.put("transactions", transactions);
+        fields.put("receivedPayment", getReceivedPayment());
+        fields.put("receivedPaymentByYear", receivedPaymentByYear);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        discountRatio = fields.get("discountRatio", 0.0);
+        initColumns();
+
+        // Rebuild the columns from the transaction list and check the stored totals against them.
+        @SuppressWarnings("unchecked")
+        List<PaymentTransaction> transactions = (List<PaymentTransaction>) fields.get("transactions", null);
+        if (transactions != null) {
+            for (PaymentTransaction transaction : transactions) {
+                recordPayment(transaction.getAmount(), transaction.getPaymentDate(), transaction.getVersion());
+            }
+        }
+        @SuppressWarnings("unchecked")
+        Map<Integer, Double> storedByYear = (Map<Integer, Double>) fields.get("receivedPaymentByYear", null);
+        boolean matches = Money.toCents(fields.get("receivedPayment", 0.0)) == receivedCents;
+        if (storedByYear != null) {
+            Map<Integer, Long> byYear = receivedCentsByYear();
+            matches &= storedByYear.size() == byYear.size();
+            for (Map.Entry<Integer, Double> year : storedByYear.entrySet()) {
+                matches &= Money.toCents(year.getValue()) == byYear.getOrDefault(year.getKey(), 0L);
+            }
+        }
+        if (!matches) {
+            System.err.println("Warning: Stored payment totals did not match the transaction list; totals were recomputed.");
+        }
+    }
 }
@@ -8,23 +8,37 @@ public class PaymentTransaction implements Serializable {
 
     private double amount;
     private Calendar paymentDate;
+    private long version; // Distributor version that recorded the payment; 0 for stored payments
 
     public PaymentTransaction(double amount, Calendar paymentDate) {
-        if (amount <= 0) {
-            throw new IllegalArgumentException("Payment amount must be positive.");
+        this(amount, paymentDate, 0);
+    }
+
+    public PaymentTransaction(double amount, Calendar paymentDate, long version) {
+        if (Money.toCents(amount) <= 0) {
+            throw new IllegalArgumentException("Payment amount must be at least one cent.");
         }
         if (paymentDate == null) {
             throw new IllegalArgumentException("Payment date cannot be null.");
         }
         this.amount = amount;
         this.paymentDate = paymentDate;
+        this.version = version;
     }
 
     public double getAmount() {
         return amount;
     }
 
+    public long getAmountInCents() {
+        return Money.toCents(amount);
+    }
+
     public Calendar getPaymentDate() {
         return paymentDate;
     }
+
+    public long getVersion() {
+        return version;
+    }
 }
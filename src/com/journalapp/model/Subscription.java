@@ -2,14 +2,14 @@ package com.journalapp.model;
 
 import java.io.Serializable;
 import java.util.Calendar;
-import java.util.GregorianCalendar;
 
 public class Subscription implements Serializable {
     private static final long serialVersionUID = 1L;
 
     private final DateInfo dates;
     private PaymentInfo payment;
-    private int copies;
+    private volatile int copies;
+    private transient volatile CopiesChange copiesHistory; // Versioned increases, newest first
     private final Journal journal;
     private final Subscriber subscriber;
 
@@ -38,60 +38,100 @@ public class Subscription implements Serializable {
     }
 
     public void acceptPayment(double amount) {
-        this.payment.recordPayment(amount, Calendar.getInstance());
+        acceptPayment(amount, Calendar.getInstance());
     }
 
-    public boolean canSend(int issueMonth, int issueYear) {
-        // Calculate the 1-year subscription period start and end dates
-        Calendar startDateCal = new GregorianCalendar(dates.getStartYear(), dates.getStartMonth() - 1, 1); // Month is 0-indexed
+    public void acceptPayment(double amount, Calendar paymentDate) {
+        getPayment().recordPayment(amount, paymentDate);
+    }
 
-        Calendar endDateCal = new GregorianCalendar(dates.getStartYear(), dates.getStartMonth() - 1, 1);
-        endDateCal.add(Calendar.YEAR, 1);
-        endDateCal.add(Calendar.DAY_OF_MONTH, -1); // 1 year after start date minus 1 day
+    public void acceptPayment(double amount, Calendar paymentDate, long version) {
+        getPayment().recordPayment(amount, paymentDate, version);
+    }
 
-        // Create a Calendar for the end of the issue month
-        Calendar issueEndDateCal = new GregorianCalendar(issueYear, issueMonth - 1, 1);
-        issueEndDateCal.set(Calendar.DAY_OF_MONTH, issueEndDateCal.getActualMaximum(Calendar.DAY_OF_MONTH));
+    public boolean canSend(int issueMonth, int issueYear) {
+        return canSend(dates.getStartEpochMonth(), dates.getStartEpochDay(), dates.getDurationDays(),
+                       journal.getIssuePriceInCents(), journal.getFrequency(), getCopies(),
+                       getPayment().getDiscountRatio(), getPayment().getReceivedPaymentInCents(), issueMonth, issueYear);
+    }
+
+    /**
+     * Checks whether an issue could be sent as of a distributor version, ignoring later
+     * payments and copy increases.
+     */
+    public boolean canSendAsOf(int issueMonth, int issueYear, long version) {
+        return canSend(dates.getStartEpochMonth(), dates.getStartEpochDay(), dates.getDurationDays(),
+                       journal.getIssuePriceInCents(), journal.getFrequency(), getCopiesAsOf(version),
+                       getPayment().getDiscountRatio(), getPayment().getReceivedPaymentInCentsAsOf(version), issueMonth, issueYear);
+    }
 
+    /**
+     * Checks whether an issue can be sent, given the raw values of a subscription.
+     * This is the calculation behind {@link #canSend(int, int)}, usable without a Subscription object.
+     */
+    public static boolean canSend(int startEpochMonth, int startEpochDay, int durationDays,
+                                  long issuePriceInCents, int frequency, int copies,
+                                  double discountRatio, long receivedPaymentInCents,
+                                  int issueMonth, int issueYear) {
         // Check if the issue month/year is within the 1-year subscription period
-        if (issueEndDateCal.before(startDateCal) || issueEndDateCal.after(endDateCal)) {
+        int issueEpochMonth = EpochDates.epochMonth(issueMonth, issueYear);
+        if (issueEpochMonth < startEpochMonth || issueEpochMonth > startEpochMonth + 11) {
             return false; // Issue is outside the subscription period
         }
 
         // Calculate the number of days from the subscription start date to the end of the issue month
-        long startMillis = startDateCal.getTimeInMillis();
-        long issueEndMillis = issueEndDateCal.getTimeInMillis();
+        long elapsedDays = EpochDates.lastEpochDayOf(issueEpochMonth) - startEpochDay;
 
-        long elapsedDays = (issueEndMillis - startMillis) / (1000 * 60 * 60 * 24);
+        // The payment expected by the end of the issue month is the discounted annual cost times
+        // elapsedDays / durationDays. Both sides are multiplied by durationDays so the comparison
+        // stays in whole numbers; up to a cent short still counts as paid, as it always has.
+        long discountedAnnualCost = calculateExpectedPaymentInCents(issuePriceInCents, frequency, copies, discountRatio);
+        return (receivedPaymentInCents + 1) * durationDays >= discountedAnnualCost * elapsedDays;
+    }
 
-        // Calculate the total duration of the subscription in days (approximately 365)
-        long subscriptionDurationDays = (endDateCal.getTimeInMillis() - startMillis) / (1000 * 60 * 60 * 24) + 1;
+    public synchronized void increaseCopies() {
+        this.copies++;
+    }
 
-        if (subscriptionDurationDays <= 0) {
-             return false;
-        }
+    /**
+     * Increases the copies at a distributor version, remembering the previous count for
+     * readers of older versions. Versions must not decrease from one call to the next.
+     */
+    public synchronized void increaseCopies(long version) {
+        this.copiesHistory = new CopiesChange(version, copies, copiesHistory);
+        this.copies++;
+    }
 
-        // Calculate the fraction of the subscription period that has passed
-        double fractionOfYearPassed = (double) elapsedDays / subscriptionDurationDays;
+    public double calculateExpectedPayment() {
+        return Money.toAmount(calculateExpectedPaymentInCents());
+    }
 
-        // Calculate the expected payment based on the fraction of the year passed
-        double totalAnnualCost = journal.getIssuePrice() * journal.getFrequency() * copies;
-        double discountedAnnualCost = totalAnnualCost * (1.0 - payment.getDiscountRatio());
-        double expectedPaymentUpToMonth = discountedAnnualCost * fractionOfYearPassed;
+    public long calculateExpectedPaymentInCents() {
+        return calculateExpectedPaymentInCents(journal.getIssuePriceInCents(), journal.getFrequency(), getCopies(), getPayment().getDiscountRatio());
+    }
 
-        // Allow for a small floating-point tolerance when comparing payments
-        double tolerance = 0.01;
-        return payment.getReceivedPayment() >= (expectedPaymentUpToMonth - tolerance);
+    public double calculateExpectedPaymentAsOf(long version) {
+        return Money.toAmount(calculateExpectedPaymentInCentsAsOf(version));
     }
 
-    public void increaseCopies() {
-        this.copies++;
+    public long calculateExpectedPaymentInCentsAsOf(long version) {
+        return calculateExpectedPaymentInCents(journal.getIssuePriceInCents(), journal.getFrequency(), getCopiesAsOf(version), getPayment().getDiscountRatio());
     }
 
-    public double calculateExpectedPayment() {
-        double annualCost = journal.getIssuePrice() * journal.getFrequency() * copies;
-        double discountedCost = annualCost * (1.0 - payment.getDiscountRatio());
-        return discountedCost;
+    /**
+     * Calculates the discounted annual cost of a subscription from its raw values.
+     */
+    public static double calculateExpectedPayment(double issuePrice, int frequency, int copies, double discountRatio) {
+        return Money.toAmount(calculateExpectedPaymentInCents(Money.toCents(issuePrice), frequency, copies, discountRatio));
+    }
+
+    /**
+     * Calculates the discounted annual cost of a subscription in cents from its raw values,
+     * rounded to the nearest cent (see {@link Money#discount(long, double)}).
+     */
+    public static long calculateExpectedPaymentInCents(long issuePriceInCents, int frequency, int copies, double discountRatio) {
+        long annualCost = issuePriceInCents * frequency * copies;
+        return Money.discount(annualCost, discountRatio);
     }
 
     public DateInfo getDates() {
@@ -106,6 +146,19 @@ public class Subscription implements Serializable {
         return copies;
     }
 
+    /**
+     * Gets the number of copies as of a distributor version.
+     */
+    public int getCopiesAsOf(long version) {
+        // copies is read before the history, and increaseCopies writes them the other way round,
+        // so an increase newer than the version always shows up in the history.
+        int count = copies;
+        for (CopiesChange change = copiesHistory; change != null && change.version > version; change = change.previous) {
+            count = change.copiesBefore;
+        }
+        return count;
+    }
+
     public Journal getJournal() {
         return journal;
     }
@@ -113,4 +166,16 @@ public class Subscription implements Serializable {
     public Subscriber getSubscriber() {
         return subscriber;
     }
+
+    private static final class CopiesChange {
+        private final long version;
+        private final int copiesBefore;
+        private final CopiesChange previous;
+
+        private CopiesChange(long version, int copiesBefore, CopiesChange previous) {
+            this.version = version;
+            this.copiesBefore = copiesBefore;
+            this.previous = previous;
+        }
+    }
 }
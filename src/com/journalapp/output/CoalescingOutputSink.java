@@ -0,0 +1,112 @@
+package com.journalapp.output;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+
+/**
+ * Buffers messages and passes them on to another sink in batches, at most a given number of
+ * times per second.
+ *
+ * Writing a message adds it to a lock-free queue; the first write after a delivery also
+ * schedules the next one, no sooner than one frame after the last. A delivery joins every
+ * queued message into one text and writes it to the target on the delivery executor, so a
+ * bulk operation that writes thousands of messages costs the target (for a text area, the
+ * Swing event thread) a few large appends rather than thousands of small ones.
+ */
+public final class CoalescingOutputSink implements OutputSink {
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "output-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final OutputSink target;
+    private final Executor deliveryExecutor;
+    private final long frameNanos;
+
+    private final ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Object deliveryLock = new Object(); // Keeps deliveries in order when flush() runs one directly
+    private volatile long lastDelivery = System.nanoTime();
+
+    /**
+     * @param target Where the batched messages are written.
+     * @param deliveryExecutor Runs each delivery, such as SwingUtilities::invokeLater for a
+     *        Swing component, or Runnable::run to write on the flush thread.
+     * @param maxDeliveriesPerSecond How often at most the target is written to.
+     */
+    public CoalescingOutputSink(OutputSink target, Executor deliveryExecutor, int maxDeliveriesPerSecond) {
+        if (target == null || deliveryExecutor == null) {
+            throw new IllegalArgumentException("Target and delivery executor cannot be null.");
+        }
+        if (maxDeliveriesPerSecond < 1) {
+            throw new IllegalArgumentException("Deliveries per second must be at least 1.");
+        }
+        this.target = target;
+        this.deliveryExecutor = deliveryExecutor;
+        this.frameNanos = TimeUnit.SECONDS.toNanos(1) / maxDeliveriesPerSecond;
+    }
+
+    /**
+     * Creates a sink that appends to a text area on the Swing event thread, at most 30 times a second.
+     */
+    public static CoalescingOutputSink forTextArea(JTextArea textArea) {
+        return new CoalescingOutputSink(textArea::append, SwingUtilities::invokeLater, 30);
+    }
+
+    /**
+     * Creates a sink that writes to another sink from the flush thread, at most 10 times a
+     * second, for targets that may be written from any thread such as files and streams.
+     */
+    public static CoalescingOutputSink background(OutputSink target) {
+        return new CoalescingOutputSink(target, Runnable::run, 10);
+    }
+
+    @Override
+    public void write(String text) {
+        pending.add(text);
+        if (scheduled.compareAndSet(false, true)) {
+            long delay = Math.max(0, lastDelivery + frameNanos - System.nanoTime());
+            SCHEDULER.schedule(() -> deliveryExecutor.execute(this::deliver), delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Delivers the queued messages now, on the delivery executor, and flushes the target.
+     */
+    @Override
+    public void flush() {
+        deliveryExecutor.execute(() -> {
+            deliver();
+            target.flush();
+        });
+    }
+
+    private void deliver() {
+        synchronized (deliveryLock) {
+            lastDelivery = System.nanoTime();
+            // Cleared before draining: a message written during the drain schedules another
+            // delivery instead of waiting for the next write.
+            scheduled.set(false);
+            String text = pending.poll();
+            if (text == null) {
+                return;
+            }
+            String next = pending.poll();
+            if (next != null) {
+                StringBuilder batch = new StringBuilder(text).append(next);
+                while ((next = pending.poll()) != null) {
+                    batch.append(next);
+                }
+                text = batch.toString();
+            }
+            target.write(text);
+        }
+    }
+}
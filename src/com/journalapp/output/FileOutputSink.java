@@ -0,0 +1,59 @@
+package com.journalapp.output;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends messages to a text file. Writes are buffered; {@link #flush()} or {@link #close()}
+ * puts them on disk. A failed write is reported on standard error once and later messages
+ * are dropped.
+ */
+public final class FileOutputSink implements OutputSink, Closeable {
+    private final Path file;
+    private final BufferedWriter writer;
+    private boolean failed;
+
+    public FileOutputSink(Path file) throws IOException {
+        this.file = file;
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public synchronized void write(String text) {
+        if (failed) {
+            return;
+        }
+        try {
+            writer.write(text);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (failed) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    private void fail(IOException e) {
+        failed = true;
+        System.err.println("Error writing output to " + file + ": " + e.getMessage());
+    }
+}
@@ -0,0 +1,93 @@
+package com.journalapp.output;
+
+import java.util.Arrays;
+
+/**
+ * The last lines of some text, up to a fixed number, in a ring buffer: once full, each new
+ * line replaces the oldest. Text is split on '\n' as it is appended; a line that has not
+ * ended yet is held back until it does.
+ *
+ * Not thread-safe; {@link RingBufferOutputSink} and the console panel guard their own.
+ */
+public final class LineRing {
+    private final String[] lines;
+    private int first; // Index in lines of the oldest line
+    private int size;
+    private final StringBuilder partial = new StringBuilder(); // The last line, if it has not ended yet
+
+    public LineRing(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1.");
+        }
+        this.lines = new String[capacity];
+    }
+
+    /**
+     * Appends the complete lines of some text.
+     * @return The number of lines appended, including any already replaced by later ones.
+     */
+    public int append(String text) {
+        int added = 0;
+        int start = 0;
+        int end;
+        while ((end = text.indexOf('\n', start)) >= 0) {
+            String line;
+            if (partial.length() > 0) {
+                line = partial.append(text, start, end).toString();
+                partial.setLength(0);
+            } else {
+                line = text.substring(start, end);
+            }
+            if (size < lines.length) {
+                lines[(first + size) % lines.length] = line;
+                size++;
+            } else {
+                lines[first] = line;
+                first = (first + 1) % lines.length;
+            }
+            added++;
+            start = end + 1;
+        }
+        partial.append(text, start, text.length());
+        return added;
+    }
+
+    public int capacity() {
+        return lines.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets a line, counting from the oldest kept.
+     */
+    public String get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + size + " lines");
+        }
+        return lines[(first + index) % lines.length];
+    }
+
+    /**
+     * Removes every line, and the unfinished last line.
+     */
+    public void clear() {
+        Arrays.fill(lines, null);
+        first = 0;
+        size = 0;
+        partial.setLength(0);
+    }
+
+    /**
+     * Copies the lines kept, oldest first.
+     */
+    public String[] toArray() {
+        String[] copy = new String[size];
+        for (int i = 0; i < size; i++) {
+            copy[i] = get(i);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,26 @@
+package com.journalapp.output;
+
+/**
+ * Receives the messages the application shows its user, such as "Journal 'Nature' added."
+ * Each message is a piece of text ending in a line break; it may hold several lines.
+ * Implementations must accept writes from any thread.
+ */
+public interface OutputSink {
+    /**
+     * Prints each message to standard output as it is written.
+     */
+    OutputSink STANDARD_OUTPUT = text -> System.out.print(text); // Looks up System.out on each write, so System.setOut applies
+
+    /**
+     * Drops every message.
+     */
+    OutputSink DISCARD = text -> { };
+
+    void write(String text);
+
+    /**
+     * Delivers any messages still buffered.
+     */
+    default void flush() {
+    }
+}
@@ -0,0 +1,37 @@
+package com.journalapp.output;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the last lines written, up to a fixed number, in a ring buffer. Older lines are
+ * overwritten, so memory stays bounded however long the application runs.
+ */
+public final class RingBufferOutputSink implements OutputSink {
+    private final LineRing lines;
+    private long written; // Complete lines written so far
+
+    public RingBufferOutputSink(int capacity) {
+        this.lines = new LineRing(capacity);
+    }
+
+    @Override
+    public synchronized void write(String text) {
+        written += lines.append(text);
+    }
+
+    /**
+     * Gets the lines kept, oldest first, without their line breaks.
+     */
+    public synchronized List<String> getLines() {
+        return new ArrayList<>(Arrays.asList(lines.toArray()));
+    }
+
+    /**
+     * Gets the number of lines written since the sink was created, including those overwritten.
+     */
+    public synchronized long getLinesWritten() {
+        return written;
+    }
+}
@@ -0,0 +1,65 @@
+package com.journalapp.query;
+
+import com.journalapp.model.Journal;
+import com.journalapp.model.Money;
+import com.journalapp.model.Subscriber;
+
+/**
+ * A subscription that has received less than its expected payment.
+ */
+public final class IncompletePayment {
+    private final Journal journal;
+    private final Subscriber subscriber;
+    private final long receivedPaymentInCents;
+    private final long expectedPaymentInCents;
+
+    public IncompletePayment(Journal journal, Subscriber subscriber, long receivedPaymentInCents, long expectedPaymentInCents) {
+        this.journal = journal;
+        this.subscriber = subscriber;
+        this.receivedPaymentInCents = receivedPaymentInCents;
+        this.expectedPaymentInCents = expectedPaymentInCents;
+    }
+
+    public Journal getJournal() {
+        return journal;
+    }
+
+    public Subscriber getSubscriber() {
+        return subscriber;
+    }
+
+    public double getReceivedPayment() {
+        return Money.toAmount(receivedPaymentInCents);
+    }
+
+    public long getReceivedPaymentInCents() {
+        return receivedPaymentInCents;
+    }
+
+    public double getExpectedPayment() {
+        return Money.toAmount(expectedPaymentInCents);
+    }
+
+    public long getExpectedPaymentInCents() {
+        return expectedPaymentInCents;
+    }
+
+    /**
+     * Gets the amount still to be paid.
+     */
+    public double getOutstanding() {
+        return Money.toAmount(getOutstandingInCents());
+    }
+
+    public long getOutstandingInCents() {
+        return expectedPaymentInCents - receivedPaymentInCents;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(96);
+        sb.append("Subscriber: ").append(subscriber.getName()).append(", Journal: ").append(journal.getName()).append(", Received: ");
+        Money.append(sb, receivedPaymentInCents).append(", Expected: ");
+        return Money.append(sb, expectedPaymentInCents).toString();
+    }
+}
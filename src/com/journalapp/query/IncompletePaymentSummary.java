@@ -0,0 +1,46 @@
+package com.journalapp.query;
+
+import com.journalapp.model.Money;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * How many subscriptions have incomplete payments, how much they owe in total, and the ones
+ * that owe the most.
+ */
+public final class IncompletePaymentSummary {
+    private final int count;
+    private final long totalOutstandingInCents;
+    private final List<IncompletePayment> largest;
+
+    public IncompletePaymentSummary(int count, long totalOutstandingInCents, List<IncompletePayment> largest) {
+        this.count = count;
+        this.totalOutstandingInCents = totalOutstandingInCents;
+        this.largest = Collections.unmodifiableList(largest);
+    }
+
+    /**
+     * Gets the number of subscriptions with incomplete payments.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the total still to be paid over all of them.
+     */
+    public double getTotalOutstanding() {
+        return Money.toAmount(totalOutstandingInCents);
+    }
+
+    public long getTotalOutstandingInCents() {
+        return totalOutstandingInCents;
+    }
+
+    /**
+     * Gets the subscriptions that owe the most, largest amount first.
+     */
+    public List<IncompletePayment> getLargest() {
+        return largest;
+    }
+}
@@ -0,0 +1,39 @@
+package com.journalapp.query;
+
+import com.journalapp.model.Journal;
+import com.journalapp.model.Subscriber;
+
+/**
+ * An issue of a journal to send to a subscriber in a given month.
+ */
+public final class SendingOrder {
+    private final Journal journal;
+    private final Subscriber subscriber;
+    private final int copies;
+
+    public SendingOrder(Journal journal, Subscriber subscriber, int copies) {
+        this.journal = journal;
+        this.subscriber = subscriber;
+        this.copies = copies;
+    }
+
+    public Journal getJournal() {
+        return journal;
+    }
+
+    public Subscriber getSubscriber() {
+        return subscriber;
+    }
+
+    /**
+     * Gets the number of copies to send.
+     */
+    public int getCopies() {
+        return copies;
+    }
+
+    @Override
+    public String toString() {
+        return "Journal: " + journal.getName() + " (ISSN: " + journal.getIssn() + ") to Subscriber: " + subscriber.getName() + " (Copies: " + copies + ")";
+    }
+}
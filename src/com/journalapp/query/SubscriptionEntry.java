@@ -0,0 +1,52 @@
+package com.journalapp.query;
+
+import com.journalapp.model.DateInfo;
+import com.journalapp.model.Journal;
+import com.journalapp.model.Subscriber;
+
+/**
+ * A subscription as listed by a query: its journal, subscriber, period, and copies as of the
+ * moment the query started.
+ */
+public final class SubscriptionEntry {
+    private final Journal journal;
+    private final Subscriber subscriber;
+    private final int copies;
+    private final DateInfo dates;
+
+    public SubscriptionEntry(Journal journal, Subscriber subscriber, int copies, DateInfo dates) {
+        this.journal = journal;
+        this.subscriber = subscriber;
+        this.copies = copies;
+        this.dates = dates;
+    }
+
+    public Journal getJournal() {
+        return journal;
+    }
+
+    public Subscriber getSubscriber() {
+        return subscriber;
+    }
+
+    public int getCopies() {
+        return copies;
+    }
+
+    public DateInfo getDates() {
+        return dates;
+    }
+
+    /**
+     * Formats the subscription period as start month/year to end month/year.
+     */
+    public String getPeriod() {
+        return dates.getStartMonth() + "/" + dates.getStartYear() + " to " + dates.getEndMonth() + "/" + dates.getEndYear();
+    }
+
+    @Override
+    public String toString() {
+        return "Journal: " + journal.getName() + " (ISSN: " + journal.getIssn() + "), Subscriber: " + subscriber.getName()
+             + ", Copies: " + copies + ", Period: " + getPeriod();
+    }
+}
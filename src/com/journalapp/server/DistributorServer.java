@@ -0,0 +1,672 @@
+package com.journalapp.server;
+
+import com.journalapp.Distributor;
+import com.journalapp.model.*;
+import com.journalapp.output.CoalescingOutputSink;
+import com.journalapp.output.FileOutputSink;
+import com.journalapp.output.OutputSink;
+import com.journalapp.query.IncompletePayment;
+import com.journalapp.query.IncompletePaymentSummary;
+import com.journalapp.query.SubscriptionEntry;
+import com.journalapp.util.Json;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Serves a Distributor over HTTP with JSON requests and responses, for running without the GUI.
+ *
+ * <pre>
+ * POST /journals              {"name", "issn", "frequency", "issuePrice"}
+ * GET  /journals/{issn}
+ * POST /subscribers           {"type": "individual", "name", "address", "creditCardNr", "expireMonth", "expireYear", "ccv"}
+ *                             {"type": "corporation", "name", "address", "bankCode", "bankName", "issueDay", "issueMonth", "issueYear", "accountNumber"}
+ * POST /subscriptions         {"issn", "subscriberName", "subscriberAddress" (optional), "startMonth", "startYear", "copies", "discountRatio"}
+ * POST /payments              {"issn", "subscriberName", "amount", "date" (optional, yyyy-MM-dd)}
+ * GET  /sending-orders?month=&amp;year=[&amp;issn=]              (paged)
+ * GET  /incomplete-payments                                 (paged, largest amount owed first)
+ * GET  /incomplete-payments/summary[?top=]                  {"count", "totalOutstanding", "largest": [...]}
+ * GET  /subscriptions?subscriber=name | ?issn=              (paged)
+ * GET  /subscriptions?expiringFromMonth=&amp;expiringFromYear=[&amp;expiringToMonth=&amp;expiringToYear=]  (paged)
+ * GET  /reports?expiryMonth=&amp;expiryYear=&amp;startYear=&amp;endYear=
+ * GET  /revenue?startYear=&amp;endYear=[&amp;issn=]               {"years": {year: total}, "journals": {issn: total}}
+ * GET  /revenue?year=[&amp;issn=]                             {"year", "months": [January..December]}
+ * GET  /metrics
+ * GET  /health
+ * </pre>
+ * The POST endpoints also take a JSON array of such objects, which is applied as one batch.
+ * Paged queries take {@code offset} and {@code limit} (default 1000) and return
+ * {@code {"offset", "limit", "more", "items": [...]}}; only the requested page is computed.
+ *
+ * Each request runs on its own virtual thread where the runtime has them (Java 21 and later)
+ * and on a bounded pool of platform threads otherwise. Requests call the Distributor directly,
+ * so they are as concurrent as its locking allows; nothing goes through the Swing event thread.
+ */
+public class DistributorServer {
+    private static final int MAX_BODY_BYTES = 64 << 20;
+
+    private final Distributor distributor;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public DistributorServer(Distributor distributor, InetSocketAddress address) throws IOException {
+        if (distributor == null) {
+            throw new IllegalArgumentException("Distributor cannot be null.");
+        }
+        this.distributor = distributor;
+        this.executor = requestExecutor();
+        this.server = HttpServer.create(address, 4096);
+        server.setExecutor(executor);
+        server.createContext("/journals", route(this::journals));
+        server.createContext("/subscribers", route(this::subscribers));
+        server.createContext("/subscriptions", route(this::subscriptions));
+        server.createContext("/payments", route(this::payments));
+        server.createContext("/sending-orders", route(this::sendingOrders));
+        server.createContext("/incomplete-payments", route(this::incompletePayments));
+        server.createContext("/reports", route(this::reports));
+        server.createContext("/revenue", route(this::revenue));
+        server.createContext("/metrics", route(this::metrics));
+        server.createContext("/health", route(exchange -> ok(Collections.singletonMap("status", "up"))));
+        server.createContext("/", route(exchange -> Response.error(404, "No such endpoint: " + exchange.getRequestURI().getPath())));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to the given number of seconds for those in progress,
+     * and stops the request threads.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    // One virtual thread per request if the runtime has them; looked up reflectively so the
+    // server still builds and runs on Java 17.
+    private static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // Requests mostly wait on the distributor's lock or on a log flush, so use more
+            // threads than cores.
+            int threads = Math.max(32, Runtime.getRuntime().availableProcessors() * 8);
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "http-request-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    // --- Endpoints ---
+
+    private Response journals(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (path.startsWith("/journals/") && isGet(exchange)) {
+            Journal journal = distributor.searchJournal(path.substring("/journals/".length()));
+            return journal == null ? Response.error(404, "Journal not found.") : ok(journalJson(journal));
+        }
+        requirePost(exchange, "/journals");
+        List<Map<String, Object>> items = objects(exchange);
+        List<Journal> journals = new ArrayList<>(items.size());
+        for (Map<String, Object> item : items) {
+            journals.add(new Journal(string(item, "name"), string(item, "issn"), integer(item, "frequency"), number(item, "issuePrice")));
+        }
+        return added(items, !isArray(items)
+                            ? new boolean[] { distributor.addJournal(journals.get(0)) }
+                            : distributor.addJournals(journals), "ISSN already exists.");
+    }
+
+    private Response subscribers(HttpExchange exchange) throws IOException {
+        requirePost(exchange, "/subscribers");
+        List<Map<String, Object>> items = objects(exchange);
+        List<Subscriber> subscribers = new ArrayList<>(items.size());
+        for (Map<String, Object> item : items) {
+            String type = optionalString(item, "type", "individual");
+            if (type.equals("individual")) {
+                subscribers.add(new Individual(string(item, "name"), string(item, "address"), string(item, "creditCardNr"),
+                                               integer(item, "expireMonth"), integer(item, "expireYear"), integer(item, "ccv")));
+            } else if (type.equals("corporation")) {
+                subscribers.add(new Corporation(string(item, "name"), string(item, "address"), integer(item, "bankCode"),
+                                                string(item, "bankName"), integer(item, "issueDay"), integer(item, "issueMonth"),
+                                                integer(item, "issueYear"), integer(item, "accountNumber")));
+            } else {
+                throw new IllegalArgumentException("Subscriber type must be 'individual' or 'corporation'.");
+            }
+        }
+        return added(items, !isArray(items)
+                            ? new boolean[] { distributor.addSubscriber(subscribers.get(0)) }
+                            : distributor.addSubscribers(subscribers), "Subscriber with that name and address already exists.");
+    }
+
+    private Response subscriptions(HttpExchange exchange) throws IOException {
+        if (isGet(exchange)) {
+            Map<String, String> query = query(exchange);
+            if (query.containsKey("subscriber")) {
+                return page(query, distributor.subscriptionsBySubscriberName(query.get("subscriber")), DistributorServer::subscriptionJson);
+            }
+            if (query.containsKey("issn")) {
+                return page(query, distributor.subscriptionsByJournalIssn(query.get("issn")), DistributorServer::subscriptionJson);
+            }
+            if (query.containsKey("expiringFromMonth")) {
+                int fromMonth = queryInteger(query, "expiringFromMonth");
+                int fromYear = queryInteger(query, "expiringFromYear");
+                int toMonth = query.containsKey("expiringToMonth") ? queryInteger(query, "expiringToMonth") : fromMonth;
+                int toYear = query.containsKey("expiringToYear") ? queryInteger(query, "expiringToYear") : fromYear;
+                return page(query, distributor.subscriptionsExpiring(fromMonth, fromYear, toMonth, toYear), DistributorServer::subscriptionJson);
+            }
+            throw new IllegalArgumentException("Give 'subscriber', 'issn' or 'expiringFromMonth' and 'expiringFromYear'.");
+        }
+        requirePost(exchange, "/subscriptions");
+        List<Map<String, Object>> items = objects(exchange);
+        List<Subscription> subscriptions = new ArrayList<>(items.size());
+        for (Map<String, Object> item : items) {
+            String issn = string(item, "issn");
+            Journal journal = distributor.searchJournal(issn);
+            if (journal == null) {
+                throw new IllegalArgumentException("No journal with ISSN " + issn + ".");
+            }
+            Subscriber subscriber = subscriber(item);
+            subscriptions.add(new Subscription(new DateInfo(integer(item, "startMonth"), integer(item, "startYear")),
+                                               optionalInteger(item, "copies", 1), journal, subscriber,
+                                               optionalNumber(item, "discountRatio", 0)));
+        }
+        return added(items, !isArray(items)
+                            ? new boolean[] { distributor.addSubscription(subscriptions.get(0).getJournal().getIssn(),
+                                                                          subscriptions.get(0).getSubscriber(), subscriptions.get(0)) }
+                            : distributor.addSubscriptions(subscriptions), "Subscription could not be added.");
+    }
+
+    private Response payments(HttpExchange exchange) throws IOException {
+        requirePost(exchange, "/payments");
+        List<Map<String, Object>> items = objects(exchange);
+        List<Subscription> subscriptions = new ArrayList<>(items.size());
+        List<PaymentTransaction> payments = new ArrayList<>(items.size());
+        for (Map<String, Object> item : items) {
+            String issn = string(item, "issn");
+            String subscriberName = string(item, "subscriberName");
+            String address = optionalString(item, "subscriberAddress", null);
+            Subscription subscription = address == null
+                    ? distributor.searchSubscription(issn, subscriberName)
+                    : distributor.searchSubscription(issn, distributor.searchSubscriber(subscriberName, address));
+            if (subscription == null && !isArray(items)) {
+                return Response.error(404, "No subscription to " + issn + " for " + subscriberName + ".");
+            }
+            subscriptions.add(subscription);
+            String date = optionalString(item, "date", null);
+            double amount = number(item, "amount");
+            if (Money.toCents(amount) <= 0) {
+                throw new IllegalArgumentException("'amount' must be at least 0.01.");
+            }
+            payments.add(new PaymentTransaction(amount, date == null ? Calendar.getInstance() : date(date)));
+        }
+        return added(items, !isArray(items)
+                            ? new boolean[] { distributor.acceptPayment(subscriptions.get(0), payments.get(0).getAmount(), payments.get(0).getPaymentDate()) }
+                            : distributor.acceptPayments(subscriptions, payments), "No such subscription.");
+    }
+
+    private Response sendingOrders(HttpExchange exchange) {
+        requireGet(exchange);
+        Map<String, String> query = query(exchange);
+        int month = queryInteger(query, "month");
+        int year = queryInteger(query, "year");
+        String issn = query.get("issn");
+        return page(query, issn == null ? distributor.sendingOrders(month, year) : distributor.sendingOrders(issn, month, year),
+                    order -> {
+                        Map<String, Object> json = new LinkedHashMap<>();
+                        json.put("issn", order.getJournal().getIssn());
+                        json.put("journal", order.getJournal().getName());
+                        json.put("subscriberName", order.getSubscriber().getName());
+                        json.put("subscriberAddress", order.getSubscriber().getAddress());
+                        json.put("copies", order.getCopies());
+                        return json;
+                    });
+    }
+
+    private Response incompletePayments(HttpExchange exchange) {
+        requireGet(exchange);
+        Map<String, String> query = query(exchange);
+        String path = exchange.getRequestURI().getPath();
+        if (path.equals("/incomplete-payments/summary")) {
+            int top = query.containsKey("top") ? queryInteger(query, "top") : 10;
+            if (top < 0 || top > MAX_PAGE_SIZE) {
+                throw new IllegalArgumentException("top must be between 0 and " + MAX_PAGE_SIZE + ".");
+            }
+            IncompletePaymentSummary summary = distributor.incompletePaymentSummary(top);
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("count", summary.getCount());
+            json.put("totalOutstanding", summary.getTotalOutstanding());
+            json.put("largest", summary.getLargest().stream().map(DistributorServer::incompletePaymentJson).collect(Collectors.toList()));
+            return ok(json);
+        }
+        if (!path.equals("/incomplete-payments")) {
+            throw new HttpError(404, "No such endpoint: " + path);
+        }
+        return page(query, distributor.incompletePaymentsByAmountOwed(), DistributorServer::incompletePaymentJson);
+    }
+
+    private Response reports(HttpExchange exchange) {
+        requireGet(exchange);
+        Map<String, String> query = query(exchange);
+        Calendar expiryDateThreshold = new GregorianCalendar(queryInteger(query, "expiryYear"), queryInteger(query, "expiryMonth") - 1, 1);
+        return text(distributor.generateReport(expiryDateThreshold, queryInteger(query, "startYear"), queryInteger(query, "endYear")));
+    }
+
+    private static final int MAX_REVENUE_YEARS = 1000;
+
+    private Response revenue(HttpExchange exchange) {
+        requireGet(exchange);
+        Map<String, String> query = query(exchange);
+        String issn = query.get("issn");
+        Map<String, Object> json = new LinkedHashMap<>();
+        if (query.containsKey("year")) {
+            int year = queryInteger(query, "year");
+            json.put("year", year);
+            List<Double> months = new ArrayList<>(12);
+            for (double month : distributor.monthlyRevenue(issn, year)) {
+                months.add(month);
+            }
+            json.put("months", months);
+            return ok(json);
+        }
+        int startYear = queryInteger(query, "startYear");
+        int endYear = queryInteger(query, "endYear");
+        if (endYear < startYear || endYear - startYear >= MAX_REVENUE_YEARS) {
+            throw new IllegalArgumentException("endYear must be from startYear to " + (MAX_REVENUE_YEARS - 1) + " years after it.");
+        }
+        Map<String, Object> years = new LinkedHashMap<>();
+        double[] annual = distributor.annualRevenue(issn, startYear, endYear);
+        for (int year = startYear; year <= endYear; year++) {
+            years.put(String.valueOf(year), annual[year - startYear]);
+        }
+        json.put("years", years);
+        if (issn == null) {
+            json.put("journals", distributor.revenueByJournal(startYear, endYear));
+        }
+        return ok(json);
+    }
+
+    private Response metrics(HttpExchange exchange) {
+        requireGet(exchange);
+        return new Response(200, "text/plain; charset=utf-8", distributor.getMetrics().dump());
+    }
+
+    // --- Request and response handling ---
+
+    private interface Endpoint {
+        Response handle(HttpExchange exchange) throws IOException;
+    }
+
+    private static final class Response {
+        final int status;
+        final String contentType;
+        final String body;
+
+        Response(int status, String contentType, String body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        static Response json(int status, Object value) {
+            return new Response(status, "application/json; charset=utf-8", Json.write(value));
+        }
+
+        static Response error(int status, String message) {
+            return json(status, Collections.singletonMap("error", message));
+        }
+    }
+
+    private static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private static HttpHandler route(Endpoint endpoint) {
+        return exchange -> {
+            Response response;
+            try {
+                response = endpoint.handle(exchange);
+            } catch (HttpError e) {
+                response = Response.error(e.status, e.getMessage());
+            } catch (IllegalArgumentException e) {
+                // Invalid JSON, missing fields, and the model's own validation.
+                response = Response.error(400, e.getMessage());
+            } catch (RuntimeException e) {
+                System.err.println("Error handling " + exchange.getRequestMethod() + " " + exchange.getRequestURI() + ": " + e.getMessage());
+                e.printStackTrace();
+                response = Response.error(500, "Internal error: " + e.getMessage());
+            }
+            byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", response.contentType);
+            exchange.sendResponseHeaders(response.status, body.length == 0 ? -1 : body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        };
+    }
+
+    private static Response ok(Object value) {
+        return Response.json(200, value);
+    }
+
+    private static Response text(String text) {
+        return ok(Collections.singletonMap("text", text));
+    }
+
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+    private static final int MAX_PAGE_SIZE = 100000;
+
+    // Reads one page of a query's results, given by the offset and limit query parameters.
+    // Only the results up to the end of the page are found; "more" tells if there are others.
+    private static <T> Response page(Map<String, String> query, Stream<T> results, Function<T, Object> toJson) {
+        int offset = query.containsKey("offset") ? queryInteger(query, "offset") : 0;
+        int limit = query.containsKey("limit") ? queryInteger(query, "limit") : DEFAULT_PAGE_SIZE;
+        if (offset < 0 || limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Offset must be at least 0 and limit between 1 and " + MAX_PAGE_SIZE + ".");
+        }
+        List<Object> items = results.skip(offset).limit(limit + 1L).map(toJson).collect(Collectors.toList());
+        boolean more = items.size() > limit;
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("offset", offset);
+        page.put("limit", limit);
+        page.put("more", more);
+        page.put("items", more ? items.subList(0, limit) : items);
+        return ok(page);
+    }
+
+    private static Object incompletePaymentJson(IncompletePayment payment) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("issn", payment.getJournal().getIssn());
+        json.put("journal", payment.getJournal().getName());
+        json.put("subscriberName", payment.getSubscriber().getName());
+        json.put("subscriberAddress", payment.getSubscriber().getAddress());
+        json.put("received", payment.getReceivedPayment());
+        json.put("expected", payment.getExpectedPayment());
+        json.put("outstanding", payment.getOutstanding());
+        return json;
+    }
+
+    private static Object subscriptionJson(SubscriptionEntry entry) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("issn", entry.getJournal().getIssn());
+        json.put("journal", entry.getJournal().getName());
+        json.put("subscriberName", entry.getSubscriber().getName());
+        json.put("subscriberAddress", entry.getSubscriber().getAddress());
+        json.put("copies", entry.getCopies());
+        json.put("startMonth", entry.getDates().getStartMonth());
+        json.put("startYear", entry.getDates().getStartYear());
+        json.put("endMonth", entry.getDates().getEndMonth());
+        json.put("endYear", entry.getDates().getEndYear());
+        return json;
+    }
+
+    // A single object gets 201 or 409; an array gets 200 with a result for each item.
+    private static Response added(List<Map<String, Object>> items, boolean[] added, String rejection) {
+        if (!isArray(items)) {
+            return added[0] ? Response.json(201, Collections.singletonMap("added", true)) : Response.error(409, rejection);
+        }
+        List<Boolean> results = new ArrayList<>(added.length);
+        int count = 0;
+        for (boolean result : added) {
+            results.add(result);
+            count += result ? 1 : 0;
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("added", count);
+        response.put("rejected", added.length - count);
+        response.put("results", results);
+        return ok(response);
+    }
+
+    private static boolean isGet(HttpExchange exchange) {
+        return exchange.getRequestMethod().equals("GET");
+    }
+
+    private static void requireGet(HttpExchange exchange) {
+        if (!isGet(exchange)) {
+            throw new HttpError(405, "Use GET for " + exchange.getRequestURI().getPath() + ".");
+        }
+    }
+
+    private static void requirePost(HttpExchange exchange, String path) {
+        if (!exchange.getRequestURI().getPath().equals(path)) {
+            throw new HttpError(404, "No such endpoint: " + exchange.getRequestURI().getPath());
+        }
+        if (!exchange.getRequestMethod().equals("POST")) {
+            throw new HttpError(405, "Use POST for " + path + ".");
+        }
+    }
+
+    // Marks the list of items read from a JSON array, so responses can tell it from a single object.
+    private static final class ItemArray extends ArrayList<Map<String, Object>> {
+        private static final long serialVersionUID = 1L;
+
+        ItemArray(int size) {
+            super(size);
+        }
+    }
+
+    private static boolean isArray(List<Map<String, Object>> items) {
+        return items instanceof ItemArray;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> objects(HttpExchange exchange) throws IOException {
+        Object body = Json.parse(body(exchange));
+        if (body instanceof Map) {
+            return Collections.singletonList((Map<String, Object>) body);
+        }
+        if (body instanceof List) {
+            List<?> array = (List<?>) body;
+            ItemArray items = new ItemArray(array.size());
+            for (Object item : array) {
+                if (!(item instanceof Map)) {
+                    throw new IllegalArgumentException("Every array element must be a JSON object.");
+                }
+                items.add((Map<String, Object>) item);
+            }
+            return items;
+        }
+        throw new IllegalArgumentException("Request body must be a JSON object or array.");
+    }
+
+    private static String body(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new HttpError(413, "Request body is larger than " + (MAX_BODY_BYTES >> 20) + " MB.");
+            }
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private Subscriber subscriber(Map<String, Object> item) {
+        String name = string(item, "subscriberName");
+        String address = optionalString(item, "subscriberAddress", null);
+        Subscriber subscriber = address == null ? distributor.searchSubscriber(name) : distributor.searchSubscriber(name, address);
+        if (subscriber == null) {
+            throw new IllegalArgumentException("No subscriber named " + name + (address == null ? "" : " at " + address) + ".");
+        }
+        return subscriber;
+    }
+
+    private static Map<String, Object> journalJson(Journal journal) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("name", journal.getName());
+        json.put("issn", journal.getIssn());
+        json.put("frequency", journal.getFrequency());
+        json.put("issuePrice", journal.getIssuePrice());
+        return json;
+    }
+
+    private static String string(Map<String, Object> item, String field) {
+        Object value = item.get(field);
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException("'" + field + "' must be a string.");
+        }
+        return (String) value;
+    }
+
+    private static String optionalString(Map<String, Object> item, String field, String defaultValue) {
+        return item.get(field) == null ? defaultValue : string(item, field);
+    }
+
+    private static double number(Map<String, Object> item, String field) {
+        Object value = item.get(field);
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException("'" + field + "' must be a number.");
+        }
+        return ((Number) value).doubleValue();
+    }
+
+    private static double optionalNumber(Map<String, Object> item, String field, double defaultValue) {
+        return item.get(field) == null ? defaultValue : number(item, field);
+    }
+
+    private static int integer(Map<String, Object> item, String field) {
+        Object value = item.get(field);
+        if (!(value instanceof Long) || (Long) value != ((Long) value).intValue()) {
+            throw new IllegalArgumentException("'" + field + "' must be an integer.");
+        }
+        return ((Long) value).intValue();
+    }
+
+    private static int optionalInteger(Map<String, Object> item, String field, int defaultValue) {
+        return item.get(field) == null ? defaultValue : integer(item, field);
+    }
+
+    private static Calendar date(String date) {
+        try {
+            LocalDate day = LocalDate.parse(date);
+            return new GregorianCalendar(day.getYear(), day.getMonthValue() - 1, day.getDayOfMonth());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date '" + date + "'; expected yyyy-MM-dd.");
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> query = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw != null) {
+            for (String pair : raw.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                              URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return query;
+    }
+
+    private static int queryInteger(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing query parameter '" + name + "'.");
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Query parameter '" + name + "' must be an integer.");
+        }
+    }
+
+    /**
+     * Runs the server until the process is stopped.
+     * Usage: DistributorServer [--port 8080] [--state &lt;snapshot file&gt;] [--output &lt;file&gt; | none]
+     *
+     * With --state the snapshot and its write-ahead log are recovered at startup, every change
+     * is logged, and the state is saved again on shutdown. The distributor's messages go to
+     * standard output in batches, or to the --output file, or nowhere with --output none.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = 8080;
+        String stateFile = null;
+        String outputFile = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--state") && i + 1 < args.length) {
+                stateFile = args[++i];
+            } else if (args[i].equals("--output") && i + 1 < args.length) {
+                outputFile = args[++i];
+            } else {
+                System.err.println("Usage: DistributorServer [--port 8080] [--state <snapshot file>] [--output <file> | none]");
+                System.exit(1);
+            }
+        }
+
+        FileOutputSink file = outputFile != null && !outputFile.equals("none") ? new FileOutputSink(Paths.get(outputFile)) : null;
+        OutputSink output = "none".equals(outputFile) ? OutputSink.DISCARD
+                          : CoalescingOutputSink.background(file != null ? file : OutputSink.STANDARD_OUTPUT);
+        Distributor distributor = new Distributor();
+        distributor.setOutputSink(output);
+        if (stateFile != null && !distributor.recoverState(stateFile)) {
+            // Serving, and saving on shutdown, would overwrite the snapshot with an empty state.
+            System.err.println("Could not recover the state from " + stateFile + "; not starting.");
+            output.flush();
+            System.exit(1);
+        }
+        DistributorServer server = new DistributorServer(distributor, new InetSocketAddress(port));
+        String savedStateFile = stateFile;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(5);
+            if (savedStateFile != null) {
+                distributor.saveState(savedStateFile);
+            }
+            output.flush();
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing the output file: " + e.getMessage());
+                }
+            }
+        }, "http-shutdown"));
+        server.start();
+        System.out.println("Distributor server listening on port " + server.getAddress().getPort() + ".");
+    }
+}
@@ -0,0 +1,84 @@
+package com.journalapp.util;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A list that only grows at its end, written by one thread at a time and read by any
+ * number of threads without locking.
+ *
+ * {@link #add(Object)} stores the element before it publishes the new size through a
+ * volatile write, so a reader that sees the size also sees every element below it.
+ * Elements are never moved or removed, so iteration never fails with a
+ * ConcurrentModificationException; an iterator also returns elements added while it runs.
+ * Callers must serialize calls to add themselves.
+ */
+public class AppendOnlyList<E> extends AbstractList<E> implements RandomAccess, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private volatile Object[] elements;
+    private volatile int size;
+
+    public AppendOnlyList() {
+        this(10);
+    }
+
+    public AppendOnlyList(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Initial capacity cannot be negative.");
+        }
+        this.elements = new Object[initialCapacity];
+    }
+
+    @Override
+    public boolean add(E element) {
+        Object[] current = elements;
+        int n = size;
+        if (n == current.length) {
+            // Readers still using the old array only look below the old size, which the copy keeps.
+            current = Arrays.copyOf(current, Math.max(10, n + (n >> 1)));
+            elements = current;
+        }
+        current[n] = element;
+        size = n + 1;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        int n = size;
+        if (index < 0 || index >= n) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + n);
+        }
+        return (E) elements[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Object[] toArray() {
+        int n = size;
+        return Arrays.copyOf(elements, n);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        int n = size;
+        Object[] current = elements;
+        if (a.length < n) {
+            return (T[]) Arrays.copyOf(current, n, a.getClass());
+        }
+        System.arraycopy(current, 0, a, 0, n);
+        if (a.length > n) {
+            a[n] = null;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,138 @@
+package com.journalapp.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads comma-separated values as defined by RFC 4180: fields may be quoted with double
+ * quotes, and a quoted field may contain commas, line breaks and doubled quotes. Lines may
+ * end with CRLF or LF. Fields are returned exactly as written, without trimming.
+ */
+public class CsvReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private long lineNumber;       // Line on which the last record returned started
+    private long nextLineNumber = 1;
+
+    private final List<String> fields = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the next record.
+     * @return The fields of the record, or null at the end of the input.
+     * @throws IOException If reading fails or a quoted field is not closed.
+     */
+    public String[] next() throws IOException {
+        if (!fill()) {
+            return null;
+        }
+        lineNumber = nextLineNumber;
+        fields.clear();
+        while (true) {
+            field.setLength(0);
+            boolean endOfRecord = fill() && buffer[position] == '"' ? readQuoted() : readPlain();
+            fields.add(field.toString());
+            if (endOfRecord) {
+                return fields.toArray(new String[0]);
+            }
+        }
+    }
+
+    /**
+     * Gets the line number on which the last record returned by {@link #next()} started.
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    // Reads an unquoted field up to the next comma or line end. Returns true at the end of the record.
+    private boolean readPlain() throws IOException {
+        while (fill()) {
+            int start = position;
+            while (position < limit) {
+                char c = buffer[position];
+                if (c == ',' || c == '\n' || c == '\r') {
+                    field.append(buffer, start, position - start);
+                    position++;
+                    if (c == ',') {
+                        return false;
+                    }
+                    endLine(c);
+                    return true;
+                }
+                position++;
+            }
+            field.append(buffer, start, position - start);
+        }
+        return true;
+    }
+
+    // Reads a quoted field and the separator after it. Returns true at the end of the record.
+    private boolean readQuoted() throws IOException {
+        long startLine = nextLineNumber;
+        position++; // opening quote
+        while (true) {
+            if (!fill()) {
+                throw new IOException("Unclosed quoted field starting on line " + startLine + ".");
+            }
+            char c = buffer[position++];
+            if (c == '"') {
+                if (fill() && buffer[position] == '"') {
+                    field.append('"');
+                    position++;
+                    continue;
+                }
+                break;
+            }
+            if (c == '\n') {
+                nextLineNumber++;
+            }
+            field.append(c);
+        }
+        if (!fill()) {
+            return true;
+        }
+        char c = buffer[position++];
+        if (c == ',') {
+            return false;
+        }
+        if (c == '\n' || c == '\r') {
+            endLine(c);
+            return true;
+        }
+        throw new IOException("Unexpected character '" + c + "' after a quoted field on line " + nextLineNumber + ".");
+    }
+
+    private void endLine(char c) throws IOException {
+        if (c == '\r' && fill() && buffer[position] == '\n') {
+            position++;
+        }
+        nextLineNumber++;
+    }
+
+    private boolean fill() throws IOException {
+        if (position < limit) {
+            return true;
+        }
+        int read = reader.read(buffer, 0, buffer.length);
+        position = 0;
+        limit = Math.max(read, 0);
+        return read > 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
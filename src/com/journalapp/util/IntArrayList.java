@@ -0,0 +1,58 @@
+package com.journalapp.util;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive ints, used for compact index buckets.
+ *
+ * One thread may add while others read: the size is published after the element, so
+ * readers see a consistent prefix of the list without locking. Concurrent adds must be
+ * serialized by the caller.
+ */
+public class IntArrayList {
+    private volatile int[] elements;
+    private volatile int size;
+
+    public IntArrayList() {
+        this(4);
+    }
+
+    public IntArrayList(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Initial capacity cannot be negative.");
+        }
+        this.elements = new int[initialCapacity];
+    }
+
+    public void add(int value) {
+        int[] current = elements;
+        int n = size;
+        if (n == current.length) {
+            current = Arrays.copyOf(current, Math.max(4, n + (n >> 1)));
+            elements = current;
+        }
+        current[n] = value;
+        size = n + 1;
+    }
+
+    public int get(int index) {
+        int n = size;
+        if (index < 0 || index >= n) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + n);
+        }
+        return elements[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int[] toArray() {
+        int n = size;
+        return Arrays.copyOf(elements, n);
+    }
+}
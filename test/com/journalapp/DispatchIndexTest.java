@@ -0,0 +1,84 @@
+package com.journalapp;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.journalapp.model.*;
+import com.journalapp.query.SendingOrder;
+import com.journalapp.util.IntArrayList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class DispatchIndexTest {
+    private final Journal nature = new Journal("Nature", "0028-0836", 12, 10);
+    private final Journal science = new Journal("Science", "0036-8075", 51, 15);
+    private final Individual ada = new Individual("Ada", "1 Main St", "4111111111111111", 12, 2030, 123);
+
+    @Test
+    void bucketsMatchAScanAcrossMonthAndYearBoundaries() {
+        // Start months are added in random order, so the buckets grow both ways.
+        Random random = new Random(4);
+        List<Subscription> subscriptions = new ArrayList<>();
+        DispatchIndex index = new DispatchIndex();
+        for (int position = 0; position < 300; position++) {
+            int startEpochMonth = EpochDates.epochMonth(1, 2022) + random.nextInt(48);
+            Subscription subscription = new Subscription(new DateInfo(EpochDates.monthOf(startEpochMonth), EpochDates.yearOf(startEpochMonth)), 1,
+                                                         random.nextBoolean() ? nature : science, ada, 0);
+            subscriptions.add(subscription);
+            index.add(position, subscription);
+        }
+
+        for (int epochMonth = EpochDates.epochMonth(1, 2021); epochMonth <= EpochDates.epochMonth(12, 2027); epochMonth++) {
+            int month = EpochDates.monthOf(epochMonth);
+            int year = EpochDates.yearOf(epochMonth);
+            assertArrayEquals(scan(subscriptions, null, month, year), index.forMonth(month, year).toArray(), month + "/" + year);
+            for (Journal journal : List.of(nature, science)) {
+                assertArrayEquals(scan(subscriptions, journal, month, year), index.forJournalAndMonth(journal.getIssn(), month, year).toArray(),
+                                  journal.getIssn() + " " + month + "/" + year);
+            }
+        }
+        assertEquals(0, index.forJournalAndMonth("0000-0000", 1, 2024).size());
+    }
+
+    @Test
+    void sendingOrdersComeFromTheActiveSubscriptionsWithTheirCurrentCopies() {
+        Distributor distributor = TestDistributors.quietDistributor();
+        assertTrue(distributor.addJournal(nature));
+        assertTrue(distributor.addSubscriber(ada));
+        Individual bob = new Individual("Bob", "2 Main St", "4111111111111112", 12, 2030, 456);
+        assertTrue(distributor.addSubscriber(bob));
+        Subscription adas = new Subscription(new DateInfo(11, 2024), 1, nature, ada, 0);
+        assertTrue(distributor.addSubscription(nature.getIssn(), ada, adas));
+        Subscription bobs = new Subscription(new DateInfo(2, 2025), 1, nature, bob, 0);
+        assertTrue(distributor.addSubscription(nature.getIssn(), bob, bobs));
+        assertTrue(distributor.acceptPayment(adas, 240));
+        assertTrue(distributor.acceptPayment(bobs, 120));
+        // Adding the same subscription again increases its copies.
+        assertTrue(distributor.addSubscription(nature.getIssn(), ada, new Subscription(new DateInfo(11, 2024), 1, nature, ada, 0)));
+
+        List<SendingOrder> january = distributor.sendingOrders(1, 2025).toList();
+        assertEquals(1, january.size());
+        assertEquals("Ada", january.get(0).getSubscriber().getName());
+        assertEquals(2, january.get(0).getCopies());
+        assertEquals(List.of("Ada", "Bob"), distributor.sendingOrders(nature.getIssn(), 2, 2025).map(order -> order.getSubscriber().getName()).toList());
+        assertEquals(0, distributor.sendingOrders(10, 2024).count());
+        assertEquals(0, distributor.sendingOrders(science.getIssn(), 1, 2025).count());
+    }
+
+    private static int[] scan(List<Subscription> subscriptions, Journal journal, int month, int year) {
+        // Issues go out in the twelve months from the start month (see Subscription.canSend).
+        int epochMonth = EpochDates.epochMonth(month, year);
+        IntArrayList positions = new IntArrayList();
+        for (int position = 0; position < subscriptions.size(); position++) {
+            Subscription subscription = subscriptions.get(position);
+            int startEpochMonth = subscription.getDates().getStartEpochMonth();
+            if ((journal == null || subscription.getJournal() == journal) && epochMonth >= startEpochMonth && epochMonth < startEpochMonth + 12) {
+                positions.add(position);
+            }
+        }
+        return positions.toArray();
+    }
+}
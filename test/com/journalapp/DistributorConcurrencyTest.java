@@ -0,0 +1,125 @@
+package com.journalapp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.journalapp.model.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DistributorConcurrencyTest {
+    @TempDir
+    Path dir;
+
+    private final Distributor distributor = TestDistributors.quietDistributor();
+    private final Journal journal = new Journal("Nature", "0028-0836", 12, 10);
+
+    @Test
+    void concurrentPaymentsToOneSubscriptionAreAllKept() throws InterruptedException {
+        assertTrue(distributor.addJournal(journal));
+        Individual ada = new Individual("Ada", "1 Main St", "4111111111111111", 12, 2030, 123);
+        assertTrue(distributor.addSubscriber(ada));
+        Subscription subscription = new Subscription(new DateInfo(1, 2024), 1, journal, ada, 0);
+        assertTrue(distributor.addSubscription(journal.getIssn(), ada, subscription));
+
+        int threads = 4;
+        int paymentsEach = 1000;
+        runConcurrently(threads, t -> {
+            for (int i = 0; i < paymentsEach; i++) {
+                assertTrue(distributor.acceptPayment(subscription, 0.01, new GregorianCalendar(2024, t, 1)));
+            }
+        });
+
+        assertEquals(threads * paymentsEach, subscription.getPayment().getReceivedPaymentInCents());
+        assertEquals(threads * paymentsEach, subscription.getPayment().getTransactionCount());
+        assertEquals(threads * paymentsEach / 100.0, distributor.annualRevenue(null, 2024, 2024)[0], 1e-9);
+        // Versions are taken in the order the payments are recorded.
+        for (int i = 1; i < subscription.getPayment().getTransactionCount(); i++) {
+            assertTrue(subscription.getPayment().getTransactionVersion(i - 1) < subscription.getPayment().getTransactionVersion(i));
+        }
+        assertEquals(12000 - threads * paymentsEach, distributor.incompletePaymentSummary(0).getTotalOutstandingInCents());
+    }
+
+    @Test
+    void aSubscriberAddedConcurrentlyIsAddedOnce() throws InterruptedException {
+        AtomicInteger added = new AtomicInteger();
+        runConcurrently(4, t -> {
+            for (int i = 0; i < 200; i++) {
+                if (distributor.addSubscriber(new Individual("Subscriber " + i, "1 Main St", "4111111111111111", 12, 2030, 123))) {
+                    added.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(200, added.get());
+        assertEquals(200, distributor.getSubscribers().size());
+    }
+
+    @Test
+    void savesDuringChangesLoadToAConsistentState() throws InterruptedException {
+        // Each subscriber is added with one subscription of one copy and then paid in full, so
+        // any saved state has at most one subscription without its payment.
+        assertTrue(distributor.addJournal(journal));
+        int count = 500;
+        ConcurrentLinkedQueue<String> saved = new ConcurrentLinkedQueue<>();
+        runConcurrently(2, t -> {
+            for (int i = 0; i < count; i++) {
+                if (t == 0) {
+                    Individual subscriber = new Individual("Subscriber " + i, "1 Main St", "4111111111111111", 12, 2030, 123);
+                    assertTrue(distributor.addSubscriber(subscriber));
+                    Subscription subscription = new Subscription(new DateInfo(1, 2024), 1, journal, subscriber, 0);
+                    assertTrue(distributor.addSubscription(journal.getIssn(), subscriber, subscription));
+                    assertTrue(distributor.acceptPayment(subscription, 120));
+                } else if (i % 50 == 0) {
+                    String file = dir.resolve("state" + i + ".snap").toString();
+                    distributor.saveState(file);
+                    saved.add(file);
+                }
+            }
+        });
+
+        assertEquals(count / 50, saved.size());
+        for (String file : saved) {
+            Distributor loaded = TestDistributors.quietDistributor();
+            loaded.loadState(file);
+            int subscriptions = loaded.getAllSubscriptions().size();
+            assertTrue(loaded.getSubscribers().size() - subscriptions <= 1, file);
+            assertTrue(loaded.incompletePaymentSummary(0).getCount() <= 1, file);
+            assertEquals(subscriptions - loaded.incompletePaymentSummary(0).getCount(), loaded.sendingOrders(1, 2024).count(), file);
+        }
+    }
+
+    private interface Worker {
+        void run(int thread);
+    }
+
+    // Runs a worker on several threads at once and rethrows the first failure.
+    private static void runConcurrently(int threads, Worker worker) throws InterruptedException {
+        List<Thread> started = new ArrayList<>();
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Thread runner = new Thread(() -> {
+                try {
+                    worker.run(thread);
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            runner.start();
+            started.add(runner);
+        }
+        for (Thread runner : started) {
+            runner.join();
+        }
+        if (!failures.isEmpty()) {
+            throw new AssertionError(failures.peek());
+        }
+    }
+}
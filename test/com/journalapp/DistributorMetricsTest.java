@@ -0,0 +1,48 @@
+package com.journalapp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.journalapp.metrics.MetricsRegistry;
+import com.journalapp.model.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DistributorMetricsTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void operationsAreTimedAndRejectionsCounted() throws Exception {
+        Distributor distributor = TestDistributors.quietDistributor();
+        MetricsRegistry metrics = distributor.getMetrics();
+        metrics.setEnabled(true);
+        Journal journal = new Journal("Nature", "0028-0836", 12, 10);
+        Individual ada = new Individual("Ada", "1 Main St", "4111111111111111", 12, 2030, 123);
+
+        assertTrue(distributor.addJournal(journal));
+        assertFalse(distributor.addJournal(journal));
+        assertTrue(distributor.addSubscriber(ada));
+        Subscription subscription = new Subscription(new DateInfo(1, 2024), 1, journal, ada, 0);
+        assertTrue(distributor.addSubscription(journal.getIssn(), ada, subscription));
+        assertTrue(distributor.acceptPayment(subscription, 10));
+        assertFalse(distributor.acceptPayment(subscription, 0.001));
+        distributor.listIncompletePayments();
+        Path file = dir.resolve("state.snap");
+        distributor.saveState(file.toString());
+
+        assertEquals(2, metrics.timer("addJournal").snapshot().getCount());
+        assertEquals(1, metrics.counter("addJournal.rejected").get());
+        assertEquals(2, metrics.timer("acceptPayment").snapshot().getCount());
+        assertEquals(1, metrics.counter("acceptPayment.rejected").get());
+        assertEquals(1, metrics.timer("listIncompletePayments").snapshot().getCount());
+        assertEquals(1, metrics.timer("saveState").snapshot().getCount());
+        assertEquals(1, metrics.gaugeValue("journals"));
+        assertEquals(1, metrics.gaugeValue("subscribers"));
+        assertEquals(1, metrics.gaugeValue("subscriptions"));
+        assertEquals(Files.size(file), metrics.gaugeValue("snapshot.bytes"));
+    }
+}
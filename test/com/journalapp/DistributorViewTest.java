@@ -0,0 +1,194 @@
+package com.journalapp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.journalapp.model.*;
+import com.journalapp.output.OutputSink;
+import com.journalapp.query.SubscriptionEntry;
+import java.nio.file.Path;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DistributorViewTest {
+    private static final Pattern YEAR_TOTAL = Pattern.compile("Year (\\d+): (\\d+)\\.(\\d\\d)");
+
+    @TempDir
+    Path dir;
+
+    private final Distributor distributor = new Distributor();
+    private final Journal journal = new Journal("Nature", "0028-0836", 12, 10);
+
+    @BeforeEach
+    void addJournal() {
+        distributor.setOutputSink(OutputSink.DISCARD);
+        assertTrue(distributor.addJournal(journal));
+    }
+
+    @Test
+    void aStreamKeepsTheStateOfItsView() {
+        Individual ada = addSubscriber("Ada");
+        assertTrue(distributor.addSubscription(journal.getIssn(), ada, new Subscription(new DateInfo(1, 2024), 1, journal, ada, 0)));
+
+        Stream<SubscriptionEntry> before = distributor.subscriptionsByJournalIssn(journal.getIssn());
+        assertTrue(distributor.addSubscription(journal.getIssn(), ada, new Subscription(new DateInfo(1, 2024), 1, journal, ada, 0)));
+        Individual bob = addSubscriber("Bob");
+        assertTrue(distributor.addSubscription(journal.getIssn(), bob, new Subscription(new DateInfo(1, 2024), 1, journal, bob, 0)));
+
+        List<SubscriptionEntry> entries = before.toList();
+        assertEquals(1, entries.size());
+        assertEquals(1, entries.get(0).getCopies());
+        assertEquals(2, distributor.subscriptionsByJournalIssn(journal.getIssn()).count());
+    }
+
+    @Test
+    void sendingOrdersIgnorePaymentsAfterTheView() {
+        Individual ada = addSubscriber("Ada");
+        Subscription subscription = new Subscription(new DateInfo(1, 2024), 1, journal, ada, 0);
+        assertTrue(distributor.addSubscription(journal.getIssn(), ada, subscription));
+
+        Stream<?> before = distributor.sendingOrders(1, 2024);
+        assertTrue(distributor.acceptPayment(subscription, 120));
+
+        assertEquals(0, before.count());
+        assertEquals(1, distributor.sendingOrders(1, 2024).count());
+    }
+
+    @Test
+    void concurrentReadersSeeWholeChanges() throws InterruptedException {
+        // Each subscription is added and then increased to two copies, so any view may hold at
+        // most one subscription (the last one added) that still has one copy.
+        int count = 2000;
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> violation = new AtomicReference<>();
+        Thread[] readers = new Thread[3];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                while (!done.get() && violation.get() == null) {
+                    List<SubscriptionEntry> entries = distributor.subscriptionsByJournalIssn(journal.getIssn()).toList();
+                    long single = entries.stream().filter(entry -> entry.getCopies() == 1).count();
+                    if (single > 1) {
+                        violation.set(single + " of " + entries.size() + " subscriptions had one copy");
+                    }
+                    long expiring = distributor.subscriptionsExpiring(12, 2024, 12, 2024).count();
+                    if (expiring < entries.size()) {
+                        violation.set("the expiry index missed subscriptions: " + expiring + " < " + entries.size());
+                    }
+                }
+            });
+            readers[r].start();
+        }
+
+        for (int i = 0; i < count; i++) {
+            Individual subscriber = addSubscriber("Subscriber " + i);
+            assertTrue(distributor.addSubscription(journal.getIssn(), subscriber, new Subscription(new DateInfo(1, 2024), 1, journal, subscriber, 0)));
+            assertTrue(distributor.addSubscription(journal.getIssn(), subscriber, new Subscription(new DateInfo(1, 2024), 1, journal, subscriber, 0)));
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertEquals(null, violation.get());
+        assertEquals(count, distributor.subscriptionsByJournalIssn(journal.getIssn()).filter(entry -> entry.getCopies() == 2).count());
+    }
+
+    @Test
+    void reportsSeeAllPaymentsBeforeTheirVersionAndNoneAfter() throws InterruptedException {
+        // Each payer pays for 2024 to one journal and then for 2025 to another, so any report
+        // may show at most one more 2024 payment per payer than 2025 payments, and never fewer.
+        Journal science = new Journal("Science", "0036-8075", 12, 10);
+        assertTrue(distributor.addJournal(science));
+        int payers = 4;
+        int paymentsEach = 500;
+        Thread[] threads = new Thread[payers];
+        for (int p = 0; p < payers; p++) {
+            Individual payer = addSubscriber("Payer " + p);
+            Subscription first = new Subscription(new DateInfo(1, 2024), 1, journal, payer, 0);
+            Subscription second = new Subscription(new DateInfo(1, 2025), 1, science, payer, 0);
+            assertTrue(distributor.addSubscription(journal.getIssn(), payer, first));
+            assertTrue(distributor.addSubscription(science.getIssn(), payer, second));
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < paymentsEach; i++) {
+                    distributor.acceptPayment(first, 1, new GregorianCalendar(2024, 5, 1));
+                    distributor.acceptPayment(second, 1, new GregorianCalendar(2025, 5, 1));
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        boolean running = true;
+        while (running) {
+            running = false;
+            for (Thread thread : threads) {
+                running |= thread.isAlive();
+            }
+            long[] totals = annualTotals(distributor.generateReport(new GregorianCalendar(2024, 0, 1), 2024, 2025));
+            assertTrue(totals[0] >= totals[1] && totals[0] - totals[1] <= payers * 100L, totals[0] + " and " + totals[1]);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long[] totals = annualTotals(distributor.generateReport(new GregorianCalendar(2024, 0, 1), 2024, 2025));
+        assertEquals(payers * paymentsEach * 100L, totals[0]);
+        assertEquals(payers * paymentsEach * 100L, totals[1]);
+    }
+
+    @Test
+    void savingAMappedStateKeepsTheChangesSinceItWasLoaded() {
+        Individual ada = addSubscriber("Ada");
+        Individual bob = addSubscriber("Bob");
+        Individual cy = addSubscriber("Cy");
+        for (Individual subscriber : List.of(ada, bob, cy)) {
+            assertTrue(distributor.addSubscription(journal.getIssn(), subscriber, new Subscription(new DateInfo(1, 2024), 1, journal, subscriber, 0)));
+        }
+        assertTrue(distributor.acceptPayment(distributor.searchSubscription(journal.getIssn(), cy), 5, new GregorianCalendar(2024, 0, 2)));
+        String first = dir.resolve("first.snap").toString();
+        distributor.saveState(first);
+
+        Distributor mapped = TestDistributors.quietDistributor();
+        mapped.loadStateMapped(first);
+        assertTrue(mapped.addSubscription(journal.getIssn(), mapped.searchSubscriber("Ada"),
+                                          new Subscription(new DateInfo(1, 2024), 1, journal, mapped.searchSubscriber("Ada"), 0)));
+        assertTrue(mapped.acceptPayment(mapped.searchSubscription(journal.getIssn(), "Bob"), 20, new GregorianCalendar(2024, 1, 3)));
+        Individual dee = new Individual("Dee", "1 Main St", "4111111111111111", 12, 2030, 123);
+        assertTrue(mapped.addSubscriber(dee));
+        assertTrue(mapped.addSubscription(journal.getIssn(), dee, new Subscription(new DateInfo(6, 2024), 3, journal, dee, 0)));
+        String second = dir.resolve("second.snap").toString();
+        mapped.saveState(second);
+
+        Distributor loaded = TestDistributors.quietDistributor();
+        loaded.loadState(second);
+        List<Subscription> subscriptions = loaded.getAllSubscriptions();
+        assertEquals(List.of("Ada", "Bob", "Cy", "Dee"), subscriptions.stream().map(s -> s.getSubscriber().getName()).toList());
+        assertEquals(List.of(2, 1, 1, 3), subscriptions.stream().map(Subscription::getCopies).toList());
+        assertEquals(List.of(0L, 2000L, 500L, 0L), subscriptions.stream().map(s -> s.getPayment().getReceivedPaymentInCents()).toList());
+        assertEquals(EpochDates.epochDay(2024, 2, 3), subscriptions.get(1).getPayment().getTransactionEpochDay(0));
+    }
+
+    // Reads the 2024 and 2025 payment totals of a report, in cents.
+    private static long[] annualTotals(String report) {
+        long[] totals = new long[2];
+        Matcher matcher = YEAR_TOTAL.matcher(report);
+        while (matcher.find()) {
+            totals[Integer.parseInt(matcher.group(1)) - 2024] = Long.parseLong(matcher.group(2)) * 100 + Long.parseLong(matcher.group(3));
+        }
+        return totals;
+    }
+
+    private Individual addSubscriber(String name) {
+        Individual individual = new Individual(name, "1 Main St", "4111111111111111", 12, 2030, 123);
+        assertTrue(distributor.addSubscriber(individual));
+        return individual;
+    }
+}
@@ -0,0 +1,78 @@
+package com.journalapp;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.journalapp.model.*;
+import com.journalapp.query.SubscriptionEntry;
+import com.journalapp.util.IntArrayList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class ExpiryIndexTest {
+    private final Journal journal = new Journal("Nature", "0028-0836", 12, 10);
+    private final Individual ada = new Individual("Ada", "1 Main St", "4111111111111111", 12, 2030, 123);
+
+    @Test
+    void rangesMatchAScanAcrossMonthAndYearBoundaries() {
+        Random random = new Random(22);
+        List<Subscription> subscriptions = new ArrayList<>();
+        ExpiryIndex index = new ExpiryIndex();
+        for (int position = 0; position < 300; position++) {
+            int startEpochMonth = EpochDates.epochMonth(1, 2022) + random.nextInt(48);
+            Subscription subscription = new Subscription(new DateInfo(EpochDates.monthOf(startEpochMonth), EpochDates.yearOf(startEpochMonth)), 1, journal, ada, 0);
+            subscriptions.add(subscription);
+            index.add(position, subscription);
+        }
+
+        int first = EpochDates.epochMonth(1, 2022);
+        for (int from = first; from <= first + 72; from += 1 + random.nextInt(3)) {
+            for (int to = from - 1; to <= from + 14; to += 1 + random.nextInt(4)) {
+                int limit = random.nextBoolean() ? subscriptions.size() : random.nextInt(subscriptions.size());
+                assertArrayEquals(scan(subscriptions, from, to, limit), index.positions(from, to, limit), from + " to " + to + " below " + limit);
+            }
+        }
+        assertArrayEquals(scan(subscriptions, first, Integer.MAX_VALUE, subscriptions.size()), index.positions(first, Integer.MAX_VALUE, subscriptions.size()));
+    }
+
+    @Test
+    void theDistributorsExpiryQueriesUseTheLastIssueMonth() {
+        Distributor distributor = TestDistributors.quietDistributor();
+        assertTrue(distributor.addJournal(journal));
+        String[] names = {"Ada", "Bob", "Cy", "Dee"};
+        int[][] starts = {{12, 2024}, {1, 2025}, {2, 2025}, {1, 2024}}; // Last issues 11/2025, 12/2025, 1/2026, 12/2024
+        for (int i = 0; i < names.length; i++) {
+            Individual subscriber = new Individual(names[i], i + " Main St", "4111111111111111", 12, 2030, 123);
+            assertTrue(distributor.addSubscriber(subscriber));
+            assertTrue(distributor.addSubscription(journal.getIssn(), subscriber,
+                                                   new Subscription(new DateInfo(starts[i][0], starts[i][1]), 1, journal, subscriber, 0)));
+        }
+
+        assertEquals(List.of("Bob", "Cy"), names(distributor.subscriptionsExpiring(12, 2025, 1, 2026).toList()));
+        assertEquals(List.of("Ada", "Bob", "Cy"), names(distributor.subscriptionsExpiringAfter(10, 2025).toList()));
+        assertEquals(List.of("Cy"), names(distributor.subscriptionsExpiringAfter(12, 2025).toList()));
+        assertEquals(List.of("Dee"), names(distributor.subscriptionsExpiring(12, 2024, 12, 2024).toList()));
+        assertEquals(0, distributor.subscriptionsExpiring(2, 2026, 1, 2026).count());
+        String list = distributor.listExpiringSubscriptions(11, 2025, 12, 2025);
+        assertTrue(list.contains("- Expires: 11/2025, Journal: Nature (ISSN: 0028-0836), Subscriber: Ada"), list);
+        assertTrue(list.contains("- Expires: 12/2025, Journal: Nature (ISSN: 0028-0836), Subscriber: Bob"), list);
+    }
+
+    private static List<String> names(List<SubscriptionEntry> entries) {
+        return entries.stream().map(entry -> entry.getSubscriber().getName()).toList();
+    }
+
+    private static int[] scan(List<Subscription> subscriptions, int fromEpochMonth, int toEpochMonth, int limit) {
+        IntArrayList positions = new IntArrayList();
+        for (int position = 0; position < limit; position++) {
+            int lastIssueEpochMonth = subscriptions.get(position).getDates().getStartEpochMonth() + 11;
+            if (lastIssueEpochMonth >= fromEpochMonth && lastIssueEpochMonth <= toEpochMonth) {
+                positions.add(position);
+            }
+        }
+        return positions.toArray();
+    }
+}
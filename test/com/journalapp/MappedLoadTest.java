@@ -0,0 +1,89 @@
+package com.journalapp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.journalapp.model.*;
+import java.nio.file.Path;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedLoadTest {
+    @TempDir
+    Path dir;
+
+    private final Journal nature = new Journal("Nature", "0028-0836", 12, 10);
+    private final Journal science = new Journal("Science", "0036-8075", 51, 15);
+    private String file;
+
+    @BeforeEach
+    void saveSnapshot() {
+        Distributor distributor = TestDistributors.quietDistributor();
+        assertTrue(distributor.addJournal(nature));
+        assertTrue(distributor.addJournal(science));
+        Random random = new Random(8);
+        for (int i = 0; i < 40; i++) {
+            Individual subscriber = new Individual("Subscriber " + i % 25, i + " Main St", "4111111111111111", 12, 2030, 123);
+            assertTrue(distributor.addSubscriber(subscriber));
+            Journal journal = i % 3 == 0 ? science : nature;
+            Subscription subscription = new Subscription(new DateInfo(1 + random.nextInt(12), 2024 + random.nextInt(2)), 1 + random.nextInt(3),
+                                                         journal, subscriber, random.nextInt(3) / 10.0);
+            assertTrue(distributor.addSubscription(journal.getIssn(), subscriber, subscription));
+            for (int p = random.nextInt(4); p > 0; p--) {
+                assertTrue(distributor.acceptPayment(subscription, random.nextInt(50000) / 100.0 + 1, new GregorianCalendar(2024, random.nextInt(24), 1)));
+            }
+        }
+        file = dir.resolve("state.snap").toString();
+        distributor.saveState(file);
+    }
+
+    @Test
+    void queriesOnAMappedSnapshotMatchALoadedOne() {
+        Distributor loaded = TestDistributors.quietDistributor();
+        loaded.loadState(file);
+        Distributor mapped = TestDistributors.quietDistributor();
+        mapped.loadStateMapped(file);
+        Distributor offHeap = TestDistributors.quietDistributor();
+        offHeap.loadStateOffHeap(file);
+
+        assertEquals(queries(loaded), queries(mapped));
+        assertEquals(queries(loaded), queries(offHeap));
+    }
+
+    @Test
+    void changesToAMappedSnapshotMatchThoseToALoadedOne() {
+        Distributor loaded = TestDistributors.quietDistributor();
+        loaded.loadState(file);
+        Distributor mapped = TestDistributors.quietDistributor();
+        mapped.loadStateMapped(file);
+
+        for (Distributor distributor : List.of(loaded, mapped)) {
+            Subscriber subscriber = distributor.searchSubscriber("Subscriber 3");
+            Subscription subscription = distributor.searchSubscription(science.getIssn(), subscriber);
+            assertTrue(distributor.acceptPayment(subscription, 75, new GregorianCalendar(2025, 2, 1)));
+            assertTrue(distributor.addSubscription(science.getIssn(), subscriber, new Subscription(new DateInfo(1, 2025), 1, science, subscriber, 0)));
+            assertTrue(distributor.acceptPayment(distributor.searchSubscription(nature.getIssn(), "Subscriber 1"), 12.34, new GregorianCalendar(2024, 5, 1)));
+        }
+        assertEquals(queries(loaded), queries(mapped));
+
+        // Building every subscription keeps the changes.
+        assertEquals(loaded.getAllSubscriptions().size(), mapped.getAllSubscriptions().size());
+        assertEquals(queries(loaded), queries(mapped));
+    }
+
+    private static List<String> queries(Distributor distributor) {
+        return List.of(distributor.listAllSendingOrders(3, 2025),
+                       distributor.listSendingOrdersByJournalIssn("0028-0836", 12, 2024),
+                       distributor.listIncompletePayments(),
+                       distributor.incompletePayments().map(Object::toString).toList().toString(),
+                       distributor.listSubscriptionsBySubscriberName("Subscriber 3"),
+                       distributor.listSubscriptionsByJournalIssn("0036-8075"),
+                       distributor.listExpiringSubscriptions(1, 2025, 6, 2025),
+                       String.valueOf(distributor.searchSubscription("0028-0836", "Subscriber 1").getPayment().getReceivedPaymentInCents()),
+                       distributor.revenueByJournal(2024, 2025).toString());
+    }
+}
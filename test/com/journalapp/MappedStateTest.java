@@ -0,0 +1,127 @@
+package com.journalapp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.journalapp.model.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.GregorianCalendar;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedStateTest {
+    @TempDir
+    Path dir;
+
+    private final Journal journal = new Journal("Nature", "0028-0836", 12, 10.05);
+    private final Individual ada = new Individual("Ada", "1 Main St", "4111111111111111", 12, 2030, 123);
+    private final Individual bob = new Individual("Bob", "2 Main St", "4111111111111112", 12, 2030, 456);
+
+    @Test
+    void changesAreReadWithTheRecordAsOfTheirVersion() throws IOException {
+        MappedState mapped = MappedState.copy(writeSnapshot());
+
+        mapped.addPayment(0, 200, EpochDates.epochDay(2025, 1, 2), 5);
+        mapped.increaseCopies(0, 7);
+        mapped.addPayment(0, 300, EpochDates.epochDay(2025, 2, 3), 9);
+
+        assertEquals(2, mapped.copies(0));
+        assertEquals(1, mapped.copiesAsOf(0, 6));
+        assertEquals(4, mapped.transactionCount(0));
+        assertEquals(3, mapped.transactionCountAsOf(0, 8));
+        assertEquals(2, mapped.transactionCountAsOf(0, 4));
+        assertEquals(1550, mapped.receivedPaymentInCents(0));
+        assertEquals(1250, mapped.receivedPaymentInCentsAsOf(0, 5));
+        assertEquals(1050, mapped.receivedPaymentInCentsAsOf(0, 4));
+        assertEquals(50, mapped.paymentAmountInCents(0, 1));
+        assertEquals(200, mapped.paymentAmountInCents(0, 2));
+        assertEquals(EpochDates.epochDay(2025, 2, 3), mapped.paymentEpochDay(0, 3));
+        assertEquals(0, mapped.paymentVersion(0, 1));
+        assertEquals(9, mapped.paymentVersion(0, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> mapped.paymentAmountInCents(0, 4));
+
+        // The other subscription has no changes of its own.
+        assertEquals(1, mapped.copies(1));
+        assertEquals(0, mapped.transactionCount(1));
+    }
+
+    @Test
+    void lookupsReadAndChangeTheRecordInPlace() throws IOException {
+        MappedState mapped = MappedState.open(writeSnapshot());
+
+        Subscriber readBob = mapped.subscriber(1);
+        Subscription found = mapped.findSubscription("0028-0836", readBob);
+        Subscription again = mapped.findSubscription("0028-0836", readBob);
+        assertInstanceOf(RecordSubscription.class, found);
+        assertNotSame(found, again);
+        assertEquals(found, again);
+        assertEquals(found.hashCode(), again.hashCode());
+        assertSame(((RecordSubscription) found).monitor(), ((RecordSubscription) again).monitor());
+        assertNull(mapped.findSubscription("0028-0836", bob)); // Subscribers are matched as loaded, not by value
+
+        found.acceptPayment(12.5, new GregorianCalendar(2024, 4, 1), 3);
+        found.increaseCopies(4);
+
+        assertEquals(1250, again.getPayment().getReceivedPaymentInCents());
+        assertEquals(1250, again.getPayment().getReceivedPaymentInCents(2024));
+        assertEquals(0.0, again.getPayment().getReceivedPaymentAsOf(2024, 2));
+        assertEquals(2, again.getCopies());
+        assertEquals(1, again.getCopiesAsOf(3));
+        assertEquals(3, again.getPayment().getTransactions().get(0).getVersion());
+        assertEquals(1, mapped.transactionCount(1));
+    }
+
+    @Test
+    void buildingASubscriptionReplaysItsChanges() throws IOException {
+        MappedState mapped = MappedState.copy(writeSnapshot());
+        mapped.addPayment(0, 200, EpochDates.epochDay(2025, 1, 2), 5);
+        mapped.increaseCopies(0, 7);
+
+        Subscription built = mapped.build(0);
+
+        assertEquals(2, built.getCopies());
+        assertEquals(1, built.getCopiesAsOf(6));
+        assertEquals(1250, built.getPayment().getReceivedPaymentInCents());
+        assertEquals(1050, built.getPayment().getReceivedPaymentInCentsAsOf(4));
+        assertEquals(5, built.getPayment().getTransactionVersion(2));
+        assertEquals(EpochDates.epochDay(2024, 3, 1), built.getPayment().getTransactionEpochDay(1));
+    }
+
+    @Test
+    void onceBuiltLookupsUseTheBuiltSubscriptions() throws IOException {
+        MappedState mapped = MappedState.copy(writeSnapshot());
+        Subscription before = mapped.subscription(0);
+        List<Subscription> built = new ArrayList<>();
+        for (int i = 0; i < mapped.subscriptionCount(); i++) {
+            built.add(mapped.build(i));
+        }
+        mapped.builtAs(built);
+
+        before.acceptPayment(1, new GregorianCalendar(2025, 0, 1), 2);
+
+        assertSame(built.get(0), mapped.subscription(0));
+        assertSame(built.get(0), ((RecordSubscription) before).monitor());
+        assertEquals(1150, built.get(0).getPayment().getReceivedPaymentInCents());
+        assertEquals(1150, mapped.receivedPaymentInCents(0));
+    }
+
+    /**
+     * Writes a snapshot with Ada's subscription and its two payments, then Bob's with none.
+     */
+    private Path writeSnapshot() throws IOException {
+        Subscription first = new Subscription(new DateInfo(1, 2024), 1, journal, ada, 0);
+        first.acceptPayment(10, new GregorianCalendar(2024, 1, 29));
+        first.acceptPayment(0.5, new GregorianCalendar(2024, 2, 1));
+        Subscription second = new Subscription(new DateInfo(6, 2024), 1, journal, bob, 0.1);
+        Path file = dir.resolve("state.snap");
+        StateSnapshot.write(file, List.of(journal), List.of(ada, bob), List.of(first, second), Long.MAX_VALUE, 9);
+        return file;
+    }
+}
@@ -0,0 +1,126 @@
+package com.journalapp;
+
+import static com.journalapp.TestDistributors.quietDistributor;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.journalapp.model.*;
+import com.journalapp.output.OutputSink;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PaymentReconcilerTest {
+    @TempDir
+    Path dir;
+
+    private final Journal nature = new Journal("Nature", "0028-0836", 12, 10);
+    private final Individual bob = new Individual("Bob", "2 High St", "4111111111111111", 12, 2030, 123);
+    private final Individual ada = new Individual("Ada", "1 Main St", "4111111111111111", 12, 2030, 123);
+    private final Individual otherAda = new Individual("Ada", "9 Side St", "4111111111111111", 12, 2030, 123);
+
+    @Test
+    void groupsAndAppliesTheStatementPayments() throws IOException {
+        Distributor distributor = populate(quietDistributor());
+        Path statement = statement("2024-01-05,0028-0836,Bob,60.50",
+                                   "2024-01-06,0028-0836,Ada,10",
+                                   "2024-01-07,9999-9999,Bob,10",
+                                   "01/08/2024,0028-0836,Bob,10");
+
+        PaymentReconciler.Reconciliation reconciliation = new PaymentReconciler(distributor).reconcile(statement);
+
+        assertTrue(reconciliation.isApplied());
+        assertEquals(1, reconciliation.getMatched().size());
+        assertTrue(reconciliation.getMatched().get(0).isApplied());
+        assertEquals(1, reconciliation.getAmbiguous().size());
+        assertEquals(2, reconciliation.getUnmatched().size());
+        assertTrue(reconciliation.getRejected().isEmpty());
+        PaymentInfo payment = distributor.searchSubscription(nature.getIssn(), bob).getPayment();
+        assertEquals(6050, payment.getReceivedPaymentInCents());
+        assertEquals(EpochDates.epochDay(2024, 1, 5), payment.getTransactionEpochDay(0));
+        assertEquals(0, distributor.searchSubscription(nature.getIssn(), ada).getPayment().getTransactionCount());
+    }
+
+    @Test
+    void aDryRunOnlyMatches() throws IOException {
+        Distributor distributor = populate(quietDistributor());
+
+        PaymentReconciler.Reconciliation reconciliation =
+                new PaymentReconciler(distributor).reconcile(statement("2024-01-05,0028-0836,Bob,60.50"), false);
+
+        assertFalse(reconciliation.isApplied());
+        assertEquals(1, reconciliation.getMatched().size());
+        assertFalse(reconciliation.getMatched().get(0).isApplied());
+        assertEquals(0, distributor.searchSubscription(nature.getIssn(), bob).getPayment().getTransactionCount());
+        assertTrue(reconciliation.toString().contains("(not applied)"));
+    }
+
+    @Test
+    void paymentsTheDistributorRefusesAreRejected() throws IOException {
+        Distributor refusing = new Distributor() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public boolean[] acceptPayments(List<Subscription> subscriptions, List<PaymentTransaction> payments) {
+                return new boolean[payments.size()]; // As after a write-ahead log failure
+            }
+        };
+        refusing.setOutputSink(OutputSink.DISCARD);
+        populate(refusing);
+
+        PaymentReconciler.Reconciliation reconciliation =
+                new PaymentReconciler(refusing).reconcile(statement("2024-01-05,0028-0836,Bob,60.50"));
+
+        assertFalse(reconciliation.isApplied());
+        assertTrue(reconciliation.getMatched().isEmpty());
+        assertEquals(1, reconciliation.getRejected().size());
+        assertFalse(reconciliation.getRejected().get(0).isApplied());
+        assertFalse(reconciliation.toString().contains("(applied)"));
+        assertTrue(reconciliation.toString().contains("Rejected:  1 payments, 60.50 (not applied)"));
+    }
+
+    @Test
+    void runAppliesThePaymentsAndSavesTheSnapshot() throws IOException {
+        Path snapshot = dir.resolve("state.snap");
+        Distributor distributor = populate(quietDistributor());
+        distributor.saveState(snapshot.toString());
+
+        assertEquals(0, PaymentReconciler.run(new String[] {snapshot.toString(), statement("2024-01-05,0028-0836,Bob,60.50").toString()}));
+
+        Distributor reloaded = quietDistributor();
+        assertTrue(reloaded.recoverState(snapshot.toString()));
+        assertEquals(6050, reloaded.searchSubscription(nature.getIssn(), "Bob").getPayment().getReceivedPaymentInCents());
+    }
+
+    @Test
+    void runLeavesAnUnreadableSnapshotAlone() throws IOException {
+        Path snapshot = dir.resolve("state.snap");
+        byte[] garbage = "not a snapshot".getBytes(StandardCharsets.US_ASCII);
+        Files.write(snapshot, garbage);
+
+        assertEquals(1, PaymentReconciler.run(new String[] {snapshot.toString(), statement("2024-01-05,0028-0836,Bob,60.50").toString()}));
+
+        assertArrayEquals(garbage, Files.readAllBytes(snapshot));
+    }
+
+    private Distributor populate(Distributor distributor) {
+        assertTrue(distributor.addJournal(nature));
+        for (Individual individual : List.of(bob, ada, otherAda)) {
+            assertTrue(distributor.addSubscriber(individual));
+            assertTrue(distributor.addSubscription(nature.getIssn(), individual, new Subscription(new DateInfo(1, 2024), 1, nature, individual, 0)));
+        }
+        return distributor;
+    }
+
+    private Path statement(String... rows) throws IOException {
+        Path statement = Files.createTempFile(dir, "statement", ".csv");
+        Files.write(statement, ("date,issn,subscriber_name,amount\n" + String.join("\n", rows) + "\n").getBytes(StandardCharsets.UTF_8));
+        return statement;
+    }
+}
@@ -0,0 +1,103 @@
+package com.journalapp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.journalapp.model.*;
+import com.journalapp.query.SendingOrder;
+import com.journalapp.query.SubscriptionEntry;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class QueryStreamsTest {
+    private final Distributor distributor = TestDistributors.quietDistributor();
+    private final Journal nature = new Journal("Nature", "0028-0836", 12, 10);
+    private final Journal science = new Journal("Science", "0036-8075", 51, 15);
+    private final List<Subscription> subscriptions = new ArrayList<>();
+
+    @BeforeEach
+    void addSubscriptions() {
+        assertTrue(distributor.addJournal(nature));
+        assertTrue(distributor.addJournal(science));
+        for (int i = 0; i < 30; i++) {
+            Individual subscriber = new Individual("Subscriber " + i % 10, i + " Main St", "4111111111111111", 12, 2030, 123);
+            assertTrue(distributor.addSubscriber(subscriber));
+            Journal journal = i % 2 == 0 ? nature : science;
+            Subscription subscription = new Subscription(new DateInfo(1 + i % 12, 2024), 1 + i % 3, journal, subscriber, 0);
+            assertTrue(distributor.addSubscription(journal.getIssn(), subscriber, subscription));
+            subscriptions.add(subscription);
+            if (i % 4 != 0) {
+                assertTrue(distributor.acceptPayment(subscription, subscription.calculateExpectedPayment()));
+            }
+        }
+    }
+
+    @Test
+    void listsRenderTheirStreams() {
+        assertEquals(lines(distributor.sendingOrders(6, 2024).map(SendingOrder::toString).toList()),
+                     body(distributor.listAllSendingOrders(6, 2024)));
+        assertEquals(lines(distributor.sendingOrders(nature.getIssn(), 6, 2024)
+                                      .map(order -> "to Subscriber: " + order.getSubscriber().getName() + " (Copies: " + order.getCopies() + ")").toList()),
+                     body(distributor.listSendingOrdersByJournalIssn(nature.getIssn(), 6, 2024)));
+        assertEquals(lines(distributor.incompletePaymentsByAmountOwed().map(Object::toString).toList()),
+                     body(distributor.listIncompletePayments()));
+    }
+
+    @Test
+    void resultsComeInTheOrderTheSubscriptionsWereAdded() {
+        List<String> expected = new ArrayList<>();
+        for (Subscription subscription : subscriptions) {
+            if (subscription.canSend(6, 2024)) {
+                expected.add(subscription.getSubscriber().getAddress());
+            }
+        }
+        assertTrue(expected.size() > 4);
+        assertEquals(expected, distributor.sendingOrders(6, 2024).map(order -> order.getSubscriber().getAddress()).toList());
+
+        // Pages are slices of the whole result.
+        assertEquals(expected.subList(2, 4), distributor.sendingOrders(6, 2024).skip(2).limit(2).map(order -> order.getSubscriber().getAddress()).toList());
+        Iterator<SendingOrder> cursor = distributor.sendingOrders(6, 2024).iterator();
+        assertEquals(expected.get(0), cursor.next().getSubscriber().getAddress());
+        assertEquals(expected.get(1), cursor.next().getSubscriber().getAddress());
+    }
+
+    @Test
+    void subscriptionQueriesFilterByNameJournalAndExpiry() {
+        List<SubscriptionEntry> bySubscriber = distributor.subscriptionsBySubscriberName("Subscriber 3").toList();
+        assertEquals(List.of("3 Main St", "13 Main St", "23 Main St"), bySubscriber.stream().map(entry -> entry.getSubscriber().getAddress()).toList());
+        assertEquals(15, distributor.subscriptionsByJournalIssn(science.getIssn()).count());
+        assertTrue(distributor.subscriptionsByJournalIssn(science.getIssn()).allMatch(entry -> entry.getJournal() == science));
+
+        List<SubscriptionEntry> expiring = distributor.subscriptionsExpiring(3, 2025, 4, 2025).toList();
+        assertEquals(6, expiring.size());
+        assertTrue(expiring.stream().allMatch(entry -> entry.getDates().getStartMonth() == 4 || entry.getDates().getStartMonth() == 5));
+        assertEquals(distributor.subscriptionsExpiring(12, 2025, 12, 9999).count(), distributor.subscriptionsExpiringAfter(11, 2025).count());
+    }
+
+    @Test
+    void unknownJournalsAndBadMonthsGiveNoResults() {
+        assertEquals(0, distributor.sendingOrders("0000-0000", 6, 2024).count());
+        assertEquals(0, distributor.subscriptionsByJournalIssn("0000-0000").count());
+        assertEquals("Journal with ISSN 0000-0000 not found.\n", distributor.listSendingOrdersByJournalIssn("0000-0000", 6, 2024));
+        assertEquals(0, distributor.subscriptionsBySubscriberName("Nobody").count());
+        assertThrows(IllegalArgumentException.class, () -> distributor.subscriptionsExpiring(13, 2024, 1, 2025));
+    }
+
+    private static String lines(List<String> results) {
+        StringBuilder text = new StringBuilder();
+        for (String result : results) {
+            text.append("- ").append(result).append("\n");
+        }
+        return text.toString();
+    }
+
+    // The result lines of a list, without its title, totals and closing rule.
+    private static String body(String list) {
+        return list.lines().filter(line -> line.startsWith("- ")).map(line -> line + "\n").collect(Collectors.joining());
+    }
+}
@@ -0,0 +1,125 @@
+package com.journalapp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.journalapp.model.*;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReportEngineTest {
+    private static final String EXPIRING_HEADER = "--- Subscriptions Expiring After 06/15/2025 ---\n";
+    private static final String PAYMENTS_HEADER = "\n--- Received Annual Payments in Year Range: 2023 - 2025 ---\n";
+
+    @TempDir
+    Path dir;
+
+    private final Journal nature = new Journal("Nature", "0028-0836", 12, 10);
+    private final Journal science = new Journal("Science", "0036-8075", 51, 15);
+
+    @Test
+    void chunksAreMergedInSubscriptionOrder() {
+        // Enough subscriptions for the expiring section to be split over several chunks.
+        Distributor distributor = TestDistributors.quietDistributor();
+        List<Subscription> subscriptions = addSubscriptions(distributor, 6000);
+        Calendar threshold = new GregorianCalendar(2025, 5, 15);
+
+        String report = distributor.generateReport(threshold, 2023, 2025);
+
+        SimpleDateFormat format = new SimpleDateFormat("MM/dd/yyyy");
+        StringBuilder expiring = new StringBuilder();
+        for (Subscription subscription : subscriptions) {
+            Calendar lastDay = new GregorianCalendar(subscription.getDates().getStartYear(), subscription.getDates().getStartMonth() - 1, 1);
+            lastDay.add(Calendar.YEAR, 1);
+            lastDay.add(Calendar.DAY_OF_MONTH, -1);
+            if (!lastDay.before(threshold)) {
+                expiring.append("- Journal: ").append(subscription.getJournal().getName())
+                        .append(", Subscriber: ").append(subscription.getSubscriber().getName())
+                        .append(", Expires: ").append(format.format(lastDay.getTime())).append("\n");
+            }
+        }
+        assertTrue(expiring.length() > 0);
+        assertEquals(expiring.toString(), section(report, EXPIRING_HEADER));
+
+        long[] cents = new long[3];
+        for (Subscription subscription : subscriptions) {
+            for (PaymentTransaction transaction : subscription.getPayment().getTransactions()) {
+                int year = transaction.getPaymentDate().get(Calendar.YEAR);
+                if (year >= 2023 && year <= 2025) {
+                    cents[year - 2023] += transaction.getAmountInCents();
+                }
+            }
+        }
+        StringBuilder payments = new StringBuilder();
+        for (int year = 2023; year <= 2025; year++) {
+            payments.append("Year ").append(year).append(": ").append(Money.format(cents[year - 2023])).append("\n");
+        }
+        assertEquals(payments.toString(), section(report, PAYMENTS_HEADER));
+    }
+
+    @Test
+    void aMappedSnapshotGivesTheSameReport() {
+        Distributor distributor = TestDistributors.quietDistributor();
+        addSubscriptions(distributor, 3000);
+        String file = dir.resolve("state.snap").toString();
+        distributor.saveState(file);
+        Distributor mapped = TestDistributors.quietDistributor();
+        mapped.loadStateMapped(file);
+        Calendar threshold = new GregorianCalendar(2025, 5, 15);
+
+        String expected = distributor.generateReport(threshold, 2023, 2025);
+        String actual = mapped.generateReport(threshold, 2023, 2025);
+
+        assertEquals(section(expected, EXPIRING_HEADER), section(actual, EXPIRING_HEADER));
+        assertEquals(section(expected, PAYMENTS_HEADER), section(actual, PAYMENTS_HEADER));
+    }
+
+    @Test
+    void aThresholdLaterOnTheLastDayOfAMonthLeavesThatMonthOut() {
+        assertEquals(EpochDates.epochMonth(6, 2025), ReportEngine.firstExpiringEpochMonth(new GregorianCalendar(2025, 5, 30)));
+        assertEquals(EpochDates.epochMonth(7, 2025), ReportEngine.firstExpiringEpochMonth(new GregorianCalendar(2025, 5, 30, 0, 0, 1)));
+        assertEquals(EpochDates.epochMonth(6, 2025), ReportEngine.firstExpiringEpochMonth(new GregorianCalendar(2025, 5, 29, 23, 0)));
+        assertEquals(EpochDates.epochMonth(1, 2026), ReportEngine.firstExpiringEpochMonth(new GregorianCalendar(2025, 11, 31, 12, 0)));
+    }
+
+    /**
+     * Adds subscriptions to two journals, each by its own subscriber, starting in random months
+     * from 2023 to 2026, with a payment on about half of them.
+     */
+    private List<Subscription> addSubscriptions(Distributor distributor, int count) {
+        assertTrue(distributor.addJournal(nature));
+        assertTrue(distributor.addJournal(science));
+        Random random = new Random(5);
+        List<Individual> subscribers = new ArrayList<>();
+        List<Subscription> subscriptions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Individual subscriber = new Individual("Subscriber " + i, i + " Main St", "4111111111111111", 12, 2030, 123);
+            subscribers.add(subscriber);
+            int startEpochMonth = EpochDates.epochMonth(1, 2023) + random.nextInt(48);
+            subscriptions.add(new Subscription(new DateInfo(EpochDates.monthOf(startEpochMonth), EpochDates.yearOf(startEpochMonth)), 1,
+                                               i % 2 == 0 ? nature : science, subscriber, 0));
+        }
+        distributor.addSubscribers(subscribers);
+        distributor.addSubscriptions(subscriptions);
+        for (Subscription subscription : subscriptions) {
+            if (random.nextBoolean()) {
+                assertTrue(distributor.acceptPayment(subscription, 1 + random.nextInt(10000) / 100.0,
+                                                     new GregorianCalendar(2022 + random.nextInt(5), random.nextInt(12), 1)));
+            }
+        }
+        return subscriptions;
+    }
+
+    // Gets the lines of a report section, from its header to the closing rule.
+    private static String section(String report, String header) {
+        int start = report.indexOf(header) + header.length();
+        return report.substring(start, report.indexOf("-----", start));
+    }
+}
@@ -0,0 +1,111 @@
+package com.journalapp;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.journalapp.model.*;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+class RevenueCubeTest {
+    private static final List<String> ISSNS = List.of("0028-0836", "0036-8075", "0140-6736");
+
+    @Test
+    void totalsMatchTheSumsOfThePayments() {
+        // The first payments are in the middle of the range, so rows grow to earlier years too.
+        RevenueCube cube = new RevenueCube();
+        long[][][] expected = new long[ISSNS.size()][50][12]; // By journal, year from 1990 and month
+        Random random = new Random(21);
+        for (int i = 0; i < 2000; i++) {
+            int journal = random.nextInt(ISSNS.size());
+            int year = i < 10 ? 2010 : 1990 + random.nextInt(50);
+            int month = 1 + random.nextInt(12);
+            long cents = 1 + random.nextInt(100000);
+            cube.add(ISSNS.get(journal), year, month, cents);
+            expected[journal][year - 1990][month - 1] += cents;
+        }
+
+        for (int journal = 0; journal < ISSNS.size(); journal++) {
+            assertArrayEquals(annual(expected, journal, 1985, 2045), cube.annual(ISSNS.get(journal), 1985, 2045));
+            assertArrayEquals(annual(expected, journal, 1999, 1999), cube.annual(ISSNS.get(journal), 1999, 1999));
+            assertArrayEquals(expected[journal][2003 - 1990], cube.monthly(ISSNS.get(journal), 2003));
+        }
+        assertArrayEquals(annual(expected, -1, 1980, 2050), cube.annual(null, 1980, 2050));
+        assertArrayEquals(new long[12], cube.monthly(null, 1989));
+        assertArrayEquals(new long[0], cube.annual(null, 2001, 2000));
+        assertArrayEquals(new long[3], cube.annual("0000-0000", 2000, 2002));
+
+        Map<String, Long> byJournal = new TreeMap<>();
+        for (int journal = 0; journal < ISSNS.size(); journal++) {
+            long total = 0;
+            for (long year : annual(expected, journal, 2000, 2009)) {
+                total += year;
+            }
+            byJournal.put(ISSNS.get(journal), total);
+        }
+        assertEquals(byJournal, cube.byJournal(2000, 2009));
+        assertEquals(Map.of(), cube.byJournal(1900, 1910));
+    }
+
+    @Test
+    void aVersionedReadHoldsThePaymentsAddedBeforeIt() {
+        RevenueCube cube = new RevenueCube();
+        VersionClock versions = new VersionClock();
+        long first = cube.add(versions, ISSNS.get(0), 500, new GregorianCalendar(2024, 0, 31));
+        versions.publish(first);
+
+        RevenueCube.VersionedTotals totals = cube.annualAtNewVersion(versions, null, 2023, 2024);
+        versions.publish(totals.version);
+        long later = cube.add(versions, ISSNS.get(1), 700, new GregorianCalendar(2023, 11, 31));
+        versions.publish(later);
+
+        assertTrue(first < totals.version && totals.version < later);
+        assertArrayEquals(new long[] {0, 500}, totals.cents);
+        assertArrayEquals(new long[] {700, 500}, cube.annual(null, 2023, 2024));
+        assertEquals(later, versions.current());
+    }
+
+    @Test
+    void theDistributorsRevenueMatchesItsPayments() {
+        Distributor distributor = TestDistributors.quietDistributor();
+        Journal nature = new Journal("Nature", ISSNS.get(0), 12, 10);
+        Journal science = new Journal("Science", ISSNS.get(1), 51, 15);
+        assertTrue(distributor.addJournal(nature));
+        assertTrue(distributor.addJournal(science));
+        Individual ada = new Individual("Ada", "1 Main St", "4111111111111111", 12, 2030, 123);
+        assertTrue(distributor.addSubscriber(ada));
+        Subscription natures = new Subscription(new DateInfo(1, 2024), 1, nature, ada, 0);
+        Subscription sciences = new Subscription(new DateInfo(1, 2024), 1, science, ada, 0);
+        assertTrue(distributor.addSubscription(nature.getIssn(), ada, natures));
+        assertTrue(distributor.addSubscription(science.getIssn(), ada, sciences));
+        assertTrue(distributor.acceptPayment(natures, 10.25, new GregorianCalendar(2024, 11, 31)));
+        assertTrue(distributor.acceptPayment(natures, 0.75, new GregorianCalendar(2025, 0, 1)));
+        assertTrue(distributor.acceptPayment(sciences, 3, new GregorianCalendar(2019, 5, 15)));
+        assertTrue(distributor.acceptPayment(sciences, 4, new GregorianCalendar(2024, 11, 1)));
+
+        assertArrayEquals(new double[] {3, 0, 0, 0, 0, 14.25, 0.75}, distributor.annualRevenue(null, 2019, 2025));
+        assertArrayEquals(new double[] {10.25, 0.75}, distributor.annualRevenue(nature.getIssn(), 2024, 2025));
+        assertEquals(14.25, distributor.monthlyRevenue(null, 2024)[11]);
+        assertEquals(Map.of(nature.getIssn(), 11.0, science.getIssn(), 4.0), distributor.revenueByJournal(2020, 2025));
+    }
+
+    private static long[] annual(long[][][] expected, int journal, int startYear, int endYear) {
+        long[] annual = new long[endYear - startYear + 1];
+        for (int j = 0; j < expected.length; j++) {
+            if (journal >= 0 && j != journal) {
+                continue;
+            }
+            for (int year = Math.max(startYear, 1990); year <= Math.min(endYear, 2039); year++) {
+                for (long cents : expected[j][year - 1990]) {
+                    annual[year - startYear] += cents;
+                }
+            }
+        }
+        return annual;
+    }
+}
@@ -0,0 +1,162 @@
+package com.journalapp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.journalapp.model.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StateSnapshotTest {
+    @TempDir
+    Path dir;
+
+    private final Journal journal = new Journal("Nature", "0028-0836", 12, 10.05);
+    private final Individual individual = new Individual("Ada", "1 Main St", "4111111111111111", 12, 2030, 123);
+    private final Corporation corporation = new Corporation("Acme", "2 High St", 42, "First Bank", 1, 2, 2003, 987654);
+
+    @Test
+    void roundTripKeepsJournalsSubscribersAndPayments() throws IOException {
+        Subscription first = new Subscription(new DateInfo(3, 2024), 2, journal, individual, 0.1);
+        first.acceptPayment(100.25, new GregorianCalendar(2024, 2, 31));
+        first.acceptPayment(0.01, new GregorianCalendar(2024, 11, 1));
+        Subscription second = new Subscription(new DateInfo(1, 2025), 1, journal, corporation, 0);
+        Path file = dir.resolve("state.snap");
+
+        StateSnapshot.write(file, List.of(journal), List.of(individual, corporation), List.of(first, second), Long.MAX_VALUE, 17);
+        StateSnapshot.Contents contents = StateSnapshot.read(file);
+
+        assertEquals(17, contents.lastLsn);
+        Journal readJournal = contents.journals.get("0028-0836");
+        assertEquals("Nature", readJournal.getName());
+        assertEquals(12, readJournal.getFrequency());
+        assertEquals(1005, readJournal.getIssuePriceInCents());
+
+        Individual readIndividual = assertInstanceOf(Individual.class, contents.subscribers.get(0));
+        assertEquals("4111111111111111", readIndividual.getCreditCardNr());
+        assertEquals(123, readIndividual.getCCV());
+        Corporation readCorporation = assertInstanceOf(Corporation.class, contents.subscribers.get(1));
+        assertEquals("First Bank", readCorporation.getBankName());
+        assertEquals(987654, readCorporation.getAccountNumber());
+
+        Subscription readFirst = contents.subscriptions.get(0);
+        assertEquals(3, readFirst.getDates().getStartMonth());
+        assertEquals(2024, readFirst.getDates().getStartYear());
+        assertEquals(2, readFirst.getCopies());
+        assertEquals(0.1, readFirst.getPayment().getDiscountRatio());
+        assertEquals(10026, readFirst.getPayment().getReceivedPaymentInCents());
+        assertEquals(EpochDates.epochDay(2024, 3, 31), readFirst.getPayment().getTransactionEpochDay(0));
+        assertEquals(1, readFirst.getPayment().getTransactionAmountInCents(1));
+        assertEquals(0, contents.subscriptions.get(1).getPayment().getTransactionCount());
+    }
+
+    @Test
+    void writeLeavesOutPaymentsAfterTheVersion() throws IOException {
+        Subscription subscription = new Subscription(new DateInfo(1, 2024), 1, journal, individual, 0);
+        subscription.acceptPayment(5, new GregorianCalendar(2024, 0, 2), 1);
+        subscription.acceptPayment(7, new GregorianCalendar(2024, 0, 3), 2);
+        Path file = dir.resolve("state.snap");
+
+        StateSnapshot.write(file, List.of(journal), List.of(individual), List.of(subscription), 1, 0);
+
+        PaymentInfo payment = StateSnapshot.read(file).subscriptions.get(0).getPayment();
+        assertEquals(1, payment.getTransactionCount());
+        assertEquals(500, payment.getReceivedPaymentInCents());
+    }
+
+    @Test
+    void paymentDaysDoNotDependOnTheTimeZone() throws IOException {
+        Subscription subscription = new Subscription(new DateInfo(1, 2024), 1, journal, individual, 0);
+        subscription.acceptPayment(5, new GregorianCalendar(2024, 0, 2));
+        Path file = dir.resolve("state.snap");
+        TimeZone zone = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("Pacific/Kiritimati"));
+            StateSnapshot.write(file, List.of(journal), List.of(individual), List.of(subscription), Long.MAX_VALUE, 0);
+            TimeZone.setDefault(TimeZone.getTimeZone("Pacific/Pago_Pago"));
+            PaymentInfo payment = StateSnapshot.read(file).subscriptions.get(0).getPayment();
+            assertEquals(EpochDates.epochDay(2024, 1, 2), payment.getTransactionEpochDay(0));
+        } finally {
+            TimeZone.setDefault(zone);
+        }
+    }
+
+    @Test
+    void mappedStateReadsTheRecordsInPlace() throws IOException {
+        Path file = writeSnapshot();
+
+        MappedState mapped = MappedState.open(file);
+        assertEquals(1, mapped.subscriptionCount());
+        assertEquals(1050, mapped.receivedPaymentInCents(0));
+        assertEquals(1000, mapped.paymentAmountInCents(0, 0));
+        assertEquals(EpochDates.epochDay(2024, 3, 1), mapped.paymentEpochDay(0, 1));
+        assertEquals(1005, mapped.journal(0).getIssuePriceInCents());
+    }
+
+    @Test
+    void rejectsFilesThatAreNotSnapshots() throws IOException {
+        Path file = dir.resolve("other.snap");
+        Files.write(file, new byte[StateSnapshot.HEADER_SIZE]);
+
+        IOException e = assertThrows(IOException.class, () -> StateSnapshot.read(file));
+        assertTrue(e.getMessage().contains("Not a distributor snapshot"), e.getMessage());
+    }
+
+    @Test
+    void rejectsUnsupportedVersions() throws IOException {
+        Path file = writeSnapshot();
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putShort(4, (short) (StateSnapshot.VERSION + 1));
+        Files.write(file, bytes);
+
+        IOException e = assertThrows(IOException.class, () -> StateSnapshot.read(file));
+        assertTrue(e.getMessage().contains("Unsupported snapshot version"), e.getMessage());
+    }
+
+    @Test
+    void rejectsTruncatedSnapshots() throws IOException {
+        Path file = dir.resolve("state.snap");
+        Subscription subscription = new Subscription(new DateInfo(1, 2024), 1, journal, individual, 0);
+        subscription.acceptPayment(5, new GregorianCalendar(2024, 0, 2));
+        StateSnapshot.write(file, List.of(journal), List.of(individual), List.of(subscription), Long.MAX_VALUE, 0);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+
+        assertThrows(IOException.class, () -> StateSnapshot.read(file));
+        assertThrows(IOException.class, () -> MappedState.open(file));
+    }
+
+    @Test
+    void rejectsRecordsThatReferToMissingStrings() throws IOException {
+        Path file = writeSnapshot();
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer b = ByteBuffer.wrap(bytes);
+        b.putInt((int) b.getLong(40), 99); // The journal's name index
+        Files.write(file, bytes);
+
+        IOException e = assertThrows(IOException.class, () -> StateSnapshot.read(file));
+        assertTrue(e.getMessage().startsWith("Corrupt snapshot file"), e.getMessage());
+    }
+
+    /**
+     * Writes a snapshot with one journal, one individual and one subscription with two payments.
+     */
+    private Path writeSnapshot() throws IOException {
+        Subscription subscription = new Subscription(new DateInfo(1, 2024), 1, journal, individual, 0);
+        subscription.acceptPayment(10, new GregorianCalendar(2024, 1, 29));
+        subscription.acceptPayment(0.5, new GregorianCalendar(2024, 2, 1));
+        Path file = dir.resolve("state.snap");
+        StateSnapshot.write(file, List.of(journal), List.of(individual), List.of(subscription), Long.MAX_VALUE, 9);
+        return file;
+    }
+}
@@ -0,0 +1,20 @@
+package com.journalapp;
+
+import com.journalapp.output.OutputSink;
+
+/**
+ * Distributors for tests.
+ */
+final class TestDistributors {
+    private TestDistributors() {
+    }
+
+    /**
+     * Creates an empty distributor whose messages are discarded.
+     */
+    static Distributor quietDistributor() {
+        Distributor distributor = new Distributor();
+        distributor.setOutputSink(OutputSink.DISCARD);
+        return distributor;
+    }
+}
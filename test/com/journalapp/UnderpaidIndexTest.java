@@ -0,0 +1,104 @@
+package com.journalapp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.journalapp.model.*;
+import com.journalapp.query.IncompletePayment;
+import com.journalapp.query.IncompletePaymentSummary;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class UnderpaidIndexTest {
+    @TempDir
+    Path dir;
+
+    private final Journal journal = new Journal("Nature", "0028-0836", 12, 10);
+    private final Individual ada = new Individual("Ada", "1 Main St", "4111111111111111", 12, 2030, 123);
+    private final Individual bob = new Individual("Bob", "2 Main St", "4111111111111112", 12, 2030, 456);
+
+    @Test
+    void entriesFollowPaymentsAndCopies() {
+        UnderpaidIndex index = new UnderpaidIndex();
+        Subscription adas = new Subscription(new DateInfo(1, 2024), 1, journal, ada, 0);
+        Subscription bobs = new Subscription(new DateInfo(1, 2024), 2, journal, bob, 0.5);
+        index.update(adas);
+        index.update(bobs);
+        assertEquals(2, index.size());
+        assertEquals(24000, index.totalOutstandingInCents());
+
+        adas.acceptPayment(119.99, new GregorianCalendar(2024, 0, 1)); // A cent short still counts as paid
+        index.update(adas);
+        assertEquals(1, index.size());
+        assertEquals(12000, index.totalOutstandingInCents());
+
+        adas.increaseCopies();
+        index.update(adas);
+        bobs.acceptPayment(100, new GregorianCalendar(2024, 0, 1));
+        index.update(bobs);
+        assertEquals(2, index.size());
+        assertEquals(12001 + 2000, index.totalOutstandingInCents());
+        assertEquals(List.of("Ada", "Bob"), index.top(5).stream().map(payment -> payment.getSubscriber().getName()).toList());
+        assertEquals(List.of("Ada"), index.top(1).stream().map(payment -> payment.getSubscriber().getName()).toList());
+    }
+
+    @Test
+    void theSummaryMatchesAScanAfterRandomChanges() {
+        Distributor distributor = TestDistributors.quietDistributor();
+        assertTrue(distributor.addJournal(journal));
+        Random random = new Random(20);
+        List<Subscriber> subscribers = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Individual subscriber = new Individual("Subscriber " + i, i + " Main St", "4111111111111111", 12, 2030, 123);
+            assertTrue(distributor.addSubscriber(subscriber));
+            subscribers.add(subscriber);
+        }
+        for (int step = 0; step < 400; step++) {
+            Subscriber subscriber = subscribers.get(random.nextInt(subscribers.size()));
+            Subscription subscription = distributor.searchSubscription(journal.getIssn(), subscriber);
+            if (subscription == null || random.nextInt(4) == 0) {
+                // Adds the subscription, or increases its copies.
+                assertTrue(distributor.addSubscription(journal.getIssn(), subscriber,
+                                                       new Subscription(new DateInfo(1, 2024), 1, journal, subscriber, random.nextInt(3) / 10.0)));
+            } else {
+                assertTrue(distributor.acceptPayment(subscription, 1 + random.nextInt(6000) / 100.0, new GregorianCalendar(2024, 0, 1)));
+            }
+        }
+
+        assertSummaryMatchesScan(distributor);
+
+        // The set of a mapped snapshot is built from its records.
+        String file = dir.resolve("state.snap").toString();
+        distributor.saveState(file);
+        Distributor mapped = TestDistributors.quietDistributor();
+        mapped.loadStateMapped(file);
+        assertSummaryMatchesScan(mapped);
+        assertTrue(mapped.acceptPayment(mapped.searchSubscription(journal.getIssn(), "Subscriber 7"), 30, new GregorianCalendar(2024, 0, 1)));
+        assertTrue(mapped.addSubscription(journal.getIssn(), mapped.searchSubscriber("Subscriber 8"),
+                                          new Subscription(new DateInfo(1, 2024), 1, journal, mapped.searchSubscriber("Subscriber 8"), 0)));
+        assertSummaryMatchesScan(mapped);
+    }
+
+    @Test
+    void aNegativeTopNIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> TestDistributors.quietDistributor().incompletePaymentSummary(-1));
+    }
+
+    private static void assertSummaryMatchesScan(Distributor distributor) {
+        List<IncompletePayment> scanned = distributor.incompletePayments().toList();
+        assertTrue(scanned.size() > 3);
+        IncompletePaymentSummary summary = distributor.incompletePaymentSummary(3);
+        assertEquals(scanned.size(), summary.getCount());
+        assertEquals(scanned.stream().mapToLong(IncompletePayment::getOutstandingInCents).sum(), summary.getTotalOutstandingInCents());
+        List<Long> largest = scanned.stream().map(IncompletePayment::getOutstandingInCents).sorted(Comparator.reverseOrder()).limit(3).toList();
+        assertEquals(largest, summary.getLargest().stream().map(IncompletePayment::getOutstandingInCents).toList());
+        assertEquals(scanned.size(), distributor.incompletePaymentsByAmountOwed().count());
+    }
+}
@@ -0,0 +1,296 @@
+package com.journalapp;
+
+import static com.journalapp.TestDistributors.quietDistributor;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.journalapp.model.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.GregorianCalendar;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WriteAheadLogTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysRecordsInOrderWithTheirFields() throws IOException {
+        Path base = dir.resolve("state.snap.wal");
+        try (WriteAheadLog log = WriteAheadLog.open(base, 0)) {
+            log.append(new WriteAheadLog.Record((byte) 1).putString("Nature").putInt(12).putDouble(10.05));
+            log.append(new WriteAheadLog.Record((byte) 2).putString("\u00c5sa \u00d6berg").putLong(-5L));
+            log.awaitDurable(log.append(new WriteAheadLog.Record((byte) 3)));
+        }
+
+        List<String> replayed = new ArrayList<>();
+        long highest = WriteAheadLog.replay(base, 0, (lsn, record) -> {
+            switch (record.type()) {
+                case 1:
+                    replayed.add(lsn + ":" + record.getString() + "," + record.getInt() + "," + record.getDouble());
+                    break;
+                case 2:
+                    replayed.add(lsn + ":" + record.getString() + "," + record.getLong());
+                    break;
+                default:
+                    replayed.add(lsn + ":" + record.type());
+            }
+        });
+
+        assertEquals(3, highest);
+        assertEquals(List.of("1:Nature,12,10.05", "2:\u00c5sa \u00d6berg,-5", "3:3"), replayed);
+    }
+
+    @Test
+    void replaySkipsRecordsUpToTheSnapshotLsn() throws IOException {
+        Path base = dir.resolve("state.snap.wal");
+        appendRecords(base, 0, 5);
+
+        List<Long> replayed = new ArrayList<>();
+        long highest = WriteAheadLog.replay(base, 3, (lsn, record) -> replayed.add(lsn));
+
+        assertEquals(5, highest);
+        assertEquals(List.of(4L, 5L), replayed);
+        assertEquals(7, WriteAheadLog.replay(base, 7, (lsn, record) -> replayed.add(lsn)));
+        assertEquals(2, replayed.size());
+    }
+
+    @Test
+    void reopenedLogContinuesInANewSegment() throws IOException {
+        Path base = dir.resolve("state.snap.wal");
+        appendRecords(base, 0, 2);
+        appendRecords(base, WriteAheadLog.replay(base, 0, (lsn, record) -> { }), 2);
+
+        assertTrue(Files.exists(dir.resolve("state.snap.wal.1")));
+        assertTrue(Files.exists(dir.resolve("state.snap.wal.2")));
+        assertEquals(List.of(1L, 2L, 3L, 4L), replayedLsns(base));
+    }
+
+    @Test
+    void rolloverMovesLaterRecordsToTheNewSegment() throws IOException {
+        Path base = dir.resolve("state.snap.wal");
+        try (WriteAheadLog log = WriteAheadLog.open(base, 0)) {
+            log.awaitDurable(log.append(new WriteAheadLog.Record((byte) 1)));
+            long generation = log.rollover();
+            log.awaitDurable(log.append(new WriteAheadLog.Record((byte) 1)));
+            log.deleteSegmentsBefore(generation);
+        }
+
+        assertFalse(Files.exists(dir.resolve("state.snap.wal.1")));
+        List<Long> replayed = new ArrayList<>();
+        WriteAheadLog.replay(base, 1, (lsn, record) -> replayed.add(lsn)); // As from a checkpoint snapshot at LSN 1
+        assertEquals(List.of(2L), replayed);
+        assertThrows(IOException.class, () -> replayedLsns(base));
+    }
+
+    @Test
+    void replayFailsOnACorruptRecordFollowedByOthers() throws IOException {
+        Path base = dir.resolve("state.snap.wal");
+        appendRecords(base, 0, 3);
+        Path segment = dir.resolve("state.snap.wal.1");
+        byte[] bytes = Files.readAllBytes(segment);
+        int recordSize = bytes.length / 3;
+        bytes[recordSize + recordSize - 1] ^= 1; // Last payload byte of the second record
+        Files.write(segment, bytes);
+
+        List<Long> replayed = new ArrayList<>();
+        IOException e = assertThrows(IOException.class, () -> WriteAheadLog.replay(base, 0, (lsn, record) -> replayed.add(lsn)));
+
+        assertTrue(e.getMessage().contains("followed by further records"), e.getMessage());
+        assertEquals(List.of(1L), replayed);
+        assertArrayEquals(bytes, Files.readAllBytes(segment));
+    }
+
+    @Test
+    void replayCutsOffATornTail() throws IOException {
+        Path base = dir.resolve("state.snap.wal");
+        appendRecords(base, 0, 3);
+        Path segment = dir.resolve("state.snap.wal.1");
+        byte[] bytes = Files.readAllBytes(segment);
+        Files.write(segment, Arrays.copyOf(bytes, bytes.length - 3));
+
+        assertEquals(List.of(1L, 2L), replayedLsns(base));
+        assertEquals(bytes.length / 3 * 2, Files.size(segment));
+
+        appendRecords(base, 2, 1);
+        assertEquals(List.of(1L, 2L, 3L), replayedLsns(base));
+    }
+
+    @Test
+    void replayCutsOffALastRecordWithABadCrc() throws IOException {
+        Path base = dir.resolve("state.snap.wal");
+        appendRecords(base, 0, 2);
+        Path segment = dir.resolve("state.snap.wal.1");
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(segment, bytes);
+
+        assertEquals(List.of(1L), replayedLsns(base));
+    }
+
+    @Test
+    void replayCutsOffAZeroFilledTail() throws IOException {
+        Path base = dir.resolve("state.snap.wal");
+        appendRecords(base, 0, 2);
+        Path segment = dir.resolve("state.snap.wal.1");
+        byte[] bytes = Files.readAllBytes(segment);
+        Files.write(segment, Arrays.copyOf(bytes, bytes.length + 100));
+
+        assertEquals(List.of(1L, 2L), replayedLsns(base));
+        assertEquals(bytes.length, Files.size(segment));
+    }
+
+    @Test
+    void replayFailsOnATornSegmentFollowedByAnother() throws IOException {
+        Path base = dir.resolve("state.snap.wal");
+        appendRecords(base, 0, 2);
+        Path segment = dir.resolve("state.snap.wal.1");
+        byte[] bytes = Files.readAllBytes(segment);
+        Files.write(segment, Arrays.copyOf(bytes, bytes.length - 1));
+        appendRecords(base, 2, 1);
+
+        IOException e = assertThrows(IOException.class, () -> replayedLsns(base));
+        assertTrue(e.getMessage().contains("state.snap.wal.2"), e.getMessage());
+    }
+
+    @Test
+    void replayFailsOnAnLsnGapBetweenSegments() throws IOException {
+        Path base = dir.resolve("state.snap.wal");
+        appendRecords(base, 0, 2);
+        appendRecords(base, 3, 1);
+
+        IOException e = assertThrows(IOException.class, () -> replayedLsns(base));
+        assertTrue(e.getMessage().contains("Record 4"), e.getMessage());
+    }
+
+    @Test
+    void replayFailsWhenTheLogStartsAfterTheSnapshot() throws IOException {
+        Path base = dir.resolve("state.snap.wal");
+        appendRecords(base, 5, 2);
+
+        assertThrows(IOException.class, () -> WriteAheadLog.replay(base, 4, (lsn, record) -> { }));
+        assertEquals(7, WriteAheadLog.replay(base, 5, (lsn, record) -> { }));
+    }
+
+    @Test
+    void recordsCoveredByTheSnapshotNeedNotBeContiguous() throws IOException {
+        Path base = dir.resolve("state.snap.wal");
+        appendRecords(base, 0, 2);
+        appendRecords(base, 7, 2);
+
+        List<Long> replayed = new ArrayList<>();
+        assertEquals(9, WriteAheadLog.replay(base, 7, (lsn, record) -> replayed.add(lsn)));
+        assertEquals(List.of(8L, 9L), replayed);
+    }
+
+    @Test
+    void appendFailsOnceClosed() throws IOException {
+        WriteAheadLog log = WriteAheadLog.open(dir.resolve("state.snap.wal"), 0);
+        log.close();
+
+        assertThrows(IOException.class, () -> log.append(new WriteAheadLog.Record((byte) 1)));
+    }
+
+    @Test
+    void distributorRecoversLoggedChanges() {
+        String snapshot = dir.resolve("state.snap").toString();
+        Distributor distributor = quietDistributor();
+        assertTrue(distributor.recoverState(snapshot));
+        Journal journal = new Journal("Nature", "0028-0836", 12, 10);
+        Individual individual = new Individual("Ada", "1 Main St", "4111111111111111", 12, 2030, 123);
+        Subscription subscription = new Subscription(new DateInfo(1, 2024), 1, journal, individual, 0);
+        assertTrue(distributor.addJournal(journal));
+        assertTrue(distributor.addSubscriber(individual));
+        assertTrue(distributor.addSubscription(journal.getIssn(), individual, subscription));
+        assertTrue(distributor.acceptPayment(subscription, 12.34, new GregorianCalendar(2024, 0, 5)));
+
+        Distributor recovered = quietDistributor();
+        assertTrue(recovered.recoverState(snapshot));
+
+        PaymentInfo payment = recovered.searchSubscription("0028-0836", "Ada").getPayment();
+        assertEquals(1234, payment.getReceivedPaymentInCents());
+        assertEquals(EpochDates.epochDay(2024, 1, 5), payment.getTransactionEpochDay(0));
+    }
+
+    @Test
+    void recoveryFailsWhenTheLogDoesNotFitTheSnapshot() throws IOException {
+        Path snapshot = dir.resolve("state.snap");
+        Distributor distributor = quietDistributor();
+        assertTrue(distributor.recoverState(snapshot.toString()));
+        Journal journal = new Journal("Nature", "0028-0836", 12, 10);
+        Individual individual = new Individual("Ada", "1 Main St", "4111111111111111", 12, 2030, 123);
+        assertTrue(distributor.addJournal(journal));
+        assertTrue(distributor.addSubscriber(individual));
+        assertTrue(distributor.addSubscription(journal.getIssn(), individual, new Subscription(new DateInfo(1, 2024), 1, journal, individual, 0)));
+        // A snapshot that claims to hold the first two changes but lacks the subscriber.
+        StateSnapshot.write(snapshot, List.of(journal), List.of(), List.of(), 0, 2);
+
+        Distributor recovered = quietDistributor();
+        assertFalse(recovered.recoverState(snapshot.toString()));
+
+        assertTrue(recovered.getJournals().isEmpty());
+        assertFalse(Files.exists(dir.resolve("state.snap.wal.2")));
+    }
+
+    @Test
+    void recoveryContinuesFromACheckpoint() {
+        String snapshot = dir.resolve("state.snap").toString();
+        Distributor distributor = quietDistributor();
+        assertTrue(distributor.recoverState(snapshot));
+        assertTrue(distributor.addJournal(new Journal("Nature", "0028-0836", 12, 10)));
+        distributor.saveState(snapshot);
+        assertTrue(distributor.addJournal(new Journal("Science", "0036-8075", 51, 15)));
+
+        Distributor recovered = quietDistributor();
+        assertTrue(recovered.recoverState(snapshot));
+
+        assertFalse(Files.exists(dir.resolve("state.snap.wal.1")));
+        assertEquals(2, recovered.getJournals().size());
+    }
+
+    @Test
+    void recoveryFailsWhenAnEarlierSegmentIsDamaged() throws IOException {
+        String snapshot = dir.resolve("state.snap").toString();
+        Distributor first = quietDistributor();
+        assertTrue(first.recoverState(snapshot));
+        assertTrue(first.addJournal(new Journal("Nature", "0028-0836", 12, 10)));
+        Distributor second = quietDistributor();
+        assertTrue(second.recoverState(snapshot));
+        assertTrue(second.addSubscriber(new Individual("Ada", "1 Main St", "4111111111111111", 12, 2030, 123)));
+        Path segment = dir.resolve("state.snap.wal.1");
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(segment, bytes);
+
+        Distributor recovered = quietDistributor();
+        assertFalse(recovered.recoverState(snapshot));
+
+        assertTrue(recovered.getJournals().isEmpty());
+        assertTrue(recovered.getSubscribers().isEmpty());
+        assertArrayEquals(bytes, Files.readAllBytes(segment));
+    }
+
+    private static void appendRecords(Path base, long lastLsn, int count) throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.open(base, lastLsn)) {
+            long lsn = 0;
+            for (int i = 0; i < count; i++) {
+                lsn = log.append(new WriteAheadLog.Record((byte) 1).putInt(i));
+            }
+            log.awaitDurable(lsn);
+        }
+    }
+
+    private static List<Long> replayedLsns(Path base) throws IOException {
+        List<Long> lsns = new ArrayList<>();
+        WriteAheadLog.replay(base, 0, (lsn, record) -> lsns.add(lsn));
+        return lsns;
+    }
+}
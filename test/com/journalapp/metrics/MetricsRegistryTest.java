@@ -0,0 +1,94 @@
+package com.journalapp.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MetricsRegistryTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void percentilesAreWithinABucketOfTheRecordedTimes() {
+        Timer timer = new MetricsRegistry(true).timer("op");
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            timer.record(nanos * 1000);
+        }
+
+        Timer.Snapshot snapshot = timer.snapshot();
+        assertEquals(100_000, snapshot.getCount());
+        assertEquals(100_000_000, snapshot.getMaxNanos());
+        assertEquals(50_000_500, snapshot.getMeanNanos(), 1e-6);
+        for (double quantile : new double[] {0.5, 0.9, 0.99, 0.999}) {
+            long exact = (long) Math.ceil(quantile * 100_000) * 1000;
+            long percentile = snapshot.getPercentileNanos(quantile);
+            assertTrue(percentile >= exact && percentile <= exact * 1.04, quantile + ": " + percentile + " for " + exact);
+        }
+        assertEquals(100_000_000, snapshot.getPercentileNanos(1));
+        assertThrows(IllegalArgumentException.class, () -> snapshot.getPercentileNanos(1.5));
+    }
+
+    @Test
+    void everyValueFallsInABucketThatHoldsIt() {
+        long previousHighest = -1;
+        for (int bucket = 0; bucket < 200; bucket++) {
+            long highest = Timer.highestValueIn(bucket);
+            assertEquals(bucket, Timer.bucketOf(highest));
+            assertEquals(bucket, Timer.bucketOf(previousHighest + 1));
+            previousHighest = highest;
+        }
+        assertEquals(Timer.bucketOf(Long.MAX_VALUE), Timer.bucketOf(Timer.highestValueIn(Timer.bucketOf(Long.MAX_VALUE))));
+    }
+
+    @Test
+    void nothingIsRecordedWhileDisabled() {
+        MetricsRegistry registry = new MetricsRegistry(false);
+        Timer timer = registry.timer("op");
+        Counter counter = registry.counter("op.rejected");
+
+        long start = timer.start();
+        timer.stop(start);
+        counter.increment();
+
+        assertEquals(0, start);
+        assertEquals(0, timer.snapshot().getCount());
+        assertEquals(0, counter.get());
+        registry.setEnabled(true);
+        counter.add(3);
+        timer.stop(timer.start());
+        assertEquals(3, counter.get());
+        assertEquals(1, timer.snapshot().getCount());
+    }
+
+    @Test
+    void metricsAreLookedUpByNameAndDumpedInOrder() throws IOException {
+        MetricsRegistry registry = new MetricsRegistry(true);
+        assertSame(registry.timer("b"), registry.timer("b"));
+        registry.counter("z").increment();
+        registry.counter("a").add(2);
+        registry.gauge("size", () -> 42);
+        registry.timer("b").record(1500);
+
+        Path file = dir.resolve("metrics.txt");
+        registry.dumpTo(file);
+        String dump = Files.readString(file);
+
+        assertEquals(42, registry.gaugeValue("size"));
+        assertEquals(0, registry.gaugeValue("missing"));
+        assertTrue(dump.indexOf("counter a ") < dump.indexOf("counter z "), dump);
+        assertTrue(dump.contains("gauge   size"), dump);
+        assertTrue(dump.contains("count=1 mean=1.5us"), dump);
+
+        registry.reset();
+        assertEquals(0, registry.counter("a").get());
+        assertEquals(0, registry.timer("b").snapshot().getCount());
+        assertEquals(42, registry.gaugeValue("size"));
+    }
+}
@@ -0,0 +1,64 @@
+package com.journalapp.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+import org.junit.jupiter.api.Test;
+
+class EpochDatesTest {
+    @Test
+    void epochDayMatchesLocalDate() {
+        for (LocalDate date = LocalDate.of(1899, 12, 1); date.getYear() < 2101; date = date.plusDays(1)) {
+            int epochDay = EpochDates.epochDay(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+            assertEquals(date.toEpochDay(), epochDay, date.toString());
+            int epochMonth = EpochDates.epochMonthOfDay(epochDay);
+            assertEquals(date.getYear(), EpochDates.yearOf(epochMonth), date.toString());
+            assertEquals(date.getMonthValue(), EpochDates.monthOf(epochMonth), date.toString());
+            assertEquals(date.getDayOfMonth(), EpochDates.dayOfMonth(epochDay), date.toString());
+        }
+    }
+
+    @Test
+    void monthsRollOverIntoNeighbouringYears() {
+        assertEquals(EpochDates.epochMonth(1, 2025), EpochDates.epochMonth(13, 2024));
+        assertEquals(EpochDates.epochMonth(12, 2023), EpochDates.epochMonth(0, 2024));
+        assertEquals(-1, EpochDates.epochMonth(12, -1));
+        assertEquals(-1, EpochDates.yearOf(-1));
+        assertEquals(12, EpochDates.monthOf(-1));
+    }
+
+    @Test
+    void monthLengthsFollowTheGregorianLeapYears() {
+        assertTrue(EpochDates.isLeapYear(2000));
+        assertTrue(EpochDates.isLeapYear(2024));
+        assertFalse(EpochDates.isLeapYear(1900));
+        assertFalse(EpochDates.isLeapYear(2023));
+        assertEquals(29, EpochDates.lengthOfMonth(2, 2024));
+        assertEquals(28, EpochDates.lengthOfMonth(2, 2100));
+        assertEquals(30, EpochDates.lengthOfMonth(4, 2024));
+        assertEquals(31, EpochDates.lengthOfMonth(12, 2024));
+        int february = EpochDates.epochMonth(2, 2024);
+        assertEquals(29, EpochDates.lastEpochDayOf(february) - EpochDates.firstEpochDayOf(february) + 1);
+    }
+
+    @Test
+    void calendarsConvertInTheirOwnTimeZone() {
+        for (String zone : new String[] {"Pacific/Kiritimati", "UTC", "Pacific/Pago_Pago"}) {
+            Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone(zone));
+            calendar.clear();
+            calendar.set(2024, Calendar.MARCH, 31, 23, 59);
+            assertEquals(EpochDates.epochDay(2024, 3, 31), EpochDates.epochDay(calendar), zone);
+
+            EpochDates.setDate(calendar, EpochDates.epochDay(2024, 2, 29));
+            assertEquals(2024, calendar.get(Calendar.YEAR), zone);
+            assertEquals(Calendar.FEBRUARY, calendar.get(Calendar.MONTH), zone);
+            assertEquals(29, calendar.get(Calendar.DAY_OF_MONTH), zone);
+            assertEquals(0, calendar.get(Calendar.HOUR_OF_DAY), zone);
+        }
+    }
+}
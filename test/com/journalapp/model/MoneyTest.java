@@ -0,0 +1,57 @@
+package com.journalapp.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import org.junit.jupiter.api.Test;
+
+class MoneyTest {
+    @Test
+    void toCentsRoundsToTheNearestCent() {
+        assertEquals(1005, Money.toCents(10.05));
+        assertEquals(30, Money.toCents(0.1 + 0.2));
+        assertEquals(0, Money.toCents(0.004));
+        assertEquals(1, Money.toCents(0.005));
+        assertEquals(-1234, Money.toCents(-12.34));
+        assertEquals(0, Money.toCents(Double.NaN));
+    }
+
+    @Test
+    void centsSurviveARoundTripThroughAmounts() {
+        for (long cents = -100_000; cents <= 100_000; cents += 7) {
+            assertEquals(cents, Money.toCents(Money.toAmount(cents)));
+        }
+        assertEquals(12.34, Money.toAmount(1234));
+    }
+
+    @Test
+    void discountRoundsHalfACentUp() {
+        assertEquals(900, Money.discount(1000, 0.1));
+        assertEquals(3, Money.discount(5, 0.5));
+        assertEquals(2, Money.discount(5, 0.6));
+        assertEquals(1000, Money.discount(1000, 0));
+        assertEquals(0, Money.discount(1000, 1));
+        assertEquals(667, Money.discount(1000, 1 / 3.0));
+    }
+
+    @Test
+    void discountIsExactForLargeAmounts() {
+        long cents = 9_000_000_000_000L;
+        assertEquals(new BigDecimal(cents).multiply(new BigDecimal("0.75")).longValueExact(), Money.discount(cents, 0.25));
+    }
+
+    @Test
+    void formatMatchesTwoDecimalFormatting() {
+        for (long cents = -10_050; cents <= 10_050; cents++) {
+            assertEquals(String.format(Locale.ENGLISH, "%.2f", cents / 100.0), Money.format(cents));
+        }
+        assertEquals("-92233720368547758.08", Money.format(Long.MIN_VALUE));
+        assertEquals("92233720368547758.07", Money.format(Long.MAX_VALUE));
+    }
+
+    @Test
+    void appendAddsToTheBuilder() {
+        assertEquals("Total: 0.05", Money.append(new StringBuilder("Total: "), 5).toString());
+    }
+}
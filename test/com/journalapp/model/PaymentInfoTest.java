@@ -0,0 +1,117 @@
+package com.journalapp.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class PaymentInfoTest {
+    @Test
+    void subtotalsFollowTheYearOfEachPayment() {
+        PaymentInfo payment = new PaymentInfo(0);
+        payment.recordPayment(1000, EpochDates.epochDay(2024, 12, 31), 0);
+        payment.recordPayment(250, EpochDates.epochDay(2023, 6, 1), 0);
+        payment.recordPayment(5, EpochDates.epochDay(2025, 1, 1), 0);
+        payment.recordPayment(20, EpochDates.epochDay(2024, 1, 1), 0);
+
+        assertEquals(1020, payment.getReceivedPaymentInCents(2024));
+        assertEquals(250, payment.getReceivedPaymentInCents(2023));
+        assertEquals(5, payment.getReceivedPaymentInCents(2025));
+        assertEquals(0, payment.getReceivedPaymentInCents(2022));
+        assertEquals(12.75, payment.getReceivedPayment());
+        assertEquals(10.2, payment.getReceivedPayment(2024));
+    }
+
+    @Test
+    void subtotalsAsOfAVersionLeaveOutLaterPayments() {
+        PaymentInfo payment = new PaymentInfo(0);
+        payment.recordPayment(100, EpochDates.epochDay(2024, 3, 1), 1);
+        payment.recordPayment(200, EpochDates.epochDay(2025, 3, 1), 2);
+        payment.recordPayment(400, EpochDates.epochDay(2024, 4, 1), 3);
+
+        assertEquals(5.0, payment.getReceivedPaymentAsOf(2024, 3));
+        assertEquals(1.0, payment.getReceivedPaymentAsOf(2024, 2));
+        assertEquals(2.0, payment.getReceivedPaymentAsOf(2025, 2));
+        assertEquals(0.0, payment.getReceivedPaymentAsOf(2025, 1));
+        assertEquals(0.0, payment.getReceivedPaymentAsOf(2024, 0));
+    }
+
+    @Test
+    void totalsSurviveSerialization() throws IOException, ClassNotFoundException {
+        PaymentInfo payment = new PaymentInfo(0.1);
+        payment.recordPayment(1005, EpochDates.epochDay(2024, 2, 29), 4);
+        payment.recordPayment(1, EpochDates.epochDay(2025, 1, 1), 5);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(payment);
+        }
+        PaymentInfo read;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read = (PaymentInfo) in.readObject();
+        }
+
+        assertEquals(1006, read.getReceivedPaymentInCents());
+        assertEquals(1005, read.getReceivedPaymentInCents(2024));
+        assertEquals(1, read.getReceivedPaymentInCents(2025));
+        assertEquals(EpochDates.epochDay(2024, 2, 29), read.getTransactionEpochDay(0));
+        assertEquals(5, read.getTransactionVersion(1));
+        assertEquals(0.1, read.getDiscountRatio());
+    }
+
+    @Test
+    void theTransactionViewReadsTheColumns() {
+        PaymentInfo payment = new PaymentInfo(0);
+        List<PaymentTransaction> transactions = payment.getTransactions();
+        payment.recordPayment(10.005, new GregorianCalendar(2024, 1, 29, 13, 45)); // Rounded to the cent, kept as a day
+        payment.recordPayment(0.3, new GregorianCalendar(2023, 11, 31), 7);
+
+        assertEquals(2, transactions.size()); // The view grows with the columns
+        PaymentTransaction first = transactions.get(0);
+        assertEquals(1001, first.getAmountInCents());
+        assertEquals(10.01, first.getAmount());
+        assertEquals(2024, first.getPaymentDate().get(Calendar.YEAR));
+        assertEquals(Calendar.FEBRUARY, first.getPaymentDate().get(Calendar.MONTH));
+        assertEquals(29, first.getPaymentDate().get(Calendar.DAY_OF_MONTH));
+        assertEquals(0, first.getVersion());
+        assertEquals(7, transactions.get(1).getVersion());
+        assertEquals(EpochDates.epochDay(2023, 12, 31), payment.getTransactionEpochDay(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> transactions.get(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> payment.getTransactionAmountInCents(2));
+        assertThrows(UnsupportedOperationException.class, () -> transactions.add(first));
+    }
+
+    @Test
+    void paymentsUnderACentAreNotRecorded() {
+        PaymentInfo payment = new PaymentInfo(0);
+        payment.recordPayment(0, EpochDates.epochDay(2024, 1, 1), 0);
+        payment.recordPayment(-5, new GregorianCalendar(2024, 0, 1));
+        payment.recordPayment(5, null);
+
+        assertEquals(0, payment.getTransactionCount());
+        assertEquals(0, payment.getReceivedPaymentInCents());
+    }
+
+    @Test
+    void versionsAsOfCountOnlyEarlierPayments() {
+        PaymentInfo payment = new PaymentInfo(0);
+        payment.recordPayment(100, EpochDates.epochDay(2024, 1, 1), 0); // Loaded payments have version 0
+        payment.recordPayment(200, EpochDates.epochDay(2024, 1, 2), 0);
+        payment.recordPayment(400, EpochDates.epochDay(2024, 1, 3), 5);
+
+        assertEquals(0, payment.getTransactionVersion(1));
+        assertEquals(2, payment.getTransactionCountAsOf(4));
+        assertEquals(300, payment.getReceivedPaymentInCentsAsOf(4));
+        assertEquals(3, payment.getTransactionCountAsOf(5));
+        assertEquals(700, payment.getReceivedPaymentInCentsAsOf(5));
+        assertEquals(7.0, payment.getReceivedPaymentAsOf(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,98 @@
+package com.journalapp.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CsvReaderTest {
+    @Test
+    void readsPlainFieldsAsWritten() throws IOException {
+        List<String[]> records = readAll("issn,name\n 0028-0836 ,Nature\n");
+
+        assertEquals(2, records.size());
+        assertArrayEquals(new String[] {"issn", "name"}, records.get(0));
+        assertArrayEquals(new String[] {" 0028-0836 ", "Nature"}, records.get(1));
+    }
+
+    @Test
+    void quotedFieldsMayHoldCommasQuotesAndLineBreaks() throws IOException {
+        List<String[]> records = readAll("\"Smith, Jane\",\"She said \"\"hi\"\"\",\"1 Main St\r\nSpringfield\"\n");
+
+        assertArrayEquals(new String[] {"Smith, Jane", "She said \"hi\"", "1 Main St\r\nSpringfield"}, records.get(0));
+    }
+
+    @Test
+    void acceptsCrlfLfAndNoFinalLineBreak() throws IOException {
+        List<String[]> records = readAll("a,b\r\nc,d\ne,f");
+
+        assertEquals(3, records.size());
+        assertArrayEquals(new String[] {"c", "d"}, records.get(1));
+        assertArrayEquals(new String[] {"e", "f"}, records.get(2));
+    }
+
+    @Test
+    void keepsEmptyFields() throws IOException {
+        List<String[]> records = readAll(",\"\",x,\n");
+
+        assertArrayEquals(new String[] {"", "", "x", ""}, records.get(0));
+    }
+
+    @Test
+    void reportsTheLineEachRecordStartsOn() throws IOException {
+        try (CsvReader reader = new CsvReader(new StringReader("a\n\"b\nc\"\nd\n"))) {
+            reader.next();
+            assertEquals(1, reader.getLineNumber());
+            assertArrayEquals(new String[] {"b\nc"}, reader.next());
+            assertEquals(2, reader.getLineNumber());
+            reader.next();
+            assertEquals(4, reader.getLineNumber());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void readsFieldsLongerThanTheBuffer() throws IOException {
+        String longField = "x".repeat(200_000);
+
+        List<String[]> records = readAll("\"" + longField + "\"," + longField + "\n");
+
+        assertEquals(longField, records.get(0)[0]);
+        assertEquals(longField, records.get(0)[1]);
+    }
+
+    @Test
+    void rejectsAnUnclosedQuote() {
+        IOException e = assertThrows(IOException.class, () -> readAll("a\n\"b,c\n"));
+        assertTrue(e.getMessage().contains("line 2"), e.getMessage());
+    }
+
+    @Test
+    void rejectsTextAfterAClosingQuote() {
+        IOException e = assertThrows(IOException.class, () -> readAll("\"a\"b,c\n"));
+        assertTrue(e.getMessage().contains("after a quoted field"), e.getMessage());
+    }
+
+    @Test
+    void emptyInputHasNoRecords() throws IOException {
+        assertTrue(readAll("").isEmpty());
+    }
+
+    private static List<String[]> readAll(String csv) throws IOException {
+        List<String[]> records = new ArrayList<>();
+        try (CsvReader reader = new CsvReader(new StringReader(csv))) {
+            String[] record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,83 @@
+package com.journalapp.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class JsonTest {
+    @Test
+    void parsesObjectsArraysAndLiteralsInOrder() {
+        Object value = Json.parse(" {\"name\": \"Nature\", \"tags\": [true, false, null], \"empty\": {}, \"none\": []} ");
+
+        Map<?, ?> object = (Map<?, ?>) value;
+        assertEquals(List.of("name", "tags", "empty", "none"), List.copyOf(object.keySet()));
+        assertEquals("Nature", object.get("name"));
+        assertEquals(Arrays.asList(Boolean.TRUE, Boolean.FALSE, null), object.get("tags"));
+        assertTrue(((Map<?, ?>) object.get("empty")).isEmpty());
+        assertTrue(((List<?>) object.get("none")).isEmpty());
+    }
+
+    @Test
+    void integralNumbersAreLongsAndOthersDoubles() {
+        List<?> numbers = (List<?>) Json.parse("[12, -3, 10.5, 1e3, 123456789012345678901]");
+
+        assertEquals(12L, numbers.get(0));
+        assertEquals(-3L, numbers.get(1));
+        assertEquals(10.5, numbers.get(2));
+        assertEquals(1000.0, numbers.get(3));
+        assertEquals(1.2345678901234568e20, numbers.get(4));
+    }
+
+    @Test
+    void decodesEveryEscape() {
+        Object value = Json.parse("\"q\\\" b\\\\ s\\/ \\b\\f\\n\\r\\t \\u00e9\\u20AC\"");
+
+        assertEquals("q\" b\\ s/ \b\f\n\r\t \u00e9\u20ac", value);
+    }
+
+    @Test
+    void writesEscapesThatParseBack() {
+        String text = "quote \" backslash \\ newline \n tab \t control \u0001 e \u00e9";
+
+        String json = Json.write(text);
+
+        assertEquals("\"quote \\\" backslash \\\\ newline \\n tab \\t control \\u0001 e \u00e9\"", json);
+        assertEquals(text, Json.parse(json));
+    }
+
+    @Test
+    void writesMapsListsAndNumbers() {
+        Map<String, Object> object = new LinkedHashMap<>();
+        object.put("count", 3);
+        object.put("price", 10.0);
+        object.put("ratio", 0.25);
+        object.put("missing", Double.NaN);
+        object.put("items", List.of("a", true));
+        object.put("nothing", null);
+
+        assertEquals("{\"count\":3,\"price\":10,\"ratio\":0.25,\"missing\":null,\"items\":[\"a\",true],\"nothing\":null}",
+                     Json.write(object));
+        assertEquals(object.keySet(), ((Map<?, ?>) Json.parse(Json.write(object))).keySet());
+    }
+
+    @Test
+    void parsesNull() {
+        assertNull(Json.parse("null"));
+    }
+
+    @Test
+    void rejectsMalformedDocuments() {
+        for (String json : new String[] {"", "{", "{\"a\" 1}", "{a: 1}", "[1,]", "[1 2]", "\"open", "\"bad \\x escape\"",
+                                         "\"\\u12\"", "\"\\u12zz\"", "tru", "1-", "{} {}", "-"}) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> Json.parse(json), json);
+            assertTrue(e.getMessage().contains("at offset"), e.getMessage());
+        }
+    }
+}